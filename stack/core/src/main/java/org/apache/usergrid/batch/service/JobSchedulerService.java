@@ -50,16 +50,34 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 
 /**
- * Service that schedules itself, then schedules jobs in the same pool
+ * Service that schedules itself, then schedules jobs in the same pool.
+ *
+ * In the poll dispatch mode the job queue is read every interval.  In the event dispatch mode the service sleeps until
+ * a job scheduled on this node is due, as registered with the {@link JobWakeups}, and only reads the queue unprompted
+ * at lease boundaries, to find jobs scheduled on other nodes and jobs whose lease expired.  Either way jobs are claimed
+ * through the queue's transactions, so each job runs on a single node.
  */
 public class JobSchedulerService extends AbstractScheduledService {
     protected static final long DEFAULT_DELAY = 1000;
+    protected static final long DEFAULT_LEASE_INTERVAL = 30000;
+
+    /**
+     * How the service finds due jobs
+     */
+    public enum DispatchMode {
+        /** Read the job queue every interval */
+        POLL,
+        /** Wake up when a job is due, read the job queue every lease interval */
+        EVENT
+    }
 
     private static final Logger logger = LoggerFactory.getLogger( JobSchedulerService.class );
 
     private long interval = DEFAULT_DELAY;
     private int workerSize = 1;
     private int maxFailCount = 10;
+    private DispatchMode dispatchMode = DispatchMode.POLL;
+    private long leaseInterval = DEFAULT_LEASE_INTERVAL;
 
     private JobAccessor jobAccessor;
     private JobFactory jobFactory;
@@ -68,6 +86,7 @@ public class JobSchedulerService extends AbstractScheduledService {
 
     private ListeningScheduledExecutorService service;
     private JobListener jobListener;
+    private JobWakeups jobWakeups;
 
     private Timer jobTimer;
     private Counter runCounter;
@@ -96,48 +115,65 @@ public class JobSchedulerService extends AbstractScheduledService {
             if ( logger.isDebugEnabled() ) {
                 logger.debug( "Running one check iteration ..." );
             }
-            List<JobDescriptor> activeJobs;
+            dispatchDueJobs();
+        }
+        catch ( Throwable t ) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Scheduler run failed, error is", t);
+            }
+        }
 
-            // run until there are no more active jobs
-            while ( true ) {
+        if ( dispatchMode == DispatchMode.EVENT ) {
+            // sleep until a job scheduled on this node is due or the lease boundary, the next iteration reads the queue
+            final boolean due = jobWakeups.awaitDue( System.currentTimeMillis() + leaseInterval );
 
-                // get the semaphore if we can. This means we have space for at least 1
-                // job
-                if ( logger.isDebugEnabled() ) {
-                    logger.debug( "About to acquire semaphore.  Capacity is {}", capacitySemaphore.availablePermits() );
-                }
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( due ? "Woken up by a due job" : "Reached lease boundary" );
+            }
+        }
+    }
 
-                capacitySemaphore.acquire();
-                // release the sempaphore we only need to acquire as a way to stop the
-                // loop if there's no capacity
-                capacitySemaphore.release();
 
-                int capacity = capacitySemaphore.availablePermits();
+    /**
+     * Submit due jobs until there are none left
+     */
+    private void dispatchDueJobs() throws Exception {
+        List<JobDescriptor> activeJobs;
 
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Capacity is {}", capacity);
-                }
+        // run until there are no more active jobs
+        while ( true ) {
 
-                activeJobs = jobAccessor.getJobs( capacity );
+            // get the semaphore if we can. This means we have space for at least 1
+            // job
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "About to acquire semaphore.  Capacity is {}", capacitySemaphore.availablePermits() );
+            }
 
-                // nothing to do, we don't have any jobs to run
-                if ( activeJobs.size() == 0 ) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("No jobs returned. Exiting run loop");
-                    }
-                    return;
-                }
+            capacitySemaphore.acquire();
+            // release the sempaphore we only need to acquire as a way to stop the
+            // loop if there's no capacity
+            capacitySemaphore.release();
+
+            int capacity = capacitySemaphore.availablePermits();
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Capacity is {}", capacity);
+            }
+
+            activeJobs = jobAccessor.getJobs( capacity );
 
-                for ( JobDescriptor jd : activeJobs ) {
-                    logger.debug( "Submitting work for {}", jd );
-                    submitWork( jd );
-                    logger.debug( "Work submitted for {}", jd );
+            // nothing to do, we don't have any jobs to run
+            if ( activeJobs.size() == 0 ) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("No jobs returned. Exiting run loop");
                 }
+                return;
             }
-        }
-        catch ( Throwable t ) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Scheduler run failed, error is", t);
+
+            for ( JobDescriptor jd : activeJobs ) {
+                logger.debug( "Submitting work for {}", jd );
+                submitWork( jd );
+                logger.debug( "Work submitted for {}", jd );
             }
         }
     }
@@ -150,6 +186,10 @@ public class JobSchedulerService extends AbstractScheduledService {
      */
     @Override
     protected Scheduler scheduler() {
+        // in the event mode iterations wait for due jobs themselves
+        if ( dispatchMode == DispatchMode.EVENT ) {
+            return Scheduler.newFixedDelaySchedule( 0, 1, TimeUnit.MILLISECONDS );
+        }
         return Scheduler.newFixedDelaySchedule( 0, interval, TimeUnit.MILLISECONDS );
     }
 
@@ -315,6 +355,40 @@ public class JobSchedulerService extends AbstractScheduledService {
     }
 
 
+    /**
+     * @param dispatchMode how to find due jobs, poll or event
+     */
+    public void setDispatchMode( String dispatchMode ) {
+        this.dispatchMode = DispatchMode.valueOf( dispatchMode.trim().toUpperCase() );
+    }
+
+
+    public DispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+
+    /**
+     * @param milliseconds the milliseconds between reads of the job queue in the event dispatch mode
+     */
+    public void setLeaseInterval( long milliseconds ) {
+        this.leaseInterval = milliseconds;
+    }
+
+
+    public long getLeaseInterval() {
+        return leaseInterval;
+    }
+
+
+    /**
+     * @param jobWakeups the wake ups that jobs scheduled on this node are registered with
+     */
+    public void setJobWakeups( JobWakeups jobWakeups ) {
+        this.jobWakeups = jobWakeups;
+    }
+
+
     /**
      * @param listeners the listeners to set
      */
@@ -377,6 +451,26 @@ public class JobSchedulerService extends AbstractScheduledService {
 
         logger.info( "Starting executor pool.  Capacity is {}", workerSize );
 
+        if ( dispatchMode == DispatchMode.EVENT ) {
+            if ( jobWakeups == null ) {
+                logger.warn( "No job wake ups configured, falling back to polling every {} ms", interval );
+                dispatchMode = DispatchMode.POLL;
+            }
+            else {
+                jobWakeups.open();
+
+                // an iteration may be waiting for the next due job, release it so stopping does not wait on it
+                addListener( new Listener() {
+                    @Override
+                    public void stopping( final State from ) {
+                        jobWakeups.close();
+                    }
+                }, MoreExecutors.directExecutor() );
+
+                logger.info( "Dispatching due jobs, reading the job queue every {} ms", leaseInterval );
+            }
+        }
+
         super.startUp();
 
         logger.info( "Job Scheduler started" );
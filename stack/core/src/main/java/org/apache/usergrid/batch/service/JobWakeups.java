@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch.service;
+
+
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * The times at which jobs scheduled on this node become due, so the event driven scheduler can wake up when a job is
+ * due instead of polling the job queue.  Only times are kept, claiming the jobs is still done through the queue, which
+ * hands each job to a single node.
+ *
+ * Times within the same resolution are coalesced into one wake up, and once the maximum number of times is reached
+ * the latest ones are dropped, those jobs are found at the next lease boundary instead.
+ */
+public class JobWakeups {
+
+    /** Times are rounded up past the next multiple of this many milliseconds, a job is visible in the queue by then */
+    public static final long RESOLUTION = 10;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private final TreeSet<Long> dueTimes = new TreeSet<>();
+
+    private int maxSize = 10000;
+    private boolean closed;
+
+
+    /**
+     * Wake up the scheduler at the given time
+     */
+    public void schedule( final long dueTime ) {
+        final long rounded = ( dueTime / RESOLUTION + 1 ) * RESOLUTION;
+
+        lock.lock();
+        try {
+            if ( !dueTimes.add( rounded ) ) {
+                return;
+            }
+
+            if ( dueTimes.size() > maxSize ) {
+                dueTimes.pollLast();
+            }
+
+            // only an earlier wake up changes how long the scheduler sleeps
+            if ( dueTimes.first() == rounded ) {
+                changed.signalAll();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Wait until a scheduled time is due or the deadline passes, whichever comes first.  Due times are consumed.
+     *
+     * @param deadline The time to return at if nothing is due before it
+     *
+     * @return true if a scheduled time is due, false if the deadline passed or the wake ups were closed
+     */
+    public boolean awaitDue( final long deadline ) throws InterruptedException {
+        lock.lock();
+        try {
+            while ( !closed ) {
+                final long now = System.currentTimeMillis();
+
+                if ( !dueTimes.isEmpty() && dueTimes.first() <= now ) {
+                    dueTimes.headSet( now, true ).clear();
+                    return true;
+                }
+
+                if ( now >= deadline ) {
+                    return false;
+                }
+
+                final long wakeAt = dueTimes.isEmpty() ? deadline : Math.min( dueTimes.first(), deadline );
+                changed.await( wakeAt - now, TimeUnit.MILLISECONDS );
+            }
+
+            return false;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Release any waiting scheduler, subsequent waits return immediately
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Allow waiting again after a close
+     */
+    public void open() {
+        lock.lock();
+        try {
+            closed = false;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    public int size() {
+        lock.lock();
+        try {
+            return dueTimes.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @param maxSize the number of wake up times to keep
+     */
+    public void setMaxSize( int maxSize ) {
+        this.maxSize = maxSize;
+    }
+}
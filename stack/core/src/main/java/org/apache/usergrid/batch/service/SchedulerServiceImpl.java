@@ -79,6 +79,12 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     private Injector injector;
     private EntityIndex entityIndex;
 
+    /** Wakes up the local scheduler when a job scheduled here is due, may be null */
+    private JobWakeups jobWakeups;
+
+    /** Only the event dispatch mode waits on the wake ups, in the poll mode nothing would consume them */
+    private JobSchedulerService.DispatchMode dispatchMode = JobSchedulerService.DispatchMode.POLL;
+
 
     /**
      *
@@ -128,6 +134,10 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
         message.setProperty( STATS_ID, jobStatId.toString() );
 
         getQm().postToQueue( jobQueueName, message );
+
+        if ( jobWakeups != null && dispatchMode == JobSchedulerService.DispatchMode.EVENT ) {
+            jobWakeups.schedule( fireTime );
+        }
     }
 
 
@@ -415,6 +425,18 @@ public class SchedulerServiceImpl implements SchedulerService, JobAccessor, JobR
     public void setInjector( Injector injector){ this.injector = injector;}
 
 
+    /** @param jobWakeups the wake ups of the local scheduler to register scheduled jobs with */
+    public void setJobWakeups( JobWakeups jobWakeups ) {
+        this.jobWakeups = jobWakeups;
+    }
+
+
+    /** @param dispatchMode the dispatch mode of the local scheduler, 'poll' or 'event' */
+    public void setDispatchMode( String dispatchMode ) {
+        this.dispatchMode = JobSchedulerService.DispatchMode.valueOf( dispatchMode.trim().toUpperCase() );
+    }
+
+
     /** @param jobQueueName the jobQueueName to set */
     public void setJobQueueName( String jobQueueName ) {
         this.jobQueueName = jobQueueName;
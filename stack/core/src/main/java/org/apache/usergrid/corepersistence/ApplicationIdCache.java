@@ -20,6 +20,7 @@
 package org.apache.usergrid.corepersistence;
 
 
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -38,6 +39,12 @@ public interface ApplicationIdCache {
     UUID getApplicationId( final String applicationName );
 
 
+    /**
+     * Load the ids of known applications, so the first lookups don't reach the datastore
+     */
+    void warmUp( final Map<String, UUID> applications );
+
+
     /**
      * Evict the app id by the name
      */
@@ -48,4 +55,10 @@ public interface ApplicationIdCache {
      * Evict all caches
      */
     void evictAll();
+
+
+    /**
+     * Stop checking for evictions on other nodes and reloading entries
+     */
+    void shutdown();
 }
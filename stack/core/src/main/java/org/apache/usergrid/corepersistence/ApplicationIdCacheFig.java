@@ -36,10 +36,39 @@ public interface ApplicationIdCacheFig extends GuicyFig {
     @Default( "10000" )
     int getCacheSize();
 
+    /**
+     * How long an entry that is not read is kept
+     */
     @Key( "usergrid.applicationid_cache_timeout_ms" )
-    @Default( "60000" )
+    @Default( "600000" )
     int getCacheTimeout();
 
+    /**
+     * How long after it was loaded an entry is reloaded in the background when read, the old value is returned until
+     * the reload completes.  Must be less than the timeout.
+     */
+    @Key( "usergrid.applicationid_cache_refresh_ms" )
+    @Default( "60000" )
+    int getCacheRefresh();
+
+    @Key( "usergrid.applicationid_cache_reload_threads" )
+    @Default( "4" )
+    int getReloadThreads();
+
+    /**
+     * Load every application when the node starts
+     */
+    @Key( "usergrid.applicationid_cache_warmup" )
+    @Default( "true" )
+    boolean getWarmUp();
+
+    /**
+     * How often each node checks whether applications were created or deleted on another node, 0 to never check
+     */
+    @Key( "usergrid.applicationid_cache_invalidation_poll_ms" )
+    @Default( "5000" )
+    long getInvalidationPollInterval();
+
 
 
 }
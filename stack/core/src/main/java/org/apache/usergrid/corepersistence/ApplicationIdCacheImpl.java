@@ -19,66 +19,128 @@
 package org.apache.usergrid.corepersistence;
 
 
+import com.google.common.base.Optional;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
 import org.apache.usergrid.persistence.exceptions.PersistenceException;
+import org.apache.usergrid.persistence.map.MapKeyResults;
+import org.apache.usergrid.persistence.map.MapManager;
+import org.apache.usergrid.persistence.map.impl.MapScopeImpl;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 
 /**
  * Implements the org app cache for faster runtime lookups.
- * These values are immutable, so this LRU cache can stay full for the duration of the execution.
+ *
+ * Entries are reloaded in the background once they are older than the refresh interval, so reads never wait on a
+ * reload.  Names that don't belong to an application are cached too, so repeated lookups of unknown names don't reach
+ * the datastore.
+ *
+ * Nodes find out about applications created or deleted elsewhere through the evicted names, which are stored in the
+ * management application for a while under a time uuid and polled by every node.  A node invalidates the names it
+ * has not seen evicted yet, and only those.
  */
 public class ApplicationIdCacheImpl implements ApplicationIdCache {
     private static final Logger logger = LoggerFactory.getLogger(ApplicationIdCacheImpl.class);
 
+    private static final String EVICTION_MAP = "application_id_cache_evictions";
+
+    /**
+     * Evictions are kept for at least this long, and at least ten poll intervals, so every node polls them
+     */
+    private static final long MIN_EVICTION_TTL_SECONDS = 300;
+
+    private static final int EVICTION_PAGE_SIZE = 1000;
+
     // cache the pointer to our root entity manager for reference
-    private final LoadingCache<String, UUID> appCache;
+    private final LoadingCache<String, Optional<UUID>> appCache;
 
     private final EntityManager managementEnityManager;
 
     private final ManagerCache managerCache;
 
+    private final ApplicationIdCacheFig fig;
+
+    private final ExecutorService reloadExecutor;
+
+    private final ScheduledExecutorService poller;
+
+    /**
+     * The keys of the evictions this node has seen, so it only invalidates the names evicted since
+     */
+    private volatile Set<String> seenEvictions = Collections.emptySet();
+
 
     public ApplicationIdCacheImpl(
         final EntityManager managementEnityManager, ManagerCache managerCache, ApplicationIdCacheFig fig) {
 
         this.managementEnityManager = managementEnityManager;
         this.managerCache = managerCache;
+        this.fig = fig;
+
+        reloadExecutor = Executors.newFixedThreadPool( fig.getReloadThreads(),
+            new ThreadFactoryBuilder().setNameFormat( "applicationid-cache-reload-%d" ).setDaemon( true ).build() );
 
         appCache = CacheBuilder.newBuilder()
             .maximumSize(fig.getCacheSize())
+            .refreshAfterWrite(fig.getCacheRefresh(), TimeUnit.MILLISECONDS)
             .expireAfterWrite(fig.getCacheTimeout(), TimeUnit.MILLISECONDS)
-            .build(new CacheLoader<String, UUID>() {
+            .build(CacheLoader.asyncReloading(new CacheLoader<String, Optional<UUID>>() {
                 @Override
-                public UUID load(final String key) throws Exception {
-                    UUID appId = fetchApplicationId(key);
-                    if ( appId == null ) {
-                        throw new PersistenceException("Error getting applicationId");
-                    }
-                    return appId;
+                public Optional<UUID> load(final String key) throws Exception {
+                    return fetchApplicationId(key);
                 }
-            });
+            }, reloadExecutor));
+
+        // entries are loaded after the current evictions, only later ones invalidate them
+        try {
+            seenEvictions = getEvictionKeys();
+        }
+        catch ( Exception e ) {
+            logger.warn( "Unable to read the application id cache evictions, the evicted names are invalidated once "
+                + "they are read", e );
+        }
+
+        if ( fig.getInvalidationPollInterval() > 0 ) {
+            poller = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat( "applicationid-cache-invalidation" ).setDaemon( true )
+                                          .build() );
+
+            poller.scheduleWithFixedDelay( this::checkInvalidation, fig.getInvalidationPollInterval(),
+                fig.getInvalidationPollInterval(), TimeUnit.MILLISECONDS );
+        }
+        else {
+            poller = null;
+        }
     }
 
     @Override
     public UUID getApplicationId( final String applicationName ) {
         try {
-            return appCache.get( applicationName.toLowerCase() );
+            return appCache.get( applicationName.toLowerCase() ).orNull();
         } catch (Exception e) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Returning for key {} value null due to exception: {}", applicationName, e);
@@ -88,23 +150,31 @@ public class ApplicationIdCacheImpl implements ApplicationIdCache {
     }
 
 
+    @Override
+    public void warmUp( final Map<String, UUID> applications ) {
+        if ( !fig.getWarmUp() ) {
+            return;
+        }
+
+        applications.forEach( ( applicationName, applicationId ) ->
+            appCache.put( applicationName.toLowerCase(), Optional.of( applicationId ) ) );
+
+        logger.info( "Loaded {} application ids into the cache", applications.size() );
+    }
+
+
     /**
-     * Fetch our application id
+     * Fetch our application id, absent if there is no application with the name
      */
-    private UUID fetchApplicationId( final String applicationName ) {
-
-        UUID value = null;
+    private Optional<UUID> fetchApplicationId( final String applicationName ) throws Exception {
 
         EntityCollectionManager ecm = managerCache.getEntityCollectionManager(
             new ApplicationScopeImpl(
                 new SimpleId( CpNamingUtils.MANAGEMENT_APPLICATION_ID, Schema.TYPE_APPLICATION ) ) );
 
-        try {
-            if ( managementEnityManager.getApplication() == null ) {
-                return null;
-            }
-        } catch ( Exception e ) {
-            logger.error("Error looking up management app", e);
+        // without the management app nothing is known, don't remember the name as unknown
+        if ( managementEnityManager.getApplication() == null ) {
+            throw new PersistenceException("Error getting applicationId, management application is not initialized");
         }
 
         // look up application_info ID for application using unique "name" field
@@ -112,16 +182,14 @@ public class ApplicationIdCacheImpl implements ApplicationIdCache {
             CpNamingUtils.APPLICATION_INFO, new StringField(Schema.PROPERTY_NAME, applicationName));
         Id id = idObs.toBlocking().lastOrDefault(null);
 
-        if ( id != null ) {
-            value = id.getUuid();
-
-        } else {
+        if ( id == null ) {
             if (logger.isDebugEnabled()) {
                 logger.debug( "Could not load value for key {} ", applicationName );
             }
+            return Optional.absent();
         }
 
-        return value;
+        return Optional.of( id.getUuid() );
     }
 
 
@@ -131,6 +199,8 @@ public class ApplicationIdCacheImpl implements ApplicationIdCache {
         if(logger.isDebugEnabled()) {
             logger.debug("Invalidated key {}", applicationName.toLowerCase());
         }
+
+        publishEviction( applicationName.toLowerCase() );
     }
 
 
@@ -141,4 +211,94 @@ public class ApplicationIdCacheImpl implements ApplicationIdCache {
             logger.debug("Invalidated all keys");
         }
     }
+
+
+    @Override
+    public void shutdown() {
+        if ( poller != null ) {
+            poller.shutdownNow();
+        }
+
+        reloadExecutor.shutdownNow();
+    }
+
+
+    /**
+     * Store the evicted name so other nodes invalidate it
+     */
+    private void publishEviction( final String applicationName ) {
+        try {
+            final String key = UUIDGenerator.newTimeUUID().toString();
+            final long ttl = Math.max( MIN_EVICTION_TTL_SECONDS,
+                10 * TimeUnit.MILLISECONDS.toSeconds( fig.getInvalidationPollInterval() ) );
+
+            getEvictionMap().putString( key, applicationName, ( int ) ttl );
+
+            final Set<String> seen = new HashSet<>( seenEvictions );
+            seen.add( key );
+            seenEvictions = seen;
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to publish application id cache eviction, other nodes see the change once "
+                + "their entries are refreshed", e );
+        }
+    }
+
+
+    /**
+     * Invalidate the names evicted by other nodes since the last check
+     */
+    void checkInvalidation() {
+        try {
+            final Set<String> current = getEvictionKeys();
+
+            final Set<String> evicted = new HashSet<>( current );
+            evicted.removeAll( seenEvictions );
+
+            // expired evictions are dropped with the keys that are gone
+            seenEvictions = current;
+
+            if ( evicted.isEmpty() ) {
+                return;
+            }
+
+            for ( String applicationName : getEvictionMap().getStrings( evicted ).values() ) {
+                appCache.invalidate( applicationName );
+
+                if ( logger.isDebugEnabled() ) {
+                    logger.debug( "Invalidated key {} evicted by another node", applicationName );
+                }
+            }
+        }
+        catch ( Exception e ) {
+            logger.warn( "Unable to check for application id cache invalidations", e );
+        }
+    }
+
+
+    /**
+     * @return the keys of the evictions that have not expired
+     */
+    private Set<String> getEvictionKeys() {
+        final MapManager evictionMap = getEvictionMap();
+        final Set<String> keys = new HashSet<>();
+
+        String cursor = null;
+        MapKeyResults results;
+
+        do {
+            results = evictionMap.getKeys( cursor, EVICTION_PAGE_SIZE );
+            keys.addAll( results.getKeys() );
+            cursor = results.getCursor();
+        }
+        while ( cursor != null && results.getKeys().size() == EVICTION_PAGE_SIZE );
+
+        return keys;
+    }
+
+
+    private MapManager getEvictionMap() {
+        return managerCache.getMapManager(
+            new MapScopeImpl( CpNamingUtils.getManagementApplicationId(), EVICTION_MAP ) );
+    }
 }
@@ -33,6 +33,7 @@ import org.apache.usergrid.corepersistence.index.CollectionSettings;
 import org.apache.usergrid.corepersistence.index.CollectionSettingsFactory;
 import org.apache.usergrid.corepersistence.index.CollectionSettingsScopeImpl;
 import org.apache.usergrid.corepersistence.service.CollectionService;
+import org.apache.usergrid.corepersistence.service.CollectionStatsService;
 import org.apache.usergrid.corepersistence.service.ConnectionService;
 import org.apache.usergrid.corepersistence.util.CpCollectionUtils;
 import org.apache.usergrid.corepersistence.util.CpEntityMapUtils;
@@ -163,6 +164,10 @@ public class CpEntityManager implements EntityManager {
 
     public QueueManagerFactory queueManagerFactory;
 
+    private final DictionaryCache dictionaryCache;
+
+    private final CollectionStatsService collectionStatsService;
+
     //    /** Short-term cache to keep us from reloading same Entity during single request. */
 //    private LoadingCache<EntityScope, org.apache.usergrid.persistence.model.entity.Entity> entityCache;
 
@@ -187,7 +192,9 @@ public class CpEntityManager implements EntityManager {
                             final ConnectionService connectionService,
                             final CollectionSettingsFactory collectionSettingsFactory,
                             final UUID applicationId,
-                            final QueueManagerFactory queueManagerFactory) {
+                            final QueueManagerFactory queueManagerFactory,
+                            final DictionaryCache dictionaryCache,
+                            final CollectionStatsService collectionStatsService ) {
 
         this.entityManagerFig = entityManagerFig;
         this.actorSystemFig = actorSystemFig;
@@ -201,6 +208,8 @@ public class CpEntityManager implements EntityManager {
         Preconditions.checkNotNull( graphManagerFactory, "graphManagerFactory must not be null" );
         Preconditions.checkNotNull( connectionService, "connectionService must not be null" );
         Preconditions.checkNotNull( collectionService, "collectionService must not be null" );
+        Preconditions.checkNotNull( dictionaryCache, "dictionaryCache must not be null" );
+        Preconditions.checkNotNull( collectionStatsService, "collectionStatsService must not be null" );
 
         this.graphManagerFactory = graphManagerFactory;
         this.connectionService = connectionService;
@@ -254,6 +263,8 @@ public class CpEntityManager implements EntityManager {
         this.skipAggregateCounters = false;
 
         this.queueManagerFactory = queueManagerFactory;
+        this.dictionaryCache = dictionaryCache;
+        this.collectionStatsService = collectionStatsService;
     }
 
 
@@ -489,6 +500,18 @@ public class CpEntityManager implements EntityManager {
 
     @Override
     public void update( Entity entity ) throws Exception {
+        update( entity, null );
+    }
+
+
+    /**
+     * Write a new version of the entity.  When the changed properties are known only their unique values are
+     * verified, the entity must then be the current version with the changes applied.  The version is still
+     * written and indexed whole either way.
+     *
+     * @param changedProperties the names of the properties that changed, or null if unknown
+     */
+    private void update( Entity entity, Collection<String> changedProperties ) throws Exception {
         Preconditions.checkNotNull(entity,"entity should never be null");
         String type = entity.getType();
         Preconditions.checkNotNull(type,"entity type should never be null");
@@ -526,11 +549,19 @@ public class CpEntityManager implements EntityManager {
         boolean skipIndexingForType = skipIndexingForType(entityType);
         QueueIndexingStrategy queueIndexingStrategy = getIndexingStrategyForType(entityType);
 
+        // the size of the version being replaced, known when the entity was loaded
+        final long previousSize = entity.getSize();
+
         try {
 
             String region = lookupAuthoritativeRegionForType( entity.getType() );
 
-            cpEntity = ecm.write( cpEntity, region ).toBlocking().last();
+            if ( changedProperties != null ) {
+                cpEntity = ecm.update( cpEntity, changedProperties, region ).toBlocking().last();
+            }
+            else {
+                cpEntity = ecm.write( cpEntity, region ).toBlocking().last();
+            }
 
 //            cpEntity = ecm.update( cpEntity ).toBlockingObservable().last();
 //            // need to reload entity so bypass entity cache
@@ -551,6 +582,12 @@ public class CpEntityManager implements EntityManager {
             handleWriteUniqueVerifyException( entity, wuve );
         }
 
+        if ( previousSize > 0 ) {
+            collectionStatsService.increment( applicationScope, Schema.defaultCollectionName( entityType ), 0,
+                cpEntity.getSize() - previousSize );
+        }
+        entity.setSize( cpEntity.getSize() );
+
         if (!skipIndexingForType) {
             indexEntity(cpEntity, queueIndexingStrategy);
             deIndexOldVersionsOfEntity(cpEntity);
@@ -603,6 +640,11 @@ public class CpEntityManager implements EntityManager {
 
         decrementEntityCollection( Schema.defaultCollectionName( entityRef.getType() ));
 
+        // the size is only known when the caller passes a loaded entity, reconciliation corrects the rest
+        final long size = entityRef instanceof Entity ? ( ( Entity ) entityRef ).getSize() : 0;
+        collectionStatsService.increment( applicationScope, Schema.defaultCollectionName( entityRef.getType() ), -1,
+            -size );
+
     }
 
 
@@ -1083,6 +1125,9 @@ public class CpEntityManager implements EntityManager {
 
         properties.put(PROPERTY_MODIFIED, UUIDUtils.getTimestampInMillis(UUIDUtils.newTimeUUID()));
 
+        // only the unique values of properties that change need to be verified again
+        Set<String> changedProperties = new HashSet<>( properties.size() );
+
         for ( String propertyName : properties.keySet() ) {
             Object propertyValue = properties.get( propertyName );
 
@@ -1104,10 +1149,14 @@ public class CpEntityManager implements EntityManager {
                 }
             }
 
+            if ( !Objects.equals( entity.getProperty( propertyName ), propertyValue ) ) {
+                changedProperties.add( propertyName );
+            }
+
             entity.setProperty( propertyName, propertyValue );
         }
 
-        update( entity );
+        update( entity, changedProperties );
     }
 
 
@@ -1124,6 +1173,8 @@ public class CpEntityManager implements EntityManager {
         org.apache.usergrid.persistence.model.entity.Entity cpEntity =
                 load( entityId );
 
+        final long previousSize = cpEntity.getSize();
+
         cpEntity.removeField( propertyName );
 
         if(logger.isTraceEnabled()){
@@ -1145,6 +1196,8 @@ public class CpEntityManager implements EntityManager {
         //TODO: does this call and others like it need a graphite reporter?
         cpEntity = ecm.write( cpEntity, region ).toBlocking().last();
 
+        collectionStatsService.increment( applicationScope, collectionName, 0, cpEntity.getSize() - previousSize );
+
         if(logger.isTraceEnabled()){
             logger.trace("Wrote {}:{} version {}",
                 cpEntity.getId().getType(), cpEntity.getId().getUuid(), cpEntity.getVersion() );
@@ -1192,6 +1245,8 @@ public class CpEntityManager implements EntityManager {
         Timer.Context timeDictionaryCreation = entAddDictionaryTimer.time();
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeDictionaryCreation.stop();
+
+        invalidateDictionary( entity, dictionaryName );
     }
 
 
@@ -1216,6 +1271,8 @@ public class CpEntityManager implements EntityManager {
         Timer.Context timeAddingSetDictionary = entAddDictionarySetTimer.time();
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeAddingSetDictionary.stop();
+
+        invalidateDictionary( entity, dictionaryName );
     }
 
 
@@ -1241,6 +1298,8 @@ public class CpEntityManager implements EntityManager {
         Timer.Context timeMapDictionary = entAddDictionaryMapTimer.time();
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeMapDictionary.stop();
+
+        invalidateDictionary( entity, dictionaryName );
     }
 
 
@@ -1254,28 +1313,88 @@ public class CpEntityManager implements EntityManager {
     public Map<Object, Object> getDictionaryAsMap( EntityRef entity, String dictionaryName,
                                                    boolean forceVerification) throws Exception {
 
-        entity = validate( entity, forceVerification);
+        final EntityRef validated = validate( entity, forceVerification);
 
-        Map<Object, Object> dictionary = new LinkedHashMap<Object, Object>();
+        final ApplicationCF dictionaryCf = getDictionaryCf( validated, dictionaryName );
+        final Object rowKey = CassandraPersistenceUtils.key( validated.getUuid(), dictionaryName );
 
-        ApplicationCF dictionaryCf = null;
+        // counters are written by CounterUtils, which knows nothing of the cache
+        if ( DICTIONARY_COUNTERS.equalsIgnoreCase( dictionaryName ) ) {
+            return readDictionary( validated, dictionaryName,
+                cass.getAllColumns( cass.getApplicationKeyspace( applicationId ), dictionaryCf, rowKey, be, be ) );
+        }
 
-        boolean entityHasDictionary = Schema.getDefaultSchema().hasDictionary(entity.getType(), dictionaryName);
+        final Map<Object, Object> dictionary = dictionaryCache.get( applicationId, dictionaryCf, rowKey,
+            () -> Collections.unmodifiableMap( readDictionary( validated, dictionaryName,
+                cass.getAllColumns( cass.getApplicationKeyspace( applicationId ), dictionaryCf, rowKey, be, be ) ) ) );
 
-        if ( entityHasDictionary ) {
-            dictionaryCf = ENTITY_DICTIONARIES;
+        return new LinkedHashMap<>( dictionary );
+    }
+
+
+    @Override
+    public Map<Object, Object> getDictionaryAsMap( EntityRef entity, String dictionaryName, Object start,
+                                                   int limit ) throws Exception {
+
+        Preconditions.checkArgument( limit > 0, "limit must be positive" );
+
+        entity = validate( entity );
+
+        final ApplicationCF dictionaryCf = getDictionaryCf( entity, dictionaryName );
+        final boolean entityHasDictionary = dictionaryCf == ENTITY_DICTIONARIES;
+
+        Object startColumn = null;
+        if ( start != null ) {
+            startColumn = entityHasDictionary ? start : asList( start );
         }
-        else {
-            dictionaryCf = ENTITY_COMPOSITE_DICTIONARIES;
+
+        // the slice starts at the cursor, read one more in case it is still there
+        List<HColumn<ByteBuffer, ByteBuffer>> results =
+            cass.getColumns( cass.getApplicationKeyspace( applicationId ), dictionaryCf,
+                CassandraPersistenceUtils.key( entity.getUuid(), dictionaryName ), startColumn, null,
+                start != null ? limit + 1 : limit, false );
+
+        Map<Object, Object> page = readDictionary( entity, dictionaryName, results );
+
+        if ( start != null ) {
+            page.remove( start );
         }
 
+        if ( page.size() > limit ) {
+            Iterator<Object> names = page.keySet().iterator();
+            for ( int i = 0; i < limit; i++ ) {
+                names.next();
+            }
+            while ( names.hasNext() ) {
+                names.next();
+                names.remove();
+            }
+        }
+
+        return page;
+    }
+
+
+    private ApplicationCF getDictionaryCf( EntityRef entity, String dictionaryName ) {
+        return Schema.getDefaultSchema().hasDictionary( entity.getType(), dictionaryName )
+            ? ENTITY_DICTIONARIES : ENTITY_COMPOSITE_DICTIONARIES;
+    }
+
+
+    /**
+     * Decode the columns of a dictionary row in column order
+     */
+    private Map<Object, Object> readDictionary( EntityRef entity, String dictionaryName,
+                                                List<HColumn<ByteBuffer, ByteBuffer>> results ) {
+
+        Map<Object, Object> dictionary = new LinkedHashMap<Object, Object>();
+
+        boolean entityHasDictionary = Schema.getDefaultSchema().hasDictionary(entity.getType(), dictionaryName);
+
         Class<?> setType = Schema.getDefaultSchema().getDictionaryKeyType(entity.getType(), dictionaryName);
         Class<?> setCoType = Schema.getDefaultSchema().getDictionaryValueType(entity.getType(), dictionaryName);
         boolean coTypeIsBasic = ClassUtils.isBasicType( setCoType );
 
-        List<HColumn<ByteBuffer, ByteBuffer>> results =
-                cass.getAllColumns(cass.getApplicationKeyspace(applicationId), dictionaryCf,
-                    CassandraPersistenceUtils.key(entity.getUuid(), dictionaryName), be, be);
         for ( HColumn<ByteBuffer, ByteBuffer> result : results ) {
             Object name = null;
             if ( entityHasDictionary ) {
@@ -1300,6 +1419,20 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    /**
+     * Drop the cached contents of a dictionary, call once the mutation changing it has executed
+     */
+    private void invalidateDictionary( EntityRef entity, String dictionaryName ) {
+        invalidateDictionaryRow( getDictionaryCf( entity, dictionaryName ),
+            CassandraPersistenceUtils.key( entity.getUuid(), dictionaryName ) );
+    }
+
+
+    private void invalidateDictionaryRow( ApplicationCF dictionaryCf, Object rowKey ) {
+        dictionaryCache.invalidate( applicationId, dictionaryCf, rowKey );
+    }
+
+
     @Override
     public Object getDictionaryElementValue( EntityRef entity, String dictionaryName, String elementName )
             throws Exception {
@@ -1428,6 +1561,8 @@ public class CpEntityManager implements EntityManager {
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeRemoveDictionary.stop();
 
+        invalidateDictionary( entity, dictionaryName );
+
     }
 
 
@@ -1788,6 +1923,9 @@ public class CpEntityManager implements EntityManager {
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeCreateBatchRole.stop();
 
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, CassandraPersistenceUtils.key( ownerId, DICTIONARY_ROLENAMES ) );
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, CassandraPersistenceUtils.key( ownerId, DICTIONARY_ROLETIMES ) );
+
         return get( id, Role.class );
     }
 
@@ -1891,6 +2029,8 @@ public class CpEntityManager implements EntityManager {
             "role.create_permission").time();
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeGrantRolePermission.stop();
+
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, getRolePermissionsKey( roleName ) );
     }
 
 
@@ -1910,6 +2050,8 @@ public class CpEntityManager implements EntityManager {
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeGrantRolePermissions.stop();
 
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, getRolePermissionsKey( roleName ) );
+
     }
 
 
@@ -1943,14 +2085,15 @@ public class CpEntityManager implements EntityManager {
         Timer.Context timeRevokeRolePermission = entRevokeRolePermissionsTimer.time();
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeRevokeRolePermission.stop();
+
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, getRolePermissionsKey( roleName ) );
     }
 
 //TODO: does this need graphite monitoring
     @Override
     public Set<String> getRolePermissions( String roleName ) throws Exception {
         roleName = roleName.toLowerCase();
-        return cass.getAllColumnNames( cass.getApplicationKeyspace( applicationId ), ApplicationCF.ENTITY_DICTIONARIES,
-            getRolePermissionsKey( roleName ) );
+        return getPermissions( getRolePermissionsKey( roleName ) );
     }
 
 //TODO: does this need graphite monitoring
@@ -2008,13 +2151,16 @@ public class CpEntityManager implements EntityManager {
         permission = permission.toLowerCase();
         long timestamp = cass.createTimestamp();
         Mutator<ByteBuffer> batch = createMutator( cass.getApplicationKeyspace( applicationId ), be );
+        Object rolePermissionsKey = getRolePermissionsKey( groupId, roleName );
         CassandraPersistenceUtils.addInsertToMutator(batch, ApplicationCF.ENTITY_DICTIONARIES,
-            getRolePermissionsKey(groupId, roleName), permission, ByteBuffer.allocate(0), timestamp);
+            rolePermissionsKey, permission, ByteBuffer.allocate(0), timestamp);
 
         //Adding graphite metrics
         Timer.Context timeGroupRolePermission = entGrantGroupPermissionTimer.time();
         CassandraPersistenceUtils.batchExecute(batch, CassandraService.RETRY_COUNT);
         timeGroupRolePermission.stop();
+
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, rolePermissionsKey );
     }
 
 
@@ -2024,29 +2170,53 @@ public class CpEntityManager implements EntityManager {
         permission = permission.toLowerCase();
         long timestamp = cass.createTimestamp();
         Mutator<ByteBuffer> batch = createMutator( cass.getApplicationKeyspace( applicationId ), be );
+        Object rolePermissionsKey = getRolePermissionsKey( groupId, roleName );
         CassandraPersistenceUtils.addDeleteToMutator(batch, ApplicationCF.ENTITY_DICTIONARIES,
-            getRolePermissionsKey(groupId, roleName), permission, timestamp);
+            rolePermissionsKey, permission, timestamp);
         //Adding graphite metrics
         Timer.Context timeRevokeGroupRolePermission = entRevokeGroupPermissionTimer.time();
         CassandraPersistenceUtils.batchExecute( batch, CassandraService.RETRY_COUNT );
         timeRevokeGroupRolePermission.stop();
+
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, rolePermissionsKey );
     }
 
 
     @Override
     public Set<String> getGroupRolePermissions( UUID groupId, String roleName ) throws Exception {
         roleName = roleName.toLowerCase();
-        return cass.getAllColumnNames( cass.getApplicationKeyspace( applicationId ), ApplicationCF.ENTITY_DICTIONARIES,
-            getRolePermissionsKey( groupId, roleName ) );
+        return getPermissions( getRolePermissionsKey( groupId, roleName ) );
+    }
+
+
+    /**
+     * Read the permissions of a role through the dictionary cache, they are checked on every request
+     */
+    private Set<String> getPermissions( final Object rolePermissionsKey ) throws Exception {
+        final Set<String> permissions = dictionaryCache.get( applicationId, ENTITY_DICTIONARIES, rolePermissionsKey,
+            () -> Collections.unmodifiableSet( cass.getAllColumnNames( cass.getApplicationKeyspace( applicationId ),
+                ENTITY_DICTIONARIES, rolePermissionsKey ) ) );
+
+        return new LinkedHashSet<>( permissions );
     }
 
 
     @Override
     public void deleteGroupRole( UUID groupId, String roleName ) throws Exception {
         roleName = roleName.toLowerCase();
+
+        //resolve the permissions row while the role can still be looked up
+        final Object rolePermissionsKey = getRolePermissionsKey( groupId, roleName );
+        final UUID groupRoleId = SimpleRoleRef.getIdForGroupIdAndRoleName( groupId, roleName );
+
         removeFromDictionary( new SimpleEntityRef( Group.ENTITY_TYPE, groupId ), DICTIONARY_ROLENAMES, roleName );
         cass.deleteRow( cass.getApplicationKeyspace( applicationId ), ApplicationCF.ENTITY_DICTIONARIES,
-            SimpleRoleRef.getIdForGroupIdAndRoleName( groupId, roleName ) );
+            groupRoleId );
+
+        invalidateDictionaryRow( ENTITY_DICTIONARIES, groupRoleId );
+        if ( rolePermissionsKey != null ) {
+            invalidateDictionaryRow( ENTITY_DICTIONARIES, rolePermissionsKey );
+        }
     }
 
 
@@ -2881,6 +3051,7 @@ public class CpEntityManager implements EntityManager {
 
         // Invoke counters
         incrementEntityCollection( collectionName, timestamp );
+        collectionStatsService.increment( applicationScope, collectionName, 1, entity.getSize() );
     }
 
     private void incrementEntityCollection( String collection_name, long cassandraTimestamp ) {
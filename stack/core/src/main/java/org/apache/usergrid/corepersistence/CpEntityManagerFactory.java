@@ -30,6 +30,7 @@ import org.apache.usergrid.corepersistence.index.CollectionSettingsFactory;
 import org.apache.usergrid.corepersistence.index.ReIndexRequestBuilder;
 import org.apache.usergrid.corepersistence.index.ReIndexService;
 import org.apache.usergrid.corepersistence.service.CollectionService;
+import org.apache.usergrid.corepersistence.service.CollectionStatsService;
 import org.apache.usergrid.corepersistence.service.ConnectionService;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.exception.ConflictException;
@@ -72,6 +73,7 @@ import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import rx.Observable;
+import rx.schedulers.Schedulers;
 
 import java.util.*;
 
@@ -121,6 +123,8 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
     private final LockManager lockManager;
 
     private final QueueManagerFactory queueManagerFactory;
+    private final DictionaryCache dictionaryCache;
+    private final CollectionStatsService collectionStatsService;
 
     public static final String MANAGEMENT_APP_INIT_MAXRETRIES= "management.app.init.max-retries";
     public static final String MANAGEMENT_APP_INIT_INTERVAL = "management.app.init.interval";
@@ -143,6 +147,8 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
         this.collectionService          = injector.getInstance( CollectionService.class );
         this.connectionService          = injector.getInstance( ConnectionService.class );
         this.collectionSettingsFactory  = injector.getInstance( CollectionSettingsFactory.class );
+        this.dictionaryCache            = injector.getInstance( DictionaryCache.class );
+        this.collectionStatsService     = injector.getInstance( CollectionStatsService.class );
 
         Properties properties = cassandraService.getProperties();
         this.entityManagers = createEntityManagerCache( properties );
@@ -183,6 +189,32 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
             getManagementEntityManager() );
 
         checkManagementApp( properties );
+
+        warmUpApplicationIdCache();
+    }
+
+
+    /**
+     * Load the application ids in the background so startup doesn't wait on them, lookups made in the meantime
+     * load their own ids
+     */
+    private void warmUpApplicationIdCache() {
+
+        // nothing to load while bootstrapping
+        if ( managementApp == null ) {
+            return;
+        }
+
+        Observable.defer( () -> {
+            try {
+                return Observable.just( getApplications() );
+            }
+            catch ( Exception e ) {
+                return Observable.error( e );
+            }
+        } ).subscribeOn( Schedulers.io() )
+            .subscribe( applicationIdCache::warmUp,
+                t -> logger.error( "Unable to warm up the application id cache", t ) );
     }
 
 
@@ -392,7 +424,9 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
             connectionService,
             collectionSettingsFactory,
             applicationId,
-            queueManagerFactory);
+            queueManagerFactory,
+            dictionaryCache,
+            collectionStatsService);
 
         return em;
     }
@@ -913,6 +947,14 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
 
 
 
+    /**
+     * Stop the background work of the factory, called when the application context is closed
+     */
+    public void destroy() {
+        applicationIdCache.shutdown();
+    }
+
+
     @Override
     public void flushEntityManagerCaches() {
 
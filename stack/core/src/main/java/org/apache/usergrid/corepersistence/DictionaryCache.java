@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence;
+
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Caches the decoded contents of small dictionary rows, such as the permissions of a role, which are read on every
+ * permission check.  Rows are identified by application, column family and row key.
+ *
+ * Every row hashes to a generation counter that writers increment once their mutation has executed.  A read remembers
+ * the generation before loading the row and the loaded contents are only used while the generation is unchanged, so
+ * a read racing a write never caches the contents from before the write.  Writes on other nodes are not seen, the
+ * time to live bounds how stale an entry can get.
+ *
+ * Rows with more than the configured number of entries are never cached, they are read on every access.
+ */
+@Singleton
+public class DictionaryCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final int maxEntries;
+
+    private final Cache<Key, Entry> cache;
+    private final AtomicLongArray generations = new AtomicLongArray( GENERATION_STRIPES );
+
+
+    @Inject
+    public DictionaryCache( final EntityManagerFig entityManagerFig ) {
+        this( entityManagerFig.getDictionaryCacheEnabled(), entityManagerFig.getDictionaryCacheSize(),
+            entityManagerFig.getDictionaryCacheTimeout(), entityManagerFig.getDictionaryCacheMaxEntries() );
+    }
+
+
+    public DictionaryCache( final boolean enabled, final int size, final long timeoutMillis, final int maxEntries ) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize( size )
+            .expireAfterWrite( timeoutMillis, TimeUnit.MILLISECONDS )
+            .build();
+    }
+
+
+    /**
+     * Get the contents of a dictionary row, loading them on a miss.  The cached contents are shared between callers,
+     * they must not be modified.
+     *
+     * @param loader Reads the row, returns a map or collection
+     */
+    @SuppressWarnings( "unchecked" )
+    public <T> T get( final UUID applicationId, final Object columnFamily, final Object rowKey,
+                      final Callable<T> loader ) throws Exception {
+
+        if ( !enabled ) {
+            return loader.call();
+        }
+
+        final Key key = new Key( applicationId, columnFamily.toString(), rowKey );
+        final int stripe = stripe( key );
+
+        final long generation = generations.get( stripe );
+
+        final Entry entry = cache.getIfPresent( key );
+        if ( entry != null && entry.generation == generation ) {
+            return ( T ) entry.value;
+        }
+
+        final T value = loader.call();
+
+        if ( size( value ) <= maxEntries ) {
+            cache.put( key, new Entry( generation, value ) );
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Invalidate a dictionary row, call once the mutation changing it has executed
+     */
+    public void invalidate( final UUID applicationId, final Object columnFamily, final Object rowKey ) {
+        final Key key = new Key( applicationId, columnFamily.toString(), rowKey );
+        generations.incrementAndGet( stripe( key ) );
+        cache.invalidate( key );
+    }
+
+
+    private static int stripe( final Key key ) {
+        return ( key.hashCode() & Integer.MAX_VALUE ) % GENERATION_STRIPES;
+    }
+
+
+    private static int size( final Object value ) {
+        if ( value instanceof Map ) {
+            return ( ( Map<?, ?> ) value ).size();
+        }
+        if ( value instanceof Collection ) {
+            return ( ( Collection<?> ) value ).size();
+        }
+        return value == null ? Integer.MAX_VALUE : 1;
+    }
+
+
+    private static final class Entry {
+        private final long generation;
+        private final Object value;
+
+
+        private Entry( final long generation, final Object value ) {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+
+
+    private static final class Key {
+        private final UUID applicationId;
+        private final String columnFamily;
+        private final Object rowKey;
+
+
+        private Key( final UUID applicationId, final String columnFamily, final Object rowKey ) {
+            this.applicationId = applicationId;
+            this.columnFamily = columnFamily;
+            this.rowKey = rowKey;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+            final Key other = ( Key ) o;
+            return applicationId.equals( other.applicationId ) && columnFamily.equals( other.columnFamily )
+                && rowKey.equals( other.rowKey );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode( applicationId, columnFamily, rowKey );
+        }
+    }
+}
@@ -46,6 +46,45 @@ public interface EntityManagerFig extends GuicyFig {
     @Default( "true" )
     boolean deindexDeletedWhenCollectionIndexingOff();
 
+    @Key( "usergrid.entityManager.dictionary_cache.enabled" )
+    @Default( "true" )
+    boolean getDictionaryCacheEnabled();
+
+    /**
+     * The number of dictionary rows cached per node
+     */
+    @Key( "usergrid.entityManager.dictionary_cache.size" )
+    @Default( "10000" )
+    int getDictionaryCacheSize();
+
+    /**
+     * How long a cached dictionary row is used, bounds how long changes made on other nodes go unseen
+     */
+    @Key( "usergrid.entityManager.dictionary_cache.timeout_ms" )
+    @Default( "10000" )
+    long getDictionaryCacheTimeout();
+
+    /**
+     * Dictionary rows with more entries than this are not cached
+     */
+    @Key( "usergrid.entityManager.dictionary_cache.max_entries" )
+    @Default( "500" )
+    int getDictionaryCacheMaxEntries();
+
+    /**
+     * Maintain entity counts and sizes per collection as entities are written and deleted
+     */
+    @Key( "usergrid.entityManager.collection_stats.enabled" )
+    @Default( "true" )
+    boolean getCollectionStatsEnabled();
+
+    /**
+     * How often the collection statistics of an application are corrected against the index when they are read
+     */
+    @Key( "usergrid.entityManager.collection_stats.reconcile_interval_ms" )
+    @Default( "3600000" )
+    long getCollectionStatsReconcileInterval();
+
     /**
      * Comma-separated list of one or more Amazon regions to use if multiregion
      * is set to true.
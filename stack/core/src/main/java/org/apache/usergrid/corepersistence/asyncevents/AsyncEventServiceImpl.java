@@ -45,6 +45,7 @@ import org.apache.usergrid.persistence.index.EntityIndex;
 import org.apache.usergrid.persistence.index.EntityIndexFactory;
 import org.apache.usergrid.persistence.index.IndexLocationStrategy;
 import org.apache.usergrid.persistence.index.impl.IndexOperationMessage;
+import org.apache.usergrid.persistence.index.impl.IndexedChange;
 import org.apache.usergrid.persistence.index.impl.IndexProducer;
 import org.apache.usergrid.persistence.index.impl.IndexingUtils;
 import org.apache.usergrid.persistence.map.MapManager;
@@ -53,6 +54,7 @@ import org.apache.usergrid.persistence.map.MapScope;
 import org.apache.usergrid.persistence.map.impl.MapScopeImpl;
 import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 import org.apache.usergrid.persistence.queue.*;
 import org.apache.usergrid.persistence.queue.impl.LegacyQueueScopeImpl;
@@ -141,6 +143,9 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     //the actively running subscription
     private List<Subscription> subscriptions = new ArrayList<>();
 
+    //publishes processed entity changes to local listeners, may be null
+    private EntityChangePublisher changePublisher;
+
 
     @Inject
     public AsyncEventServiceImpl(final LegacyQueueManagerFactory queueManagerFactory,
@@ -444,11 +449,20 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
                 IndexOperationMessage single = new IndexOperationMessage();
 
+                // changes whose index operations this event applied, published once the message is acked
+                Set<IndexedChange> indexedChanges = Collections.emptySet();
+
                 // normal indexing event for an entity
                 if ( event instanceof  EntityIndexEvent ){
 
                      single = handleEntityIndexUpdate( message );
 
+                     // re-indexing does not change the entity, so it is not published
+                     if ( !( ( EntityIndexEvent ) event ).isReindex() ) {
+                         addChange( single, ( ( EntityIndexEvent ) event ).getEntityIdScope(), false,
+                             event.getCreationTime() );
+                     }
+
                 }
                 // normal indexing event for an edge
                 else if ( event instanceof EdgeIndexEvent ){
@@ -465,6 +479,9 @@ public class AsyncEventServiceImpl implements AsyncEventService {
                 else if ( event instanceof EntityDeleteEvent ) {
 
                     single = handleEntityDelete( message );
+
+                    addChange( single, ( ( EntityDeleteEvent ) event ).getEntityIdScope(), true,
+                        event.getCreationTime() );
                 }
                 // initialization has special logic, therefore a special event type and no index operation message
                 else if ( event instanceof InitializeApplicationIndexEvent ) {
@@ -474,7 +491,10 @@ public class AsyncEventServiceImpl implements AsyncEventService {
                 // this is the main event that pulls the index doc from map persistence and hands to the index producer
                 else if (event instanceof ElasticsearchIndexEvent) {
 
-                    handleIndexOperation((ElasticsearchIndexEvent) event);
+                    final IndexOperationMessage indexed = handleIndexOperation((ElasticsearchIndexEvent) event);
+                    if ( indexed != null ) {
+                        indexedChanges = indexed.getChanges();
+                    }
 
                 } else if (event instanceof DeIndexOldVersionsEvent) {
 
@@ -495,7 +515,8 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
 
                 // if no exception happens and the QueueMessage is returned in these results, it will get ack'd
-                return new IndexEventResult(Optional.of(single), Optional.of(message), thisEvent.getCreationTime());
+                return new IndexEventResult(Optional.of(single), Optional.of(message), thisEvent.getCreationTime(),
+                    indexedChanges);
 
             } catch (IndexDocNotFoundException e){
 
@@ -527,6 +548,50 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     }
 
 
+    public void setChangePublisher( final EntityChangePublisher changePublisher ) {
+        this.changePublisher = changePublisher;
+    }
+
+
+    /**
+     * Carry the change with the index operations, to publish it once they have been applied.  Only nodes with change
+     * listeners add changes, so clusters without change feeds send the same index messages as before.
+     */
+    private void addChange( final IndexOperationMessage single, final EntityIdScope entityIdScope,
+                            final boolean deleted, final long timestamp ) {
+        if ( changePublisher == null || !changePublisher.hasListeners() || single.isEmpty() ) {
+            return;
+        }
+
+        final Id entityId = entityIdScope.getId();
+        single.addChange( new IndexedChange( entityIdScope.getApplicationScope().getApplication().getUuid(),
+            entityId.getUuid(), entityId.getType(), deleted, timestamp ) );
+    }
+
+
+    /**
+     * Publish the changes of processed events once their index writes are done and their messages acked, so
+     * subscribers can query what they are told about, and a retried index write publishes its changes once
+     */
+    protected void publishChanges( final List<IndexEventResult> indexEventResults ) {
+        if ( changePublisher == null || !changePublisher.hasListeners() ) {
+            return;
+        }
+
+        for ( IndexEventResult result : indexEventResults ) {
+            if ( !result.getQueueMessage().isPresent() ) {
+                continue;
+            }
+
+            for ( IndexedChange change : result.getIndexedChanges() ) {
+                changePublisher.publish( new EntityChange( change.applicationId,
+                    new SimpleId( change.entityUuid, change.entityType ),
+                    change.deleted ? EntityChange.Type.DELETE : EntityChange.Type.UPDATE, change.timestamp ) );
+            }
+        }
+    }
+
+
     @Override
     public void queueInitializeApplicationIndex( final ApplicationScope applicationScope) {
         IndexLocationStrategy indexLocationStrategy = indexLocationStrategyFactory.getIndexLocationStrategy(
@@ -724,7 +789,10 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     }
 
 
-    protected void handleIndexOperation(final ElasticsearchIndexEvent elasticsearchIndexEvent)
+    /**
+     * @return the index operations that were applied, or null if their message was never received
+     */
+    protected IndexOperationMessage handleIndexOperation(final ElasticsearchIndexEvent elasticsearchIndexEvent)
         throws IndexDocNotFoundException {
 
         Preconditions.checkNotNull( elasticsearchIndexEvent, "elasticsearchIndexEvent cannot be null" );
@@ -760,7 +828,7 @@ public class AsyncEventServiceImpl implements AsyncEventService {
            } else if (System.currentTimeMillis() > elasticsearchIndexEvent.getCreationTime() + queueFig.getMapMessageTimeout()) {
                 // if esMapPersistence message hasn't been received yet, log and return (will be acked)
                 logger.error("ES map message never received, removing message from queue. indexBatchId={}", messageId);
-                return;
+                return null;
            } else {
                 logger.warn("ES map message not received yet. indexBatchId={} elapsedTimeMsec={}", messageId, System.currentTimeMillis() - elasticsearchIndexEvent.getCreationTime());
                 throw new IndexDocNotFoundException(elasticsearchIndexEvent.getIndexBatchId());
@@ -785,6 +853,7 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         // send it to to be indexed
         indexProducer.put(indexOperationMessage).toBlocking().last();
 
+        return indexOperationMessage;
     }
 
 
@@ -1049,6 +1118,8 @@ public class AsyncEventServiceImpl implements AsyncEventService {
                                     // ack each message if making it to this point
                                     if( messagesToAck.size() > 0 ){
                                         ack(messagesToAck, queueType, false);
+
+                                        publishChanges( indexEventResults );
                                     }
 
                                     return messagesToAck;
@@ -1239,7 +1310,7 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
             //change to id scope to avoid serialization issues
             batch.add(new EntityIndexEvent(queueFig.getPrimaryRegion(),
-                new EntityIdScope(e.getApplicationScope(), e.getEdge().getTargetNode()), updatedSince));
+                new EntityIdScope(e.getApplicationScope(), e.getEdge().getTargetNode()), updatedSince, true));
 
         });
 
@@ -1269,13 +1340,22 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         private final Optional<IndexOperationMessage> indexOperationMessage;
         private final Optional<LegacyQueueMessage> queueMessage;
         private final long creationTime;
+        private final Set<IndexedChange> indexedChanges;
 
         public IndexEventResult(Optional<IndexOperationMessage> indexOperationMessage,
                                 Optional<LegacyQueueMessage> queueMessage, long creationTime){
 
+            this(indexOperationMessage, queueMessage, creationTime, Collections.emptySet());
+        }
+
+        public IndexEventResult(Optional<IndexOperationMessage> indexOperationMessage,
+                                Optional<LegacyQueueMessage> queueMessage, long creationTime,
+                                Set<IndexedChange> indexedChanges){
+
             this.queueMessage = queueMessage;
             this.creationTime = creationTime;
             this.indexOperationMessage = indexOperationMessage;
+            this.indexedChanges = indexedChanges;
         }
 
         public Optional<IndexOperationMessage> getIndexOperationMessage() {
@@ -1289,6 +1369,13 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         public long getCreationTime() {
             return creationTime;
         }
+
+        /**
+         * The changes whose index operations were applied while processing the event
+         */
+        public Set<IndexedChange> getIndexedChanges() {
+            return indexedChanges;
+        }
     }
 
     public String getQueueManagerClass() {
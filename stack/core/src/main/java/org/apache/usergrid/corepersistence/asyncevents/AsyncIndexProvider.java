@@ -59,6 +59,7 @@ public class AsyncIndexProvider implements Provider<AsyncEventService> {
     private final IndexProducer indexProducer;
     private final MapManagerFactory mapManagerFactory;
     private final LegacyQueueFig queueFig;
+    private final EntityChangePublisher changePublisher;
 
     private AsyncEventService asyncEventService;
 
@@ -74,7 +75,8 @@ public class AsyncIndexProvider implements Provider<AsyncEventService> {
                               final EntityIndexFactory entityIndexFactory,
                               final IndexProducer indexProducer,
                               final MapManagerFactory mapManagerFactory,
-                              final LegacyQueueFig queueFig) {
+                              final LegacyQueueFig queueFig,
+                              final EntityChangePublisher changePublisher) {
 
         this.indexProcessorFig = indexProcessorFig;
         this.queueManagerFactory = queueManagerFactory;
@@ -87,6 +89,7 @@ public class AsyncIndexProvider implements Provider<AsyncEventService> {
         this.indexProducer = indexProducer;
         this.mapManagerFactory = mapManagerFactory;
         this.queueFig = queueFig;
+        this.changePublisher = changePublisher;
     }
 
 
@@ -152,6 +155,8 @@ public class AsyncIndexProvider implements Provider<AsyncEventService> {
             queueFig,
             rxTaskScheduler );
 
+        asyncEventService.setChangePublisher( changePublisher );
+
         return asyncEventService;
     }
 }
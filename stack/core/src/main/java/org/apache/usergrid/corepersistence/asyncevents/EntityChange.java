@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.Schema;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+
+/**
+ * An entity that was written or deleted, published once its index writes are done and its events acked
+ */
+public final class EntityChange {
+
+    public enum Type {
+        UPDATE, DELETE
+    }
+
+
+    private final UUID applicationId;
+    private final Id entityId;
+    private final Type type;
+    private final long timestamp;
+
+
+    public EntityChange( final UUID applicationId, final Id entityId, final Type type, final long timestamp ) {
+        this.applicationId = applicationId;
+        this.entityId = entityId;
+        this.type = type;
+        this.timestamp = timestamp;
+    }
+
+
+    public UUID getApplicationId() {
+        return applicationId;
+    }
+
+
+    public Id getEntityId() {
+        return entityId;
+    }
+
+
+    /**
+     * The name of the collection the entity belongs to
+     */
+    public String getCollectionName() {
+        return Schema.defaultCollectionName( entityId.getType() );
+    }
+
+
+    public Type getType() {
+        return type;
+    }
+
+
+    /**
+     * The time the event was created, in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+
+    @Override
+    public String toString() {
+        return "EntityChange{" + type + " " + entityId + " in " + applicationId + "}";
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Singleton;
+
+
+/**
+ * Publishes the entity changes processed by the async event service on this node to local listeners, such as change
+ * feeds.  Events may be processed more than once, listeners should tolerate duplicate changes.
+ */
+@Singleton
+public class EntityChangePublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger( EntityChangePublisher.class );
+
+    private final CopyOnWriteArrayList<EntityChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+
+    public void addListener( final EntityChangeListener listener ) {
+        listeners.addIfAbsent( listener );
+    }
+
+
+    public void removeListener( final EntityChangeListener listener ) {
+        listeners.remove( listener );
+    }
+
+
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+
+    public void publish( final EntityChange change ) {
+        for ( EntityChangeListener listener : listeners ) {
+            try {
+                listener.onChange( change );
+            }
+            catch ( RuntimeException e ) {
+                logger.error( "Entity change listener {} failed for {}", listener, change, e );
+            }
+        }
+    }
+}
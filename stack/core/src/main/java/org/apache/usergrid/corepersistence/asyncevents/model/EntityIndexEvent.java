@@ -32,6 +32,9 @@ public final class EntityIndexEvent extends AsyncEvent {
     @JsonProperty
     private long updatedAfter;
 
+    @JsonProperty
+    private boolean reindex;
+
     public EntityIndexEvent() {
         super();
     }
@@ -43,6 +46,13 @@ public final class EntityIndexEvent extends AsyncEvent {
     }
 
 
+    public EntityIndexEvent(String sourceRegion, EntityIdScope entityIdScope, final long updatedAfter,
+                            final boolean reindex ) {
+        this(sourceRegion, entityIdScope, updatedAfter);
+        this.reindex = reindex;
+    }
+
+
     public long getUpdatedAfter() {
         return updatedAfter;
     }
@@ -51,4 +61,12 @@ public final class EntityIndexEvent extends AsyncEvent {
     public EntityIdScope getEntityIdScope() {
         return entityIdScope;
     }
+
+
+    /**
+     * True if the event re-indexes an entity that was not changed
+     */
+    public boolean isReindex() {
+        return reindex;
+    }
 }
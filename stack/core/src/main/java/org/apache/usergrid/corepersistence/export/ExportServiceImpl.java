@@ -26,7 +26,6 @@ import com.google.inject.Singleton;
 import org.apache.usergrid.corepersistence.ManagerCache;
 import org.apache.usergrid.corepersistence.index.*;
 import org.apache.usergrid.corepersistence.rx.impl.AllEntityIdsObservable;
-import org.apache.usergrid.corepersistence.util.CpEntityMapUtils;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.corepersistence.util.ObjectJsonSerializer;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
@@ -42,6 +41,7 @@ import org.apache.usergrid.persistence.map.MapManagerFactory;
 import org.apache.usergrid.persistence.map.MapScope;
 import org.apache.usergrid.persistence.map.impl.MapScopeImpl;
 import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityToJsonWriter;
 
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.utils.InflectionUtils;
@@ -70,6 +70,7 @@ public class ExportServiceImpl implements ExportService {
     private final EntityCollectionManagerFactory entityCollectionManagerFactory;
     private final ManagerCache managerCache;
     private final ObjectJsonSerializer jsonSerializer = ObjectJsonSerializer.INSTANCE;
+    private final EntityToJsonWriter entityWriter = new EntityToJsonWriter();
     private final int exportVersion = 1;
     private final String keyTotalEntityCount = "__totalEntityCount__";
 
@@ -141,7 +142,6 @@ public class ExportServiceImpl implements ExportService {
                     entitySet.getEntities().forEach(mvccEntity -> {
 
                         if (mvccEntity.getEntity().isPresent()) {
-                            Map entityMap = CpEntityMapUtils.toMap(mvccEntity.getEntity().get());
 
                             try {
 
@@ -150,7 +150,7 @@ public class ExportServiceImpl implements ExportService {
                                 collectionStats.get(keyTotalEntityCount).incrementAndGet();
 
                                 logger.debug("writing and flushing entity {} to zip stream for file: {}", mvccEntity.getId().getUuid().toString(), filenameWithPath);
-                                zipOutputStream.write(jsonSerializer.toString(entityMap).getBytes());
+                                entityWriter.write(mvccEntity.getEntity().get(), zipOutputStream);
                                 zipOutputStream.write("\n".getBytes());
                                 zipOutputStream.flush(); // entities can be large, flush after each
 
@@ -20,6 +20,7 @@
 package org.apache.usergrid.corepersistence.index;
 
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -69,6 +70,17 @@ public interface IndexService {
      */
     Observable<IndexOperationMessage> deleteIndexEdge(final ApplicationScope applicationScope, final Edge edge);
 
+
+    /**
+     * Delete the index edges of many edges from the specified scope.  The documents are found with batched searches
+     * and deleted in a single batch
+     * @param applicationScope
+     * @param edges
+     * @return
+     */
+    Observable<IndexOperationMessage> deleteIndexEdges(final ApplicationScope applicationScope,
+                                                       final Collection<Edge> edges);
+
     /**
      * Delete an index edge from the specified scope for a specific entity version
      * @param applicationScope
@@ -22,6 +22,8 @@ package org.apache.usergrid.corepersistence.index;
 
 import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
@@ -225,34 +227,29 @@ public class IndexServiceImpl implements IndexService {
     public Observable<IndexOperationMessage> deleteIndexEdge( final ApplicationScope applicationScope,
                                                               final Edge edge ) {
 
-        final Observable<IndexOperationMessage> batches =
-            Observable.just( edge ).map( edgeValue -> {
-                final EntityIndex ei = entityIndexFactory.createEntityIndex(indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope) );
-                EntityIndexBatch batch = ei.createBatch();
-
-
-                //review why generating the Scope from the Source  and the target node makes sense.
-                final IndexEdge fromSource = generateScopeFromSource( edge );
-                final Id targetId = edge.getTargetNode();
-
-                CandidateResults targetEdgesToBeDeindexed = ei.getAllEdgeDocuments( fromSource, targetId );
-
-
-                //1. Feed the observable the candidate results you got back. Since it now does the aggregation for you
-                // you don't need to worry about putting your code in a do while.
-
+        return deleteIndexEdges( applicationScope, Collections.singletonList( edge ) );
+    }
 
-                batch = deindexBatchIteratorResolver( fromSource, targetEdgesToBeDeindexed, batch );
 
-                final IndexEdge fromTarget = generateScopeFromTarget( edge );
-                final Id sourceId = edge.getSourceNode();
+    @Override
+    public Observable<IndexOperationMessage> deleteIndexEdges( final ApplicationScope applicationScope,
+                                                               final Collection<Edge> edges ) {
 
-                CandidateResults sourceEdgesToBeDeindexed = ei.getAllEdgeDocuments( fromTarget, sourceId );
+        final Observable<IndexOperationMessage> batches = Observable.defer( () -> {
+            final EntityIndex ei = entityIndexFactory.createEntityIndex(indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope) );
+            final EntityIndexBatch batch = ei.createBatch();
 
-                batch = deindexBatchIteratorResolver( fromTarget, sourceEdgesToBeDeindexed, batch );
+            //the target is indexed on the edge from the source, and the source on the edge from the target
+            final Multimap<IndexEdge, Id> edgeEntities = ArrayListMultimap.create();
+            for ( Edge edge : edges ) {
+                edgeEntities.put( generateScopeFromSource( edge ), edge.getTargetNode() );
+                edgeEntities.put( generateScopeFromTarget( edge ), edge.getSourceNode() );
+            }
 
-                return batch.build();
-            } );
+            //find every version of every entity with batched searches and delete the documents by id in one batch
+            return ei.getAllEdgeDocuments( edgeEntities ).reduce( batch, ( b, candidate ) -> b.deindex( candidate ) )
+                .map( EntityIndexBatch::build );
+        } );
 
         return ObservableTimer.time( batches, addTimer );
     }
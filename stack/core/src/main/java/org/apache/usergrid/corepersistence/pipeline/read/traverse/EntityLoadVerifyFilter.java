@@ -26,8 +26,6 @@ import java.util.List;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.persistence.Schema;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
-import org.apache.usergrid.persistence.graph.*;
-import org.apache.usergrid.persistence.graph.impl.SimpleSearchByEdge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,17 +55,14 @@ public class EntityLoadVerifyFilter extends AbstractFilter<FilterResult<Id>, Fil
     private static final Logger logger = LoggerFactory.getLogger( EntityLoadVerifyFilter.class );
 
     private final EntityCollectionManagerFactory entityCollectionManagerFactory;
-    private final GraphManagerFactory graphManagerFactory;
-    private final ReadRepairFig readRepairFig;
+    private final OrphanEdgeRepair orphanEdgeRepair;
 
 
     @Inject
     public EntityLoadVerifyFilter( final EntityCollectionManagerFactory entityCollectionManagerFactory,
-                                   final GraphManagerFactory graphManagerFactory,
-                                   final ReadRepairFig readRepairFig) {
+                                   final OrphanEdgeRepair orphanEdgeRepair ) {
         this.entityCollectionManagerFactory = entityCollectionManagerFactory;
-        this.graphManagerFactory = graphManagerFactory;
-        this.readRepairFig = readRepairFig;
+        this.orphanEdgeRepair = orphanEdgeRepair;
     }
 
 
@@ -93,9 +88,8 @@ public class EntityLoadVerifyFilter extends AbstractFilter<FilterResult<Id>, Fil
 
 
                 //now we have a collection, validate our candidate set is correct.
-                GraphManager graphManager = graphManagerFactory.createEdgeManager(applicationScope);
-                return entitySetObservable.map( entitySet -> new EntityVerifier( applicationScope, graphManager,
-                    entitySet, bufferedIds, readRepairFig ) )
+                return entitySetObservable.map( entitySet -> new EntityVerifier( applicationScope, orphanEdgeRepair,
+                    entitySet, bufferedIds ) )
                                           .doOnNext( entityCollector -> entityCollector.merge() ).flatMap(
                         entityCollector -> Observable.from( entityCollector.getResults() ) );
             } );
@@ -115,20 +109,17 @@ public class EntityLoadVerifyFilter extends AbstractFilter<FilterResult<Id>, Fil
 
         private final List<FilterResult<Id>> candidateResults;
         private final EntitySet entitySet;
-        private final GraphManager graphManager;
+        private final OrphanEdgeRepair orphanEdgeRepair;
         private final ApplicationScope applicationScope;
-        private final ReadRepairFig readRepairFig;
 
 
-        public EntityVerifier( final ApplicationScope applicationScope, final GraphManager graphManager,
-                               final EntitySet entitySet, final List<FilterResult<Id>> candidateResults,
-                               final ReadRepairFig readRepairFig) {
+        public EntityVerifier( final ApplicationScope applicationScope, final OrphanEdgeRepair orphanEdgeRepair,
+                               final EntitySet entitySet, final List<FilterResult<Id>> candidateResults ) {
             this.applicationScope = applicationScope;
-            this.graphManager = graphManager;
+            this.orphanEdgeRepair = orphanEdgeRepair;
             this.entitySet = entitySet;
             this.candidateResults = candidateResults;
             this.results = new ArrayList<>( entitySet.size() );
-            this.readRepairFig = readRepairFig;
         }
 
 
@@ -159,52 +150,16 @@ public class EntityLoadVerifyFilter extends AbstractFilter<FilterResult<Id>, Fil
             //doesn't exist warn and drop
             if ( entity == null || !entity.getEntity().isPresent() ) {
 
-                // look for orphaned edges
+                // drop it now, the orphaned edges are repaired in the background
                 String edgeTypeName = CpNamingUtils.getEdgeTypeFromCollectionName(Schema.defaultCollectionName(candidateId.getType()));
-                final SearchByEdge searchByEdge =
-                    new SimpleSearchByEdge( applicationScope.getApplication(), edgeTypeName, candidateId, Long.MAX_VALUE, SearchByEdgeType.Order.DESCENDING,
-                        Optional.absent() );
-
-                int edgesDeleted = 0;
-                List<MarkedEdge> edgeList = graphManager.loadEdgeVersions(searchByEdge).toList().toBlocking().last();
-                boolean timestampAllowsDelete = false;
-                if (edgeList.size() > 0) {
-                    MarkedEdge firstEdge = edgeList.get(0);
-                    long currentTimestamp = CpNamingUtils.createGraphOperationTimestamp();
-                    long edgeTimestamp = firstEdge.getTimestamp();
-                    long timestampDiff = currentTimestamp - edgeTimestamp;
-                    long orphanDelaySecs = readRepairFig.getEdgeOrphanDelaySecs();
-                    // timestamps are in 100 nanoseconds, convert from seconds
-                    long allowedDiff = orphanDelaySecs * 1000L * 1000L * 10L;
-                    if (timestampDiff > allowedDiff) {
-                        timestampAllowsDelete = true;
-                        // edges must be orphans, delete edges
-                        for (MarkedEdge edge: edgeList) {
-                            graphManager.markEdge(edge).toBlocking().lastOrDefault(null);
-                            edgesDeleted++;
-                        }
-                        graphManager.deleteEdge(firstEdge).toBlocking().lastOrDefault(null);
-                    }
-                }
+                orphanEdgeRepair.submit( applicationScope, applicationScope.getApplication(), edgeTypeName, candidateId );
 
-                if (edgesDeleted > 0) {
-                    logger.warn("Read graph edge and received candidate with entityId {} (application {}), yet was not found in cassandra."
-                        + "  Deleted at least {} edges.", candidateId, applicationScope.getApplication().getUuid().toString(), edgesDeleted);
-                } else if (edgeList.size() == 0) {
-                    logger.warn("Read graph edge and received candidate with entityId {} (application {}), yet was not found in cassandra."
-                            + "  No edges were deleted (loadEdgeVersions returned 0 edges)",
-                        candidateId, applicationScope.getApplication().getUuid().toString());
-                } else if (timestampAllowsDelete) {
-                    logger.warn("Read graph edge and received candidate with entityId {} (application {}), yet was not found in cassandra."
-                        + "  Timestamp is old enough to delete, but no edges were deleted (loadEdgeVersions returned {} edges)",
-                        candidateId, applicationScope.getApplication().getUuid().toString(), edgeList.size());
-                } else {
-                    logger.warn("Read graph edge and received candidate with entityId {} (application {}), yet was not found in cassandra."
-                        + "  Ignoring since this could be a region sync issue", candidateId, applicationScope.getApplication().getUuid().toString());
+                if (logger.isDebugEnabled()) {
+                    logger.debug( "Read graph edge and received candidate with entityId {} (application {}), yet was "
+                        + "not found in cassandra.  Dropped it and queued a repair", candidateId,
+                        applicationScope.getApplication().getUuid() );
                 }
 
-
-
                 return;
             }
 
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.pipeline.read.traverse;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
+import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
+import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.GraphManager;
+import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.SearchByEdge;
+import org.apache.usergrid.persistence.graph.SearchByEdgeType;
+import org.apache.usergrid.persistence.graph.impl.SimpleSearchByEdge;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Repairs edges to entities that no longer exist in the background, so reads that find such candidates only drop
+ * them.  Repairs are deduplicated while they wait and grouped by the source node of their edges.  Each group is
+ * re-verified with a single load of its targets, since an entity may have been written since the read, and the edges
+ * of targets that are still missing are deleted at the configured rate.  Repairs beyond the queue size are skipped,
+ * a later read of the same candidate submits them again.
+ */
+@Singleton
+public class OrphanEdgeRepair {
+
+    private static final Logger logger = LoggerFactory.getLogger( OrphanEdgeRepair.class );
+
+    private final EntityCollectionManagerFactory entityCollectionManagerFactory;
+    private final GraphManagerFactory graphManagerFactory;
+    private final ReadRepairFig readRepairFig;
+
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService executor;
+
+    private final Meter queuedMeter;
+    private final Meter executedMeter;
+    private final Meter skippedMeter;
+
+    /**
+     * Waiting repairs by the source node of their edges, guarded by itself
+     */
+    private final Map<Source, Set<Id>> pending = new LinkedHashMap<>();
+    private int pendingCount;
+
+
+    @Inject
+    public OrphanEdgeRepair( final EntityCollectionManagerFactory entityCollectionManagerFactory,
+                             final GraphManagerFactory graphManagerFactory, final ReadRepairFig readRepairFig,
+                             final MetricsFactory metricsFactory ) {
+        this.entityCollectionManagerFactory = entityCollectionManagerFactory;
+        this.graphManagerFactory = graphManagerFactory;
+        this.readRepairFig = readRepairFig;
+
+        this.rateLimiter = RateLimiter.create( readRepairFig.getEdgeOrphanRepairRate() );
+
+        this.queuedMeter = metricsFactory.getMeter( OrphanEdgeRepair.class, "orphan.repair.queued" );
+        this.executedMeter = metricsFactory.getMeter( OrphanEdgeRepair.class, "orphan.repair.executed" );
+        this.skippedMeter = metricsFactory.getMeter( OrphanEdgeRepair.class, "orphan.repair.skipped" );
+        metricsFactory.addGauge( OrphanEdgeRepair.class, "orphan.repair.pending", ( Gauge<Integer> ) () -> {
+            synchronized ( pending ) {
+                return pendingCount;
+            }
+        } );
+
+        this.executor = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread thread = new Thread( r, "OrphanEdgeRepair" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+
+        final long interval = readRepairFig.getEdgeOrphanRepairInterval();
+        executor.scheduleWithFixedDelay( this::repairPending, interval, interval, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * Submit the repair of the edges of the given type from the source to the target, which was not found
+     */
+    public void submit( final ApplicationScope applicationScope, final Id sourceId, final String edgeType,
+                        final Id targetId ) {
+
+        synchronized ( pending ) {
+            if ( pendingCount >= readRepairFig.getEdgeOrphanRepairQueueSize() ) {
+                skippedMeter.mark();
+                return;
+            }
+
+            final Set<Id> targets =
+                pending.computeIfAbsent( new Source( applicationScope, sourceId, edgeType ), s -> new LinkedHashSet<>() );
+
+            // already waiting
+            if ( !targets.add( targetId ) ) {
+                return;
+            }
+
+            pendingCount++;
+        }
+
+        queuedMeter.mark();
+    }
+
+
+    /**
+     * Stop repairing, repairs still waiting are dropped
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Repair everything waiting, one source node at a time
+     */
+    void repairPending() {
+        final Map<Source, Set<Id>> batches;
+
+        synchronized ( pending ) {
+            if ( pending.isEmpty() ) {
+                return;
+            }
+
+            batches = new LinkedHashMap<>( pending );
+            pending.clear();
+            pendingCount = 0;
+        }
+
+        for ( Map.Entry<Source, Set<Id>> batch : batches.entrySet() ) {
+            final List<Id> targets = new ArrayList<>( batch.getValue() );
+            final int batchSize = Math.max( 1, readRepairFig.getEdgeOrphanRepairBatchSize() );
+
+            for ( int i = 0; i < targets.size(); i += batchSize ) {
+                try {
+                    repairBatch( batch.getKey(), targets.subList( i, Math.min( i + batchSize, targets.size() ) ) );
+                }
+                catch ( Throwable t ) {
+                    logger.error( "Unable to repair orphaned edges from {} in application {}", batch.getKey().sourceId,
+                        batch.getKey().applicationScope.getApplication().getUuid(), t );
+                }
+            }
+        }
+    }
+
+
+    private void repairBatch( final Source source, final List<Id> targets ) {
+        final ApplicationScope applicationScope = source.applicationScope;
+
+        // the targets may have been written since they were read
+        final EntitySet entitySet = entityCollectionManagerFactory.createCollectionManager( applicationScope )
+            .load( targets ).toBlocking().lastOrDefault( null );
+
+        final GraphManager graphManager = graphManagerFactory.createEdgeManager( applicationScope );
+
+        for ( final Id targetId : targets ) {
+            final MvccEntity entity = entitySet == null ? null : entitySet.getEntity( targetId );
+            if ( entity != null && entity.getEntity().isPresent() ) {
+                skippedMeter.mark();
+                continue;
+            }
+
+            rateLimiter.acquire();
+
+            if ( repair( graphManager, source, targetId ) ) {
+                executedMeter.mark();
+            }
+            else {
+                skippedMeter.mark();
+            }
+        }
+    }
+
+
+    /**
+     * Delete the edges to the target if they are old enough to be orphans
+     *
+     * @return true if edges were deleted
+     */
+    private boolean repair( final GraphManager graphManager, final Source source, final Id targetId ) {
+        final String applicationId = source.applicationScope.getApplication().getUuid().toString();
+
+        final SearchByEdge searchByEdge =
+            new SimpleSearchByEdge( source.sourceId, source.edgeType, targetId, Long.MAX_VALUE,
+                SearchByEdgeType.Order.DESCENDING, Optional.absent() );
+
+        final List<MarkedEdge> edgeList = graphManager.loadEdgeVersions( searchByEdge ).toList().toBlocking().last();
+
+        if ( edgeList.isEmpty() ) {
+            logger.warn( "Read graph edge and received candidate with entityId {} (application {}), yet was not found "
+                + "in cassandra.  No edges were deleted (loadEdgeVersions returned 0 edges)", targetId, applicationId );
+            return false;
+        }
+
+        final MarkedEdge firstEdge = edgeList.get( 0 );
+        final long timestampDiff = CpNamingUtils.createGraphOperationTimestamp() - firstEdge.getTimestamp();
+        // timestamps are in 100 nanoseconds, convert from seconds
+        final long allowedDiff = readRepairFig.getEdgeOrphanDelaySecs() * 1000L * 1000L * 10L;
+
+        if ( timestampDiff <= allowedDiff ) {
+            logger.warn( "Read graph edge and received candidate with entityId {} (application {}), yet was not found "
+                + "in cassandra.  Ignoring since this could be a region sync issue", targetId, applicationId );
+            return false;
+        }
+
+        // edges must be orphans, delete edges
+        for ( MarkedEdge edge : edgeList ) {
+            graphManager.markEdge( edge ).toBlocking().lastOrDefault( null );
+        }
+        graphManager.deleteEdge( firstEdge ).toBlocking().lastOrDefault( null );
+
+        logger.warn( "Read graph edge and received candidate with entityId {} (application {}), yet was not found in "
+            + "cassandra.  Deleted at least {} edges.", targetId, applicationId, edgeList.size() );
+
+        return true;
+    }
+
+
+    /**
+     * The source node and type of the edges to repair
+     */
+    private static final class Source {
+        private final ApplicationScope applicationScope;
+        private final Id sourceId;
+        private final String edgeType;
+
+
+        private Source( final ApplicationScope applicationScope, final Id sourceId, final String edgeType ) {
+            this.applicationScope = applicationScope;
+            this.sourceId = sourceId;
+            this.edgeType = edgeType;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof Source ) ) {
+                return false;
+            }
+            final Source other = ( Source ) o;
+            return applicationScope.equals( other.applicationScope ) && sourceId.equals( other.sourceId )
+                && edgeType.equals( other.edgeType );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode( applicationScope, sourceId, edgeType );
+        }
+    }
+}
@@ -35,4 +35,32 @@ public interface ReadRepairFig extends GuicyFig {
     @Default( "86400" ) // 1 day
     long getEdgeOrphanDelaySecs();
 
+    /**
+     * The number of orphaned edge repairs that may wait for the background repair, more are skipped
+     */
+    @Key( "usergrid.edge.orphan.repair.queue.size" )
+    @Default( "10000" )
+    int getEdgeOrphanRepairQueueSize();
+
+    /**
+     * The maximum number of orphaned edge repairs per second
+     */
+    @Key( "usergrid.edge.orphan.repair.rate" )
+    @Default( "50" )
+    double getEdgeOrphanRepairRate();
+
+    /**
+     * How often the background repair takes the waiting repairs
+     */
+    @Key( "usergrid.edge.orphan.repair.interval.ms" )
+    @Default( "1000" )
+    long getEdgeOrphanRepairInterval();
+
+    /**
+     * The maximum number of repairs of one source node re-verified together
+     */
+    @Key( "usergrid.edge.orphan.repair.batch.size" )
+    @Default( "100" )
+    int getEdgeOrphanRepairBatchSize();
+
 }
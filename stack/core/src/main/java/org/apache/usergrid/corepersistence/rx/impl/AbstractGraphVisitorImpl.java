@@ -21,7 +21,8 @@ package org.apache.usergrid.corepersistence.rx.impl;
 
 
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
-import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
+import org.apache.usergrid.persistence.core.migration.data.ApplicationMigrationDataProvider;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 
 import com.google.inject.Inject;
 
@@ -31,7 +32,7 @@ import rx.Observable;
 /**
  * An observable that returns all entities in the collections
  */
-public abstract class AbstractGraphVisitorImpl<T> implements MigrationDataProvider<T> {
+public abstract class AbstractGraphVisitorImpl<T> implements ApplicationMigrationDataProvider<T> {
 
     private final AllApplicationsObservable applicationObservable;
     private final AllEntityIdsObservable allEntityIdsObservable;
@@ -54,6 +55,19 @@ public abstract class AbstractGraphVisitorImpl<T> implements MigrationDataProvid
     }
 
 
+    @Override
+    public Observable<ApplicationScope> getApplications() {
+        return applicationObservable.getData();
+    }
+
+
+    @Override
+    public Observable<T> getData( final ApplicationScope applicationScope ) {
+        return allEntityIdsObservable.getEntities( Observable.just( applicationScope ) ).map(
+            entityIdScope -> generateData( entityIdScope ) );
+    }
+
+
     /**
      * Generate the data for the observable stream from the scope and the node id
      * @param entityIdScope
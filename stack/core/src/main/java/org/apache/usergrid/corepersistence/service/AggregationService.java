@@ -61,4 +61,12 @@ public interface AggregationService {
      * @return
      */
     long getCollectionSize(final ApplicationScope applicationScope, final String collectionName);
+
+    /**
+     * get the entity count and size of each collection in the app
+     *
+     * @param applicationScope
+     * @return
+     */
+    Map<String,CollectionStats> getCollectionStats(final ApplicationScope applicationScope);
 }
@@ -21,6 +21,7 @@ package org.apache.usergrid.corepersistence.service;
 
 import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import org.apache.usergrid.corepersistence.index.IndexLocationStrategyFactory;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
@@ -46,6 +47,7 @@ public class AggregationServiceImpl implements AggregationService {
     private final EntityIndexFactory entityIndexFactory;
     private final IndexLocationStrategyFactory indexLocationStrategyFactory;
     private final GraphManagerFactory graphManagerFactory;
+    private final CollectionStatsService collectionStatsService;
     private final MetricsFactory metricsFactory;
     private final Timer sumTimer;
 
@@ -54,11 +56,13 @@ public class AggregationServiceImpl implements AggregationService {
         final EntityIndexFactory entityIndexFactory,
         final IndexLocationStrategyFactory indexLocationStrategyFactory,
         final GraphManagerFactory graphManagerFactory,
+        final CollectionStatsService collectionStatsService,
         final MetricsFactory metricsFactory){
 
         this.entityIndexFactory = entityIndexFactory;
         this.indexLocationStrategyFactory = indexLocationStrategyFactory;
         this.graphManagerFactory = graphManagerFactory;
+        this.collectionStatsService = collectionStatsService;
         this.metricsFactory = metricsFactory;
         this.sumTimer = metricsFactory.getTimer(AggregationServiceImpl.class,"sum");
     }
@@ -66,6 +70,11 @@ public class AggregationServiceImpl implements AggregationService {
 
     @Override
     public long getApplicationSize(ApplicationScope applicationScope) {
+        if ( useCollectionStats( applicationScope ) ) {
+            return collectionStatsService.getCollectionStats( applicationScope ).values().stream()
+                .mapToLong( CollectionStats::getEntityBytes ).sum();
+        }
+
         final IndexLocationStrategy indexLocationStrategy = indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope);
         EntityIndex entityIndex = entityIndexFactory.createEntityIndex(indexLocationStrategy);
         GraphManager graphManager = graphManagerFactory.createEdgeManager(applicationScope);
@@ -81,6 +90,13 @@ public class AggregationServiceImpl implements AggregationService {
 
     @Override
     public Map<String, Long> getEachCollectionSize(ApplicationScope applicationScope) {
+        if ( useCollectionStats( applicationScope ) ) {
+            final Map<String, Long> sizes = new HashMap<>();
+            collectionStatsService.getCollectionStats( applicationScope )
+                .forEach( ( collectionName, stats ) -> sizes.put( collectionName, stats.getEntityBytes() ) );
+            return sizes;
+        }
+
         final IndexLocationStrategy indexLocationStrategy = indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope);
         EntityIndex entityIndex = entityIndexFactory.createEntityIndex(indexLocationStrategy);
         GraphManager graphManager = graphManagerFactory.createEdgeManager(applicationScope);
@@ -108,7 +124,27 @@ public class AggregationServiceImpl implements AggregationService {
 
     @Override
     public long getCollectionSize(final ApplicationScope applicationScope, final String collectionName) {
+        if ( useCollectionStats( applicationScope ) ) {
+            final String edgeName = CpNamingUtils.getEdgeTypeFromCollectionName( collectionName );
+            final CollectionStats stats = collectionStatsService.getCollectionStats( applicationScope )
+                .get( CpNamingUtils.getCollectionNameFromEdgeName( edgeName ) );
+            return stats != null ? stats.getEntityBytes() : 0;
+        }
+
         return getSize(applicationScope, CpNamingUtils.createCollectionSearchEdge(applicationScope.getApplication(), collectionName));
     }
 
+    @Override
+    public Map<String, CollectionStats> getCollectionStats(final ApplicationScope applicationScope) {
+        Preconditions.checkState( collectionStatsService.isEnabled(), "collection statistics are disabled" );
+        return collectionStatsService.getCollectionStats( applicationScope );
+    }
+
+    /**
+     * Sizes are aggregated from the index until the statistics of the application are reconciled
+     */
+    private boolean useCollectionStats(final ApplicationScope applicationScope) {
+        return collectionStatsService.isEnabled() && collectionStatsService.isReconciled( applicationScope );
+    }
+
 }
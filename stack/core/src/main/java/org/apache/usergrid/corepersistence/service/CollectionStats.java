@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.service;
+
+
+/**
+ * The number of entities in a collection and the bytes they take up
+ */
+public class CollectionStats {
+
+    public static final CollectionStats EMPTY = new CollectionStats( 0, 0 );
+
+    private final long entityCount;
+    private final long entityBytes;
+
+
+    public CollectionStats( final long entityCount, final long entityBytes ) {
+        this.entityCount = entityCount;
+        this.entityBytes = entityBytes;
+    }
+
+
+    public long getEntityCount() {
+        return entityCount;
+    }
+
+
+    public long getEntityBytes() {
+        return entityBytes;
+    }
+
+
+    public CollectionStats plus( final CollectionStats other ) {
+        return new CollectionStats( entityCount + other.entityCount, entityBytes + other.entityBytes );
+    }
+
+
+    public CollectionStats minus( final CollectionStats other ) {
+        return new CollectionStats( entityCount - other.entityCount, entityBytes - other.entityBytes );
+    }
+
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof CollectionStats ) ) {
+            return false;
+        }
+
+        final CollectionStats that = ( CollectionStats ) o;
+
+        return entityCount == that.entityCount && entityBytes == that.entityBytes;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode( entityCount ) + Long.hashCode( entityBytes );
+    }
+
+
+    @Override
+    public String toString() {
+        return "CollectionStats{entityCount=" + entityCount + ", entityBytes=" + entityBytes + '}';
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.service;
+
+
+import java.util.Map;
+
+import org.apache.usergrid.persistence.core.migration.schema.Migration;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+
+
+/**
+ * Stores the statistics of the collections of an application.  Writes and deletes increment counters, reconciliation
+ * stores the difference between the counters and the index as offsets, so reconciling never races the counters.  All
+ * the statistics of an application are in a single partition.
+ */
+public interface CollectionStatsSerialization extends Migration {
+
+    /**
+     * Add to the counters of a collection, the deltas may be negative
+     */
+    void increment( ApplicationScope applicationScope, String collectionName, long entityCount, long entityBytes );
+
+    /**
+     * Get the counters of every collection in the application
+     */
+    Map<String, CollectionStats> getCounters( ApplicationScope applicationScope );
+
+    /**
+     * Get the offsets of every collection in the application, added to the counters to get the statistics
+     */
+    Map<String, CollectionStats> getOffsets( ApplicationScope applicationScope );
+
+    /**
+     * Replace the offsets of the application
+     *
+     * @param reconciled The time the offsets were computed
+     */
+    void writeOffsets( ApplicationScope applicationScope, Map<String, CollectionStats> offsets, long reconciled );
+
+    /**
+     * Get the time the offsets of the application were last written, null if never
+     */
+    Long getReconciled( ApplicationScope applicationScope );
+}
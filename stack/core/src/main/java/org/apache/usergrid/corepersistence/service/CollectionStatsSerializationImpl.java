@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.service;
+
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.core.CassandraConfig;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
+import org.apache.usergrid.persistence.core.datastax.TableDefinition;
+import org.apache.usergrid.persistence.core.datastax.impl.TableDefinitionStringImpl;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.Assignment;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+@Singleton
+public class CollectionStatsSerializationImpl implements CollectionStatsSerialization {
+
+    private static final String TABLE_COUNTERS = "collection_stats_counters";
+    private static final String TABLE_OFFSETS = "collection_stats_offsets";
+
+    private static final String COLUMN_APPLICATION_ID = "application_id";
+    private static final String COLUMN_COLLECTION_NAME = "collection_name";
+    private static final String COLUMN_ENTITY_COUNT = "entity_count";
+    private static final String COLUMN_ENTITY_BYTES = "entity_bytes";
+    private static final String COLUMN_RECONCILED = "reconciled";
+
+    // counter tables can't hold anything but counters, so the offsets written by reconciliation have their own table
+    private static final String COUNTERS_CQL =
+        "CREATE TABLE IF NOT EXISTS collection_stats_counters ( " +
+                "application_id  uuid, " +
+                "collection_name varchar, " +
+                "entity_count    counter, " +
+                "entity_bytes    counter, " +
+                "PRIMARY KEY (application_id, collection_name) " +
+        ");";
+
+    private static final String OFFSETS_CQL =
+        "CREATE TABLE IF NOT EXISTS collection_stats_offsets ( " +
+                "application_id  uuid, " +
+                "collection_name varchar, " +
+                "entity_count    bigint, " +
+                "entity_bytes    bigint, " +
+                "reconciled      bigint static, " +
+                "PRIMARY KEY (application_id, collection_name) " +
+        ");";
+
+    private final CassandraConfig cassandraConfig;
+    private final Session session;
+
+
+    @Inject
+    public CollectionStatsSerializationImpl( final CassandraConfig cassandraConfig, final Session session ) {
+        this.cassandraConfig = cassandraConfig;
+        this.session = session;
+    }
+
+
+    @Override
+    public void increment( final ApplicationScope applicationScope, final String collectionName,
+                           final long entityCount, final long entityBytes ) {
+
+        Preconditions.checkNotNull( collectionName, "collectionName is required" );
+
+        Statement update = QueryBuilder.update( TABLE_COUNTERS )
+            .with( delta( COLUMN_ENTITY_COUNT, entityCount ) )
+            .and( delta( COLUMN_ENTITY_BYTES, entityBytes ) )
+            .where( QueryBuilder.eq( COLUMN_APPLICATION_ID, getApplicationId( applicationScope ) ) )
+            .and( QueryBuilder.eq( COLUMN_COLLECTION_NAME, collectionName ) );
+
+        session.execute( update );
+    }
+
+
+    @Override
+    public Map<String, CollectionStats> getCounters( final ApplicationScope applicationScope ) {
+        return readStats( TABLE_COUNTERS, applicationScope );
+    }
+
+
+    @Override
+    public Map<String, CollectionStats> getOffsets( final ApplicationScope applicationScope ) {
+        return readStats( TABLE_OFFSETS, applicationScope );
+    }
+
+
+    @Override
+    public void writeOffsets( final ApplicationScope applicationScope, final Map<String, CollectionStats> offsets,
+                              final long reconciled ) {
+
+        final UUID applicationId = getApplicationId( applicationScope );
+
+        // every row is in the same partition, so the batch is applied as one mutation
+        final BatchStatement batch = new BatchStatement( BatchStatement.Type.UNLOGGED );
+
+        batch.add( QueryBuilder.update( TABLE_OFFSETS )
+            .with( QueryBuilder.set( COLUMN_RECONCILED, reconciled ) )
+            .where( QueryBuilder.eq( COLUMN_APPLICATION_ID, applicationId ) ) );
+
+        offsets.forEach( ( collectionName, offset ) -> batch.add( QueryBuilder.insertInto( TABLE_OFFSETS )
+            .value( COLUMN_APPLICATION_ID, applicationId )
+            .value( COLUMN_COLLECTION_NAME, collectionName )
+            .value( COLUMN_ENTITY_COUNT, offset.getEntityCount() )
+            .value( COLUMN_ENTITY_BYTES, offset.getEntityBytes() ) ) );
+
+        session.execute( batch );
+    }
+
+
+    @Override
+    public Long getReconciled( final ApplicationScope applicationScope ) {
+
+        Statement query = QueryBuilder.select( COLUMN_RECONCILED ).from( TABLE_OFFSETS )
+            .where( QueryBuilder.eq( COLUMN_APPLICATION_ID, getApplicationId( applicationScope ) ) )
+            .limit( 1 )
+            .setConsistencyLevel( cassandraConfig.getDataStaxReadCl() );
+
+        final Row row = session.execute( query ).one();
+
+        return row == null || row.isNull( COLUMN_RECONCILED ) ? null : row.getLong( COLUMN_RECONCILED );
+    }
+
+
+    private Map<String, CollectionStats> readStats( final String table, final ApplicationScope applicationScope ) {
+
+        Statement query = QueryBuilder.select( COLUMN_COLLECTION_NAME, COLUMN_ENTITY_COUNT, COLUMN_ENTITY_BYTES )
+            .from( table )
+            .where( QueryBuilder.eq( COLUMN_APPLICATION_ID, getApplicationId( applicationScope ) ) )
+            .setConsistencyLevel( cassandraConfig.getDataStaxReadCl() );
+
+        final Map<String, CollectionStats> stats = new HashMap<>();
+
+        for ( Row row : session.execute( query ) ) {
+            // a partition holding only the static column returns a row without a collection
+            if ( row.isNull( COLUMN_COLLECTION_NAME ) ) {
+                continue;
+            }
+
+            stats.put( row.getString( COLUMN_COLLECTION_NAME ),
+                new CollectionStats( row.getLong( COLUMN_ENTITY_COUNT ), row.getLong( COLUMN_ENTITY_BYTES ) ) );
+        }
+
+        return stats;
+    }
+
+
+    private static Assignment delta( final String column, final long delta ) {
+        // counters are changed by a positive amount in either direction
+        return delta >= 0 ? QueryBuilder.incr( column, delta ) : QueryBuilder.decr( column, -delta );
+    }
+
+
+    private static UUID getApplicationId( final ApplicationScope applicationScope ) {
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        return applicationScope.getApplication().getUuid();
+    }
+
+
+    @Override
+    public Collection<MultiTenantColumnFamilyDefinition> getColumnFamilies() {
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public Collection<TableDefinition> getTables() {
+        return Arrays.asList(
+            new TableDefinitionStringImpl( cassandraConfig.getApplicationKeyspace(), TABLE_COUNTERS, COUNTERS_CQL ),
+            new TableDefinitionStringImpl( cassandraConfig.getApplicationKeyspace(), TABLE_OFFSETS, OFFSETS_CQL ) );
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.service;
+
+
+import java.util.Map;
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+
+
+/**
+ * Entity counts and sizes of the collections of an application, maintained as entities are written and deleted so
+ * they can be read without aggregating over the index.
+ */
+public interface CollectionStatsService {
+
+    /**
+     * True if statistics are maintained, when false the aggregations must be used
+     */
+    boolean isEnabled();
+
+    /**
+     * Record a change to a collection.  Failures are logged, they never fail the write.
+     *
+     * @param entityCount The change in the number of entities
+     * @param entityBytes The change in the size of the entities
+     */
+    void increment( ApplicationScope applicationScope, String collectionName, long entityCount, long entityBytes );
+
+    /**
+     * True if the statistics of the application are kept.  An application that was never reconciled is reconciled
+     * in the background, the aggregations must be used until it is.
+     */
+    boolean isReconciled( ApplicationScope applicationScope );
+
+    /**
+     * Get the statistics of every collection in the application by collection name.  Until the application is
+     * reconciled they are aggregated from the index.
+     */
+    Map<String, CollectionStats> getCollectionStats( ApplicationScope applicationScope );
+
+    /**
+     * Correct the statistics of the application against the index
+     *
+     * @return The corrected statistics
+     */
+    Map<String, CollectionStats> reconcile( ApplicationScope applicationScope );
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.service;
+
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.corepersistence.EntityManagerFig;
+import org.apache.usergrid.corepersistence.index.IndexLocationStrategyFactory;
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.GraphManager;
+import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.impl.SimpleSearchEdgeType;
+import org.apache.usergrid.persistence.index.EntityIndex;
+import org.apache.usergrid.persistence.index.EntityIndexFactory;
+import org.apache.usergrid.persistence.index.SearchEdge;
+
+import com.codahale.metrics.Timer;
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * Statistics are the counters incremented by writes and deletes plus the offsets computed by the last reconciliation.
+ * Reads of an application that was reconciled longer ago than the configured interval start a reconciliation in the
+ * background.  An application that was never reconciled is reconciled in the background too, its counters miss
+ * everything written before they existed, so its statistics are aggregated from the index until then.
+ *
+ * Reconciliation compares the counters to the documents in the index, so changes that are not yet indexed, and old
+ * versions that are not yet deindexed, skew the offsets until the next reconciliation.
+ */
+@Singleton
+public class CollectionStatsServiceImpl implements CollectionStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger( CollectionStatsServiceImpl.class );
+
+    private final CollectionStatsSerialization collectionStatsSerialization;
+    private final EntityIndexFactory entityIndexFactory;
+    private final IndexLocationStrategyFactory indexLocationStrategyFactory;
+    private final GraphManagerFactory graphManagerFactory;
+    private final EntityManagerFig entityManagerFig;
+
+    private final Timer reconcileTimer;
+
+    private final Set<UUID> reconciling = ConcurrentHashMap.newKeySet();
+
+
+    @Inject
+    public CollectionStatsServiceImpl( final CollectionStatsSerialization collectionStatsSerialization,
+                                       final EntityIndexFactory entityIndexFactory,
+                                       final IndexLocationStrategyFactory indexLocationStrategyFactory,
+                                       final GraphManagerFactory graphManagerFactory,
+                                       final EntityManagerFig entityManagerFig,
+                                       final MetricsFactory metricsFactory ) {
+        this.collectionStatsSerialization = collectionStatsSerialization;
+        this.entityIndexFactory = entityIndexFactory;
+        this.indexLocationStrategyFactory = indexLocationStrategyFactory;
+        this.graphManagerFactory = graphManagerFactory;
+        this.entityManagerFig = entityManagerFig;
+        this.reconcileTimer = metricsFactory.getTimer( CollectionStatsServiceImpl.class, "collection_stats.reconcile" );
+    }
+
+
+    @Override
+    public boolean isEnabled() {
+        return entityManagerFig.getCollectionStatsEnabled();
+    }
+
+
+    @Override
+    public void increment( final ApplicationScope applicationScope, final String collectionName,
+                           final long entityCount, final long entityBytes ) {
+
+        if ( !isEnabled() || ( entityCount == 0 && entityBytes == 0 ) ) {
+            return;
+        }
+
+        try {
+            collectionStatsSerialization
+                .increment( applicationScope, normalize( collectionName ), entityCount, entityBytes );
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to update the statistics of collection {} in application {}", collectionName,
+                applicationScope.getApplication().getUuid(), e );
+        }
+    }
+
+
+    @Override
+    public boolean isReconciled( final ApplicationScope applicationScope ) {
+
+        if ( collectionStatsSerialization.getReconciled( applicationScope ) == null ) {
+            reconcileAsync( applicationScope );
+            return false;
+        }
+
+        return true;
+    }
+
+
+    @Override
+    public Map<String, CollectionStats> getCollectionStats( final ApplicationScope applicationScope ) {
+
+        final Long reconciled = collectionStatsSerialization.getReconciled( applicationScope );
+
+        if ( reconciled == null ) {
+            final Map<String, CollectionStats> indexed = getIndexedStats( applicationScope );
+            reconcileAsync( applicationScope );
+            return indexed;
+        }
+
+        if ( System.currentTimeMillis() - reconciled > entityManagerFig.getCollectionStatsReconcileInterval() ) {
+            reconcileAsync( applicationScope );
+        }
+
+        return combine( collectionStatsSerialization.getCounters( applicationScope ),
+            collectionStatsSerialization.getOffsets( applicationScope ) );
+    }
+
+
+    @Override
+    public Map<String, CollectionStats> reconcile( final ApplicationScope applicationScope ) {
+
+        final Timer.Context timer = reconcileTimer.time();
+
+        try {
+            // read the counters first, writes made while the index is read are counted in the next reconciliation
+            final Map<String, CollectionStats> counters = collectionStatsSerialization.getCounters( applicationScope );
+            final Map<String, CollectionStats> indexed = getIndexedStats( applicationScope );
+
+            final Set<String> collectionNames = new HashSet<>( counters.keySet() );
+            collectionNames.addAll( indexed.keySet() );
+
+            final Map<String, CollectionStats> offsets = new HashMap<>( collectionNames.size() );
+            for ( String collectionName : collectionNames ) {
+                offsets.put( collectionName, indexed.getOrDefault( collectionName, CollectionStats.EMPTY )
+                    .minus( counters.getOrDefault( collectionName, CollectionStats.EMPTY ) ) );
+            }
+
+            // offsets are absolute, so nodes reconciling the same application at once don't compound their changes
+            collectionStatsSerialization.writeOffsets( applicationScope, offsets, System.currentTimeMillis() );
+
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Reconciled statistics of {} collections in application {}", collectionNames.size(),
+                    applicationScope.getApplication().getUuid() );
+            }
+
+            return combine( counters, offsets );
+        }
+        finally {
+            timer.stop();
+        }
+    }
+
+
+    /**
+     * Reconcile the application in the background, unless this node already is
+     */
+    private void reconcileAsync( final ApplicationScope applicationScope ) {
+
+        final UUID applicationId = applicationScope.getApplication().getUuid();
+
+        if ( !reconciling.add( applicationId ) ) {
+            return;
+        }
+
+        Observable.defer( () -> Observable.just( reconcile( applicationScope ) ) )
+            .subscribeOn( Schedulers.io() )
+            .doOnTerminate( () -> reconciling.remove( applicationId ) )
+            .subscribe( stats -> { },
+                t -> logger.error( "Unable to reconcile the statistics of application {}", applicationId, t ) );
+    }
+
+
+    /**
+     * Count and size the documents of every collection in the application with the index aggregations
+     */
+    private Map<String, CollectionStats> getIndexedStats( final ApplicationScope applicationScope ) {
+
+        final EntityIndex entityIndex = entityIndexFactory
+            .createEntityIndex( indexLocationStrategyFactory.getIndexLocationStrategy( applicationScope ) );
+        final GraphManager graphManager = graphManagerFactory.createEdgeManager( applicationScope );
+
+        return graphManager.getEdgeTypesFromSource(
+            new SimpleSearchEdgeType( applicationScope.getApplication(), CpNamingUtils.EDGE_COLL_PREFIX,
+                Optional.<String>absent() ) )
+            .collect( () -> new HashMap<String, CollectionStats>(), ( map, type ) -> {
+                final SearchEdge edge =
+                    CpNamingUtils.createCollectionSearchEdge( applicationScope.getApplication(), type );
+
+                // the aggregations return -1 when nothing is indexed
+                map.put( normalize( type ), new CollectionStats( Math.max( 0, entityIndex.getTotalEntityCount( edge ) ),
+                    Math.max( 0, entityIndex.getTotalEntitySizeInBytes( edge ) ) ) );
+            } ).toBlocking().last();
+    }
+
+
+    private static Map<String, CollectionStats> combine( final Map<String, CollectionStats> counters,
+                                                         final Map<String, CollectionStats> offsets ) {
+
+        final Map<String, CollectionStats> stats = new HashMap<>( counters );
+        offsets.forEach( ( collectionName, offset ) -> stats.merge( collectionName, offset, CollectionStats::plus ) );
+
+        // a delete counted before the reconciled write it follows can briefly take a collection below zero
+        stats.replaceAll( ( collectionName, collectionStats ) -> new CollectionStats(
+            Math.max( 0, collectionStats.getEntityCount() ), Math.max( 0, collectionStats.getEntityBytes() ) ) );
+
+        return stats;
+    }
+
+
+    /**
+     * Collection names are case insensitive, use the name the collection edges are stored with
+     */
+    private static String normalize( final String collectionName ) {
+        return CpNamingUtils
+            .getCollectionNameFromEdgeName( CpNamingUtils.getEdgeTypeFromCollectionName( collectionName ) );
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
@@ -105,4 +106,15 @@ public class CpEntityMapUtils {
 
     }
 
+
+    /**
+     * Visit each top level property of the entity in the same form as {@link #toMap(EntityObject)}, without
+     * building the map.
+     */
+    public static void forEachProperty( EntityObject entity, BiConsumer<String, Object> consumer ) {
+
+        entityConverter.forEachProperty( entity, consumer );
+
+    }
+
 }
@@ -43,4 +43,9 @@ public interface LockManager {
      * Setup lock persistence mechanism.
      */
     public void setup();
+
+    /**
+     * Stop any background work, called before the connections to the database are closed.
+     */
+    public void shutdown();
 }
@@ -76,6 +76,12 @@ public class AstyanaxLockManagerImpl implements LockManager {
     }
 
 
+    @Override
+    public void shutdown() {
+        // locks expire on their own, there is no background work
+    }
+
+
     @Override
     public Lock createLock(final UUID applicationId, final String... path ) {
 
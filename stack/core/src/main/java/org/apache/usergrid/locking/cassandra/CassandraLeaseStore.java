@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.cassandra;
+
+
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.locking.lease.LeaseStore;
+import org.apache.usergrid.persistence.core.CassandraFig;
+import org.apache.usergrid.persistence.core.datastax.CQLUtils;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+
+/**
+ * Stores lock leases in the locks keyspace using lightweight transactions.  The owner column expires with the lease,
+ * while the fencing token is kept for the configured retention so the next lease on the path continues from it.  The
+ * row of a path that is not locked for longer than the retention expires.
+ */
+public class CassandraLeaseStore implements LeaseStore {
+
+    private static final Logger logger = LoggerFactory.getLogger( CassandraLeaseStore.class );
+
+    private static final String TABLE = "lease_locks";
+
+    private final CassandraFig cassandraFig;
+    private final Session session;
+    private final String table;
+    private final ConsistencyLevel consistencyLevel;
+    private final ConsistencyLevel serialConsistencyLevel;
+    private final long retentionMillis;
+
+    private PreparedStatement readStatement;
+    private PreparedStatement acquireStatement;
+    private PreparedStatement renewStatement;
+    private PreparedStatement releaseStatement;
+
+
+    public CassandraLeaseStore( final CassandraFig cassandraFig, final Session session ) {
+        this.cassandraFig = cassandraFig;
+        this.session = session;
+        this.table = CQLUtils.quote( cassandraFig.getLocksKeyspace() ) + "." + TABLE;
+        this.retentionMillis = cassandraFig.getLocksLeaseRetention();
+
+        ConsistencyLevel configured;
+        try {
+            // the astyanax names are prefixed with CL_
+            configured = ConsistencyLevel.valueOf( cassandraFig.getLocksCl().replaceFirst( "^CL_", "" ) );
+        }
+        catch ( IllegalArgumentException e ) {
+            logger.warn( "Property {} value provided: {} is not valid", CassandraFig.LOCKS_CL,
+                cassandraFig.getLocksCl() );
+            configured = ConsistencyLevel.LOCAL_QUORUM;
+        }
+        this.consistencyLevel = configured;
+        this.serialConsistencyLevel =
+            configured.name().startsWith( "LOCAL_" ) ? ConsistencyLevel.LOCAL_SERIAL : ConsistencyLevel.SERIAL;
+    }
+
+
+    @Override
+    public void setup() {
+        try {
+            session.execute( String.format( "CREATE KEYSPACE IF NOT EXISTS %s WITH replication = %s",
+                CQLUtils.quote( cassandraFig.getLocksKeyspace() ),
+                CQLUtils.getFormattedReplication( cassandraFig.getLocksKeyspaceStrategy(),
+                    cassandraFig.getLocksKeyspaceReplication() ) ) );
+
+            session.execute( "CREATE TABLE IF NOT EXISTS " + table
+                + " ( path text PRIMARY KEY, owner uuid, fence bigint ) WITH gc_grace_seconds = 60" );
+
+            logger.info( "Created lease table {}", table );
+        }
+        catch ( Exception e ) {
+            throw new RuntimeException( "Error setting up the lease table " + table, e );
+        }
+    }
+
+
+    @Override
+    public long acquire( final String path, final UUID owner, final long leaseMillis ) {
+        prepare();
+
+        // a serial read sees leases taken by transactions that are still being committed
+        Row current = session.execute( readStatement.bind( path ).setConsistencyLevel( serialConsistencyLevel ) )
+                             .one();
+
+        if ( current != null && !current.isNull( "owner" ) ) {
+            return -1;
+        }
+
+        Long fence = current != null && !current.isNull( "fence" ) ? current.getLong( "fence" ) : null;
+        long next = fence != null ? fence + 1 : 1;
+
+        // fails if another node took the lease, or took and released it, since the read
+        Row result = session.execute( acquireStatement.bind( ttl( leaseMillis ), owner, path, fence,
+            retentionTtl( leaseMillis ), next, path )
+                                                      .setConsistencyLevel( consistencyLevel )
+                                                      .setSerialConsistencyLevel( serialConsistencyLevel ) ).one();
+
+        return result.getBool( "[applied]" ) ? next : -1;
+    }
+
+
+    @Override
+    public boolean renew( final String path, final UUID owner, final long fence, final long leaseMillis ) {
+        prepare();
+
+        // the fencing token is written again so it outlives a lease held for longer than the retention
+        return session.execute( renewStatement.bind( ttl( leaseMillis ), owner, path, owner,
+            retentionTtl( leaseMillis ), fence, path )
+                                              .setConsistencyLevel( consistencyLevel )
+                                              .setSerialConsistencyLevel( serialConsistencyLevel ) ).one()
+                      .getBool( "[applied]" );
+    }
+
+
+    @Override
+    public void release( final String path, final UUID owner ) {
+        prepare();
+
+        session.execute( releaseStatement.bind( path, owner ).setConsistencyLevel( consistencyLevel )
+                                         .setSerialConsistencyLevel( serialConsistencyLevel ) );
+    }
+
+
+    /**
+     * Prepared on first use, the table may not exist before setup
+     */
+    private synchronized void prepare() {
+        if ( readStatement != null ) {
+            return;
+        }
+
+        acquireStatement = session.prepare( "BEGIN BATCH "
+            + "UPDATE " + table + " USING TTL ? SET owner = ? WHERE path = ? IF owner = null AND fence = ? "
+            + "UPDATE " + table + " USING TTL ? SET fence = ? WHERE path = ? "
+            + "APPLY BATCH" );
+        renewStatement = session.prepare( "BEGIN BATCH "
+            + "UPDATE " + table + " USING TTL ? SET owner = ? WHERE path = ? IF owner = ? "
+            + "UPDATE " + table + " USING TTL ? SET fence = ? WHERE path = ? "
+            + "APPLY BATCH" );
+        releaseStatement = session.prepare( "DELETE owner FROM " + table + " WHERE path = ? IF owner = ?" );
+        readStatement = session.prepare( "SELECT owner, fence FROM " + table + " WHERE path = ?" );
+    }
+
+
+    private static int ttl( final long leaseMillis ) {
+        return ( int ) Math.max( 1, ( leaseMillis + 999 ) / 1000 );
+    }
+
+
+    /**
+     * The fencing token is kept at least as long as the lease
+     */
+    private int retentionTtl( final long leaseMillis ) {
+        return ttl( Math.max( retentionMillis, leaseMillis ) );
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.cassandra;
+
+
+import java.util.UUID;
+
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.locking.LockPathBuilder;
+import org.apache.usergrid.locking.lease.LeaseLockTable;
+import org.apache.usergrid.persistence.core.CassandraFig;
+import org.apache.usergrid.persistence.core.datastax.DataStaxCluster;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Lock manager using leases taken with Cassandra lightweight transactions.  Each lease carries a fencing token and is
+ * renewed while held.  Threads contending for a lock on the same node wait on a local lock instead of polling
+ * Cassandra.
+ */
+@Singleton
+public class LeaseLockManagerImpl implements LockManager {
+
+    private final CassandraLeaseStore store;
+    private final LeaseLockTable table;
+
+
+    @Inject
+    public LeaseLockManagerImpl( final CassandraFig cassandraFig, final DataStaxCluster dataStaxCluster ) {
+        this.store = new CassandraLeaseStore( cassandraFig, dataStaxCluster.getClusterSession() );
+        this.table = new LeaseLockTable( store, cassandraFig.getLocksLease() );
+    }
+
+
+    @Override
+    public Lock createLock( final UUID applicationId, final String... path ) {
+        return table.createLock( LockPathBuilder.buildPath( applicationId, path ) );
+    }
+
+
+    @Override
+    public void setup() {
+        store.setup();
+    }
+
+
+    @Override
+    public void shutdown() {
+        table.shutdown();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.usergrid.locking.guice;
+
+
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.locking.cassandra.AstyanaxLockManagerImpl;
+import org.apache.usergrid.locking.cassandra.LeaseLockManagerImpl;
+import org.apache.usergrid.persistence.core.CassandraFig;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+
+
+/**
+ * Picks the LockManager implementation named by the cassandra.lock.implementation property.
+ */
+public class LockManagerProvider implements Provider<LockManager> {
+
+    public static final String ASTYANAX = "astyanax";
+    public static final String LEASE = "lease";
+
+    private final CassandraFig cassandraFig;
+    private final Injector injector;
+
+
+    @Inject
+    public LockManagerProvider( final CassandraFig cassandraFig, final Injector injector ) {
+        this.cassandraFig = cassandraFig;
+        this.injector = injector;
+    }
+
+
+    @Override
+    public LockManager get() {
+        final String implementation = cassandraFig.getLocksImplementation();
+
+        if ( LEASE.equalsIgnoreCase( implementation ) ) {
+            return injector.getInstance( LeaseLockManagerImpl.class );
+        }
+
+        if ( !ASTYANAX.equalsIgnoreCase( implementation ) ) {
+            throw new IllegalArgumentException(
+                "Unknown value " + implementation + " for " + CassandraFig.LOCKS_IMPLEMENTATION );
+        }
+
+        return injector.getInstance( AstyanaxLockManagerImpl.class );
+    }
+}
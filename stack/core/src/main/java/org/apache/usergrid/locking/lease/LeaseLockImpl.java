@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.exception.UGLockException;
+
+
+/**
+ * A lock backed by a lease.  The lock is re-entrant for the thread holding it, and must be unlocked by that thread.
+ */
+public class LeaseLockImpl implements Lock {
+
+    private final LeaseLockTable table;
+    private final String path;
+    private LeaseLockTable.Entry entry;
+
+
+    LeaseLockImpl( final LeaseLockTable table, final String path ) {
+        this.table = table;
+        this.path = path;
+    }
+
+
+    @Override
+    public boolean tryLock( final long timeout, final TimeUnit time ) throws UGLockException {
+        final long deadline = System.nanoTime() + time.toNanos( Math.max( timeout, 0 ) );
+
+        try {
+            return acquire( timeout, time, deadline );
+        }
+        catch ( RuntimeException e ) {
+            return false;
+        }
+    }
+
+
+    @Override
+    public void lock() throws UGLockException {
+        try {
+            acquire( -1, TimeUnit.MILLISECONDS, Long.MAX_VALUE );
+        }
+        catch ( RuntimeException e ) {
+            throw new UGLockException( "Unable to acquire lock " + path, e );
+        }
+    }
+
+
+    @Override
+    public void unlock() throws UGLockException {
+        final LeaseLockTable.Entry held = entry;
+
+        // unlocking a lock that was never acquired is allowed, callers unlock in finally blocks
+        if ( held == null || !held.local.isHeldByCurrentThread() ) {
+            return;
+        }
+
+        try {
+            // keep the lease for the next thread on this node if there is one
+            if ( held.local.getHoldCount() == 1 && !held.local.hasQueuedThreads() ) {
+                table.releaseLease( held );
+            }
+        }
+        finally {
+            held.local.unlock();
+            table.dereference( held );
+        }
+    }
+
+
+    /**
+     * @return the fencing token of the lease held by this lock, or -1 if it isn't held
+     */
+    public long getFencingToken() {
+        final LeaseLockTable.Entry held = entry;
+        return held != null && held.local.isHeldByCurrentThread() ? held.fence : -1;
+    }
+
+
+    /**
+     * @param timeout negative to wait for the local lock forever
+     */
+    private boolean acquire( final long timeout, final TimeUnit time, final long deadline ) throws UGLockException {
+
+        final LeaseLockTable.Entry acquiring = table.reference( path );
+        boolean locked = false;
+        boolean acquired = false;
+
+        try {
+            if ( timeout < 0 ) {
+                acquiring.local.lockInterruptibly();
+                locked = true;
+            }
+            else if ( timeout == 0 ) {
+                locked = acquiring.local.tryLock();
+            }
+            else {
+                locked = acquiring.local.tryLock( timeout, time );
+            }
+
+            if ( !locked ) {
+                table.releaseIfIdle( acquiring );
+                return false;
+            }
+
+            // re-entrant acquisitions already hold the lease
+            acquired = acquiring.local.getHoldCount() > 1 || table.acquireLease( acquiring, deadline );
+            if ( acquired ) {
+                entry = acquiring;
+            }
+            return acquired;
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new UGLockException( "Interrupted while acquiring lock " + path, e );
+        }
+        finally {
+            if ( !acquired ) {
+                if ( locked ) {
+                    acquiring.local.unlock();
+                }
+                table.dereference( acquiring );
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.locking.Lock;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * In-JVM table of the locks this node is using.  Threads on this node queue on a local lock per path, and only the
+ * thread holding the local lock talks to the {@link LeaseStore}.  When a thread unlocks while others on this node are
+ * waiting, the lease is handed to the next thread rather than released, so local contention never reaches the store.
+ * Held leases are renewed in the background.
+ */
+public class LeaseLockTable {
+
+    private static final Logger logger = LoggerFactory.getLogger( LeaseLockTable.class );
+
+    private static final long INITIAL_BACKOFF = 10;
+    private static final long MAX_BACKOFF = 500;
+
+    private final LeaseStore store;
+    private final long leaseMillis;
+    private final UUID owner = UUID.randomUUID();
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewer;
+
+
+    public LeaseLockTable( final LeaseStore store, final long leaseMillis ) {
+        this.store = store;
+        this.leaseMillis = leaseMillis;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat( "lease-renewer-%d" ).setDaemon( true ).build() );
+    }
+
+
+    public Lock createLock( final String path ) {
+        return new LeaseLockImpl( this, path );
+    }
+
+
+    /**
+     * @return the number of paths with local holders, waiters or a held lease
+     */
+    public int size() {
+        return entries.size();
+    }
+
+
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+
+    /**
+     * Reference the entry for the path, creating it if needed.  The entry stays in the table until it is
+     * dereferenced and its lease is released.
+     */
+    Entry reference( final String path ) {
+        return entries.compute( path, ( key, entry ) -> {
+            if ( entry == null ) {
+                entry = new Entry( path );
+            }
+            entry.references.incrementAndGet();
+            return entry;
+        } );
+    }
+
+
+    void dereference( final Entry entry ) {
+        entries.computeIfPresent( entry.path, ( key, existing ) -> {
+            if ( existing.references.decrementAndGet() == 0 && !existing.leaseHeld ) {
+                return null;
+            }
+            return existing;
+        } );
+    }
+
+
+    /**
+     * Take the lease for the entry, polling the store until the deadline.  The caller holds the local lock.
+     *
+     * @param deadline the {@link System#nanoTime()} to give up at, or Long.MAX_VALUE to wait forever
+     */
+    boolean acquireLease( final Entry entry, final long deadline ) throws InterruptedException {
+
+        // handed over by the previous holder on this node
+        if ( entry.leaseHeld ) {
+            return true;
+        }
+
+        long backoff = INITIAL_BACKOFF;
+
+        while ( true ) {
+            long fence = store.acquire( entry.path, owner, leaseMillis );
+
+            if ( fence >= 0 ) {
+                entry.fence = fence;
+                entry.leaseHeld = true;
+                long interval = Math.max( leaseMillis / 3, 1 );
+                entry.renewal = renewer.scheduleWithFixedDelay( () -> renew( entry ), interval, interval,
+                    TimeUnit.MILLISECONDS );
+                return true;
+            }
+
+            long wait = backoff;
+            if ( deadline != Long.MAX_VALUE ) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() );
+                if ( remaining <= 0 ) {
+                    return false;
+                }
+                wait = Math.min( wait, remaining );
+            }
+
+            Thread.sleep( wait );
+            backoff = Math.min( backoff * 2, MAX_BACKOFF );
+        }
+    }
+
+
+    /**
+     * Release the lease of the entry.  The caller holds the local lock, or the lease is no longer used.
+     */
+    void releaseLease( final Entry entry ) {
+        if ( !entry.leaseHeld ) {
+            return;
+        }
+
+        entry.leaseHeld = false;
+        entry.fence = -1;
+        cancelRenewal( entry );
+
+        try {
+            store.release( entry.path, owner );
+        }
+        catch ( RuntimeException e ) {
+            logger.warn( "Unable to release lease on {}, it will expire in {} ms", entry.path, leaseMillis, e );
+        }
+    }
+
+
+    /**
+     * Release a lease that was kept for a local waiter that then gave up
+     */
+    void releaseIfIdle( final Entry entry ) {
+        if ( entry.leaseHeld && entry.local.tryLock() ) {
+            try {
+                if ( !entry.local.hasQueuedThreads() ) {
+                    releaseLease( entry );
+                }
+            }
+            finally {
+                entry.local.unlock();
+            }
+        }
+    }
+
+
+    private void renew( final Entry entry ) {
+        if ( !entry.leaseHeld ) {
+            return;
+        }
+
+        // nobody on this node uses it any more
+        if ( entry.references.get() == 0 ) {
+            releaseIfIdle( entry );
+            entries.computeIfPresent( entry.path, ( key, existing ) ->
+                existing.references.get() == 0 && !existing.leaseHeld ? null : existing );
+            return;
+        }
+
+        try {
+            if ( !store.renew( entry.path, owner, entry.fence, leaseMillis ) ) {
+                logger.error( "Lost the lease on {} with fencing token {}", entry.path, entry.fence );
+                entry.leaseHeld = false;
+                entry.fence = -1;
+                cancelRenewal( entry );
+            }
+        }
+        catch ( RuntimeException e ) {
+            logger.warn( "Unable to renew the lease on {}, retrying", entry.path, e );
+        }
+    }
+
+
+    private static void cancelRenewal( final Entry entry ) {
+        final ScheduledFuture<?> renewal = entry.renewal;
+        if ( renewal != null ) {
+            renewal.cancel( false );
+            entry.renewal = null;
+        }
+    }
+
+
+    /**
+     * The local state of a lock path
+     */
+    static final class Entry {
+
+        final String path;
+        final ReentrantLock local = new ReentrantLock();
+        final AtomicInteger references = new AtomicInteger();
+
+        volatile boolean leaseHeld;
+        volatile long fence = -1;
+        volatile ScheduledFuture<?> renewal;
+
+
+        private Entry( final String path ) {
+            this.path = path;
+        }
+    }
+}
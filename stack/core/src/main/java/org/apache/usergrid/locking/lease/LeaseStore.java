@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.UUID;
+
+
+/**
+ * Durable storage for lock leases shared by all nodes.  A lease is held by one owner until it is released or expires,
+ * and every new lease on a path gets a larger fencing token than the one before it.
+ */
+public interface LeaseStore {
+
+    /**
+     * Create any storage the leases need
+     */
+    void setup();
+
+    /**
+     * Try to take the lease on the path
+     *
+     * @return the fencing token of the new lease, or -1 if the lease is held by someone else
+     */
+    long acquire( String path, UUID owner, long leaseMillis );
+
+    /**
+     * Extend a lease held by the owner
+     *
+     * @param fence the fencing token of the lease
+     *
+     * @return false if the owner no longer holds the lease
+     */
+    boolean renew( String path, UUID owner, long fence, long leaseMillis );
+
+    /**
+     * Release a lease held by the owner.  Does nothing if the owner doesn't hold it.
+     */
+    void release( String path, UUID owner );
+}
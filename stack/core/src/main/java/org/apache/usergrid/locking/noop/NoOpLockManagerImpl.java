@@ -43,4 +43,9 @@ public class NoOpLockManagerImpl implements LockManager {
     public void setup() {
         // no op
     }
+
+    @Override
+    public void shutdown() {
+        // no op
+    }
 }
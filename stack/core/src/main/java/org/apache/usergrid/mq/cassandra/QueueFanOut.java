@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.mq.QueueSet;
+import org.apache.usergrid.mq.QueueSet.QueueInfo;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.exceptions.QueueException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
+
+
+/**
+ * Writes posts to the subscribers of a publisher queue.  Subscribers are paged on the posting thread while the
+ * previous pages are written, split into batches of subscribers that are written concurrently in the executor.  The
+ * batches of one post in flight at a time are bounded, so a post to a queue with many subscribers neither floods the
+ * executor nor Cassandra.  A fan out returns once every batch is written.
+ *
+ * The latency of each fan out is timed per publisher queue.
+ */
+public class QueueFanOut {
+
+    private static final Logger logger = LoggerFactory.getLogger( QueueFanOut.class );
+
+    /** Writes one batch at a time on the posting thread */
+    public static final QueueFanOut DIRECT = new QueueFanOut( MoreExecutors.directExecutor(), 1000, 1, null );
+
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final MetricsFactory metricsFactory;
+
+
+    /**
+     * @param executor The executor batches are written in
+     * @param batchSize The number of subscribers written in one mutation batch
+     * @param maxInFlight The number of batches of one post written at a time
+     * @param metricsFactory The factory to time fan outs with, may be null
+     */
+    public QueueFanOut( final Executor executor, final int batchSize, final int maxInFlight,
+                        final MetricsFactory metricsFactory ) {
+        Preconditions.checkArgument( batchSize > 0, "batchSize must be positive" );
+        Preconditions.checkArgument( maxInFlight > 0, "maxInFlight must be positive" );
+
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.metricsFactory = metricsFactory;
+    }
+
+
+    /**
+     * Fan out a post to all subscribers of the publisher
+     *
+     * @param publisherQueuePath The queue posted to
+     * @param pager Returns the page of subscribers after the given subscriber path, null for the first page
+     * @param writer Writes the post to a batch of subscribers
+     *
+     * @return the number of subscribers written to
+     *
+     * @throws QueueException if a batch could not be written, after the others finished
+     */
+    public int fanOut( final String publisherQueuePath, final Function<String, QueueSet> pager,
+                       final Consumer<List<QueueInfo>> writer ) {
+
+        final long start = System.nanoTime();
+
+        final Semaphore inFlight = new Semaphore( maxInFlight );
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        int subscribers = 0;
+        String lastSubscriberPath = null;
+
+        try {
+            while ( failure.get() == null ) {
+                final QueueSet page = pager.apply( lastSubscriberPath );
+                final List<QueueInfo> queues = page.getQueues();
+
+                if ( queues.isEmpty() ) {
+                    break;
+                }
+
+                for ( int i = 0; i < queues.size(); i += batchSize ) {
+                    final List<QueueInfo> batch =
+                        new ArrayList<>( queues.subList( i, Math.min( i + batchSize, queues.size() ) ) );
+
+                    inFlight.acquireUninterruptibly();
+                    submit( batch, writer, inFlight, failure );
+                }
+
+                subscribers += queues.size();
+                lastSubscriberPath = queues.get( queues.size() - 1 ).getPath();
+
+                if ( !page.hasMore() ) {
+                    break;
+                }
+            }
+        }
+        finally {
+            // wait for the batches still being written
+            inFlight.acquireUninterruptibly( maxInFlight );
+        }
+
+        if ( subscribers > 0 && metricsFactory != null ) {
+            metricsFactory.getTimer( QueueFanOut.class, "fanout." + publisherQueuePath )
+                          .update( System.nanoTime() - start, TimeUnit.NANOSECONDS );
+        }
+
+        if ( failure.get() != null ) {
+            throw new QueueException( "Unable to post to the subscribers of queue " + publisherQueuePath,
+                failure.get() );
+        }
+
+        return subscribers;
+    }
+
+
+    private void submit( final List<QueueInfo> batch, final Consumer<List<QueueInfo>> writer,
+                         final Semaphore inFlight, final AtomicReference<Throwable> failure ) {
+
+        final Runnable write = () -> {
+            try {
+                writer.accept( batch );
+            }
+            catch ( Throwable t ) {
+                logger.error( "Unable to post to {} subscriber queues", batch.size(), t );
+                failure.compareAndSet( null, t );
+            }
+            finally {
+                inFlight.release();
+            }
+        };
+
+        try {
+            executor.execute( write );
+        }
+        catch ( RejectedExecutionException ree ) {
+            // the executor is saturated, write on the posting thread
+            write.run();
+        }
+    }
+}
@@ -18,7 +18,12 @@ package org.apache.usergrid.mq.cassandra;
 
 
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Injector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +32,7 @@ import org.apache.usergrid.mq.QueueManager;
 import org.apache.usergrid.mq.QueueManagerFactory;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.cassandra.CounterUtils;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 
 import static org.apache.usergrid.persistence.cassandra.Serializers.*;
 
@@ -41,6 +47,12 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     private CounterUtils counterUtils;
     private LockManager lockManager;
     private int lockTimeout;
+    private MetricsFactory metricsFactory;
+
+    private int fanOutThreads = 16;
+    private int fanOutBatchSize = 100;
+    private int fanOutMaxBatches = 8;
+    private volatile QueueFanOut fanOut;
 
     /**
      * Must be constructed with a CassandraClientPool.
@@ -52,10 +64,36 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
         this.cass = cass;
         this.counterUtils = counterUtils;
         lockManager = injector.getInstance(LockManager.class);
+        metricsFactory = injector.getInstance( MetricsFactory.class );
         this.lockTimeout = lockTimeout;
     }
 
 
+    /**
+     * @param fanOutThreads the number of threads shared by all queue managers to post to subscribers with, 0 to post
+     * on the calling thread
+     */
+    public void setFanOutThreads( int fanOutThreads ) {
+        this.fanOutThreads = fanOutThreads;
+    }
+
+
+    /**
+     * @param fanOutBatchSize the number of subscribers posted to in one mutation batch
+     */
+    public void setFanOutBatchSize( int fanOutBatchSize ) {
+        this.fanOutBatchSize = fanOutBatchSize;
+    }
+
+
+    /**
+     * @param fanOutMaxBatches the number of batches of one post written to subscribers at a time
+     */
+    public void setFanOutMaxBatches( int fanOutMaxBatches ) {
+        this.fanOutMaxBatches = fanOutMaxBatches;
+    }
+
+
     @Override
     public String getImpementationDescription() throws Exception {
         return IMPLEMENTATION_DESCRIPTION;
@@ -65,10 +103,47 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     @Override
     public QueueManager getQueueManager( UUID applicationId ) {
         QueueManagerImpl qm = new QueueManagerImpl();
-        qm.init( cass, counterUtils, lockManager, applicationId, lockTimeout );
+        qm.init( cass, counterUtils, lockManager, applicationId, lockTimeout, getFanOut() );
         return qm;
         //return applicationContext.getAutowireCapableBeanFactory()
         //		.createBean(QueueManagerImpl.class)
         //		.init(this, cass, counterUtils, applicationId);
     }
+
+
+    private QueueFanOut getFanOut() {
+        if ( fanOut == null ) {
+            synchronized ( this ) {
+                if ( fanOut == null ) {
+                    fanOut = createFanOut();
+                }
+            }
+        }
+        return fanOut;
+    }
+
+
+    private QueueFanOut createFanOut() {
+        if ( fanOutThreads <= 0 ) {
+            return new QueueFanOut( MoreExecutors.directExecutor(),
+                fanOutBatchSize, 1, metricsFactory );
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        // batches the pool can't take are written on the posting thread
+        final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( fanOutThreads, fanOutThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>( fanOutThreads * fanOutMaxBatches ), r -> {
+                    Thread thread = new Thread( r, "QueueFanOut-" + threadCount.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                } );
+        executor.allowCoreThreadTimeOut( true );
+
+        logger.info( "Posting to queue subscribers with {} threads in batches of {}", fanOutThreads,
+            fanOutBatchSize );
+
+        return new QueueFanOut( executor, fanOutBatchSize, fanOutMaxBatches, metricsFactory );
+    }
 }
@@ -148,6 +148,7 @@ public class QueueManagerImpl implements QueueManager {
     private CounterUtils counterUtils;
     private LockManager lockManager;
     private int lockTimeout;
+    private QueueFanOut fanOut = QueueFanOut.DIRECT;
 
 
 
@@ -166,6 +167,13 @@ public class QueueManagerImpl implements QueueManager {
     }
 
 
+    public QueueManagerImpl init( CassandraService cass, CounterUtils counterUtils, LockManager lockManager,
+                                  UUID applicationId, int lockTimeout, QueueFanOut fanOut ) {
+        this.fanOut = fanOut;
+        return init( cass, counterUtils, lockManager, applicationId, lockTimeout );
+    }
+
+
     @Override
     public Message getMessage( UUID messageId ) {
         SliceQuery<UUID, String, ByteBuffer> q =
@@ -239,54 +247,48 @@ public class QueueManagerImpl implements QueueManager {
 
     @Override
     public Message postToQueue( String queuePath, Message message ) {
-        long timestamp = cass.createTimestamp();
-        Mutator<ByteBuffer> batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ),
-                be );
-
-        queuePath = normalizeQueuePath( queuePath );
-
-        MessageIndexUpdate indexUpdate = new MessageIndexUpdate( message );
-
-        batchPostToQueue( batch, queuePath, message, indexUpdate, timestamp );
-
-        batchExecute( batch, RETRY_COUNT );
-
-        String firstSubscriberQueuePath = null;
-        while ( true ) {
-
-            QueueSet subscribers = getSubscribers( queuePath, firstSubscriberQueuePath, 1000 );
-
-            if ( subscribers.getQueues().isEmpty() ) {
-                break;
-            }
-
-            batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ), be );
-            for ( QueueInfo q : subscribers.getQueues() ) {
-                batchPostToQueue( batch, q.getPath(), message, indexUpdate, timestamp );
-
-                firstSubscriberQueuePath = q.getPath();
-            }
-            batchExecute( batch, RETRY_COUNT );
-
-            if ( !subscribers.hasMore() ) {
-                break;
-            }
-        }
-
+        postToQueue( queuePath, Collections.singletonList( message ) );
         return message;
     }
 
 
     @Override
     public List<Message> postToQueue( String queuePath, List<Message> messages ) {
+        if ( messages.isEmpty() ) {
+            return messages;
+        }
 
-        // Can't do this as one big batch operation because it will
-        // time out
+        final long timestamp = cass.createTimestamp();
+        final String publisherQueuePath = normalizeQueuePath( queuePath );
 
+        final List<MessageIndexUpdate> indexUpdates = new ArrayList<MessageIndexUpdate>( messages.size() );
         for ( Message message : messages ) {
-            postToQueue( queuePath, message );
+            indexUpdates.add( new MessageIndexUpdate( message ) );
         }
 
+        // the flushing mutator keeps large posts from timing out as one big batch
+        Mutator<ByteBuffer> batch = CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ),
+                be );
+        for ( MessageIndexUpdate indexUpdate : indexUpdates ) {
+            batchPostToQueue( batch, publisherQueuePath, indexUpdate.getMessage(), indexUpdate, timestamp );
+        }
+        batchExecute( batch, RETRY_COUNT );
+
+        // every batch of subscribers gets all of the messages at once
+        fanOut.fanOut( publisherQueuePath,
+            firstSubscriberQueuePath -> getSubscribers( publisherQueuePath, firstSubscriberQueuePath, 1000 ),
+            subscribers -> {
+                Mutator<ByteBuffer> subscriberBatch =
+                        CountingMutator.createFlushingMutator( cass.getApplicationKeyspace( applicationId ), be );
+                for ( QueueInfo q : subscribers ) {
+                    for ( MessageIndexUpdate indexUpdate : indexUpdates ) {
+                        batchPostToQueue( subscriberBatch, q.getPath(), indexUpdate.getMessage(), indexUpdate,
+                                timestamp );
+                    }
+                }
+                batchExecute( subscriberBatch, RETRY_COUNT );
+            } );
+
         return messages;
     }
 
@@ -185,7 +185,9 @@ public abstract class AbstractEntity implements Entity {
 
     @Override
     public void setProperties(org.apache.usergrid.persistence.model.entity.Entity cpEntity){
-        setProperties( CpEntityMapUtils.toMap(cpEntity) );
+        dynamic_properties = new TreeMap<String, Object>( String.CASE_INSENSITIVE_ORDER );
+        // set each field as it is converted, there's no need for the intermediate map
+        CpEntityMapUtils.forEachProperty( cpEntity, this::setProperty );
         this.setSize(cpEntity.getSize());
     }
 
@@ -280,6 +280,22 @@ public interface EntityManager {
                                                    boolean forceVerification )
             throws Exception;
 
+    /**
+     * Gets a page of a dictionary in element name order, so large dictionaries can be read without loading them
+     * whole.  Pass the last element name of a page as the start of the next one.
+     *
+     * @param entityRef an entity reference
+     * @param dictionaryName the dictionary to read
+     * @param start the element name the page starts after, or null for the first page
+     * @param limit the maximum number of elements in the page
+     *
+     * @return the elements of the page, fewer than the limit once the dictionary is exhausted
+     *
+     * @throws Exception the exception
+     */
+    public Map<Object, Object> getDictionaryAsMap( EntityRef entityRef, String dictionaryName, Object start,
+                                                   int limit ) throws Exception;
+
     public Object getDictionaryElementValue( EntityRef entityRef, String dictionaryName,
             String elementName ) throws Exception;
 
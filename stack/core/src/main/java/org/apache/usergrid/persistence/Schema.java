@@ -60,6 +60,7 @@ import org.apache.usergrid.persistence.exceptions.PropertyTypeConversionExceptio
 import org.apache.usergrid.persistence.schema.CollectionInfo;
 import org.apache.usergrid.persistence.schema.DictionaryInfo;
 import org.apache.usergrid.persistence.schema.EntityInfo;
+import org.apache.usergrid.persistence.schema.PropertyAccessor;
 import org.apache.usergrid.persistence.schema.PropertyInfo;
 import org.apache.usergrid.utils.InflectionUtils;
 import org.apache.usergrid.utils.JsonUtils;
@@ -216,6 +217,9 @@ public class Schema implements SchemaManager {
     private final Map<Class<? extends Entity>, Map<String, PropertyDescriptor>> entityClassPropertyToDescriptor =
             new ConcurrentHashMap<Class<? extends Entity>, Map<String, PropertyDescriptor>>();
 
+    private final Map<Class<? extends Entity>, Map<String, PropertyAccessor>> entityClassPropertyToAccessor =
+            new ConcurrentHashMap<Class<? extends Entity>, Map<String, PropertyAccessor>>();
+
     private final Map<Class<? extends Entity>, EntityInfo> registeredEntityClasses =
             new ConcurrentHashMap<Class<? extends Entity>, EntityInfo>();
 
@@ -349,6 +353,7 @@ public class Schema implements SchemaManager {
             String type = getEntityType( entityClass );
 
             propertyDescriptors = new LinkedHashMap<String, PropertyDescriptor>();
+            Map<String, PropertyAccessor> propertyAccessors = new LinkedHashMap<String, PropertyAccessor>();
             Map<String, PropertyInfo> properties = new TreeMap<String, PropertyInfo>( String.CASE_INSENSITIVE_ORDER );
             Map<String, CollectionInfo> collections =
                     new TreeMap<String, CollectionInfo>( String.CASE_INSENSITIVE_ORDER );
@@ -365,6 +370,7 @@ public class Schema implements SchemaManager {
                         name = propertyAnnotation.name();
                     }
                     propertyDescriptors.put( name, descriptor );
+                    propertyAccessors.put( name, new PropertyAccessor( name, descriptor ) );
 
                     PropertyInfo propertyInfo = new PropertyInfo( propertyAnnotation );
                     propertyInfo.setName( name );
@@ -414,6 +420,7 @@ public class Schema implements SchemaManager {
                 }
             }
 
+            entityClassPropertyToAccessor.put( entityClass, propertyAccessors );
             entityClassPropertyToDescriptor.put( entityClass, propertyDescriptors );
 
             registeredEntityClasses.put( entityClass, entity );
@@ -1469,22 +1476,33 @@ public class Schema implements SchemaManager {
     }
 
 
+    /**
+     * Get the compiled accessor for a typed property of the entity class, or null if the property is dynamic
+     */
+    public PropertyAccessor getAccessorForEntityProperty( Class<? extends Entity> entityClass, String property ) {
+        Map<String, PropertyAccessor> propertyAccessors = entityClassPropertyToAccessor.get( entityClass );
+        if ( propertyAccessors == null ) {
+            return null;
+        }
+        return propertyAccessors.get( property );
+    }
+
+
     public void setEntityProperty( Entity entity, String property, Object value ) {
-        PropertyDescriptor descriptor = getDescriptorForEntityProperty( entity.getClass(), property );
-        if ( descriptor != null ) {
-            Class<?> cls = descriptor.getPropertyType();
-            if ( cls != null ) {
-                if ( ( value == null ) || ( cls.isAssignableFrom( value.getClass() ) ) ) {
-                    try {
-                        descriptor.getWriteMethod().invoke( entity, value );
-                        return;
-                    }
-                    catch ( Exception e ) {
-                        logger.error( "Unable to set entity property {}", property, e );
-                    }
+        PropertyAccessor accessor = getAccessorForEntityProperty( entity.getClass(), property );
+        if ( accessor != null && accessor.isWritable() ) {
+            if ( accessor.accepts( value ) ) {
+                try {
+                    accessor.set( entity, value );
+                    return;
                 }
+                catch ( Exception e ) {
+                    logger.error( "Unable to set entity property {}", property, e );
+                }
+            }
+            else if ( value != null ) {
                 try {
-                    descriptor.getWriteMethod().invoke( entity, mapper.convertValue( value, cls ) );
+                    accessor.set( entity, accessor.convert( value, mapper ) );
                     return;
                 }
                 catch ( Exception e ) {
@@ -1497,13 +1515,15 @@ public class Schema implements SchemaManager {
 
 
     public Object getEntityProperty( Entity entity, String property ) {
-        PropertyDescriptor descriptor = getDescriptorForEntityProperty( entity.getClass(), property );
-        if ( descriptor != null ) {
-            try {
-                return descriptor.getReadMethod().invoke( entity );
-            }
-            catch ( Exception e ) {
-                logger.error( "Unable to get entity property {}", property, e );
+        PropertyAccessor accessor = getAccessorForEntityProperty( entity.getClass(), property );
+        if ( accessor != null ) {
+            if ( accessor.isReadable() ) {
+                try {
+                    return accessor.get( entity );
+                }
+                catch ( Exception e ) {
+                    logger.error( "Unable to get entity property {}", property, e );
+                }
             }
             return null;
         }
@@ -1517,25 +1537,23 @@ public class Schema implements SchemaManager {
 
     public Map<String, Object> getEntityProperties( Entity entity ) {
         Map<String, Object> properties = new LinkedHashMap<String, Object>();
-        Map<String, PropertyDescriptor> propertyDescriptors = entityClassPropertyToDescriptor.get( entity.getClass() );
+        Map<String, PropertyAccessor> propertyAccessors = entityClassPropertyToAccessor.get( entity.getClass() );
 
-        if ( propertyDescriptors == null ) {
+        if ( propertyAccessors == null ) {
             registerEntity( entity.getClass() );
-            propertyDescriptors = entityClassPropertyToDescriptor.get( entity.getClass() );
+            propertyAccessors = entityClassPropertyToAccessor.get( entity.getClass() );
         }
 
-        for ( Entry<String, PropertyDescriptor> propertyEntry : propertyDescriptors.entrySet() ) {
-            String property = propertyEntry.getKey();
-            PropertyDescriptor descriptor = propertyEntry.getValue();
-            if ( descriptor != null ) {
+        for ( PropertyAccessor accessor : propertyAccessors.values() ) {
+            if ( accessor.isReadable() ) {
                 try {
-                    Object value = descriptor.getReadMethod().invoke( entity );
+                    Object value = accessor.get( entity );
                     if ( value != null ) {
-                        properties.put( property, value );
+                        properties.put( accessor.getName(), value );
                     }
                 }
                 catch ( Exception e ) {
-                    logger.error( "Unable to get entity property {}", property, e );
+                    logger.error( "Unable to get entity property {}", accessor.getName(), e );
                 }
             }
         }
@@ -76,6 +76,18 @@ public class FileImport extends TypedEntity {
     @EntityProperty
     protected long failedConnectionCount;
 
+    /**
+     * Number of entities from the start of the file known to be written, a resumed import starts after them
+     */
+    @EntityProperty
+    protected long entityCheckpoint;
+
+    /**
+     * Number of connections and dictionaries from the start of the file known to be written
+     */
+    @EntityProperty
+    protected long connectionCheckpoint;
+
 
     public FileImport() {
         setLastUpdatedUUID(" ");
@@ -208,4 +220,24 @@ public class FileImport extends TypedEntity {
     public void setFailedConnectionCount( final long failedConnectionCount ) {
         this.failedConnectionCount = failedConnectionCount;
     }
+
+
+    public long getEntityCheckpoint() {
+        return entityCheckpoint;
+    }
+
+
+    public void setEntityCheckpoint( final long entityCheckpoint ) {
+        this.entityCheckpoint = entityCheckpoint;
+    }
+
+
+    public long getConnectionCheckpoint() {
+        return connectionCheckpoint;
+    }
+
+
+    public void setConnectionCheckpoint( final long connectionCheckpoint ) {
+        this.connectionCheckpoint = connectionCheckpoint;
+    }
 }
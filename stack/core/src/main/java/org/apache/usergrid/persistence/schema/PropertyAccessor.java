@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.schema;
+
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.primitives.Primitives;
+
+
+/**
+ * Compiled read and write access to a single typed entity property.  Built once per entity class when the schema
+ * registers it, so that setting or reading a property is a direct call rather than a reflective
+ * {@link Method#invoke(Object, Object...)} through the {@link PropertyDescriptor}.
+ */
+public class PropertyAccessor {
+
+    private static final Logger logger = LoggerFactory.getLogger( PropertyAccessor.class );
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final String name;
+    private final PropertyDescriptor descriptor;
+    private final Class<?> type;
+    private final Class<?> boxedType;
+    private final Function<Object, Object> getter;
+    private final BiConsumer<Object, Object> setter;
+    private final Converter converter;
+
+
+    public PropertyAccessor( String name, PropertyDescriptor descriptor ) {
+        this.name = name;
+        this.descriptor = descriptor;
+        this.type = descriptor.getPropertyType();
+        this.boxedType = type != null ? Primitives.wrap( type ) : null;
+        this.getter = compileGetter( descriptor.getReadMethod() );
+        this.setter = compileSetter( descriptor.getWriteMethod() );
+        this.converter = converterFor( boxedType );
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public PropertyDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+
+    public Class<?> getType() {
+        return type;
+    }
+
+
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+
+    public boolean isWritable() {
+        return setter != null && type != null;
+    }
+
+
+    /**
+     * Read the property from the entity
+     */
+    public Object get( Object entity ) {
+        return getter.apply( entity );
+    }
+
+
+    /**
+     * Write the value as is.  The value must already be null or an instance of the property type.
+     */
+    public void set( Object entity, Object value ) {
+        setter.accept( entity, value );
+    }
+
+
+    /**
+     * Returns true if the value can be written without conversion
+     */
+    public boolean accepts( Object value ) {
+        if ( value == null ) {
+            return !type.isPrimitive();
+        }
+        return boxedType.isInstance( value );
+    }
+
+
+    /**
+     * Convert the value to the property type, using the precomputed converter when there is one and falling back to
+     * the Jackson mapper otherwise
+     */
+    public Object convert( Object value, ObjectMapper mapper ) {
+        if ( value == null ) {
+            return null;
+        }
+        if ( converter != null ) {
+            Object converted = converter.convert( value );
+            if ( converted != null ) {
+                return converted;
+            }
+        }
+        return mapper.convertValue( value, type );
+    }
+
+
+    @SuppressWarnings( "unchecked" )
+    private static Function<Object, Object> compileGetter( Method method ) {
+        if ( method == null ) {
+            return null;
+        }
+        try {
+            MethodHandle handle = LOOKUP.unreflect( method );
+            Class<?> returnType = Primitives.wrap( method.getReturnType() );
+            CallSite site = LambdaMetafactory.metafactory( LOOKUP, "apply", MethodType.methodType( Function.class ),
+                    MethodType.methodType( Object.class, Object.class ), handle,
+                    MethodType.methodType( returnType, method.getDeclaringClass() ) );
+            return ( Function<Object, Object> ) site.getTarget().invokeExact();
+        }
+        catch ( Throwable t ) {
+            logger.debug( "Unable to compile getter {}, falling back to method handle", method, t );
+        }
+        try {
+            final MethodHandle handle =
+                    LOOKUP.unreflect( method ).asType( MethodType.methodType( Object.class, Object.class ) );
+            return entity -> {
+                try {
+                    return handle.invokeExact( entity );
+                }
+                catch ( RuntimeException e ) {
+                    throw e;
+                }
+                catch ( Throwable t ) {
+                    throw new RuntimeException( t );
+                }
+            };
+        }
+        catch ( IllegalAccessException e ) {
+            logger.warn( "Unable to access getter {}", method, e );
+            return null;
+        }
+    }
+
+
+    @SuppressWarnings( "unchecked" )
+    private static BiConsumer<Object, Object> compileSetter( Method method ) {
+        if ( method == null ) {
+            return null;
+        }
+        try {
+            MethodHandle handle = LOOKUP.unreflect( method );
+            Class<?> paramType = Primitives.wrap( method.getParameterTypes()[0] );
+            CallSite site = LambdaMetafactory.metafactory( LOOKUP, "accept",
+                    MethodType.methodType( BiConsumer.class ),
+                    MethodType.methodType( void.class, Object.class, Object.class ), handle,
+                    MethodType.methodType( void.class, method.getDeclaringClass(), paramType ) );
+            return ( BiConsumer<Object, Object> ) site.getTarget().invokeExact();
+        }
+        catch ( Throwable t ) {
+            logger.debug( "Unable to compile setter {}, falling back to method handle", method, t );
+        }
+        try {
+            final MethodHandle handle = LOOKUP.unreflect( method )
+                    .asType( MethodType.methodType( void.class, Object.class, Object.class ) );
+            return ( entity, value ) -> {
+                try {
+                    handle.invokeExact( entity, value );
+                }
+                catch ( RuntimeException e ) {
+                    throw e;
+                }
+                catch ( Throwable t ) {
+                    throw new RuntimeException( t );
+                }
+            };
+        }
+        catch ( IllegalAccessException e ) {
+            logger.warn( "Unable to access setter {}", method, e );
+            return null;
+        }
+    }
+
+
+    /**
+     * Conversions for the common scalar property types.  A converter returns null when it can't handle the value, in
+     * which case the caller falls back to the Jackson mapper.
+     */
+    private interface Converter {
+        Object convert( Object value );
+    }
+
+
+    private static Converter converterFor( Class<?> boxedType ) {
+        if ( boxedType == null ) {
+            return null;
+        }
+        if ( boxedType == Long.class ) {
+            return value -> value instanceof Number ? ( Object ) ( ( Number ) value ).longValue() : null;
+        }
+        if ( boxedType == Integer.class ) {
+            return value -> {
+                if ( value instanceof Number ) {
+                    long l = ( ( Number ) value ).longValue();
+                    if ( l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ) {
+                        return ( int ) l;
+                    }
+                }
+                return null;
+            };
+        }
+        if ( boxedType == Double.class ) {
+            return value -> value instanceof Number ? ( Object ) ( ( Number ) value ).doubleValue() : null;
+        }
+        if ( boxedType == Float.class ) {
+            return value -> value instanceof Number ? ( Object ) ( ( Number ) value ).floatValue() : null;
+        }
+        if ( boxedType == Short.class ) {
+            return value -> value instanceof Number ? ( Object ) ( ( Number ) value ).shortValue() : null;
+        }
+        if ( boxedType == UUID.class ) {
+            return value -> {
+                if ( value instanceof String ) {
+                    try {
+                        return UUID.fromString( ( String ) value );
+                    }
+                    catch ( IllegalArgumentException e ) {
+                        return null;
+                    }
+                }
+                return null;
+            };
+        }
+        return null;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.batch;
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import org.apache.usergrid.batch.service.JobWakeups;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class JobWakeupsTest {
+
+    @Test
+    public void wakesWhenDue() throws InterruptedException {
+        JobWakeups wakeups = new JobWakeups();
+
+        long start = System.currentTimeMillis();
+        wakeups.schedule( start + 100 );
+
+        assertTrue( wakeups.awaitDue( start + 10000 ) );
+
+        long waited = System.currentTimeMillis() - start;
+        assertTrue( "Woke up after " + waited + " ms", waited >= 100 && waited < 5000 );
+        assertEquals( 0, wakeups.size() );
+    }
+
+
+    @Test
+    public void deadlineWithoutDueJobs() throws InterruptedException {
+        JobWakeups wakeups = new JobWakeups();
+
+        wakeups.schedule( System.currentTimeMillis() + 60000 );
+
+        assertFalse( wakeups.awaitDue( System.currentTimeMillis() + 50 ) );
+        assertEquals( 1, wakeups.size() );
+    }
+
+
+    @Test
+    public void earlierJobWakesWaiter() throws InterruptedException {
+        final JobWakeups wakeups = new JobWakeups();
+        final CountDownLatch woken = new CountDownLatch( 1 );
+        final AtomicBoolean due = new AtomicBoolean();
+
+        Thread waiter = new Thread( () -> {
+            try {
+                due.set( wakeups.awaitDue( System.currentTimeMillis() + 60000 ) );
+                woken.countDown();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        waiter.start();
+
+        Thread.sleep( 50 );
+        wakeups.schedule( System.currentTimeMillis() );
+
+        assertTrue( woken.await( 5, TimeUnit.SECONDS ) );
+        assertTrue( due.get() );
+    }
+
+
+    @Test
+    public void closeReleasesWaiter() throws InterruptedException {
+        final JobWakeups wakeups = new JobWakeups();
+        final CountDownLatch woken = new CountDownLatch( 1 );
+
+        Thread waiter = new Thread( () -> {
+            try {
+                wakeups.awaitDue( System.currentTimeMillis() + 60000 );
+                woken.countDown();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        waiter.start();
+
+        Thread.sleep( 50 );
+        wakeups.close();
+
+        assertTrue( woken.await( 5, TimeUnit.SECONDS ) );
+    }
+
+
+    @Test
+    public void coalescesAndBoundsTimes() {
+        JobWakeups wakeups = new JobWakeups();
+        wakeups.setMaxSize( 2 );
+
+        long base = System.currentTimeMillis() + 60000;
+        base -= base % JobWakeups.RESOLUTION;
+
+        wakeups.schedule( base + 1 );
+        wakeups.schedule( base + 2 );
+        assertEquals( 1, wakeups.size() );
+
+        wakeups.schedule( base + 1000 );
+        wakeups.schedule( base + 2000 );
+        assertEquals( 2, wakeups.size() );
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.collection.EntityCollectionManager;
+import org.apache.usergrid.persistence.entities.Application;
+import org.apache.usergrid.persistence.map.MapKeyResults;
+import org.apache.usergrid.persistence.map.MapManager;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.Field;
+
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class ApplicationIdCacheImplTest {
+
+    private EntityManager managementEntityManager;
+    private EntityCollectionManager ecm;
+    private ManagerCache managerCache;
+    private ApplicationIdCacheFig fig;
+
+
+    @Before
+    public void setup() throws Exception {
+        managementEntityManager = mock( EntityManager.class );
+        when( managementEntityManager.getApplication() ).thenReturn( new Application() );
+
+        ecm = mock( EntityCollectionManager.class );
+        when( ecm.getIdField( anyString(), any( Field.class ) ) ).thenReturn( Observable.<Id>empty() );
+
+        // one map shared by every cache, as the nodes of a cluster share the management application
+        final Map<String, String> values = new HashMap<>();
+        final MapManager mapManager = mock( MapManager.class );
+        when( mapManager.getKeys( any(), anyInt() ) )
+            .thenAnswer( invocation -> new MapKeyResults( null, new ArrayList<>( values.keySet() ) ) );
+        when( mapManager.getStrings( any() ) ).thenAnswer( invocation -> {
+            final Map<String, String> found = new HashMap<>();
+            for ( Object key : ( Collection<?> ) invocation.getArguments()[0] ) {
+                found.put( ( String ) key, values.get( key ) );
+            }
+            return found;
+        } );
+        doAnswer( invocation -> values.put( ( String ) invocation.getArguments()[0],
+            ( String ) invocation.getArguments()[1] ) ).when( mapManager )
+            .putString( anyString(), anyString(), anyInt() );
+
+        managerCache = mock( ManagerCache.class );
+        when( managerCache.getEntityCollectionManager( any() ) ).thenReturn( ecm );
+        when( managerCache.getMapManager( any() ) ).thenReturn( mapManager );
+
+        fig = mock( ApplicationIdCacheFig.class );
+        when( fig.getCacheSize() ).thenReturn( 100 );
+        when( fig.getCacheTimeout() ).thenReturn( 600000 );
+        when( fig.getCacheRefresh() ).thenReturn( 60000 );
+        when( fig.getReloadThreads() ).thenReturn( 1 );
+        when( fig.getWarmUp() ).thenReturn( true );
+        // the tests check for invalidations themselves
+        when( fig.getInvalidationPollInterval() ).thenReturn( 0L );
+    }
+
+
+    @Test
+    public void unknownNamesAreCached() {
+        final ApplicationIdCacheImpl cache = new ApplicationIdCacheImpl( managementEntityManager, managerCache, fig );
+
+        for ( int i = 0; i < 3; i++ ) {
+            assertNull( cache.getApplicationId( "org/missing" ) );
+        }
+
+        verify( ecm, times( 1 ) ).getIdField( anyString(), any( Field.class ) );
+    }
+
+
+    @Test
+    public void warmedUpNamesAreNotLoaded() {
+        final ApplicationIdCacheImpl cache = new ApplicationIdCacheImpl( managementEntityManager, managerCache, fig );
+        final UUID applicationId = UUID.randomUUID();
+
+        cache.warmUp( Collections.singletonMap( "Org/App", applicationId ) );
+
+        assertEquals( applicationId, cache.getApplicationId( "org/app" ) );
+        verify( ecm, never() ).getIdField( anyString(), any( Field.class ) );
+    }
+
+
+    @Test
+    public void evictionInvalidatesOtherCaches() {
+        final ApplicationIdCacheImpl creatingNode =
+            new ApplicationIdCacheImpl( managementEntityManager, managerCache, fig );
+        final ApplicationIdCacheImpl otherNode =
+            new ApplicationIdCacheImpl( managementEntityManager, managerCache, fig );
+
+        assertNull( otherNode.getApplicationId( "org/app" ) );
+
+        // the application is created on one node
+        final UUID applicationId = UUID.randomUUID();
+        when( ecm.getIdField( anyString(), any( Field.class ) ) )
+            .thenReturn( Observable.<Id>just( new SimpleId( applicationId, "application_info" ) ) );
+        creatingNode.evictAppId( "org/app" );
+
+        // until the other node checks, it still knows the name as unknown
+        assertNull( otherNode.getApplicationId( "org/app" ) );
+
+        otherNode.checkInvalidation();
+
+        assertEquals( applicationId, otherNode.getApplicationId( "org/app" ) );
+    }
+
+
+    @Test
+    public void evictionInvalidatesOnlyEvictedNames() {
+        final ApplicationIdCacheImpl creatingNode =
+            new ApplicationIdCacheImpl( managementEntityManager, managerCache, fig );
+        final ApplicationIdCacheImpl otherNode =
+            new ApplicationIdCacheImpl( managementEntityManager, managerCache, fig );
+
+        assertNull( otherNode.getApplicationId( "org/app" ) );
+        assertNull( otherNode.getApplicationId( "org/other" ) );
+        verify( ecm, times( 2 ) ).getIdField( anyString(), any( Field.class ) );
+
+        creatingNode.evictAppId( "Org/App" );
+        otherNode.checkInvalidation();
+
+        // only the evicted name is loaded again
+        assertNull( otherNode.getApplicationId( "org/app" ) );
+        assertNull( otherNode.getApplicationId( "org/other" ) );
+        verify( ecm, times( 3 ) ).getIdField( anyString(), any( Field.class ) );
+
+        // an eviction is only seen once
+        otherNode.checkInvalidation();
+
+        assertNull( otherNode.getApplicationId( "org/app" ) );
+        verify( ecm, times( 3 ) ).getIdField( anyString(), any( Field.class ) );
+
+        creatingNode.shutdown();
+        otherNode.shutdown();
+    }
+}
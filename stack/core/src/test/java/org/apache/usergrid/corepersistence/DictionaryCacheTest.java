@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence;
+
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class DictionaryCacheTest {
+
+    private static final String CF = "Entity_Dictionaries";
+
+
+    @Test
+    public void cachesUntilInvalidated() throws Exception {
+        final DictionaryCache cache = new DictionaryCache( true, 100, 60000, 10 );
+        final UUID appId = UUID.randomUUID();
+        final AtomicInteger loads = new AtomicInteger();
+
+        for ( int i = 0; i < 3; i++ ) {
+            Set<String> permissions = cache.get( appId, CF, "role:permissions", () -> {
+                loads.incrementAndGet();
+                return new LinkedHashSet<>( Arrays.asList( "get:/**" ) );
+            } );
+            assertEquals( 1, permissions.size() );
+        }
+        assertEquals( 1, loads.get() );
+
+        // the same row key in another application is a different row
+        cache.get( UUID.randomUUID(), CF, "role:permissions", () -> {
+            loads.incrementAndGet();
+            return new LinkedHashSet<String>();
+        } );
+        assertEquals( 2, loads.get() );
+
+        cache.invalidate( appId, CF, "role:permissions" );
+
+        cache.get( appId, CF, "role:permissions", () -> {
+            loads.incrementAndGet();
+            return new LinkedHashSet<String>();
+        } );
+        assertEquals( 3, loads.get() );
+    }
+
+
+    @Test
+    public void loadRacingWriteIsNotUsed() throws Exception {
+        final DictionaryCache cache = new DictionaryCache( true, 100, 60000, 10 );
+        final UUID appId = UUID.randomUUID();
+
+        // the row is written and invalidated while it is being read
+        Set<String> stale = cache.get( appId, CF, "row", () -> {
+            cache.invalidate( appId, CF, "row" );
+            return new LinkedHashSet<>( Arrays.asList( "old" ) );
+        } );
+        assertEquals( 1, stale.size() );
+
+        Set<String> fresh = cache.get( appId, CF, "row", () -> new LinkedHashSet<>( Arrays.asList( "old", "new" ) ) );
+        assertEquals( 2, fresh.size() );
+    }
+
+
+    @Test
+    public void largeRowsAreNotCached() throws Exception {
+        final DictionaryCache cache = new DictionaryCache( true, 100, 60000, 2 );
+        final UUID appId = UUID.randomUUID();
+        final AtomicInteger loads = new AtomicInteger();
+
+        for ( int i = 0; i < 2; i++ ) {
+            cache.get( appId, CF, "row", () -> {
+                loads.incrementAndGet();
+                return new LinkedHashSet<>( Arrays.asList( "a", "b", "c" ) );
+            } );
+        }
+        assertEquals( 2, loads.get() );
+    }
+}
@@ -441,6 +441,58 @@ public class IndexServiceTest {
     }
 
 
+    /**
+     * Deleting one connection must leave the documents of other connections between the same entities
+     */
+    @Test
+    public void testDeleteConnectingEdgeKeepsOtherConnectionTypes() throws InterruptedException {
+        ApplicationScope applicationScope =
+            new ApplicationScopeImpl( new SimpleId( UUID.randomUUID(), "application" ) );
+
+        final EntityIndex EntityIndex =
+            entityIndexFactory.createEntityIndex(indexLocationStrategyFactory.getIndexLocationStrategy(applicationScope) );
+
+        final GraphManager graphManager = graphManagerFactory.createEdgeManager( applicationScope );
+
+        final Entity testEntity = new Entity( createId( "thing" ), UUIDGenerator.newTimeUUID() );
+        testEntity.setField( new StringField( "string", "foo" ) );
+
+        createEntityandCollectionEdge( applicationScope, graphManager, testEntity );
+
+        //connect the same two entities with two connection types
+        final Id connectingId = createId( "connecting" );
+        final Edge likes = graphManager.writeEdge(
+            CpNamingUtils.createConnectionEdge( connectingId, "likes", testEntity.getId() ) ).toBlocking().last();
+        final Edge follows = graphManager.writeEdge(
+            CpNamingUtils.createConnectionEdge( connectingId, "follows", testEntity.getId() ) ).toBlocking().last();
+
+        indexService.indexEntity( applicationScope, testEntity )
+            .flatMap( mesage -> indexProducer.put( mesage ) ).count().toBlocking().last();
+
+        final SearchEdge likesSearchEdge = CpNamingUtils.createSearchEdgeFromSource( likes );
+        final SearchEdge followsSearchEdge = CpNamingUtils.createSearchEdgeFromSource( follows );
+
+        getResults( EntityIndex, likesSearchEdge, SearchTypes.fromTypes( testEntity.getId().getType() ), 1 );
+        getResults( EntityIndex, followsSearchEdge, SearchTypes.fromTypes( testEntity.getId().getType() ), 1 );
+
+        //delete only the likes connection
+        final Edge toBeMarkedEdge = graphManager.markEdge( likes ).toBlocking().firstOrDefault( null );
+        final Edge toBeDeletedEdge = graphManager.deleteEdge( toBeMarkedEdge ).toBlocking().firstOrDefault( null );
+
+        IndexOperationMessage indexOperationMessage =
+            indexService.deleteIndexEdge( applicationScope, toBeDeletedEdge ).toBlocking().lastOrDefault( null );
+
+        assertEquals( 1, indexOperationMessage.getDeIndexRequests().size() );
+
+        indexProducer.put( indexOperationMessage ).toBlocking().last();
+
+        getResults( EntityIndex, likesSearchEdge, SearchTypes.fromTypes( testEntity.getId().getType() ), 0 );
+
+        //the follows connection is still indexed
+        getResults( EntityIndex, followsSearchEdge, SearchTypes.fromTypes( testEntity.getId().getType() ), 1 );
+    }
+
+
     /**
      * Refactor into two methods . Should only have one responsiblitiy.
      * @param applicationScope
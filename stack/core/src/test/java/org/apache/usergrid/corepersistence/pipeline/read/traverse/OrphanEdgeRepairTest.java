@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.pipeline.read.traverse;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
+import org.apache.usergrid.persistence.collection.EntityCollectionManager;
+import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
+import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.GraphManager;
+import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.SearchByEdge;
+import org.apache.usergrid.persistence.graph.impl.SimpleMarkedEdge;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.google.common.base.Optional;
+
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class OrphanEdgeRepairTest {
+
+    private static final String EDGE_TYPE = CpNamingUtils.getEdgeTypeFromCollectionName( "cats" );
+
+    // an hour in the 100 nanosecond units of graph timestamps
+    private static final long HOUR = 60L * 60L * 1000L * 1000L * 10L;
+
+    private final ApplicationScope scope = CpNamingUtils.getApplicationScope( UUIDGenerator.newTimeUUID() );
+    private final Id sourceId = new SimpleId( "owner" );
+
+    private EntityCollectionManager ecm;
+    private GraphManager graphManager;
+    private Map<Id, MvccEntity> existing;
+    private Map<String, Meter> meters;
+    private Gauge<Integer> pendingGauge;
+    private OrphanEdgeRepair repair;
+
+
+    @Before
+    public void setup() {
+        existing = new HashMap<>();
+
+        // loads return the entities that exist among those requested
+        ecm = mock( EntityCollectionManager.class );
+        final EntitySet entitySet = mock( EntitySet.class );
+        when( entitySet.getEntity( any( Id.class ) ) )
+            .thenAnswer( invocation -> existing.get( invocation.getArguments()[0] ) );
+        when( ecm.load( anyCollection() ) ).thenReturn( Observable.just( entitySet ) );
+        final EntityCollectionManagerFactory ecmFactory = mock( EntityCollectionManagerFactory.class );
+        when( ecmFactory.createCollectionManager( scope ) ).thenReturn( ecm );
+
+        graphManager = mock( GraphManager.class );
+        when( graphManager.markEdge( any( MarkedEdge.class ) ) )
+            .thenAnswer( invocation -> Observable.just( invocation.getArguments()[0] ) );
+        when( graphManager.deleteEdge( any( MarkedEdge.class ) ) )
+            .thenAnswer( invocation -> Observable.just( invocation.getArguments()[0] ) );
+        final GraphManagerFactory graphManagerFactory = mock( GraphManagerFactory.class );
+        when( graphManagerFactory.createEdgeManager( scope ) ).thenReturn( graphManager );
+
+        // repairs only run when the test asks for them
+        final ReadRepairFig fig = mock( ReadRepairFig.class );
+        when( fig.getEdgeOrphanDelaySecs() ).thenReturn( 60L );
+        when( fig.getEdgeOrphanRepairQueueSize() ).thenReturn( 3 );
+        when( fig.getEdgeOrphanRepairRate() ).thenReturn( 1000d );
+        when( fig.getEdgeOrphanRepairInterval() ).thenReturn( 3600000L );
+        when( fig.getEdgeOrphanRepairBatchSize() ).thenReturn( 100 );
+
+        meters = new HashMap<>();
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        for ( String name : new String[] { "queued", "executed", "skipped" } ) {
+            final Meter meter = new Meter();
+            meters.put( name, meter );
+            when( metricsFactory.getMeter( any( Class.class ), eq( "orphan.repair." + name ) ) ).thenReturn( meter );
+        }
+
+        repair = new OrphanEdgeRepair( ecmFactory, graphManagerFactory, fig, metricsFactory );
+
+        final ArgumentCaptor<Gauge> gauge = ArgumentCaptor.forClass( Gauge.class );
+        verify( metricsFactory ).addGauge( any( Class.class ), eq( "orphan.repair.pending" ), gauge.capture() );
+        pendingGauge = gauge.getValue();
+    }
+
+
+    @After
+    public void shutdown() {
+        repair.shutdown();
+    }
+
+
+    @Test
+    public void reverifiesThenDeletesOldEdges() {
+        final Id missing = new SimpleId( "cat" );
+        final Id written = new SimpleId( "cat" );
+        final Id recent = new SimpleId( "cat" );
+
+        // written since the read that found it missing
+        final MvccEntity entity = mock( MvccEntity.class );
+        when( entity.getEntity() ).thenReturn( Optional.of( new Entity( written ) ) );
+        existing.put( written, entity );
+
+        final MarkedEdge orphan = edge( missing, CpNamingUtils.createGraphOperationTimestamp() - HOUR );
+        final MarkedEdge young = edge( recent, CpNamingUtils.createGraphOperationTimestamp() );
+        when( graphManager.loadEdgeVersions( any( SearchByEdge.class ) ) ).thenAnswer( invocation -> {
+            final Id targetId = ( ( SearchByEdge ) invocation.getArguments()[0] ).targetNode();
+            return Observable.just( targetId.equals( missing ) ? orphan : young );
+        } );
+
+        repair.submit( scope, sourceId, EDGE_TYPE, missing );
+        repair.submit( scope, sourceId, EDGE_TYPE, written );
+        repair.submit( scope, sourceId, EDGE_TYPE, recent );
+        repair.repairPending();
+
+        // the targets of one source are verified with a single load
+        verify( ecm, times( 1 ) ).load( anyCollection() );
+        verify( graphManager, times( 2 ) ).loadEdgeVersions( any( SearchByEdge.class ) );
+
+        // only the edge that is old enough to be an orphan is deleted
+        verify( graphManager ).markEdge( orphan );
+        verify( graphManager ).deleteEdge( orphan );
+        verify( graphManager, never() ).markEdge( young );
+        verify( graphManager, never() ).deleteEdge( young );
+
+        assertEquals( 3, meters.get( "queued" ).getCount() );
+        assertEquals( 1, meters.get( "executed" ).getCount() );
+        assertEquals( 2, meters.get( "skipped" ).getCount() );
+        assertEquals( Integer.valueOf( 0 ), pendingGauge.getValue() );
+    }
+
+
+    @Test
+    public void duplicatesQueuedOnce() {
+        final Id missing = new SimpleId( "cat" );
+        when( graphManager.loadEdgeVersions( any( SearchByEdge.class ) ) ).thenReturn( Observable.empty() );
+
+        repair.submit( scope, sourceId, EDGE_TYPE, missing );
+        repair.submit( scope, sourceId, EDGE_TYPE, missing );
+
+        assertEquals( Integer.valueOf( 1 ), pendingGauge.getValue() );
+        assertEquals( 1, meters.get( "queued" ).getCount() );
+
+        repair.repairPending();
+        verify( graphManager, times( 1 ) ).loadEdgeVersions( any( SearchByEdge.class ) );
+    }
+
+
+    @Test
+    public void dropsWhenQueueFull() {
+        when( graphManager.loadEdgeVersions( any( SearchByEdge.class ) ) ).thenReturn( Observable.empty() );
+
+        for ( int i = 0; i < 5; i++ ) {
+            repair.submit( scope, sourceId, EDGE_TYPE, new SimpleId( "cat" ) );
+        }
+
+        assertEquals( Integer.valueOf( 3 ), pendingGauge.getValue() );
+        assertEquals( 3, meters.get( "queued" ).getCount() );
+        assertEquals( 2, meters.get( "skipped" ).getCount() );
+
+        repair.repairPending();
+        verify( graphManager, times( 3 ) ).loadEdgeVersions( any( SearchByEdge.class ) );
+        verify( graphManager, never() ).deleteEdge( any( MarkedEdge.class ) );
+
+        // a later read submits the dropped repair again
+        repair.submit( scope, sourceId, EDGE_TYPE, new SimpleId( "cat" ) );
+        assertEquals( Integer.valueOf( 1 ), pendingGauge.getValue() );
+    }
+
+
+    private MarkedEdge edge( final Id targetId, final long timestamp ) {
+        return new SimpleMarkedEdge( sourceId, EDGE_TYPE, targetId, timestamp, false );
+    }
+}
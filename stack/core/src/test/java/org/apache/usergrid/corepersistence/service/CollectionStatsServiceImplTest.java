@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.service;
+
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.corepersistence.EntityManagerFig;
+import org.apache.usergrid.corepersistence.index.IndexLocationStrategyFactory;
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.GraphManager;
+import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.SearchEdgeType;
+import org.apache.usergrid.persistence.index.EntityIndex;
+import org.apache.usergrid.persistence.index.EntityIndexFactory;
+import org.apache.usergrid.persistence.index.IndexLocationStrategy;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.Timer;
+
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class CollectionStatsServiceImplTest {
+
+    private final ApplicationScope scope = CpNamingUtils.getApplicationScope( UUIDGenerator.newTimeUUID() );
+
+    private CollectionStatsSerialization serialization;
+    private GraphManager graphManager;
+    private EntityIndex entityIndex;
+    private EntityManagerFig fig;
+    private CollectionStatsServiceImpl service;
+
+
+    @Before
+    public void setup() {
+        serialization = mock( CollectionStatsSerialization.class );
+
+        graphManager = mock( GraphManager.class );
+        final GraphManagerFactory graphManagerFactory = mock( GraphManagerFactory.class );
+        when( graphManagerFactory.createEdgeManager( scope ) ).thenReturn( graphManager );
+
+        entityIndex = mock( EntityIndex.class );
+        final IndexLocationStrategy strategy = mock( IndexLocationStrategy.class );
+        final IndexLocationStrategyFactory strategyFactory = mock( IndexLocationStrategyFactory.class );
+        when( strategyFactory.getIndexLocationStrategy( scope ) ).thenReturn( strategy );
+        final EntityIndexFactory entityIndexFactory = mock( EntityIndexFactory.class );
+        when( entityIndexFactory.createEntityIndex( strategy ) ).thenReturn( entityIndex );
+
+        fig = mock( EntityManagerFig.class );
+        when( fig.getCollectionStatsEnabled() ).thenReturn( true );
+        when( fig.getCollectionStatsReconcileInterval() ).thenReturn( 3600000L );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( any( Class.class ), any( String.class ) ) ).thenReturn( new Timer() );
+
+        service = new CollectionStatsServiceImpl( serialization, entityIndexFactory, strategyFactory,
+            graphManagerFactory, fig, metricsFactory );
+    }
+
+
+    @Test
+    public void readsCountersWithOffsets() {
+        when( serialization.getReconciled( scope ) ).thenReturn( System.currentTimeMillis() );
+        when( serialization.getCounters( scope ) ).thenReturn( stats( "users", 5, 500 ) );
+        when( serialization.getOffsets( scope ) ).thenReturn( stats( "users", -1, -50 ) );
+
+        assertEquals( new CollectionStats( 4, 450 ), service.getCollectionStats( scope ).get( "users" ) );
+
+        // recently reconciled, the index is not read
+        verify( graphManager, never() ).getEdgeTypesFromSource( any( SearchEdgeType.class ) );
+    }
+
+
+    @Test
+    public void reconcileStoresDifferenceFromIndex() {
+        when( serialization.getCounters( scope ) ).thenReturn( stats( "users", 2, 200 ) );
+        when( graphManager.getEdgeTypesFromSource( any( SearchEdgeType.class ) ) ).thenReturn(
+            Observable.just( CpNamingUtils.getEdgeTypeFromCollectionName( "users" ),
+                CpNamingUtils.getEdgeTypeFromCollectionName( "groups" ) ) );
+        // read once to serve the request, then once to reconcile
+        when( entityIndex.getTotalEntityCount( any() ) ).thenReturn( 3L, 1L, 3L, 1L );
+        when( entityIndex.getTotalEntitySizeInBytes( any() ) ).thenReturn( 350L, 10L, 350L, 10L );
+
+        // never reconciled, so the index is read while it is reconciled in the background
+        Map<String, CollectionStats> result = service.getCollectionStats( scope );
+
+        assertEquals( new CollectionStats( 3, 350 ), result.get( "users" ) );
+        assertEquals( new CollectionStats( 1, 10 ), result.get( "groups" ) );
+
+        Map<String, CollectionStats> offsets = stats( "users", 1, 150 );
+        offsets.putAll( stats( "groups", 1, 10 ) );
+        verify( serialization, timeout( 5000 ) ).writeOffsets( eq( scope ), eq( offsets ), anyLong() );
+    }
+
+
+    @Test
+    public void neverReconciledIsReconciledInBackground() {
+        when( serialization.getCounters( scope ) ).thenReturn( stats( "users", 2, 200 ) );
+        when( graphManager.getEdgeTypesFromSource( any( SearchEdgeType.class ) ) )
+            .thenReturn( Observable.just( CpNamingUtils.getEdgeTypeFromCollectionName( "users" ) ) );
+        when( entityIndex.getTotalEntityCount( any() ) ).thenReturn( 3L );
+        when( entityIndex.getTotalEntitySizeInBytes( any() ) ).thenReturn( 350L );
+
+        // the sizes are aggregated until the offsets are seeded
+        assertFalse( service.isReconciled( scope ) );
+
+        verify( serialization, timeout( 5000 ) )
+            .writeOffsets( eq( scope ), eq( stats( "users", 1, 150 ) ), anyLong() );
+
+        when( serialization.getReconciled( scope ) ).thenReturn( System.currentTimeMillis() );
+
+        assertTrue( service.isReconciled( scope ) );
+    }
+
+
+    @Test
+    public void disabledDoesNotWrite() {
+        when( fig.getCollectionStatsEnabled() ).thenReturn( false );
+
+        service.increment( scope, "users", 1, 100 );
+
+        verify( serialization, never() ).increment( any(), any(), anyLong(), anyLong() );
+        verify( serialization, never() ).writeOffsets( any(), anyMap(), anyLong() );
+    }
+
+
+    private static Map<String, CollectionStats> stats( final String collectionName, final long count,
+                                                       final long bytes ) {
+        return new HashMap<>( Collections.singletonMap( collectionName, new CollectionStats( count, bytes ) ) );
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.locking.lease;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.locking.Lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class LeaseLockTableTest {
+
+    private MemoryLeaseStore store;
+    private LeaseLockTable table;
+    private LeaseLockTable otherNode;
+
+
+    @Before
+    public void setup() {
+        store = new MemoryLeaseStore();
+        table = new LeaseLockTable( store, 30000 );
+        otherNode = new LeaseLockTable( store, 30000 );
+    }
+
+
+    @After
+    public void shutdown() {
+        table.shutdown();
+        otherNode.shutdown();
+    }
+
+
+    @Test
+    public void reentrant() throws Exception {
+        Lock lock = table.createLock( "path" );
+
+        assertTrue( lock.tryLock( 0, TimeUnit.MILLISECONDS ) );
+        assertTrue( lock.tryLock( 0, TimeUnit.MILLISECONDS ) );
+        assertEquals( 1, store.acquires.get() );
+
+        lock.unlock();
+        assertTrue( store.isHeld( "path" ) );
+
+        lock.unlock();
+        assertFalse( store.isHeld( "path" ) );
+        assertEquals( 0, table.size() );
+    }
+
+
+    @Test
+    public void heldByOtherNode() throws Exception {
+        Lock other = otherNode.createLock( "path" );
+        other.lock();
+
+        Lock lock = table.createLock( "path" );
+        assertFalse( lock.tryLock( 0, TimeUnit.MILLISECONDS ) );
+        assertFalse( lock.tryLock( 50, TimeUnit.MILLISECONDS ) );
+
+        other.unlock();
+        assertTrue( lock.tryLock( 1, TimeUnit.SECONDS ) );
+        lock.unlock();
+    }
+
+
+    @Test
+    public void unlockWithoutLock() throws Exception {
+        Lock lock = table.createLock( "path" );
+        lock.unlock();
+
+        assertEquals( 0, store.releases.get() );
+        assertEquals( 0, table.size() );
+    }
+
+
+    @Test
+    public void fencingTokensIncrease() throws Exception {
+        LeaseLockImpl lock = ( LeaseLockImpl ) table.createLock( "path" );
+
+        lock.lock();
+        long first = lock.getFencingToken();
+        lock.unlock();
+
+        assertEquals( -1, lock.getFencingToken() );
+
+        LeaseLockImpl other = ( LeaseLockImpl ) otherNode.createLock( "path" );
+        other.lock();
+        assertTrue( other.getFencingToken() > first );
+        other.unlock();
+    }
+
+
+    @Test
+    public void localContentionHandsOverLease() throws Exception {
+        final int threads = 8;
+        final int iterations = 50;
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch( 1 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for ( int i = 0; i < threads; i++ ) {
+                futures[i] = executor.submit( () -> {
+                    start.await();
+                    for ( int j = 0; j < iterations; j++ ) {
+                        Lock lock = table.createLock( "path" );
+                        lock.lock();
+                        try {
+                            if ( inside.incrementAndGet() > 1 ) {
+                                overlaps.incrementAndGet();
+                            }
+                            Thread.sleep( 1 );
+                            inside.decrementAndGet();
+                        }
+                        finally {
+                            lock.unlock();
+                        }
+                    }
+                    return null;
+                } );
+            }
+
+            start.countDown();
+            for ( Future<?> future : futures ) {
+                future.get( 30, TimeUnit.SECONDS );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals( 0, overlaps.get() );
+        assertTrue( "Store acquires " + store.acquires.get(), store.acquires.get() < threads * iterations );
+        assertFalse( store.isHeld( "path" ) );
+        assertEquals( 0, table.size() );
+    }
+
+
+    /**
+     * Leases without expiry, acquired and released atomically
+     */
+    private static class MemoryLeaseStore implements LeaseStore {
+
+        private final Map<String, UUID> owners = new HashMap<>();
+        private final Map<String, Long> fences = new HashMap<>();
+        private final AtomicInteger acquires = new AtomicInteger();
+        private final AtomicInteger releases = new AtomicInteger();
+
+
+        @Override
+        public void setup() {
+        }
+
+
+        @Override
+        public synchronized long acquire( final String path, final UUID owner, final long leaseMillis ) {
+            acquires.incrementAndGet();
+            if ( owners.containsKey( path ) ) {
+                return -1;
+            }
+            owners.put( path, owner );
+            long fence = fences.getOrDefault( path, 0L ) + 1;
+            fences.put( path, fence );
+            return fence;
+        }
+
+
+        @Override
+        public synchronized boolean renew( final String path, final UUID owner, final long fence,
+                                           final long leaseMillis ) {
+            return owner.equals( owners.get( path ) );
+        }
+
+
+        @Override
+        public synchronized void release( final String path, final UUID owner ) {
+            releases.incrementAndGet();
+            owners.remove( path, owner );
+        }
+
+
+        synchronized boolean isHeld( final String path ) {
+            return owners.containsKey( path );
+        }
+    }
+}
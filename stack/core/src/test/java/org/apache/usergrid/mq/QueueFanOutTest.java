@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq;
+
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.apache.usergrid.mq.QueueSet.QueueInfo;
+import org.apache.usergrid.mq.cassandra.QueueFanOut;
+import org.apache.usergrid.persistence.exceptions.QueueException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class QueueFanOutTest {
+
+    @Test
+    public void writesEverySubscriberOnce() {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            final Set<String> written = ConcurrentHashMap.newKeySet();
+            final AtomicInteger duplicates = new AtomicInteger();
+
+            QueueFanOut fanOut = new QueueFanOut( executor, 7, 3, null );
+
+            int subscribers = fanOut.fanOut( "/publisher", after -> page( after, 25, 100 ), batch -> {
+                assertTrue( batch.size() <= 7 );
+                for ( QueueInfo q : batch ) {
+                    if ( !written.add( q.getPath() ) ) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            } );
+
+            assertEquals( 100, subscribers );
+            assertEquals( 100, written.size() );
+            assertEquals( 0, duplicates.get() );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void boundsBatchesInFlight() {
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try {
+            final AtomicInteger inFlight = new AtomicInteger();
+            final AtomicInteger maxInFlight = new AtomicInteger();
+
+            QueueFanOut fanOut = new QueueFanOut( executor, 1, 2, null );
+
+            fanOut.fanOut( "/publisher", after -> page( after, 50, 50 ), batch -> {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet( current, Math::max );
+                try {
+                    Thread.sleep( 1 );
+                }
+                catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+            } );
+
+            assertTrue( "Max in flight was " + maxInFlight.get(), maxInFlight.get() <= 2 );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void noSubscribers() {
+        int subscribers = QueueFanOut.DIRECT.fanOut( "/publisher", after -> new QueueSet(), batch -> fail() );
+
+        assertEquals( 0, subscribers );
+    }
+
+
+    @Test
+    public void failedBatchFailsPost() {
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try {
+            QueueFanOut fanOut = new QueueFanOut( executor, 10, 2, null );
+
+            fanOut.fanOut( "/publisher", after -> page( after, 100, 30 ), batch -> {
+                throw new RuntimeException( "write failed" );
+            } );
+
+            fail( "The failed batch should fail the post" );
+        }
+        catch ( QueueException e ) {
+            assertEquals( "write failed", e.getCause().getMessage() );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Page through subscribers /sub/000 to /sub/(total - 1) after the given path
+     */
+    private static QueueSet page( String after, int pageSize, int total ) {
+        int first = after == null ? 0 : Integer.parseInt( after.substring( "/sub/".length() ) ) + 1;
+
+        QueueSet page = new QueueSet();
+        for ( int i = first; i < Math.min( first + pageSize, total ); i++ ) {
+            page.addQueue( String.format( "/sub/%03d", i ), UUID.randomUUID() );
+        }
+        page.setMore( first + pageSize < total );
+        return page;
+    }
+}
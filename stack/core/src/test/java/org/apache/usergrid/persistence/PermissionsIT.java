@@ -36,6 +36,7 @@ import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 
@@ -97,6 +98,33 @@ public class PermissionsIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void testRevokedPermissionsAreNotCached() throws Exception {
+        UUID applicationId = setup.createApplication( "permissionsTest",
+            "testRevokedPermissionsAreNotCached" + UUIDGenerator.newTimeUUID() );
+
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+
+        Entity role = em.createRole( "reader", null, 0 );
+
+        em.grantRolePermission( "reader", "users:access:*" );
+        em.grantRolePermission( "reader", "groups:access:*" );
+
+        // read once so the permissions are cached
+        assertEquals( 2, em.getRolePermissions( "reader" ).size() );
+
+        em.revokeRolePermission( "reader", "groups:access:*" );
+
+        Set<String> permissions = em.getRolePermissions( "reader" );
+        assertEquals( "revoked permission must not be read from the cache", 1, permissions.size() );
+        assertTrue( permissions.contains( "users:access:*" ) );
+
+        em.deleteRole( "reader", Optional.fromNullable( role ) );
+
+        assertTrue( "deleted role must not keep its permissions", em.getRolePermissions( "reader" ).isEmpty() );
+    }
+
+
     @Test
     public void testPermissions() throws Exception {
         logger.info( "PermissionsIT.testPermissions" );
@@ -26,8 +26,10 @@ import org.slf4j.LoggerFactory;
 import org.usergrid.Simple;
 
 import org.apache.usergrid.persistence.entities.SampleEntity;
+import org.apache.usergrid.persistence.entities.User;
 
 import static org.apache.usergrid.utils.JsonUtils.mapToFormattedJsonString;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -125,4 +127,28 @@ public class SchemaTest {
 
         assertTrue( Schema.getDefaultSchema().isPropertyIndexed( "things", "foo" ) );
     }
+
+
+    @Test
+    public void setTypedPropertyConverted() {
+        User user = new User();
+
+        user.setProperty( "deactivated", 1234 );
+        assertEquals( Long.valueOf( 1234 ), user.getDeactivated() );
+        assertEquals( 1234L, user.getProperty( "deactivated" ) );
+
+        user.setProperty( "username", "edanuff" );
+        assertEquals( "edanuff", user.getUsername() );
+        assertEquals( "edanuff", user.getProperties().get( "username" ) );
+    }
+
+
+    @Test
+    public void setDynamicProperty() {
+        User user = new User();
+
+        user.setProperty( "foo", "bar" );
+        assertEquals( "bar", user.getProperty( "foo" ) );
+        assertEquals( "bar", user.getDynamicProperties().get( "foo" ) );
+    }
 }
@@ -47,6 +47,20 @@ public interface EntityCollectionManager {
     Observable<Entity> write( Entity entity, String region );
 
 
+    /**
+     * Write a new version of an entity of which only some fields changed since the version it was read from.  The
+     * entity is stored and indexed whole as with {@link #write(Entity, String)}, only the uniqueness verification is
+     * narrowed to the unique fields that changed, since the unchanged values are already held by this entity.
+     *
+     * @param entity The entity with all of its fields
+     * @param changedFields The names of the fields that changed
+     * @param region The authoritative region for the entity type or null to use current region.
+     *
+     * @return the Observable with the updated entity in the body
+     */
+    Observable<Entity> update( Entity entity, Collection<String> changedFields, String region );
+
+
     /**
      * @param entityId MarkCommit the entity as deleted.  Will not actually remove it from cassandra.  This operation will
      * also remove all unique properties for this entity
@@ -35,7 +35,9 @@ import org.apache.usergrid.persistence.collection.scheduler.CollectionSchedulerF
 import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
 import org.apache.usergrid.persistence.collection.serialization.impl.SerializationModule;
 import org.apache.usergrid.persistence.collection.service.impl.ServiceModule;
+import org.apache.usergrid.persistence.core.executor.Bulkheads;
 import org.apache.usergrid.persistence.core.executor.TaskExecutorFactory;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.rx.RxTaskScheduler;
 import org.apache.usergrid.persistence.core.rx.RxTaskSchedulerImpl;
 
@@ -88,7 +90,8 @@ public abstract class CollectionModule extends AbstractModule {
     @Inject
     @CollectionExecutorScheduler
     @Singleton
-    public RxTaskScheduler getRxTaskScheduler( final CollectionSchedulerFig collectionSchedulerFig ){
+    public RxTaskScheduler getRxTaskScheduler( final CollectionSchedulerFig collectionSchedulerFig,
+                                               final MetricsFactory metricsFactory ){
 
         final String poolName = collectionSchedulerFig.getIoSchedulerName();
         final int threadCount = collectionSchedulerFig.getMaxIoThreads();
@@ -97,7 +100,16 @@ public abstract class CollectionModule extends AbstractModule {
         final ThreadPoolExecutor executor = TaskExecutorFactory.createTaskExecutor( poolName, threadCount, 0,
             TaskExecutorFactory.RejectionAction.CALLERRUNS );
 
-        final RxTaskScheduler taskScheduler = new RxTaskSchedulerImpl(executor  );
+        if ( !collectionSchedulerFig.getBulkheadsEnabled() ) {
+            return new RxTaskSchedulerImpl( executor );
+        }
+
+        // one bulkhead per application, so a single application can't occupy the whole pool
+        final Bulkheads bulkheads = new Bulkheads( executor, poolName, collectionSchedulerFig.getBulkheadShare(),
+            collectionSchedulerFig.getBulkheadQueueSize(), TaskExecutorFactory.RejectionAction.CALLERRUNS,
+            Bulkheads.parseWeights( collectionSchedulerFig.getBulkheadWeights() ), metricsFactory );
+
+        final RxTaskScheduler taskScheduler = new RxTaskSchedulerImpl( executor, bulkheads );
 
         return taskScheduler;
     }
@@ -60,7 +60,9 @@ import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.functions.Action1;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -108,6 +110,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
     private final ApplicationScope applicationScope;
     private final RxTaskScheduler rxTaskScheduler;
+    private final Scheduler ioScheduler;
 
     private final UniqueValuesService uniqueValuesService;
     private final ActorSystemManager actorSystemManager;
@@ -166,6 +169,9 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
 
         this.applicationScope = applicationScope;
+        // the application's bulkhead, so its I/O can't starve other applications
+        this.ioScheduler =
+            rxTaskScheduler.getAsyncIOScheduler( applicationScope.getApplication().getUuid().toString() );
         this.mvccLogEntrySerializationStrategy = mvccLogEntrySerializationStrategy;
         this.writeTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.write");
         this.deleteTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.delete");
@@ -194,12 +200,38 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
         Observable<CollectionIoEvent<MvccEntity>> observable =  stageRunner( writeData, writeStart );
 
+        return commit( observable );
+    }
+
+
+    @Override
+    public Observable<Entity> update( final Entity entity, final Collection<String> changedFields,
+                                      final String region ) {
+
+        //do our input validation
+        Preconditions.checkNotNull( entity, "Entity is required in the new stage of the mvcc write" );
+        Preconditions.checkNotNull( changedFields, "Changed fields are required for an update" );
+
+        ValidationUtils.verifyIdentity( entity.getId() );
+
+
+        // create our observable and start the write
+        final CollectionIoEvent<Entity> writeData = new CollectionIoEvent<Entity>( applicationScope, entity, region );
+
+        Observable<CollectionIoEvent<MvccEntity>> observable =  stageRunner( writeData, writeStart,
+            ioEvent -> writeVerifyUnique.call( ioEvent, changedFields ) );
+
+        return commit( observable );
+    }
+
+
+    private Observable<Entity> commit( final Observable<CollectionIoEvent<MvccEntity>> observable ) {
 
         final Observable<Entity> write = observable.map( writeCommit ).map(ioEvent -> {
 
             // fire this in the background so we don't block writes
             Observable.just( ioEvent ).compose( uniqueCleanup )
-                .subscribeOn( rxTaskScheduler.getAsyncIOScheduler() ).subscribe();
+                .subscribeOn( ioScheduler ).subscribe();
             return ioEvent;
 
         }) // now extract the ioEvent we need to return and update the version
@@ -442,17 +474,24 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
     // fire the stages
     public Observable<CollectionIoEvent<MvccEntity>> stageRunner( CollectionIoEvent<Entity> writeData,
                                                                   WriteStart writeState ) {
+        return stageRunner( writeData, writeState, writeVerifyUnique );
+    }
+
+
+    private Observable<CollectionIoEvent<MvccEntity>> stageRunner( CollectionIoEvent<Entity> writeData,
+                                                                   WriteStart writeState,
+                                                                   Action1<CollectionIoEvent<MvccEntity>> verifyUnique ) {
 
         return Observable.just( writeData ).map( writeState ).flatMap( mvccEntityCollectionIoEvent -> {
 
             Observable<CollectionIoEvent<MvccEntity>> uniqueObservable =
-                Observable.just( mvccEntityCollectionIoEvent ).subscribeOn( rxTaskScheduler.getAsyncIOScheduler() )
-                    .doOnNext( writeVerifyUnique );
+                Observable.just( mvccEntityCollectionIoEvent ).subscribeOn( ioScheduler )
+                    .doOnNext( verifyUnique );
 
 
             // optimistic verification
             Observable<CollectionIoEvent<MvccEntity>> optimisticObservable =
-                Observable.just( mvccEntityCollectionIoEvent ).subscribeOn( rxTaskScheduler.getAsyncIOScheduler() )
+                Observable.just( mvccEntityCollectionIoEvent ).subscribeOn( ioScheduler )
                     .doOnNext( writeOptimisticVerify );
 
             final Observable<CollectionIoEvent<MvccEntity>> zip =
@@ -118,11 +118,34 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         if ( actorSystemFig != null && actorSystemFig.getEnabled() && uniqueValuesFig.getUnqiueValueViaCluster() ) {
             verifyUniqueFieldsAkka( ioevent );
         } else {
-            verifyUniqueFields( ioevent );
+            verifyUniqueFields( ioevent, null );
+        }
+    }
+
+
+    /**
+     * Verify only the unique fields with the given names, the other unique values of the entity are known to be
+     * held by it already.
+     */
+    public void call( final CollectionIoEvent<MvccEntity> ioevent, final Collection<String> changedFields ) {
+        final Set<String> names = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        names.addAll( changedFields );
+
+        if ( actorSystemFig != null && actorSystemFig.getEnabled() && uniqueValuesFig.getUnqiueValueViaCluster() ) {
+            verifyUniqueFieldsAkka( ioevent, names );
+        } else {
+            verifyUniqueFields( ioevent, names );
         }
     }
 
     private void verifyUniqueFieldsAkka(CollectionIoEvent<MvccEntity> ioevent) {
+        verifyUniqueFieldsAkka( ioevent, null );
+    }
+
+    /**
+     * @param changedFields the names of the fields to reserve, or null to reserve all unique fields
+     */
+    private void verifyUniqueFieldsAkka(CollectionIoEvent<MvccEntity> ioevent, Set<String> changedFields) {
 
         MvccValidationUtils.verifyMvccEntityWithEntity( ioevent.getEvent() );
 
@@ -140,7 +163,8 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
             authoritativeRegion = actorSystemFig.getRegionLocal();
         }
         try {
-            akkaUvService.reserveUniqueValues( applicationScope, entity, mvccEntity.getVersion(), authoritativeRegion );
+            akkaUvService.reserveUniqueValues(
+                applicationScope, entity, mvccEntity.getVersion(), authoritativeRegion, changedFields );
 
         } catch (UniqueValueException e) {
             Map<String, Field> violations = new HashMap<>();
@@ -149,7 +173,10 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         }
     }
 
-    private void verifyUniqueFields(CollectionIoEvent<MvccEntity> ioevent) {
+    /**
+     * @param changedFields the names of the fields to verify, or null to verify all unique fields
+     */
+    private void verifyUniqueFields(CollectionIoEvent<MvccEntity> ioevent, Set<String> changedFields) {
 
         MvccValidationUtils.verifyMvccEntityWithEntity( ioevent.getEvent() );
 
@@ -171,6 +198,10 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
 
         for ( final Field field : EntityUtils.getUniqueFields(entity)) {
 
+            if ( changedFields != null && !changedFields.contains( field.getName() ) ) {
+                continue;
+            }
+
             // if it's unique, create a function to validate it and add it to the list of
             // concurrent validations
 
@@ -42,6 +42,26 @@ public interface CollectionSchedulerFig extends GuicyFig {
      */
     String COLLECTION_SCHEDULER_NAME = "scheduler.collection.poolName";
 
+    /**
+     * Whether each application gets its own bulkhead in the collection pool
+     */
+    String COLLECTION_SCHEDULER_BULKHEADS = "scheduler.collection.bulkhead.enabled";
+
+    /**
+     * Percentage of the collection pool's threads one application may occupy
+     */
+    String COLLECTION_SCHEDULER_BULKHEAD_SHARE = "scheduler.collection.bulkhead.share";
+
+    /**
+     * Tasks an application may queue while its threads are busy, before they run in the calling thread
+     */
+    String COLLECTION_SCHEDULER_BULKHEAD_QUEUE = "scheduler.collection.bulkhead.queueSize";
+
+    /**
+     * Weights of applications that get a multiple of the share, as "applicationUuid:weight,..."
+     */
+    String COLLECTION_SCHEDULER_BULKHEAD_WEIGHTS = "scheduler.collection.bulkhead.weights";
+
 
     @Default( "20" )
     @Key( COLLECTION_SCHEDULER_THREADS )
@@ -50,4 +70,20 @@ public interface CollectionSchedulerFig extends GuicyFig {
     @Default( "Usergrid-Collection-Pool" )
     @Key( COLLECTION_SCHEDULER_NAME )
     String getIoSchedulerName();
+
+    @Default( "false" )
+    @Key( COLLECTION_SCHEDULER_BULKHEADS )
+    boolean getBulkheadsEnabled();
+
+    @Default( "50" )
+    @Key( COLLECTION_SCHEDULER_BULKHEAD_SHARE )
+    int getBulkheadShare();
+
+    @Default( "1000" )
+    @Key( COLLECTION_SCHEDULER_BULKHEAD_QUEUE )
+    int getBulkheadQueueSize();
+
+    @Default( "" )
+    @Key( COLLECTION_SCHEDULER_BULKHEAD_WEIGHTS )
+    String getBulkheadWeights();
 }
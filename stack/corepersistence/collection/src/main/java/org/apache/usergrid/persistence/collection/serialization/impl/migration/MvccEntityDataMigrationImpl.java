@@ -41,6 +41,7 @@ import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntityS
 import org.apache.usergrid.persistence.collection.serialization.impl.UniqueValueImpl;
 import org.apache.usergrid.persistence.core.migration.data.DataMigration;
 import org.apache.usergrid.persistence.core.migration.data.DataMigrationException;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationExecutor;
 import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
 import org.apache.usergrid.persistence.core.migration.data.MigrationRelationship;
 import org.apache.usergrid.persistence.core.migration.data.ProgressObserver;
@@ -60,7 +61,6 @@ import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 import rx.Observable;
 import rx.Subscriber;
-import rx.schedulers.Schedulers;
 
 
 /**
@@ -72,6 +72,11 @@ public class MvccEntityDataMigrationImpl implements DataMigration{
 
     private static final Logger logger = LoggerFactory.getLogger( MvccEntityDataMigrationImpl.class );
 
+    /**
+     * The name the migrated applications are saved with
+     */
+    private static final String MIGRATION_NAME = "mvcc_entity_data";
+
     private final Keyspace keyspace;
     private final Session session;
     private final VersionedMigrationSet<MvccEntitySerializationStrategy> allVersions;
@@ -79,6 +84,7 @@ public class MvccEntityDataMigrationImpl implements DataMigration{
     private final UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
     private final MvccLogEntrySerializationStrategy mvccLogEntrySerializationStrategy;
     private final MigrationDataProvider<EntityIdScope> migrationDataProvider;
+    private final DataMigrationExecutor dataMigrationExecutor;
 
 
     @Inject
@@ -88,7 +94,8 @@ public class MvccEntityDataMigrationImpl implements DataMigration{
                                         final MvccEntitySerializationStrategyV3Impl mvccEntitySerializationStrategyV3,
                                         final UniqueValueSerializationStrategy uniqueValueSerializationStrategy,
                                         final MvccLogEntrySerializationStrategy mvccLogEntrySerializationStrategy,
-                                        final MigrationDataProvider<EntityIdScope> migrationDataProvider ) {
+                                        final MigrationDataProvider<EntityIdScope> migrationDataProvider,
+                                        final DataMigrationExecutor dataMigrationExecutor ) {
         this.keyspace = keyspace;
         this.session = session;
         this.allVersions = allVersions;
@@ -96,6 +103,7 @@ public class MvccEntityDataMigrationImpl implements DataMigration{
         this.uniqueValueSerializationStrategy = uniqueValueSerializationStrategy;
         this.mvccLogEntrySerializationStrategy = mvccLogEntrySerializationStrategy;
         this.migrationDataProvider = migrationDataProvider;
+        this.dataMigrationExecutor = dataMigrationExecutor;
     }
 
 
@@ -125,8 +133,9 @@ public class MvccEntityDataMigrationImpl implements DataMigration{
             allVersions.getMigrationRelationship( currentVersion );
 
 
-        final Observable<List<EntityToSaveMessage>> migrated =
-            migrationDataProvider.getData().subscribeOn( Schedulers.io() ).flatMap( entityToSaveList -> Observable.just( entityToSaveList ).flatMap( entityIdScope -> {
+        //applications are migrated and checkpointed one at a time, the executor bounds the concurrent batches
+        dataMigrationExecutor.migrate( MIGRATION_NAME, migration.to.getImplementationVersion(), migrationDataProvider,
+            observer, ( entityIdScope, batchWriter ) -> {
 
                 //load the entity
                 final ApplicationScope currentScope = entityIdScope.getApplicationScope();
@@ -235,7 +244,11 @@ public class MvccEntityDataMigrationImpl implements DataMigration{
 
                         }
 
-                        executeBatch( migration.to.getImplementationVersion(), totalBatch, observer, atomicLong, uniqueBatch );
+                        batchWriter.write( entities.size(), () -> {
+                            executeBatch( migration.to.getImplementationVersion(), totalBatch, observer, atomicLong,
+                                uniqueBatch );
+                            return null;
+                        } );
 
                         //now run our cleanup task
 
@@ -245,11 +258,9 @@ public class MvccEntityDataMigrationImpl implements DataMigration{
 
 
                         }
-                    } ).subscribeOn(Schedulers.io());
-
-            }, 10) );
+                    } );
 
-        migrated.toBlocking().lastOrDefault(null);
+            } );
 
         return migration.to.getImplementationVersion();
     }
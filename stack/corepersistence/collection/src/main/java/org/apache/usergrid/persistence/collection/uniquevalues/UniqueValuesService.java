@@ -26,6 +26,7 @@ import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
 
+import java.util.Set;
 import java.util.UUID;
 
 
@@ -47,6 +48,20 @@ public interface UniqueValuesService extends RouterProducer {
     void reserveUniqueValues( ApplicationScope scope, Entity entity, UUID version, String region )
         throws UniqueValueException;
 
+    /**
+     * Check that the named unique values are unique and reserve them for a limited time, the other unique values
+     * of the entity must already be held by it.
+     *
+     * @param scope Application scope of entity.
+     * @param entity Entity with unique values to be confirmed.
+     * @param version Version of entity claiming unique values.
+     * @param region Authoritative Region to be used for this entity or null to use current region.
+     * @param fieldNames Names of the unique fields to reserve, case insensitive.
+     * @throws UniqueValueException if unique values cannot be confirmed.
+     */
+    void reserveUniqueValues( ApplicationScope scope, Entity entity, UUID version, String region,
+                              Set<String> fieldNames ) throws UniqueValueException;
+
     /**
      * Confirm unique values that were reserved earlier.
      *
@@ -92,19 +92,28 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
     public void reserveUniqueValues(
         ApplicationScope scope, Entity entity, UUID version, String region ) throws UniqueValueException {
 
+        reserveUniqueValues( scope, entity, version, region, null );
+    }
+
+
+    @Override
+    public void reserveUniqueValues( ApplicationScope scope, Entity entity, UUID version, String region,
+                                     Set<String> fieldNames ) throws UniqueValueException {
+
         ready();
 
         try {
             for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
+                if (isReserved( field, fieldNames )) {
                     reserveUniqueField( scope, entity, version, field, region );
                 }
             }
 
         } catch ( UniqueValueException e ) {
 
+            // only cancel what this call reserved, the values the entity keeps stay with it
             for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
+                if (isReserved( field, fieldNames )) {
                     try {
                         cancelUniqueField( scope, entity, version, field, region );
                     } catch (Throwable ignored) {
@@ -117,6 +126,14 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
     }
 
 
+    /**
+     * @param fieldNames the names of the unique fields to reserve, or null to reserve all of them
+     */
+    private static boolean isReserved( Field field, Set<String> fieldNames ) {
+        return field.isUnique() && ( fieldNames == null || fieldNames.contains( field.getName() ) );
+    }
+
+
     @Override
     public void confirmUniqueValues(
         ApplicationScope scope, Entity entity, UUID version, String region ) throws UniqueValueException {
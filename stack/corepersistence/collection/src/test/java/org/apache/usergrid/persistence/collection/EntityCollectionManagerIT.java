@@ -57,6 +57,7 @@ import rx.Observable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -149,6 +150,42 @@ public class EntityCollectionManagerIT extends AbstractUniqueValueTest {
     }
 
 
+    @Test
+    public void updateVerifiesChangedUniqueValues() {
+
+        ApplicationScope context = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        EntityCollectionManager manager = factory.createCollectionManager( context );
+
+        Entity first = new Entity( new SimpleId( "test" ) );
+        first.setField( new StringField( "name", "first", true ) );
+        manager.write( first, null ).toBlocking().last();
+
+        Entity second = new Entity( new SimpleId( "test" ) );
+        second.setField( new StringField( "name", "second", true ) );
+        second = manager.write( second, null ).toBlocking().last();
+
+        // an unchanged unique value is kept by the entity
+        second.setField( new IntegerField( "count", 1 ) );
+        Entity updated = manager.update( second, Collections.singleton( "count" ), null ).toBlocking().last();
+
+        assertNotNull( "Version was assigned", updated.getVersion() );
+        assertEquals( second.getId(),
+            manager.getIdField( "test", new StringField( "name", "second", true ) ).toBlocking().last() );
+
+        // a changed unique value is verified
+        try {
+            second.setField( new StringField( "name", "first", true ) );
+            manager.update( second, Collections.singleton( "name" ), null ).toBlocking().last();
+            fail( "Update should have thrown an exception" );
+        }
+        catch ( Exception ex ) {
+            WriteUniqueVerifyException e = ( WriteUniqueVerifyException ) ex;
+            assertEquals( 1, e.getViolations().size() );
+        }
+    }
+
+
     @Test
     public void writeAndLoad() {
 
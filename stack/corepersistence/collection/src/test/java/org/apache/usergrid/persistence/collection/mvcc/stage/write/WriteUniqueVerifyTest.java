@@ -19,12 +19,16 @@ package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
 
+import java.util.Collections;
+import java.util.Set;
+
 import com.datastax.driver.core.Session;
 
 import com.google.inject.Inject;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import org.apache.usergrid.persistence.actorsystem.ActorSystemFig;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.collection.AbstractUniqueValueTest;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
@@ -37,6 +41,7 @@ import org.apache.usergrid.persistence.collection.serialization.UniqueValueSeria
 
 import org.apache.usergrid.persistence.core.CassandraConfig;
 
+import org.apache.usergrid.persistence.collection.uniquevalues.UniqueValuesFig;
 import org.apache.usergrid.persistence.collection.uniquevalues.UniqueValuesService;
 
 import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
@@ -48,9 +53,12 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 
 import static org.apache.usergrid.persistence.collection.mvcc.stage.TestEntityGenerator.fromEntity;
 import static org.apache.usergrid.persistence.collection.mvcc.stage.TestEntityGenerator.generateEntity;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 
@@ -116,6 +124,36 @@ public class WriteUniqueVerifyTest extends AbstractUniqueValueTest {
         verify(batch, never()).execute();
     }
 
+
+    @Test
+    public void testClusterReservesChangedFields() throws Exception {
+
+        final ApplicationScope collectionScope = mock( ApplicationScope.class );
+        final ActorSystemFig actorSystemFig = mock( ActorSystemFig.class );
+        final UniqueValuesFig uniqueValuesFig = mock( UniqueValuesFig.class );
+        final UniqueValuesService akkaUvService = mock( UniqueValuesService.class );
+
+        when( actorSystemFig.getEnabled() ).thenReturn( true );
+        when( actorSystemFig.getRegionLocal() ).thenReturn( "default" );
+        when( uniqueValuesFig.getUnqiueValueViaCluster() ).thenReturn( true );
+
+        final Entity entity = generateEntity();
+        final MvccEntity mvccEntity = fromEntity( entity );
+
+        WriteUniqueVerify newStage = new WriteUniqueVerify( uvstrat, fig, mock( Keyspace.class ), cassandraConfig,
+            actorSystemFig, uniqueValuesFig, akkaUvService, session );
+
+        newStage.call( new CollectionIoEvent<>( collectionScope, mvccEntity ), Collections.singleton( "Name" ) );
+
+        // only the changed field is reserved, whatever the case of its name
+        final ArgumentCaptor<Set> fieldNames = ArgumentCaptor.forClass( Set.class );
+        verify( akkaUvService ).reserveUniqueValues( same( collectionScope ), same( entity ),
+            eq( entity.getVersion() ), eq( "default" ), fieldNames.capture() );
+
+        assertTrue( fieldNames.getValue().contains( "name" ) );
+        assertEquals( 1, fieldNames.getValue().size() );
+    }
+
 }
 
 
@@ -37,6 +37,7 @@ import org.apache.usergrid.persistence.collection.serialization.impl.CollectionD
 import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl;
 import org.apache.usergrid.persistence.core.guice.DataMigrationResetRule;
 import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationExecutor;
 import org.apache.usergrid.persistence.core.migration.data.DataMigrationManager;
 import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
 import org.apache.usergrid.persistence.core.migration.data.MigrationRelationship;
@@ -97,6 +98,8 @@ public abstract class AbstractMvccEntityDataMigrationV1ToV3ImplTest
     public UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
     @Inject
     public MvccLogEntrySerializationStrategy mvccLogEntrySerializationStrategy;
+    @Inject
+    public DataMigrationExecutor dataMigrationExecutor;
 
     /**
      * Rule to do the resets we need
@@ -151,7 +154,7 @@ public abstract class AbstractMvccEntityDataMigrationV1ToV3ImplTest
         assertEquals( "Same instance for to", v3Impl.getClass(), tuple.to.getClass() );
 
 
-        MvccEntityDataMigrationImpl mvccEntityDataMigrationImpl = new MvccEntityDataMigrationImpl(keyspace, session, allVersions, mvccEntitySerializationStrategyV3, uniqueValueSerializationStrategy,  mvccLogEntrySerializationStrategy, migrationProvider);
+        MvccEntityDataMigrationImpl mvccEntityDataMigrationImpl = new MvccEntityDataMigrationImpl(keyspace, session, allVersions, mvccEntitySerializationStrategyV3, uniqueValueSerializationStrategy,  mvccLogEntrySerializationStrategy, migrationProvider, dataMigrationExecutor);
 
 
         //now migration
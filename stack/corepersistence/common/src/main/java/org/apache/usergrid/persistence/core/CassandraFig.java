@@ -59,6 +59,9 @@ public interface CassandraFig extends GuicyFig {
     String LOCKS_SHARED_POOL_FLAG = "cassandra.lock.use_shared_pool";
     String LOCKS_CONNECTIONS = "cassandra.lock.connections";
     String LOCKS_EXPIRATION = "cassandra.lock.expiration.milliseconds";
+    String LOCKS_IMPLEMENTATION = "cassandra.lock.implementation";
+    String LOCKS_LEASE = "cassandra.lock.lease.milliseconds";
+    String LOCKS_LEASE_RETENTION = "cassandra.lock.lease.retention.milliseconds";
 
     String LOCK_MANAGER_INIT_RETRIES = "cassandra.lock.init.retries";
     String LOCK_MANAGER_INIT_INTERVAL = "cassandra.lock.init.interval";
@@ -66,6 +69,8 @@ public interface CassandraFig extends GuicyFig {
     // re-usable default values
     String DEFAULT_CONNECTION_POOLSIZE = "15";
     String DEFAULT_LOCKS_EXPIRATION = "3600000";  // 1 hour
+    String DEFAULT_LOCKS_LEASE = "30000";  // 30 seconds
+    String DEFAULT_LOCKS_LEASE_RETENTION = "86400000";  // 1 day
     String DEFAULT_LOCAL_DC = "";
     String DEFAULT_USERNAME = "";
     String DEFAULT_PASSWORD = "";
@@ -234,6 +239,30 @@ public interface CassandraFig extends GuicyFig {
     @Default(DEFAULT_LOCKS_EXPIRATION)
     int getLocksExpiration();
 
+    /**
+     * Returns the lock manager to use, "astyanax" for the row lock recipe or "lease" for leases taken with lightweight
+     * transactions
+     */
+    @Key( LOCKS_IMPLEMENTATION )
+    @Default("astyanax")
+    String getLocksImplementation();
+
+    /**
+     * Return the duration of a lock lease.  Held leases are renewed, so this only bounds how long the lock of a dead
+     * node stays held
+     */
+    @Key( LOCKS_LEASE )
+    @Default(DEFAULT_LOCKS_LEASE)
+    int getLocksLease();
+
+    /**
+     * Return how long the fencing token of a lock that is no longer leased is kept.  After that the row of the lock
+     * expires, and the fencing tokens of the lock start over
+     */
+    @Key( LOCKS_LEASE_RETENTION )
+    @Default(DEFAULT_LOCKS_LEASE_RETENTION)
+    long getLocksLeaseRetention();
+
     /**
      * How many times to attempt lock keyspace and column family creation
      */
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.core.executor;
+
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Partitions a shared thread pool into bulkheads, for instance one per application.  Each bulkhead may occupy at most
+ * its share of the pool's threads, scaled by its weight, and queues the rest of its tasks in a bounded queue of its
+ * own.  A bulkhead that saturates therefore only delays its own tasks, the threads it can't take stay available to
+ * the others.  Tasks a bulkhead can neither run nor queue are handled by the rejection action.
+ *
+ * Each bulkhead registers gauges for its active and queued tasks and its saturation, the fraction of its threads in
+ * use, and a meter of its rejected tasks.
+ */
+public class Bulkheads {
+
+    private static final Logger logger = LoggerFactory.getLogger( Bulkheads.class );
+
+    private final ThreadPoolExecutor executor;
+    private final String poolName;
+    private final int baseConcurrency;
+    private final int maxQueueSize;
+    private final TaskExecutorFactory.RejectionAction rejectionAction;
+    private final Map<String, Integer> weights;
+    private final MetricsFactory metricsFactory;
+
+    private final ConcurrentHashMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param executor The shared pool the tasks run in
+     * @param poolName The name used in log messages and metrics
+     * @param share The percentage of the pool's threads a bulkhead of weight 1 may occupy
+     * @param maxQueueSize The number of tasks a bulkhead may queue while all of its threads are busy
+     * @param rejectionAction What to do with tasks beyond that
+     * @param weights The weights of bulkheads by name, bulkheads without one have weight 1
+     * @param metricsFactory The factory to register metrics with, may be null
+     */
+    public Bulkheads( final ThreadPoolExecutor executor, final String poolName, final int share,
+                      final int maxQueueSize, final TaskExecutorFactory.RejectionAction rejectionAction,
+                      final Map<String, Integer> weights, final MetricsFactory metricsFactory ) {
+
+        Preconditions.checkNotNull( executor, "executor must not be null" );
+        Preconditions.checkArgument( share > 0 && share <= 100, "share must be between 1 and 100" );
+        Preconditions.checkArgument( maxQueueSize >= 0, "maxQueueSize must not be negative" );
+
+        this.executor = executor;
+        this.poolName = poolName;
+        this.baseConcurrency = Math.max( 1, executor.getMaximumPoolSize() * share / 100 );
+        this.maxQueueSize = maxQueueSize;
+        this.rejectionAction = rejectionAction;
+        this.weights = weights != null ? weights : Collections.<String, Integer>emptyMap();
+        this.metricsFactory = metricsFactory;
+    }
+
+
+    /**
+     * Parse weights of the form "name:weight,name:weight"
+     */
+    public static Map<String, Integer> parseWeights( final String weights ) {
+        final Map<String, Integer> parsed = new ConcurrentHashMap<>();
+
+        if ( weights == null ) {
+            return parsed;
+        }
+
+        for ( String entry : weights.split( "," ) ) {
+            entry = entry.trim();
+            if ( entry.isEmpty() ) {
+                continue;
+            }
+
+            final int separator = entry.lastIndexOf( ':' );
+            Preconditions.checkArgument( separator > 0, "Weight %s must be of the form name:weight", entry );
+
+            final int weight = Integer.parseInt( entry.substring( separator + 1 ).trim() );
+            Preconditions.checkArgument( weight > 0, "Weight %s must be positive", entry );
+
+            parsed.put( entry.substring( 0, separator ).trim(), weight );
+        }
+
+        return parsed;
+    }
+
+
+    /**
+     * Get the executor of the bulkhead with the given name, creating it on first use
+     */
+    public Executor getBulkhead( final String name ) {
+        final Bulkhead bulkhead = bulkheads.get( name );
+        if ( bulkhead != null ) {
+            return bulkhead;
+        }
+        return bulkheads.computeIfAbsent( name, Bulkhead::new );
+    }
+
+
+    /**
+     * The number of threads the named bulkhead may occupy
+     */
+    public int getMaxConcurrency( final String name ) {
+        final Integer weight = weights.get( name );
+        final long concurrency = ( long ) baseConcurrency * ( weight != null ? weight : 1 );
+        return ( int ) Math.min( concurrency, executor.getMaximumPoolSize() );
+    }
+
+
+    private final class Bulkhead implements Executor {
+
+        private final String name;
+        private final int maxConcurrency;
+
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final Meter rejected;
+
+
+        private Bulkhead( final String name ) {
+            this.name = name;
+            this.maxConcurrency = getMaxConcurrency( name );
+
+            if ( metricsFactory != null ) {
+                final String prefix = poolName + "." + name;
+                metricsFactory.addGauge( Bulkheads.class, prefix + ".active", ( Gauge<Integer> ) active::get );
+                metricsFactory.addGauge( Bulkheads.class, prefix + ".queued", ( Gauge<Integer> ) queued::get );
+                metricsFactory.addGauge( Bulkheads.class, prefix + ".saturation",
+                    ( Gauge<Double> ) () -> ( double ) active.get() / maxConcurrency );
+                this.rejected = metricsFactory.getMeter( Bulkheads.class, prefix + ".rejected" );
+            }
+            else {
+                this.rejected = null;
+            }
+        }
+
+
+        @Override
+        public void execute( final Runnable task ) {
+            if ( acquire() ) {
+                dispatch( task );
+                return;
+            }
+
+            if ( queued.incrementAndGet() > maxQueueSize ) {
+                queued.decrementAndGet();
+                reject( task );
+                return;
+            }
+
+            queue.offer( task );
+
+            // a thread may have been released between the failed acquire and the offer
+            if ( acquire() ) {
+                final Runnable next = poll();
+                if ( next != null ) {
+                    dispatch( next );
+                }
+                else {
+                    active.decrementAndGet();
+                }
+            }
+        }
+
+
+        private boolean acquire() {
+            while ( true ) {
+                final int current = active.get();
+                if ( current >= maxConcurrency ) {
+                    return false;
+                }
+                if ( active.compareAndSet( current, current + 1 ) ) {
+                    return true;
+                }
+            }
+        }
+
+
+        private Runnable poll() {
+            final Runnable task = queue.poll();
+            if ( task != null ) {
+                queued.decrementAndGet();
+            }
+            return task;
+        }
+
+
+        /**
+         * Run the task in the shared pool, holding one of this bulkhead's threads until its queue is empty
+         */
+        private void dispatch( final Runnable task ) {
+            try {
+                executor.execute( () -> runAll( task ) );
+            }
+            catch ( RejectedExecutionException ree ) {
+                active.decrementAndGet();
+                throw ree;
+            }
+        }
+
+
+        private void runAll( final Runnable task ) {
+            Runnable next = task;
+
+            while ( true ) {
+                while ( next != null ) {
+                    try {
+                        next.run();
+                    }
+                    catch ( RuntimeException e ) {
+                        logger.error( "Task in bulkhead {} of {} failed", name, poolName, e );
+                    }
+                    next = poll();
+                }
+
+                active.decrementAndGet();
+
+                // a task may have been queued after the poll, keep it from being stranded
+                if ( queue.isEmpty() || !acquire() ) {
+                    return;
+                }
+
+                next = poll();
+                if ( next == null ) {
+                    active.decrementAndGet();
+                    return;
+                }
+            }
+        }
+
+
+        private void reject( final Runnable task ) {
+            if ( rejected != null ) {
+                rejected.mark();
+            }
+
+            switch ( rejectionAction ) {
+                case CALLERRUNS:
+                    if ( logger.isDebugEnabled() ) {
+                        logger.debug( "Bulkhead {} of {} is full, running task in thread {}", name, poolName,
+                            Thread.currentThread().getName() );
+                    }
+                    task.run();
+                    break;
+
+                case DROP:
+                    logger.warn( "Bulkhead {} of {} is full, dropping task {}", name, poolName, task );
+                    break;
+
+                default:
+                    throw new RejectedExecutionException( "Bulkhead " + name + " of " + poolName + " is full" );
+            }
+        }
+    }
+}
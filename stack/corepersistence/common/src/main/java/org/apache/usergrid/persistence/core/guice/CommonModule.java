@@ -36,6 +36,7 @@ import org.apache.usergrid.persistence.core.guicyfig.ClusterFig;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactoryImpl;
 import org.apache.usergrid.persistence.core.metrics.MetricsFig;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationFig;
 import org.apache.usergrid.persistence.core.migration.data.DataMigrationManager;
 import org.apache.usergrid.persistence.core.migration.data.DataMigrationManagerImpl;
 import org.apache.usergrid.persistence.core.migration.data.MigrationInfoCache;
@@ -98,6 +99,7 @@ public class CommonModule extends AbstractModule {
         bind(MetricsFactory.class).to(MetricsFactoryImpl.class);
 
         bind(MigrationInfoCache.class).to(MigrationInfoCacheImpl.class);
+        install(new GuicyFigModule(DataMigrationFig.class));
         install(new GuicyFigModule(MetricsFig.class));
 
 
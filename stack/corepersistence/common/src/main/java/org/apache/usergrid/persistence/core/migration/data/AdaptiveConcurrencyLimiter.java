@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.core.migration.data;
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Limits the number of writes running at the same time, raising the limit by one after each write faster than the
+ * target latency and halving it after a slower one, so writes back off as soon as Cassandra slows down.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+
+    private int limit;
+    private int running;
+    private long decreased;
+
+
+    public AdaptiveConcurrencyLimiter( final int initialLimit, final int maxLimit, final long targetLatencyMillis ) {
+        Preconditions.checkArgument( maxLimit > 0, "maxLimit must be greater than 0" );
+
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos( targetLatencyMillis );
+        this.limit = Math.max( 1, Math.min( initialLimit, maxLimit ) );
+        this.decreased = System.nanoTime() - 1;
+    }
+
+
+    /**
+     * Run the write once fewer writes than the limit are running, and adjust the limit to its latency
+     */
+    public <T> T execute( final Callable<T> write ) throws Exception {
+        acquire();
+
+        final long start = System.nanoTime();
+        boolean succeeded = false;
+
+        try {
+            final T result = write.call();
+            succeeded = true;
+            return result;
+        }
+        finally {
+            release( start, succeeded ? System.nanoTime() - start : Long.MAX_VALUE );
+        }
+    }
+
+
+    /**
+     * Get the number of writes currently allowed to run at the same time
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+
+    private synchronized void acquire() throws InterruptedException {
+        while ( running >= limit ) {
+            wait();
+        }
+
+        running++;
+    }
+
+
+    /**
+     * Failed writes count as slow, so a struggling cluster isn't retried harder.  Only writes started after the last
+     * decrease lower the limit again, so the writes that were running during one slow spell halve it once.
+     */
+    private synchronized void release( final long start, final long latencyNanos ) {
+        running--;
+
+        if ( latencyNanos > targetLatencyNanos ) {
+            if ( start - decreased > 0 ) {
+                limit = Math.max( 1, limit / 2 );
+                decreased = System.nanoTime();
+            }
+        }
+        else if ( limit < maxLimit ) {
+            limit++;
+        }
+
+        notifyAll();
+    }
+}
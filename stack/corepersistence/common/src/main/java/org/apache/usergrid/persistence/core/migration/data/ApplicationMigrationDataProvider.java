@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+package org.apache.usergrid.persistence.core.migration.data;
+
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+
+import rx.Observable;
+
+
+/**
+ * A data provider whose data can be read one application at a time, so a migration of it can be checkpointed and
+ * split by application
+ * @param <T>
+ */
+public interface ApplicationMigrationDataProvider<T> extends MigrationDataProvider<T> {
+
+
+    /**
+     * Get the applications the data belongs to
+     */
+    Observable<ApplicationScope> getApplications();
+
+
+    /**
+     * Get the data of one of the applications returned by {@link #getApplications()}
+     */
+    Observable<T> getData( final ApplicationScope applicationScope );
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.core.migration.data;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import rx.Observable;
+import rx.functions.Func2;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * Runs a data migration one application at a time, saving each application once it's migrated so an interrupted
+ * migration resumes with the applications that are left.  Data of providers that aren't an
+ * {@link ApplicationMigrationDataProvider} is migrated in a single pass without checkpoints.
+ *
+ * Nodes running the same migration split the applications by their id, each node migrating its own share first and
+ * then whatever the other nodes haven't finished yet, so the migration completes even when a node stops.
+ *
+ * The writes of the migration go through a {@link BatchWriter}, which writes as many batches at the same time as
+ * Cassandra completes within the target latency.
+ */
+@Singleton
+public class DataMigrationExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger( DataMigrationExecutor.class );
+
+    /**
+     * How often the checkpoints are read again while migrating the share of the other nodes, in milliseconds
+     */
+    private static final long CHECKPOINT_REFRESH_INTERVAL = 10000;
+
+    private final MigrationInfoSerialization migrationInfoSerialization;
+    private final DataMigrationFig dataMigrationFig;
+
+    private final Timer batchTimer;
+    private final Meter rowMeter;
+    private final Counter applicationCounter;
+
+    private volatile AdaptiveConcurrencyLimiter currentLimiter;
+
+
+    @Inject
+    public DataMigrationExecutor( final MigrationInfoSerialization migrationInfoSerialization,
+                                  final DataMigrationFig dataMigrationFig, final MetricsFactory metricsFactory ) {
+        this.migrationInfoSerialization = migrationInfoSerialization;
+        this.dataMigrationFig = dataMigrationFig;
+
+        this.batchTimer = metricsFactory.getTimer( DataMigrationExecutor.class, "migration.batch" );
+        this.rowMeter = metricsFactory.getMeter( DataMigrationExecutor.class, "migration.rows" );
+        this.applicationCounter = metricsFactory.getCounter( DataMigrationExecutor.class, "migration.applications" );
+
+        metricsFactory.addGauge( DataMigrationExecutor.class, "migration.concurrency", () -> {
+            final AdaptiveConcurrencyLimiter limiter = currentLimiter;
+            return limiter == null ? 0 : limiter.getLimit();
+        } );
+    }
+
+
+    /**
+     * Migrate all the data of the provider
+     *
+     * @param migrationName The name the checkpoints of the migration are saved with
+     * @param version The version the data is migrated to
+     * @param migrateData Migrates one element of the data, writing through the batch writer
+     */
+    public <T> void migrate( final String migrationName, final int version, final MigrationDataProvider<T> provider,
+                             final ProgressObserver observer,
+                             final Func2<T, BatchWriter, Observable<?>> migrateData ) {
+
+        final AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter( dataMigrationFig.getConcurrency(), dataMigrationFig.getMaxConcurrency(),
+                dataMigrationFig.getTargetLatency() );
+
+        currentLimiter = limiter;
+
+        final AtomicLong rows = new AtomicLong();
+
+        final BatchWriter writer = ( count, write ) -> {
+            try {
+                limiter.execute( () -> {
+                    final Timer.Context timer = batchTimer.time();
+                    try {
+                        return write.call();
+                    }
+                    finally {
+                        timer.stop();
+                    }
+                } );
+            }
+            catch ( DataMigrationException e ) {
+                throw e;
+            }
+            catch ( Exception e ) {
+                observer.failed( version, "Failed to write migrated data to cassandra", e );
+                throw new DataMigrationException( "Unable to write migrated data", e );
+            }
+
+            rowMeter.mark( count );
+
+            observer.update( version, String
+                .format( "Currently running %s.  Rewritten %d rows, writing %d batches at a time", migrationName,
+                    rows.addAndGet( count ), limiter.getLimit() ) );
+        };
+
+        //the data can't be split, so it can't be checkpointed either
+        if ( !( provider instanceof ApplicationMigrationDataProvider ) ) {
+            migrateAll( provider.getData(), writer, migrateData );
+            return;
+        }
+
+        final ApplicationMigrationDataProvider<T> applicationProvider = ( ApplicationMigrationDataProvider<T> ) provider;
+
+        final List<ApplicationScope> applications =
+            applicationProvider.getApplications().toList().toBlocking().last();
+
+        Set<UUID> migrated = migrationInfoSerialization.getMigratedApplications( migrationName, version );
+        long migratedReadAt = 0;
+
+        int remaining = applications.size();
+
+        for ( ApplicationScope applicationScope : orderForNode( applications ) ) {
+
+            final UUID applicationId = applicationScope.getApplication().getUuid();
+
+            //other nodes finish their applications while we migrate our share, so read the checkpoints again when
+            //we get to their share, then every refresh interval
+            if ( !isOwnApplication( applicationId ) ) {
+                final long now = System.currentTimeMillis();
+                if ( now - migratedReadAt >= CHECKPOINT_REFRESH_INTERVAL ) {
+                    migrated = migrationInfoSerialization.getMigratedApplications( migrationName, version );
+                    migratedReadAt = now;
+                }
+            }
+
+            if ( !migrated.contains( applicationId ) ) {
+                migrateAll( applicationProvider.getData( applicationScope ), writer, migrateData );
+                migrationInfoSerialization.setApplicationMigrated( migrationName, version, applicationId );
+                applicationCounter.inc();
+
+                logger.info( "Migrated application {} with {}", applicationId, migrationName );
+            }
+
+            remaining--;
+
+            observer.update( version, String
+                .format( "Currently running %s.  %d of %d applications left", migrationName, remaining,
+                    applications.size() ) );
+        }
+    }
+
+
+    private <T> void migrateAll( final Observable<T> data, final BatchWriter writer,
+                                 final Func2<T, BatchWriter, Observable<?>> migrateData ) {
+
+        //the limiter bounds the writes, this only bounds the elements read ahead of them
+        data.flatMap( element -> migrateData.call( element, writer ).subscribeOn( Schedulers.io() ),
+            dataMigrationFig.getMaxConcurrency() ).toBlocking().lastOrDefault( null );
+    }
+
+
+    /**
+     * Put the applications of this node first, then the applications of the other nodes
+     */
+    private List<ApplicationScope> orderForNode( final List<ApplicationScope> applications ) {
+
+        final List<ApplicationScope> ordered = new ArrayList<>( applications.size() );
+        final List<ApplicationScope> others = new ArrayList<>();
+
+        for ( ApplicationScope applicationScope : applications ) {
+            if ( isOwnApplication( applicationScope.getApplication().getUuid() ) ) {
+                ordered.add( applicationScope );
+            }
+            else {
+                others.add( applicationScope );
+            }
+        }
+
+        ordered.addAll( others );
+
+        return ordered;
+    }
+
+
+    private boolean isOwnApplication( final UUID applicationId ) {
+        final int nodeCount = dataMigrationFig.getNodeCount();
+
+        return nodeCount <= 1 || Math.floorMod( applicationId.hashCode(), nodeCount ) == dataMigrationFig
+            .getNodeIndex();
+    }
+
+
+    /**
+     * Writes the batches of a migration
+     */
+    public interface BatchWriter {
+
+        /**
+         * Execute the write, waiting while as many writes as Cassandra currently keeps up with are running
+         *
+         * @param rows The number of rows written, for progress and metrics
+         */
+        void write( int rows, Callable<?> write );
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.core.migration.data;
+
+
+import org.safehaus.guicyfig.Default;
+import org.safehaus.guicyfig.FigSingleton;
+import org.safehaus.guicyfig.GuicyFig;
+import org.safehaus.guicyfig.Key;
+
+
+/**
+ * Configuration of data migrations
+ */
+@FigSingleton
+public interface DataMigrationFig extends GuicyFig {
+
+    /**
+     * The number of batches written at the same time when a migration starts
+     */
+    @Key( "usergrid.migration.concurrency" )
+    @Default( "10" )
+    int getConcurrency();
+
+    /**
+     * The most batches written at the same time while writes stay under the target latency
+     */
+    @Key( "usergrid.migration.concurrency.max" )
+    @Default( "50" )
+    int getMaxConcurrency();
+
+    /**
+     * A batch write slower than this lowers the number of batches written at the same time, a faster one raises it
+     */
+    @Key( "usergrid.migration.target_latency_ms" )
+    @Default( "200" )
+    long getTargetLatency();
+
+    /**
+     * The number of nodes running the migration at the same time
+     */
+    @Key( "usergrid.migration.node_count" )
+    @Default( "1" )
+    int getNodeCount();
+
+    /**
+     * The index of this node, from 0 up to but excluding the node count, which picks the applications this node
+     * migrates first
+     */
+    @Key( "usergrid.migration.node_index" )
+    @Default( "0" )
+    int getNodeIndex();
+}
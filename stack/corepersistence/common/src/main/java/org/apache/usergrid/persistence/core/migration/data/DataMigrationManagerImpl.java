@@ -166,6 +166,9 @@ public class DataMigrationManagerImpl implements DataMigrationManager {
         Preconditions.checkArgument( version >= 0, "You must specify a version of 0 or greater" );
 
         migrationInfoSerialization.setVersion( pluginName, version );
+
+        //the migrations run again from the start, they must not skip what they checkpointed before
+        migrationInfoSerialization.resetCheckpoints();
         migrationInfoCache.invalidateAll();
     }
 
@@ -19,6 +19,9 @@
 package org.apache.usergrid.persistence.core.migration.data;
 
 
+import java.util.Set;
+import java.util.UUID;
+
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
 
 
@@ -63,6 +66,27 @@ public interface MigrationInfoSerialization extends Migration {
      */
     public int getStatusCode(final String pluginName);
 
+    /**
+     * Save that the migration to the version is done for the application
+     * @param migrationName The name of the data migration
+     * @param version The version migrated to
+     * @param applicationId The application migrated
+     */
+    public void setApplicationMigrated( final String migrationName, final int version, final UUID applicationId );
+
+    /**
+     * Get the applications the migration to the version is done for
+     * @param migrationName The name of the data migration
+     * @param version The version migrated to
+     */
+    public Set<UUID> getMigratedApplications( final String migrationName, final int version );
+
+    /**
+     * Start the checkpoints of every data migration over, so a migration run again after its version is reset
+     * doesn't skip the applications it saved before
+     */
+    public void resetCheckpoints();
+
     /**
      * This is deprecated, and will be used to migrate from the old version information to the new format.
      * Should return -1 if not set
@@ -21,6 +21,8 @@ package org.apache.usergrid.persistence.core.migration.data;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 import org.apache.cassandra.db.marshal.BytesType;
@@ -37,7 +39,9 @@ import com.google.inject.Singleton;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
+import com.netflix.astyanax.query.RowQuery;
 import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.util.RangeBuilder;
 
 
 @Singleton
@@ -71,6 +75,15 @@ public class MigrationInfoSerializationImpl implements MigrationInfoSerializatio
 
     private static final String COLUMN_STATUS_CODE = "statusCode";
 
+    private static final String CHECKPOINT_ROW_SUFFIX = ":migrated_applications:";
+
+    /**
+     * The row holding the id of the current checkpoint run, which is part of the checkpoint row keys
+     */
+    private static final ScopedRowKey<String> CHECKPOINT_RUN_ROW_KEY = ScopedRowKey.fromKey( STATIC_ID, "checkpoints" );
+
+    private static final String COLUMN_CHECKPOINT_RUN = "run";
+
     private final Keyspace keyspace;
 
 
@@ -183,6 +196,79 @@ public class MigrationInfoSerializationImpl implements MigrationInfoSerializatio
     }
 
 
+    @Override
+    public void setApplicationMigrated( final String migrationName, final int version, final UUID applicationId ) {
+
+        try {
+            keyspace.prepareColumnMutation( CF_MIGRATION_INFO, getCheckpointRowKey( migrationName, version ),
+                applicationId.toString() ).putEmptyColumn( null ).execute();
+        }
+        catch ( ConnectionException e ) {
+            throw new DataMigrationException( "Unable to save checkpoint", e );
+        }
+    }
+
+
+    @Override
+    public Set<UUID> getMigratedApplications( final String migrationName, final int version ) {
+
+        final RowQuery<ScopedRowKey<String>, String> query =
+            keyspace.prepareQuery( CF_MIGRATION_INFO ).getKey( getCheckpointRowKey( migrationName, version ) )
+                    .autoPaginate( true ).withColumnRange( new RangeBuilder().setLimit( 1000 ).build() );
+
+        final Set<UUID> applicationIds = new HashSet<>();
+
+        for ( String applicationId : new ColumnNameIterator<>( query, StringColumnParser.get(), false ) ) {
+            applicationIds.add( UUID.fromString( applicationId ) );
+        }
+
+        return applicationIds;
+    }
+
+
+    @Override
+    public void resetCheckpoints() {
+
+        try {
+            keyspace.prepareColumnMutation( CF_MIGRATION_INFO, CHECKPOINT_RUN_ROW_KEY, COLUMN_CHECKPOINT_RUN )
+                    .putValue( UUID.randomUUID().toString(), null ).execute();
+        }
+        catch ( ConnectionException e ) {
+            throw new DataMigrationException( "Unable to reset checkpoints", e );
+        }
+    }
+
+
+    /**
+     * Checkpoints of each migration and version are the columns of their own row, in the current checkpoint run
+     */
+    private ScopedRowKey<String> getCheckpointRowKey( final String migrationName, final int version ) {
+        final String run = getCheckpointRun();
+        final String key = migrationName + CHECKPOINT_ROW_SUFFIX + version;
+
+        return ScopedRowKey.fromKey( STATIC_ID, run == null ? key : key + ":" + run );
+    }
+
+
+    /**
+     * @return the id of the current checkpoint run, or null if checkpoints were never reset
+     */
+    private String getCheckpointRun() {
+
+        try {
+            return keyspace.prepareQuery( CF_MIGRATION_INFO ).getKey( CHECKPOINT_RUN_ROW_KEY )
+                           .getColumn( COLUMN_CHECKPOINT_RUN ).execute().getResult().getStringValue();
+        }
+        //swallow, it doesn't exist
+        catch ( NotFoundException nfe ) {
+            return null;
+        }
+        catch ( ConnectionException e ) {
+            throw new DataMigrationException( "Unable to retrieve checkpoint run", e );
+        }
+    }
+
+
     @Override
     public int getSystemVersion() {
         try {
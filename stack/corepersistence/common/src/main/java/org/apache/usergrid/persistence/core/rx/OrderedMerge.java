@@ -20,33 +20,31 @@
 package org.apache.usergrid.persistence.core.rx;
 
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Deque;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.NavigableSet;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.TreeMultimap;
-
 import rx.Observable;
+import rx.Producer;
 import rx.Subscriber;
-import rx.Subscription;
-import rx.observers.SerializedSubscriber;
-import rx.subscriptions.CompositeSubscription;
+import rx.exceptions.Exceptions;
+import rx.exceptions.MissingBackpressureException;
 
 
 /**
  * Produces a single Observable from multiple ordered source observables.  The same as the "merge" step in a merge sort.
- * Ensure that your comparator matches the ordering of your inputs, or you may get strange results. The current
- * implementation requires each Observable to be running in it's own thread.  Once backpressure in RX is implemented,
- * this requirement can be removed.
+ * Ensure that your comparator matches the ordering of your inputs, or you may get strange results.
+ *
+ * The head of every source is kept in an array backed binary heap, so emitting an element costs a single sift of the
+ * heap.  Each source is requested at most maxBufferSize elements ahead of what has been merged, and elements are only
+ * emitted as the subscriber requests them.  Sources may therefore run on the same thread as the subscriber.  A source
+ * that ignores back pressure and overruns its buffer fails the merge with a {@link MissingBackpressureException}.
+ * Elements that compare equal are emitted in the order of their sources.
  */
 public final class OrderedMerge<T> implements Observable.OnSubscribe<T> {
 
@@ -58,14 +56,14 @@ public final class OrderedMerge<T> implements Observable.OnSubscribe<T> {
     private final Observable<? extends T>[] observables;
 
 
-    //The max amount to buffer before blowing up
+    //The max amount to buffer per source
     private final int maxBufferSize;
 
 
     private OrderedMerge( final Comparator<T> comparator, final int maxBufferSize,
                           Observable<? extends T>... observables ) {
         this.comparator = comparator;
-        this.maxBufferSize = maxBufferSize;
+        this.maxBufferSize = Math.max( maxBufferSize, 1 );
         this.observables = observables;
     }
 
@@ -73,309 +71,420 @@ public final class OrderedMerge<T> implements Observable.OnSubscribe<T> {
     @Override
     public void call( final Subscriber<? super T> outerOperation ) {
 
+        final MergeCoordinator<T> coordinator =
+            new MergeCoordinator<>( comparator, outerOperation, observables.length, maxBufferSize );
 
-        CompositeSubscription csub = new CompositeSubscription();
-
-
-        //when a subscription is received, we need to subscribe on each observable
-        SubscriberCoordinator coordinator = new SubscriberCoordinator( comparator, outerOperation, observables.length );
-
-        InnerObserver<T>[] innerObservers = new InnerObserver[observables.length];
-
-
-        //we have to do this in 2 steps to get the synchronization correct.  We must set up our total inner observers
-        //before starting subscriptions otherwise our assertions for completion or starting won't work properly
-        for ( int i = 0; i < observables.length; i++ ) {
-            //subscribe to each one and add it to the composite
-            //create a new inner and subscribe
-            final InnerObserver<T> inner = new InnerObserver<T>( coordinator, maxBufferSize, i );
-
-            coordinator.add( inner );
-
-            innerObservers[i] = inner;
+        //set up every inner subscriber before subscribing, a source may complete synchronously
+        for ( InnerSubscriber<T> inner : coordinator.inners ) {
+            outerOperation.add( inner );
         }
-        /**
-         * Once we're set up, begin the subscription to sub observables
-         */
-        for ( int i = 0; i < observables.length; i++ ) {
-            //subscribe after setting them up
-            //add our subscription to the composite for future cancellation
-            Subscription subscription = observables[i].subscribe( innerObservers[i] );
 
-            csub.add( subscription );
+        outerOperation.setProducer( coordinator );
 
-            //add the internal composite subscription
-            outerOperation.add( csub );
+        for ( int i = 0; i < observables.length && !outerOperation.isUnsubscribed(); i++ ) {
+            observables[i].unsafeSubscribe( coordinator.inners[i] );
         }
+
+        coordinator.drain();
     }
 
 
     /**
-     * Our coordinator.  It coordinates all the
+     * Merges the heads of the sources and emits them as they're requested.  Draining is serialized with a work in
+     * progress counter, whichever thread signals while nobody is draining does the work, so the heap and the head
+     * arrays are only touched by one thread at a time.
      */
-    private static final class SubscriberCoordinator<T> {
+    private static final class MergeCoordinator<T> implements Producer {
 
+        private final Comparator<T> comparator;
+        private final Subscriber<? super T> subscriber;
+        private final InnerSubscriber<T>[] inners;
 
-        private final AtomicInteger completedCount = new AtomicInteger();
-        private volatile boolean readyToProduce = false;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
 
+        /**
+         * The current head of each source, only accessed while draining
+         */
+        private final Object[] heads;
 
-        private final Subscriber<? super T> subscriber;
-        private final TreeMultimap<T, InnerObserver<T>> nextValues;
-        private final List<InnerObserver<T>> innerSubscribers;
-        private final ArrayDeque<InnerObserver<T>> toProduce;
-
-
-        private SubscriberCoordinator( final Comparator<T> comparator, final Subscriber<? super T> subscriber,
-                                       final int innerSize ) {
-            //we only want to emit events serially
-            this.subscriber = new SerializedSubscriber( subscriber );
-            this.innerSubscribers = new ArrayList<>( innerSize );
-            this.nextValues = TreeMultimap.create( comparator, InnerObserverComparator.INSTANCE );
-            this.toProduce = new ArrayDeque<>( innerSize );
-        }
+        /**
+         * Min heap of the sources that have a head, ordered by their heads
+         */
+        private final int[] heap;
+        private int heapSize;
 
+        /**
+         * Sources that have neither a head nor completed.  Nothing can be emitted until they produce.
+         */
+        private final int[] waiting;
+        private int waitingSize;
 
-        public void onCompleted() {
+        private boolean terminated;
 
-            /**
-             * Invoke next to remove any elements from other Q's from this event
-             */
-            next();
 
-            final int completed = completedCount.incrementAndGet();
+        private MergeCoordinator( final Comparator<T> comparator, final Subscriber<? super T> subscriber,
+                                  final int size, final int maxBufferSize ) {
+            this.comparator = comparator;
+            this.subscriber = subscriber;
+            this.inners = new InnerSubscriber[size];
+            this.heads = new Object[size];
+            this.heap = new int[size];
+            this.waiting = new int[size];
 
+            for ( int i = 0; i < size; i++ ) {
+                inners[i] = new InnerSubscriber<>( this, maxBufferSize );
+                waiting[i] = i;
+            }
 
-            //we're done, just drain the queue since there are no more running producers
-            if ( completed == innerSubscribers.size() ) {
+            this.waitingSize = size;
+        }
 
-                if (logger.isTraceEnabled()) logger.trace( "Completing Observable.  Draining {} elements from the subscribers", innerSubscribers.size() );
 
-                //Drain the queues
-                while ( !subscriber.isUnsubscribed() && (!nextValues.isEmpty() || !toProduce.isEmpty()) ) {
-                    next();
-                }
+        @Override
+        public void request( final long n ) {
+            if ( n <= 0 ) {
+                return;
+            }
 
-                //signal completion
-                subscriber.onCompleted();
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                if ( current == Long.MAX_VALUE ) {
+                    break;
+                }
+                next = current + n;
+                if ( next < 0 ) {
+                    next = Long.MAX_VALUE;
+                }
             }
+            while ( !requested.compareAndSet( current, next ) );
+
+            drain();
         }
 
 
-        public void add( InnerObserver<T> inner ) {
-            this.innerSubscribers.add( inner );
-            this.toProduce.add( inner );
+        private void onError( final Throwable e ) {
+            if ( !error.compareAndSet( null, e ) ) {
+                logger.error( "Merge already failed, dropping error", e );
+            }
+            drain();
         }
 
 
-        public void onError( Throwable e ) {
-            subscriber.onError( e );
-        }
+        private void drain() {
+            if ( wip.getAndIncrement() != 0 ) {
+                return;
+            }
 
+            int missed = 1;
 
-        public void next() {
+            while ( true ) {
+                final long requestedCount = requested.get();
+                long emitted = 0;
 
-            //we want to emit items in order, so we synchronize our next
-            synchronized ( this ) {
-                /**
-                 * Init before our loop
-                 */
-                while ( !toProduce.isEmpty() ) {
+                while ( !checkTerminated() && fill() ) {
 
-                    InnerObserver<T> inner = toProduce.pop();
+                    if ( heapSize == 0 ) {
+                        terminated = true;
+                        subscriber.onCompleted();
+                        break;
+                    }
 
-                    //This has nothing left to produce, skip it
-                    if ( inner.drained ) {
+                    if ( emitted == requestedCount ) {
+                        break;
+                    }
+
+                    final int source = heap[0];
+                    final T value = ( T ) heads[source];
+
+                    if ( logger.isTraceEnabled() ) {
+                        logger.trace( "Emitting value {}", value );
+                    }
+
+                    try {
+                        subscriber.onNext( value );
+                    }
+                    catch ( Throwable t ) {
+                        Exceptions.throwIfFatal( t );
+                        error.compareAndSet( null, t );
                         continue;
                     }
 
-                    final T nextKey = inner.peek();
+                    emitted++;
+
+                    final T next = inners[source].poll();
 
-                    //we can't produce, not everything has an element to inspect, leave it in the set to produce next
-                    // time
-                    if ( nextKey == null ) {
-                        toProduce.push( inner );
-                        return;
+                    if ( next != null ) {
+                        heads[source] = next;
+                        siftDown( 0 );
+                    }
+                    else {
+                        heads[source] = null;
+                        removeRoot();
+                        if ( !inners[source].isFinished() ) {
+                            waiting[waitingSize++] = source;
+                        }
                     }
+                }
 
-                    //add it to our fast access set
-                    nextValues.put( nextKey, inner );
+                if ( emitted != 0 && requestedCount != Long.MAX_VALUE ) {
+                    requested.addAndGet( -emitted );
                 }
 
+                missed = wip.addAndGet( -missed );
+                if ( missed == 0 ) {
+                    return;
+                }
+            }
+        }
 
-                //take as many elements as we can until we hit a case where we can't take anymore
-                while ( !nextValues.isEmpty() ) {
 
+        /**
+         * @return true if the merge has ended, signalling an error if one occurred
+         */
+        private boolean checkTerminated() {
+            if ( terminated ) {
+                return true;
+            }
 
-                    /**
-                     * Get our lowest key and begin producing until we can't produce any longer
-                     */
-                    final T lowestKey = nextValues.keySet().first();
+            if ( subscriber.isUnsubscribed() ) {
+                terminated = true;
+                return true;
+            }
 
+            final Throwable e = error.get();
+            if ( e != null ) {
+                terminated = true;
+                for ( InnerSubscriber<T> inner : inners ) {
+                    inner.unsubscribe();
+                }
+                subscriber.onError( e );
+                return true;
+            }
 
-                    //we need to create a copy, otherwise we receive errors. We use ArrayDque
+            return false;
+        }
 
-                    NavigableSet<InnerObserver<T>> nextObservers = nextValues.get( lowestKey );
 
-                    while ( !nextObservers.isEmpty() ) {
+        /**
+         * Move the heads of waiting sources into the heap
+         *
+         * @return true if every source has a head or has finished, so the lowest head can be emitted
+         */
+        private boolean fill() {
+            int i = 0;
 
-                        final InnerObserver<T> inner = nextObservers.pollFirst();
+            while ( i < waitingSize ) {
+                final int source = waiting[i];
+                final InnerSubscriber<T> inner = inners[source];
 
-                        nextValues.remove( lowestKey, inner );
+                //read completion before polling, an element may arrive in between
+                final boolean done = inner.done;
+                final T head = inner.poll();
 
-                        final T value = inner.pop();
+                if ( head != null ) {
+                    heads[source] = head;
+                    heap[heapSize] = source;
+                    siftUp( heapSize++ );
+                }
+                else if ( !done ) {
+                    i++;
+                    continue;
+                }
 
-                        if (logger.isTraceEnabled()) logger.trace( "Emitting value {}", value );
+                waiting[i] = waiting[--waitingSize];
+            }
 
-                        subscriber.onNext( value );
+            return waitingSize == 0;
+        }
 
-                        final T nextKey = inner.peek();
 
-                        //nothing to peek, it's either drained or slow
-                        if ( nextKey == null ) {
+        private void removeRoot() {
+            heapSize--;
+            if ( heapSize > 0 ) {
+                heap[0] = heap[heapSize];
+                siftDown( 0 );
+            }
+        }
 
-                            //it's drained, nothing left to do
-                            if ( inner.drained ) {
-                                continue;
-                            }
 
-                            //it's slow, we can't process because we don't know if this is another min value without
-                            // inspecting it. Stop emitting and try again next pass through
-                            toProduce.push( inner );
-                            return;
-                        }
+        private void siftUp( int index ) {
+            final int source = heap[index];
 
-                        //we have a next value, insert it and keep running
-                        nextValues.put( nextKey, inner );
-                    }
+            while ( index > 0 ) {
+                final int parent = ( index - 1 ) >>> 1;
+                if ( compare( heap[parent], source ) <= 0 ) {
+                    break;
                 }
+                heap[index] = heap[parent];
+                index = parent;
             }
+
+            heap[index] = source;
         }
 
 
-//        /**
-//         * Return true if every inner observer has been drained
-//         */
-//        private boolean drained() {
-//            //perform an audit
-//            for ( InnerObserver<T> inner : innerSubscribers ) {
-//                if ( !inner.drained ) {
-//                    return false;
-//                }
-//            }
-//
-//            return true;
-//        }
-    }
+        private void siftDown( int index ) {
+            final int source = heap[index];
+            final int half = heapSize >>> 1;
 
+            while ( index < half ) {
+                int child = ( index << 1 ) + 1;
+                final int right = child + 1;
 
-    private static final class InnerObserverComparator implements Comparator<InnerObserver> {
+                if ( right < heapSize && compare( heap[right], heap[child] ) < 0 ) {
+                    child = right;
+                }
+                if ( compare( source, heap[child] ) <= 0 ) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
 
-        private static final InnerObserverComparator INSTANCE = new InnerObserverComparator();
+            heap[index] = source;
+        }
 
 
-        @Override
-        public int compare( final InnerObserver o1, final InnerObserver o2 ) {
-            return Integer.compare( o1.id, o2.id );
+        /**
+         * Compare the heads of two sources, ties are broken by source order
+         */
+        private int compare( final int left, final int right ) {
+            final int compare = comparator.compare( ( T ) heads[left], ( T ) heads[right] );
+            return compare != 0 ? compare : Integer.compare( left, right );
         }
     }
 
 
-    private static final class InnerObserver<T> extends Subscriber<T> {
+    /**
+     * Buffers up to maxBufferSize elements of a source.  Consumed elements are requested again in batches.
+     */
+    private static final class InnerSubscriber<T> extends Subscriber<T> {
 
-        private final SubscriberCoordinator<T> coordinator;
-        private final Deque<T> items = new LinkedList<>();
-        private final int maxQueueSize;
-        /**
-         * TODO: T.N. Once backpressure makes it into RX Java, this needs to be remove and should use backpressure
-         */
-        private final Semaphore semaphore;
+        private final MergeCoordinator<T> coordinator;
+        private final int maxBufferSize;
+        private final int limit;
+        private final RingBuffer<T> items;
 
         /**
-         * Our id so we have something unique to compare in the multimap
+         * Written by the source, read by the coordinator.
          */
-        public final int id;
-
+        private volatile boolean done;
 
         /**
-         * Flags for synchronization with coordinator. Multiple threads may be used, so volatile is required
+         * Elements taken since the last request, only accessed while draining
          */
-        private volatile boolean started = false;
-        private volatile boolean completed = false;
-        private volatile boolean drained = false;
+        private int consumed;
 
 
-        public InnerObserver( final SubscriberCoordinator<T> coordinator, final int maxQueueSize, final int id ) {
+        private InnerSubscriber( final MergeCoordinator<T> coordinator, final int maxBufferSize ) {
             this.coordinator = coordinator;
-            this.maxQueueSize = maxQueueSize;
-            this.id = id;
+            this.maxBufferSize = maxBufferSize;
+            this.limit = maxBufferSize - ( maxBufferSize >> 2 );
+            this.items = new RingBuffer<>( maxBufferSize );
+        }
+
 
-            this.semaphore = new Semaphore( maxQueueSize );
+        @Override
+        public void onStart() {
+            request( maxBufferSize );
         }
 
 
         @Override
         public void onCompleted() {
-            started = true;
-            completed = true;
-            checkDrained();
-
-            /**
-             * release this semaphore and invoke next.  Both these calls can be removed when backpressure is added.
-             * We need the next to force removal of other inner consumers
-             */
-            coordinator.onCompleted();
+            done = true;
+            coordinator.drain();
         }
 
 
         @Override
-        public void onError( Throwable e ) {
+        public void onError( final Throwable e ) {
+            done = true;
             coordinator.onError( e );
         }
 
 
         @Override
-        public void onNext( T a ) {
-
-            try {
-                this.semaphore.acquire();
-            }
-            catch ( InterruptedException e ) {
-                onError( e );
+        public void onNext( final T t ) {
+            if ( !items.offer( t ) ) {
+                unsubscribe();
+                onError( new MissingBackpressureException(
+                    "The maximum queue size of " + maxBufferSize + " has been reached" ) );
+                return;
             }
 
+            coordinator.drain();
+        }
 
-            items.add( a );
 
-            started = true;
+        private T poll() {
+            final T item = items.poll();
 
-            //for each subscriber, emit to the parent wrapper then evaluate calling on next
-            coordinator.next();
+            if ( item != null && ++consumed == limit ) {
+                consumed = 0;
+                request( limit );
+            }
+
+            return item;
+        }
+
+
+        /**
+         * @return true if the source completed and every element has been taken
+         */
+        private boolean isFinished() {
+            return done && items.isEmpty();
         }
+    }
+
+
+    /**
+     * Bounded single producer, single consumer queue
+     */
+    private static final class RingBuffer<T> {
+
+        private final AtomicReferenceArray<T> buffer;
+        private final AtomicLong producerIndex = new AtomicLong();
+        private final AtomicLong consumerIndex = new AtomicLong();
 
 
-        public T peek() {
-            return items.peekFirst();
+        private RingBuffer( final int capacity ) {
+            this.buffer = new AtomicReferenceArray<>( capacity );
         }
 
 
-        public T pop() {
-            T item = items.pollFirst();
+        private boolean offer( final T item ) {
+            final long index = producerIndex.get();
+            if ( index - consumerIndex.get() >= buffer.length() ) {
+                return false;
+            }
+
+            buffer.lazySet( ( int ) ( index % buffer.length() ), item );
+            producerIndex.lazySet( index + 1 );
+            return true;
+        }
 
-            //release the semaphore since we just took an item
-            this.semaphore.release();
 
-            checkDrained();
+        private T poll() {
+            final long index = consumerIndex.get();
+            if ( index >= producerIndex.get() ) {
+                return null;
+            }
 
+            final int offset = ( int ) ( index % buffer.length() );
+            final T item = buffer.get( offset );
+            buffer.lazySet( offset, null );
+            consumerIndex.lazySet( index + 1 );
             return item;
         }
 
 
-        /**
-         * if we've started and finished, and this is the last element, we want to mark ourselves as completely drained
-         */
-        private void checkDrained() {
-            drained = started && completed && items.size() == 0;
+        private boolean isEmpty() {
+            return consumerIndex.get() >= producerIndex.get();
         }
     }
 
@@ -34,5 +34,13 @@ public interface RxTaskScheduler {
      */
     Scheduler getAsyncIOScheduler();
 
+    /**
+     * Get the scheduler for blocking I/O on behalf of a tenant or class of work.  Tasks of one bulkhead can only
+     * occupy their share of the threads, so one busy bulkhead can't starve the others.
+     * @param bulkhead The name of the bulkhead, such as the application id
+     * @return The bulkhead's scheduler, or the shared scheduler when bulkheads are not in use
+     */
+    Scheduler getAsyncIOScheduler( String bulkhead );
+
 
 }
@@ -20,8 +20,11 @@
 package org.apache.usergrid.persistence.core.rx;
 
 
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import org.apache.usergrid.persistence.core.executor.Bulkheads;
+
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -37,13 +40,26 @@ public class RxTaskSchedulerImpl implements RxTaskScheduler {
 
     private final Scheduler scheduler;
 
+    private final Bulkheads bulkheads;
+
+    private final ConcurrentHashMap<String, Scheduler> bulkheadSchedulers = new ConcurrentHashMap<>();
+
     @Inject
     public RxTaskSchedulerImpl(final ThreadPoolExecutor executor){
+        this( executor, null );
+    }
+
+
+    /**
+     * @param bulkheads The bulkheads partitioning the executor, or null to share it between all tasks
+     */
+    public RxTaskSchedulerImpl(final ThreadPoolExecutor executor, final Bulkheads bulkheads){
 
         Preconditions.checkNotNull( executor , "executor must not be null");
 
 
         this.scheduler = Schedulers.from(executor);
+        this.bulkheads = bulkheads;
 
 
     }
@@ -55,4 +71,20 @@ public class RxTaskSchedulerImpl implements RxTaskScheduler {
     }
 
 
+    @Override
+    public Scheduler getAsyncIOScheduler( final String bulkhead ) {
+        if ( bulkheads == null || bulkhead == null ) {
+            return scheduler;
+        }
+
+        final Scheduler bulkheadScheduler = bulkheadSchedulers.get( bulkhead );
+        if ( bulkheadScheduler != null ) {
+            return bulkheadScheduler;
+        }
+
+        return bulkheadSchedulers.computeIfAbsent( bulkhead,
+            name -> Schedulers.from( bulkheads.getBulkhead( name ) ) );
+    }
+
+
 }
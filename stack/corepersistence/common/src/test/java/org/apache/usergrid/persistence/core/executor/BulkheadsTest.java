@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.core.executor;
+
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class BulkheadsTest {
+
+    private ThreadPoolExecutor executor;
+
+
+    @Before
+    public void createExecutor() {
+        executor = TaskExecutorFactory.createTaskExecutor( "bulkhead-test", 10, 0,
+            TaskExecutorFactory.RejectionAction.ABORT );
+    }
+
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void saturatedBulkheadLeavesThreadsForOthers() throws InterruptedException {
+        final Bulkheads bulkheads =
+            new Bulkheads( executor, "test", 50, 100, TaskExecutorFactory.RejectionAction.ABORT, null, null );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch noisyDone = new CountDownLatch( 20 );
+
+        final Executor noisy = bulkheads.getBulkhead( "noisy" );
+
+        for ( int i = 0; i < 20; i++ ) {
+            noisy.execute( () -> {
+                final int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet( now, Math::max );
+                await( release );
+                running.decrementAndGet();
+                noisyDone.countDown();
+            } );
+        }
+
+        // the noisy bulkhead holds half of the threads, the quiet one still runs
+        final CountDownLatch quietDone = new CountDownLatch( 1 );
+        bulkheads.getBulkhead( "quiet" ).execute( quietDone::countDown );
+
+        assertTrue( "Quiet bulkhead should not wait on the noisy one", quietDone.await( 5, TimeUnit.SECONDS ) );
+
+        release.countDown();
+
+        assertTrue( "Queued tasks should all run", noisyDone.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 5, maxRunning.get() );
+    }
+
+
+    @Test
+    public void fullQueueRejects() {
+        final Bulkheads bulkheads =
+            new Bulkheads( executor, "test", 10, 2, TaskExecutorFactory.RejectionAction.ABORT, null, null );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final Executor bulkhead = bulkheads.getBulkhead( "app" );
+
+        try {
+            // one running and two queued
+            for ( int i = 0; i < 3; i++ ) {
+                bulkhead.execute( () -> await( release ) );
+            }
+
+            try {
+                bulkhead.execute( () -> { } );
+                fail( "Task should have been rejected" );
+            }
+            catch ( RejectedExecutionException ree ) {
+                //expected
+            }
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+
+    @Test
+    public void weights() {
+        final Map<String, Integer> weights = Bulkheads.parseWeights( " heavy:3 , light:1" );
+
+        assertEquals( 2, weights.size() );
+        assertEquals( Integer.valueOf( 3 ), weights.get( "heavy" ) );
+
+        final Bulkheads bulkheads =
+            new Bulkheads( executor, "test", 20, 10, TaskExecutorFactory.RejectionAction.ABORT, weights, null );
+
+        assertEquals( 6, bulkheads.getMaxConcurrency( "heavy" ) );
+        assertEquals( 2, bulkheads.getMaxConcurrency( "light" ) );
+        assertEquals( 2, bulkheads.getMaxConcurrency( "other" ) );
+
+        // never more than the whole pool
+        assertEquals( 10, new Bulkheads( executor, "test", 50, 10, TaskExecutorFactory.RejectionAction.ABORT,
+            Collections.singletonMap( "huge", 100 ), null ).getMaxConcurrency( "huge" ) );
+    }
+
+
+    private static void await( final CountDownLatch latch ) {
+        try {
+            latch.await( 10, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
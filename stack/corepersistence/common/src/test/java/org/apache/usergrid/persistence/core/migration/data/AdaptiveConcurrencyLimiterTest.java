@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.core.migration.data;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class AdaptiveConcurrencyLimiterTest {
+
+
+    @Test
+    public void fastWritesRaiseLimitToMax() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter( 2, 5, 10000 );
+
+        for ( int i = 0; i < 10; i++ ) {
+            assertEquals( "written", limiter.execute( () -> "written" ) );
+        }
+
+        assertEquals( 5, limiter.getLimit() );
+    }
+
+
+    @Test
+    public void failedWritesHalveLimit() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter( 8, 8, 10000 );
+
+        failWrite( limiter );
+        assertEquals( 4, limiter.getLimit() );
+
+        failWrite( limiter );
+        assertEquals( 2, limiter.getLimit() );
+
+        failWrite( limiter );
+        failWrite( limiter );
+        assertEquals( "The limit never drops below 1", 1, limiter.getLimit() );
+    }
+
+
+    @Test
+    public void concurrentWritesStayUnderLimit() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter( 3, 3, 10000 );
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 10 );
+
+        try {
+            final List<Future<Object>> futures = new ArrayList<>();
+
+            for ( int i = 0; i < 30; i++ ) {
+                futures.add( executor.submit( () -> limiter.execute( () -> {
+                    maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+                    Thread.sleep( 10 );
+                    running.decrementAndGet();
+                    return null;
+                } ) ) );
+            }
+
+            for ( Future<Object> future : futures ) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue( "No more than 3 writes ran at the same time", maxRunning.get() <= 3 );
+        assertTrue( "Writes ran at the same time", maxRunning.get() > 1 );
+    }
+
+
+    private static void failWrite( final AdaptiveConcurrencyLimiter limiter ) throws Exception {
+        try {
+            limiter.execute( () -> {
+                throw new RuntimeException( "write failed" );
+            } );
+            fail( "The failure should be thrown" );
+        }
+        catch ( RuntimeException e ) {
+            assertEquals( "write failed", e.getMessage() );
+        }
+    }
+}
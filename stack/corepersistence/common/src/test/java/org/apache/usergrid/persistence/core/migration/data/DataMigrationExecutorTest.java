@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+package org.apache.usergrid.persistence.core.migration.data;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import rx.Observable;
+import rx.functions.Func2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class DataMigrationExecutorTest {
+
+    private static final String MIGRATION_NAME = "test_migration";
+    private static final int VERSION = 2;
+
+    private List<ApplicationScope> applications;
+    private Set<UUID> migratedApplications;
+    private MigrationInfoSerialization migrationInfoSerialization;
+    private MetricsFactory metricsFactory;
+
+    /**
+     * The elements migrated, in order
+     */
+    private List<String> migrated;
+
+
+    @Before
+    public void setup() {
+        // three applications for each of two nodes, alternating
+        applications = new ArrayList<>();
+        while ( applications.size() < 6 ) {
+            final ApplicationScope applicationScope =
+                new ApplicationScopeImpl( new SimpleId( UUID.randomUUID(), "application" ) );
+            if ( ownedBy( applicationScope, applications.size() % 2 ) ) {
+                applications.add( applicationScope );
+            }
+        }
+
+        // one set of checkpoints shared by every node, as they share the migration info column family
+        migratedApplications = Collections.synchronizedSet( new HashSet<>() );
+        migrationInfoSerialization = mock( MigrationInfoSerialization.class );
+        when( migrationInfoSerialization.getMigratedApplications( MIGRATION_NAME, VERSION ) )
+            .thenAnswer( invocation -> new HashSet<>( migratedApplications ) );
+        doAnswer( invocation -> migratedApplications.add( ( UUID ) invocation.getArguments()[2] ) )
+            .when( migrationInfoSerialization ).setApplicationMigrated( eq( MIGRATION_NAME ), eq( VERSION ), any() );
+        doAnswer( invocation -> {
+            migratedApplications.clear();
+            return null;
+        } ).when( migrationInfoSerialization ).resetCheckpoints();
+
+        metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+        when( metricsFactory.getCounter( any( Class.class ), anyString() ) ).thenReturn( new Counter() );
+
+        migrated = Collections.synchronizedList( new ArrayList<>() );
+    }
+
+
+    @Test
+    public void resumesAfterInterrupt() {
+        final DataMigrationExecutor executor = executor( 1, 0 );
+        final UUID failing = applicationId( 3 );
+
+        try {
+            executor.migrate( MIGRATION_NAME, VERSION, provider(), mock( ProgressObserver.class ),
+                migrate( failing ) );
+            fail( "The migration should have been interrupted" );
+        }
+        catch ( RuntimeException e ) {
+            // expected
+        }
+
+        assertEquals( new HashSet<>( applicationIds( 0, 3 ) ), migratedApplications );
+
+        // the restarted migration only migrates the applications that are left
+        migrated.clear();
+        executor.migrate( MIGRATION_NAME, VERSION, provider(), mock( ProgressObserver.class ), migrate( null ) );
+
+        assertEquals( new HashSet<>( applicationIds( 0, 6 ) ), migratedApplications );
+        assertEquals( elements( applicationIds( 3, 6 ) ), new HashSet<>( migrated ) );
+        assertEquals( 6, migrated.size() );
+    }
+
+
+    @Test
+    public void nodesMigrateOwnShareFirst() {
+        final DataMigrationExecutor first = executor( 2, 0 );
+        final DataMigrationExecutor second = executor( 2, 1 );
+
+        // the applications of the first node are done, the second node migrates only its own share
+        for ( ApplicationScope applicationScope : applications ) {
+            if ( ownedBy( applicationScope, 0 ) ) {
+                migratedApplications.add( applicationScope.getApplication().getUuid() );
+            }
+        }
+
+        second.migrate( MIGRATION_NAME, VERSION, provider(), mock( ProgressObserver.class ), migrate( null ) );
+
+        final Set<UUID> secondShare = new HashSet<>();
+        for ( ApplicationScope applicationScope : applications ) {
+            if ( ownedBy( applicationScope, 1 ) ) {
+                secondShare.add( applicationScope.getApplication().getUuid() );
+            }
+        }
+        assertEquals( elements( secondShare ), new HashSet<>( migrated ) );
+        assertEquals( new HashSet<>( applicationIds( 0, 6 ) ), migratedApplications );
+
+        // a node that starts alone migrates its own share, then the share of the other node
+        migratedApplications.clear();
+        migrated.clear();
+
+        first.migrate( MIGRATION_NAME, VERSION, provider(), mock( ProgressObserver.class ), migrate( null ) );
+
+        assertEquals( 12, migrated.size() );
+        int lastOwn = -1;
+        int firstOther = migrated.size();
+        for ( int i = 0; i < migrated.size(); i++ ) {
+            if ( secondShare.contains( UUID.fromString( migrated.get( i ).split( "/" )[0] ) ) ) {
+                firstOther = Math.min( firstOther, i );
+            }
+            else {
+                lastOwn = i;
+            }
+        }
+        assertTrue( "Applications of this node are migrated first", lastOwn < firstOther );
+    }
+
+
+    @Test
+    public void rerunAfterResetMigratesEverything() {
+        final DataMigrationExecutor executor = executor( 1, 0 );
+
+        executor.migrate( MIGRATION_NAME, VERSION, provider(), mock( ProgressObserver.class ), migrate( null ) );
+
+        assertEquals( new HashSet<>( applicationIds( 0, 6 ) ), migratedApplications );
+
+        final MigrationPlugin plugin = mock( MigrationPlugin.class );
+        when( plugin.getName() ).thenReturn( MIGRATION_NAME );
+        when( plugin.getMaxVersion() ).thenReturn( VERSION );
+
+        new DataMigrationManagerImpl( Collections.singleton( plugin ), migrationInfoSerialization,
+            mock( MigrationInfoCache.class ) ).resetToVersion( MIGRATION_NAME, 0 );
+
+        assertTrue( migratedApplications.isEmpty() );
+
+        // the migration runs again from the start instead of skipping what it checkpointed before the reset
+        migrated.clear();
+        executor.migrate( MIGRATION_NAME, VERSION, provider(), mock( ProgressObserver.class ), migrate( null ) );
+
+        assertEquals( new HashSet<>( applicationIds( 0, 6 ) ), migratedApplications );
+        assertEquals( 12, migrated.size() );
+    }
+
+
+    @Test
+    public void providersWithoutApplicationsMigratedInOnePass() {
+        final MigrationDataProvider<String> provider = () -> Observable.just( "a", "b" );
+
+        executor( 1, 0 ).migrate( MIGRATION_NAME, VERSION, provider, mock( ProgressObserver.class ),
+            migrate( null ) );
+
+        assertEquals( new HashSet<>( Arrays.asList( "a", "b" ) ), new HashSet<>( migrated ) );
+        assertTrue( migratedApplications.isEmpty() );
+    }
+
+
+    private DataMigrationExecutor executor( final int nodeCount, final int nodeIndex ) {
+        final DataMigrationFig fig = mock( DataMigrationFig.class );
+        when( fig.getConcurrency() ).thenReturn( 2 );
+        when( fig.getMaxConcurrency() ).thenReturn( 4 );
+        when( fig.getTargetLatency() ).thenReturn( 10000L );
+        when( fig.getNodeCount() ).thenReturn( nodeCount );
+        when( fig.getNodeIndex() ).thenReturn( nodeIndex );
+
+        return new DataMigrationExecutor( migrationInfoSerialization, fig, metricsFactory );
+    }
+
+
+    /**
+     * Two elements per application
+     */
+    private ApplicationMigrationDataProvider<String> provider() {
+        return new ApplicationMigrationDataProvider<String>() {
+
+            @Override
+            public Observable<String> getData() {
+                return getApplications().flatMap( applicationScope -> getData( applicationScope ) );
+            }
+
+
+            @Override
+            public Observable<ApplicationScope> getApplications() {
+                return Observable.from( applications );
+            }
+
+
+            @Override
+            public Observable<String> getData( final ApplicationScope applicationScope ) {
+                final UUID applicationId = applicationScope.getApplication().getUuid();
+                return Observable.just( applicationId + "/1", applicationId + "/2" );
+            }
+        };
+    }
+
+
+    /**
+     * Migrate an element through the batch writer, failing the writes of the given application
+     */
+    private Func2<String, DataMigrationExecutor.BatchWriter, Observable<?>> migrate( final UUID failing ) {
+        return ( element, batchWriter ) -> {
+            batchWriter.write( 1, () -> {
+                if ( failing != null && element.startsWith( failing.toString() ) ) {
+                    throw new RuntimeException( "Write timed out" );
+                }
+                migrated.add( element );
+                return null;
+            } );
+            return Observable.just( element );
+        };
+    }
+
+
+    private boolean ownedBy( final ApplicationScope applicationScope, final int nodeIndex ) {
+        return Math.floorMod( applicationScope.getApplication().getUuid().hashCode(), 2 ) == nodeIndex;
+    }
+
+
+    private UUID applicationId( final int index ) {
+        return applications.get( index ).getApplication().getUuid();
+    }
+
+
+    private List<UUID> applicationIds( final int from, final int to ) {
+        final List<UUID> ids = new ArrayList<>();
+        for ( int i = from; i < to; i++ ) {
+            ids.add( applicationId( i ) );
+        }
+        return ids;
+    }
+
+
+    private static Set<String> elements( final Iterable<UUID> applicationIds ) {
+        final Set<String> elements = new HashSet<>();
+        for ( UUID applicationId : applicationIds ) {
+            elements.add( applicationId + "/1" );
+            elements.add( applicationId + "/2" );
+        }
+        return elements;
+    }
+}
@@ -37,6 +37,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -391,6 +392,7 @@ public class DataMigrationManagerImplTest {
         migrationManager.resetToVersion( name, version );
 
         verify( migrationInfoSerialization ).setVersion( name, version );
+        verify( migrationInfoSerialization, times( 2 ) ).resetCheckpoints();
     }
 
 
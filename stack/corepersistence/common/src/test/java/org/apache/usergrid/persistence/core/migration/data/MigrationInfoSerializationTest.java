@@ -22,6 +22,10 @@
 package org.apache.usergrid.persistence.core.migration.data;
 
 
+import java.util.Collections;
+import java.util.UUID;
+
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,6 +44,7 @@ import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 @RunWith( ITRunner.class )
@@ -113,4 +118,22 @@ public class MigrationInfoSerializationTest {
 
         assertEquals("Status code was set correctly", savedStatusCode, returnedStatusCode);
     }
+
+
+    @Test
+    public void checkpointsClearedOnReset() throws ConnectionException, MigrationException {
+
+        final String migrationName = "checkpoint_test_" + UUID.randomUUID();
+        final UUID applicationId = UUID.randomUUID();
+
+        migrationInfoSerialization.setApplicationMigrated( migrationName, 1, applicationId );
+
+        assertEquals( Collections.singleton( applicationId ),
+            migrationInfoSerialization.getMigratedApplications( migrationName, 1 ) );
+
+        migrationInfoSerialization.resetCheckpoints();
+
+        assertTrue( "Checkpoints start over after a reset",
+            migrationInfoSerialization.getMigratedApplications( migrationName, 1 ).isEmpty() );
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.core.rx;
+package org.apache.usergrid.persistence.core.rx;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import rx.Observable;
+import rx.Subscriber;
+
+
+/**
+ * Compares the heap based {@link OrderedMerge} with the previous TreeMultimap implementation.  Every source is merged
+ * from the benchmark thread and buffers all of its elements, since the previous implementation blocks a source that
+ * fills its buffer.
+ *
+ * Run with the main method from the test classpath.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Benchmark )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+public class OrderedMergeBenchmark {
+
+    private static final int ELEMENTS_PER_SOURCE = 1000;
+
+    private static final Comparator<Long> COMPARATOR = Long::compare;
+
+    @Param( { "2", "16", "128" } )
+    public int sources;
+
+    private Observable<Long>[] observables;
+
+
+    @Setup
+    public void setup() {
+        final Random random = new Random( 0 );
+
+        observables = new Observable[sources];
+
+        //interleave the sources so the lowest head moves between them
+        for ( int i = 0; i < sources; i++ ) {
+            final List<Long> values = new ArrayList<>( ELEMENTS_PER_SOURCE );
+            long value = random.nextInt( 100 );
+
+            for ( int j = 0; j < ELEMENTS_PER_SOURCE; j++ ) {
+                value += random.nextInt( 100 );
+                values.add( value );
+            }
+
+            observables[i] = Observable.from( values );
+        }
+    }
+
+
+    @Benchmark
+    public void heap( final Blackhole blackhole ) {
+        OrderedMerge.orderedMerge( COMPARATOR, ELEMENTS_PER_SOURCE, observables )
+                    .subscribe( new BlackholeSubscriber( blackhole ) );
+    }
+
+
+    @Benchmark
+    public void treeMultimap( final Blackhole blackhole ) {
+        TreeMultimapOrderedMerge.orderedMerge( COMPARATOR, ELEMENTS_PER_SOURCE, observables )
+                                .subscribe( new BlackholeSubscriber( blackhole ) );
+    }
+
+
+    public static void main( final String[] args ) throws RunnerException {
+        new Runner( new OptionsBuilder().include( OrderedMergeBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+
+    private static final class BlackholeSubscriber extends Subscriber<Long> {
+
+        private final Blackhole blackhole;
+
+
+        private BlackholeSubscriber( final Blackhole blackhole ) {
+            this.blackhole = blackhole;
+        }
+
+
+        @Override
+        public void onCompleted() {
+        }
+
+
+        @Override
+        public void onError( final Throwable e ) {
+            throw new RuntimeException( "Merge failed", e );
+        }
+
+
+        @Override
+        public void onNext( final Long value ) {
+            blackhole.consume( value );
+        }
+    }
+}
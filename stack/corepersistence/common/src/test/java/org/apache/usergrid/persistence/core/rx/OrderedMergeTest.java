@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import rx.Observable;
 import rx.Subscriber;
+import rx.exceptions.MissingBackpressureException;
 import rx.schedulers.Schedulers;
 
 import static org.junit.Assert.assertEquals;
@@ -148,8 +149,7 @@ public class OrderedMergeTest {
 
 
     @Test
-    @Ignore( "Pending implementation of backpressure" )
-    public void multipleOperatorSingleThreadSizeException() throws InterruptedException {
+    public void multipleOperatorSingleThreadBackpressure() throws InterruptedException {
 
         List<Integer> expected1List = Arrays.asList( 5, 3, 2, 0 );
 
@@ -163,51 +163,43 @@ public class OrderedMergeTest {
 
         Observable<Integer> expected3 = Observable.from(expected3List);
 
-        //set our buffer size to 2.  We should easily exceed this since every observable has more than 2 elements
+        //set our buffer size to 2.  Every observable has more than 2 elements, so they're only requested as we emit
 
         Observable<Integer> ordered =
                 OrderedMerge.orderedMerge(new ReverseIntegerComparator(), 2, expected1, expected2, expected3);
 
-        final CountDownLatch latch = new CountDownLatch( 1 );
-        final List<Integer> results = new ArrayList();
+        final List<Integer> results = ordered.toList().toBlocking().single();
 
-        final boolean[] errorThrown = new boolean[1];
-
-        ordered.subscribe( new Subscriber<Integer>() {
-            @Override
-            public void onCompleted() {
-                latch.countDown();
-            }
-
-
-            @Override
-            public void onError( final Throwable e ) {
-                logger.error( "Expected error thrown", e );
+        List<Integer> expected = Arrays.asList( 10, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0 );
 
-                if ( e.getMessage().contains( "The maximum queue size of 2 has been reached" ) ) {
-                    errorThrown[0] = true;
-                }
+        assertEquals( expected, results );
+    }
 
-                latch.countDown();
-            }
 
+    @Test
+    public void sourceIgnoringBackpressureSizeException() throws InterruptedException {
 
-            @Override
-            public void onNext( final Integer integer ) {
-                logger.info( "onNext invoked with {}", integer );
-                results.add( integer );
+        //emits everything on subscribe, regardless of what was requested
+        Observable<Integer> expected1 = Observable.create( subscriber -> {
+            for ( int i = 5; i >= 0; i-- ) {
+                subscriber.onNext( i );
             }
+            subscriber.onCompleted();
         } );
 
-        latch.await();
+        Observable<Integer> expected2 = Observable.from( Arrays.asList( 10, 7, 6, 4 ) );
 
+        Observable<Integer> ordered =
+                OrderedMerge.orderedMerge( new ReverseIntegerComparator(), 2, expected1, expected2 );
 
-        /**
-         * Since we're on the same thread, we should blow up before we begin producing elements our size
-         */
-        assertEquals(0, results.size());
-
-        assertTrue("An exception was thrown", errorThrown[0]);
+        try {
+            ordered.toList().toBlocking().single();
+            fail( "An exception should be thrown" );
+        }
+        catch ( RuntimeException e ) {
+            assertTrue( e.getCause() instanceof MissingBackpressureException );
+            assertTrue( e.getCause().getMessage().contains( "The maximum queue size of 2 has been reached" ) );
+        }
     }
 
 
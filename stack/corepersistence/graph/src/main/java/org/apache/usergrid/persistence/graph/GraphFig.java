@@ -55,7 +55,7 @@ public interface GraphFig extends GuicyFig {
     String SHARD_CACHE_TIMEOUT = "usergrid.graph.shard.cache.timeout";
 
     /**
-     * Provide the ability to default disable the cache for obtaining the read shard group
+     * Provide the ability to disable the cache for obtaining the read shard group
      */
     String SHARD_READ_CACHE_ENABLED = "usergrid.graph.shard.read.cache.enabled";
 
@@ -125,7 +125,7 @@ public interface GraphFig extends GuicyFig {
     @Key(SHARD_CACHE_TIMEOUT)
     long getShardCacheTimeout();
 
-    @Default("false")
+    @Default("true")
     @Key(SHARD_READ_CACHE_ENABLED)
     boolean getShardReadCacheEnabled();
 
@@ -24,6 +24,7 @@ import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import org.apache.usergrid.persistence.core.migration.data.DataMigration;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationExecutor;
 import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
 import org.apache.usergrid.persistence.core.migration.data.MigrationRelationship;
 import org.apache.usergrid.persistence.core.migration.data.ProgressObserver;
@@ -37,10 +38,7 @@ import org.apache.usergrid.persistence.graph.serialization.impl.EdgeMetadataSeri
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import rx.Observable;
-import rx.schedulers.Schedulers;
 
-import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -53,19 +51,26 @@ public class EdgeDataMigrationImpl implements DataMigration {
 
     private static final Logger logger = LoggerFactory.getLogger(EdgeDataMigrationImpl.class);
 
+    /**
+     * The name the migrated applications are saved with
+     */
+    private static final String MIGRATION_NAME = "edge_metadata";
+
     private final Keyspace keyspace;
     private final GraphManagerFactory graphManagerFactory;
     private final EdgesObservable edgesFromSourceObservable;
     private final VersionedMigrationSet<EdgeMetadataSerialization> allVersions;
     private final EdgeMetadataSerializationV2Impl edgeMetadataSerializationV2;
     private final MigrationDataProvider<GraphNode> migrationDataProvider;
+    private final DataMigrationExecutor dataMigrationExecutor;
 
     @Inject
     public EdgeDataMigrationImpl( final Keyspace keyspace, final GraphManagerFactory graphManagerFactory,
                                   final EdgesObservable edgesFromSourceObservable,
                                   final VersionedMigrationSet<EdgeMetadataSerialization> allVersions,
                                   final EdgeMetadataSerializationV2Impl edgeMetadataSerializationV2,
-                                  final MigrationDataProvider<GraphNode> migrationDataProvider ) {
+                                  final MigrationDataProvider<GraphNode> migrationDataProvider,
+                                  final DataMigrationExecutor dataMigrationExecutor ) {
 
         this.keyspace = keyspace;
         this.graphManagerFactory = graphManagerFactory;
@@ -73,6 +78,7 @@ public class EdgeDataMigrationImpl implements DataMigration {
         this.allVersions = allVersions;
         this.edgeMetadataSerializationV2 = edgeMetadataSerializationV2;
         this.migrationDataProvider = migrationDataProvider;
+        this.dataMigrationExecutor = dataMigrationExecutor;
     }
 
 
@@ -85,7 +91,9 @@ public class EdgeDataMigrationImpl implements DataMigration {
         final MigrationRelationship<EdgeMetadataSerialization> migration =
             allVersions.getMigrationRelationship( currentVersion );
 
-        final Observable<List<Edge>> observable = migrationDataProvider.getData().flatMap( graphNode -> {
+        //applications are migrated and checkpointed one at a time, the executor bounds the concurrent batches
+        dataMigrationExecutor.migrate( MIGRATION_NAME, migration.to.getImplementationVersion(), migrationDataProvider,
+            observer, ( graphNode, batchWriter ) -> {
             final GraphManager gm = graphManagerFactory.createEdgeManager( graphNode.applicationScope );
 
             //get edges from the source
@@ -100,12 +108,15 @@ public class EdgeDataMigrationImpl implements DataMigration {
                                                         batch.mergeShallow( edgeBatch );
                                                     }
 
-                                                    try {
-                                                        batch.execute();
-                                                    }
-                                                    catch ( ConnectionException e ) {
-                                                        throw new RuntimeException( "Unable to perform migration", e );
-                                                    }
+                                                    batchWriter.write( edges.size(), () -> {
+                                                        try {
+                                                            return batch.execute();
+                                                        }
+                                                        catch ( ConnectionException e ) {
+                                                            throw new RuntimeException( "Unable to perform migration",
+                                                                e );
+                                                        }
+                                                    } );
 
                                                     //update the observer so the admin can see it
                                                     final long newCount = counter.addAndGet( edges.size() );
@@ -113,10 +124,8 @@ public class EdgeDataMigrationImpl implements DataMigration {
                                                     observer.update( migration.to.getImplementationVersion(), String
                                                         .format( "Currently running.  Rewritten %d edge types",
                                                             newCount ) );
-                                                } ).subscribeOn( Schedulers.io() );
-        }, 10 );
-
-        observable.countLong().toBlocking().last();
+                                                } );
+        } );
 
         return migration.to.getImplementationVersion();
     }
@@ -26,6 +26,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import com.google.inject.Singleton;
 
@@ -52,14 +53,25 @@ import com.google.inject.Inject;
 /**
  * Simple implementation of the shard.  Uses a local Guava shard with a timeout.  If a value is not present in the
  * shard, it will need to be searched via cassandra.
+ *
+ * Entries are refreshed in the background after half the cache timeout and are never served once older than the
+ * timeout, which the shard min delta relies on for nodes that haven't seen a new shard.  Allocation and compaction on
+ * this node invalidate the entry immediately.  Each invalidation bumps a generation, and an entry loaded before the
+ * latest invalidation of its key is reloaded on read, so a load racing with an invalidation is never served.
  */
 @Singleton
 public class NodeShardCacheImpl implements NodeShardCache {
 
+    /**
+     * Invalidation generations are striped by key to bound their memory
+     */
+    private static final int INVALIDATION_STRIPES = 1024;
+
     private final NodeShardAllocation nodeShardAllocation;
     private final GraphFig graphFig;
     private ListeningScheduledExecutorService refreshExecutors;
     private LoadingCache<CacheKey, CacheEntry> graphs;
+    private final AtomicLongArray invalidations = new AtomicLongArray( INVALIDATION_STRIPES );
 
 
     /**
@@ -109,14 +121,7 @@ public class NodeShardCacheImpl implements NodeShardCache {
         GraphValidation.validateDirectedEdgeMeta( directedEdgeMeta );
 
         final CacheKey key = new CacheKey( scope, directedEdgeMeta );
-        CacheEntry entry;
-
-        try {
-            entry = this.graphs.get( key );
-        }
-        catch ( ExecutionException e ) {
-            throw new GraphRuntimeException( "Unable to load shard key for graph", e );
-        }
+        final CacheEntry entry = getEntry( key );
 
         final ShardEntryGroup shardId = entry.getShardId( timestamp );
 
@@ -140,15 +145,11 @@ public class NodeShardCacheImpl implements NodeShardCache {
 
         if( graphFig.getShardReadCacheEnabled() ) {
 
-            try {
-                entry = this.graphs.get(key);
-            } catch (ExecutionException e) {
-                throw new GraphRuntimeException("Unable to load shard key for graph", e);
-            }
+            entry = getEntry( key );
 
         } else {
 
-            entry = new CacheEntry(nodeShardAllocation.getShards( key.scope, key.directedEdgeMeta ));
+            entry = new CacheEntry( nodeShardAllocation.getShards( key.scope, key.directedEdgeMeta ), 0 );
 
         }
 
@@ -166,10 +167,50 @@ public class NodeShardCacheImpl implements NodeShardCache {
     public void invalidate( final ApplicationScope scope, final DirectedEdgeMeta directedEdgeMeta ){
 
         final CacheKey cacheKey = new CacheKey(scope, directedEdgeMeta);
+
+        //bump the generation first, a load that started before this is then caught on read
+        invalidations.incrementAndGet( stripe( cacheKey ) );
         graphs.invalidate(cacheKey);
 
     }
 
+
+    /**
+     * Get the cached entry, reloading it if it was loaded before the last invalidation of its key
+     */
+    private CacheEntry getEntry( final CacheKey key ) {
+        CacheEntry entry;
+
+        try {
+            entry = this.graphs.get( key );
+        }
+        catch ( ExecutionException e ) {
+            throw new GraphRuntimeException( "Unable to load shard key for graph", e );
+        }
+
+        if ( entry.generation != invalidations.get( stripe( key ) ) ) {
+            entry = loadEntry( key );
+            this.graphs.put( key, entry );
+        }
+
+        return entry;
+    }
+
+
+    private CacheEntry loadEntry( final CacheKey key ) {
+        //read the generation before cassandra, so an invalidation during the load marks the entry stale
+        final long generation = invalidations.get( stripe( key ) );
+
+        final Iterator<ShardEntryGroup> edges = nodeShardAllocation.getShards( key.scope, key.directedEdgeMeta );
+
+        return new CacheEntry( edges, generation );
+    }
+
+
+    private static int stripe( final CacheKey key ) {
+        return ( key.hashCode() & Integer.MAX_VALUE ) % INVALIDATION_STRIPES;
+    }
+
     /**
      * This is a race condition.  We could re-init the shard while another thread is reading it.  This is fine, the read
      * doesn't have to be precise.  The algorithm accounts for stale data.
@@ -183,11 +224,16 @@ public class NodeShardCacheImpl implements NodeShardCache {
             .listeningDecorator( Executors.newScheduledThreadPool( graphFig.getShardCacheRefreshWorkerCount() ) );
 
 
+        final long timeout = graphFig.getShardCacheTimeout();
+
         this.graphs = CacheBuilder.newBuilder()
 
             //we want to asynchronously load new values for existing ones, that way we wont' have to
             //wait for a trip to cassandra
-            .refreshAfterWrite( graphFig.getShardCacheTimeout(), TimeUnit.MILLISECONDS )
+            .refreshAfterWrite( Math.max( timeout / 2, 1 ), TimeUnit.MILLISECONDS )
+
+            //a refresh only starts on access, expire so an idle entry is never served older than the timeout
+            .expireAfterWrite( timeout, TimeUnit.MILLISECONDS )
 
 
             //set a static cache entry size here
@@ -255,11 +301,17 @@ public class NodeShardCacheImpl implements NodeShardCache {
          */
         private TreeMap<Long, ShardEntryGroup> shards;
 
+        /**
+         * The invalidation generation of the key when the load began
+         */
+        private final long generation;
+
 
-        private CacheEntry( final Iterator<ShardEntryGroup> shards ) {
+        private CacheEntry( final Iterator<ShardEntryGroup> shards, final long generation ) {
             Preconditions.checkArgument( shards.hasNext(),
                 "More than 1 entry must be present in the shard to load into cache" );
 
+            this.generation = generation;
             this.shards = new TreeMap<>();
             /**
              * TODO, we need to bound this.  While I don't envision more than a thousand groups max,
@@ -286,6 +338,11 @@ public class NodeShardCacheImpl implements NodeShardCache {
 
             final Long firstKey = shards.floorKey( maxShard );
 
+            //nothing at or below the max, there are no shards to read
+            if ( firstKey == null ) {
+                return Collections.<ShardEntryGroup>emptyList().iterator();
+            }
+
             return Collections.unmodifiableCollection( shards.headMap( firstKey, true ).descendingMap().values()).iterator();
         }
 
@@ -313,14 +370,7 @@ public class NodeShardCacheImpl implements NodeShardCache {
 
         @Override
         public CacheEntry load( final CacheKey key ) {
-
-
-            final Iterator<ShardEntryGroup> edges =
-                nodeShardAllocation.getShards( key.scope, key.directedEdgeMeta );
-
-            final CacheEntry cacheEntry = new CacheEntry( edges );
-
-            return cacheEntry;
+            return loadEntry( key );
         }
 
 
@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.apache.usergrid.persistence.core.guice.DataMigrationResetRule;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationExecutor;
 import org.apache.usergrid.persistence.core.migration.data.DataMigrationManager;
 import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
 import org.apache.usergrid.persistence.core.migration.data.TestProgressObserver;
@@ -85,6 +86,9 @@ public class EdgeDataMigrationImplTest implements DataMigrationResetRule.DataMig
     @Inject
     public EdgeMetadataSerializationV2Impl edgeMetadataSerializationV2;
 
+    @Inject
+    public DataMigrationExecutor dataMigrationExecutor;
+
 
     /**
      * Rule to do the resets we need
@@ -147,7 +151,7 @@ public class EdgeDataMigrationImplTest implements DataMigrationResetRule.DataMig
 
         EdgeDataMigrationImpl edgeDataMigrationImpl =
             new EdgeDataMigrationImpl( keyspace, graphManagerFactory, edgesFromSourceObservable, allVersions,
-                edgeMetadataSerializationV2, testMigrationProvider );
+                edgeMetadataSerializationV2, testMigrationProvider, dataMigrationExecutor );
 
 
         final int returned = edgeDataMigrationImpl.migrate( GraphDataVersions.INITIAL.getVersion(), progressObserver );
@@ -22,6 +22,7 @@ package org.apache.usergrid.persistence.graph.serialization.impl.shard;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -39,12 +40,15 @@ import com.google.common.base.Optional;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 import static org.apache.usergrid.persistence.core.util.IdGenerator.createId;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -300,6 +304,112 @@ public class NodeShardCacheTest {
     }
 
 
+    @Test
+    public void testReadCacheInvalidation() {
+
+        final GraphFig graphFig = getFigMock();
+        when( graphFig.getShardReadCacheEnabled() ).thenReturn( true );
+
+        final NodeShardAllocation allocation = mock( NodeShardAllocation.class );
+
+        final Id id = IdGenerator.createId( "test" );
+
+        final DirectedEdgeMeta directedEdgeMeta = DirectedEdgeMeta.fromSourceNodeTargetType( id, "edge", "type" );
+
+        final NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig );
+
+
+        final ShardEntryGroup minShardGroup = new ShardEntryGroup( 10000 );
+        minShardGroup.addShard( new Shard( 0, 0, true ) );
+
+        final ShardEntryGroup splitShardGroup = new ShardEntryGroup( 10000 );
+        splitShardGroup.addShard( new Shard( 10000, 1000, false ) );
+        splitShardGroup.addShard( new Shard( 0, 0, true ) );
+
+
+        when( allocation.getShards( same( scope ), same( directedEdgeMeta ) ) )
+            .thenReturn( Collections.singletonList( minShardGroup ).iterator() )
+            .thenReturn( Collections.singletonList( splitShardGroup ).iterator() );
+
+
+        Iterator<ShardEntryGroup> groups = cache.getReadShardGroup( scope, 20000, directedEdgeMeta );
+
+        assertSame( minShardGroup, groups.next() );
+        assertFalse( groups.hasNext() );
+
+        //served from the cache
+        groups = cache.getReadShardGroup( scope, 20000, directedEdgeMeta );
+
+        assertSame( minShardGroup, groups.next() );
+
+        verify( allocation, times( 1 ) ).getShards( same( scope ), same( directedEdgeMeta ) );
+
+
+        //a shard was allocated, the next read sees it
+        cache.invalidate( scope, directedEdgeMeta );
+
+        groups = cache.getReadShardGroup( scope, 20000, directedEdgeMeta );
+
+        assertSame( splitShardGroup, groups.next() );
+        assertFalse( groups.hasNext() );
+    }
+
+
+    @Test
+    public void testInvalidationDuringLoad() {
+
+        final GraphFig graphFig = getFigMock();
+        when( graphFig.getShardReadCacheEnabled() ).thenReturn( true );
+
+        final NodeShardAllocation allocation = mock( NodeShardAllocation.class );
+
+        final Id id = IdGenerator.createId( "test" );
+
+        final DirectedEdgeMeta directedEdgeMeta = DirectedEdgeMeta.fromSourceNodeTargetType( id, "edge", "type" );
+
+        final NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig );
+
+
+        final ShardEntryGroup staleShardGroup = new ShardEntryGroup( 10000 );
+        staleShardGroup.addShard( new Shard( 0, 0, true ) );
+
+        final ShardEntryGroup freshShardGroup = new ShardEntryGroup( 10000 );
+        freshShardGroup.addShard( new Shard( 10000, 1000, false ) );
+        freshShardGroup.addShard( new Shard( 0, 0, true ) );
+
+        final AtomicInteger loads = new AtomicInteger();
+
+
+        when( allocation.getShards( same( scope ), same( directedEdgeMeta ) ) )
+            .thenAnswer( new Answer<Iterator<ShardEntryGroup>>() {
+
+                @Override
+                public Iterator<ShardEntryGroup> answer( final InvocationOnMock invocationOnMock ) throws Throwable {
+
+                    //another thread allocates a shard after this load read cassandra
+                    if ( loads.getAndIncrement() == 0 ) {
+                        cache.invalidate( scope, directedEdgeMeta );
+                        return Collections.singletonList( staleShardGroup ).iterator();
+                    }
+
+                    return Collections.singletonList( freshShardGroup ).iterator();
+                }
+            } );
+
+
+        Iterator<ShardEntryGroup> groups = cache.getReadShardGroup( scope, 20000, directedEdgeMeta );
+
+        assertSame( freshShardGroup, groups.next() );
+        assertFalse( groups.hasNext() );
+
+        //the fresh entry is now cached
+        groups = cache.getReadShardGroup( scope, 20000, directedEdgeMeta );
+
+        assertSame( freshShardGroup, groups.next() );
+        assertEquals( 2, loads.get() );
+    }
+
+
     private GraphFig getFigMock() {
         final GraphFig graphFig = mock( GraphFig.class );
         when( graphFig.getShardCacheSize() ).thenReturn( 1000l );
@@ -23,6 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 
 /**
@@ -55,6 +56,13 @@ public class EntityMap extends HashMap<String,Object> {
         return map;
     }
 
+    /**
+     * Visit the top level properties of the entity in map form without building the map
+     */
+    public static void forEachProperty(Entity entity, BiConsumer<String, Object> consumer) {
+        entityToMapConverter.forEachProperty(entity, consumer);
+    }
+
     /**
      * Return true if the value is a location field which contains valid values for latitude and longitude
      * @param fieldValue
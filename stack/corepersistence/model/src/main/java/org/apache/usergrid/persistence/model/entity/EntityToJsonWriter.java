@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.model.entity;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.usergrid.persistence.model.field.AbstractField;
+import org.apache.usergrid.persistence.model.field.ArrayField;
+import org.apache.usergrid.persistence.model.field.BooleanField;
+import org.apache.usergrid.persistence.model.field.DistanceField;
+import org.apache.usergrid.persistence.model.field.DoubleField;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.Field;
+import org.apache.usergrid.persistence.model.field.FloatField;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.ListField;
+import org.apache.usergrid.persistence.model.field.LocationField;
+import org.apache.usergrid.persistence.model.field.LongField;
+import org.apache.usergrid.persistence.model.field.SetField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.UUIDField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+
+
+/**
+ * Writes an EntityObject as JSON in a single pass over its fields.  The output is the same document Jackson produces
+ * for {@link EntityToMapConverter#toMap(EntityObject)}, without building the intermediate {@link EntityMap}.
+ */
+public class EntityToJsonWriter {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ObjectMapper objectMapper = new ObjectMapper( jsonFactory ).registerModule( new GuavaModule() );
+    private final EntityToMapConverter mapConverter = new EntityToMapConverter();
+
+
+    public EntityToJsonWriter() {
+        jsonFactory.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+        objectMapper.disable( SerializationFeature.FLUSH_AFTER_WRITE_VALUE );
+    }
+
+
+    /**
+     * Write the entity to the stream.  The stream is flushed but not closed.
+     */
+    public void write( EntityObject entity, OutputStream out ) throws IOException {
+        try ( JsonGenerator generator = jsonFactory.createGenerator( out ) ) {
+            write( entity, generator );
+        }
+    }
+
+
+    /**
+     * Write the entity as a JSON object to the generator
+     */
+    public void write( EntityObject entity, JsonGenerator generator ) throws IOException {
+
+        Double distance = null;
+        boolean hasMetadata = false;
+
+        generator.writeStartObject();
+
+        for ( Field field : entity.getFields() ) {
+            if ( field instanceof DistanceField ) {
+                distance = ( ( DistanceField ) field ).getValue();
+                continue;
+            }
+
+            if ( mapConverter.isSkipped( field ) ) {
+                continue;
+            }
+
+            hasMetadata |= "metadata".equals( field.getName() );
+
+            generator.writeFieldName( field.getName() );
+            writeField( field, generator );
+        }
+
+        //a stored metadata field replaces the distance metadata, same as the map conversion
+        if ( distance != null && !hasMetadata ) {
+            generator.writeObjectFieldStart( "metadata" );
+            generator.writeNumberField( DistanceField.NAME, distance );
+            generator.writeEndObject();
+        }
+
+        generator.writeEndObject();
+    }
+
+
+    private void writeField( Field field, JsonGenerator generator ) throws IOException {
+
+        final Object value = field.getValue();
+
+        if ( value == null ) {
+            generator.writeNull();
+        }
+        else if ( field instanceof StringField ) {
+            generator.writeString( ( String ) value );
+        }
+        else if ( field instanceof LongField ) {
+            generator.writeNumber( ( Long ) value );
+        }
+        else if ( field instanceof IntegerField ) {
+            generator.writeNumber( ( Integer ) value );
+        }
+        else if ( field instanceof DoubleField ) {
+            generator.writeNumber( ( Double ) value );
+        }
+        else if ( field instanceof FloatField ) {
+            generator.writeNumber( ( Float ) value );
+        }
+        else if ( field instanceof BooleanField ) {
+            generator.writeBoolean( ( Boolean ) value );
+        }
+        else if ( field instanceof UUIDField ) {
+            generator.writeString( value.toString() );
+        }
+        else if ( field instanceof ListField || field instanceof ArrayField || field instanceof SetField ) {
+            writeCollection( ( Collection ) value, generator );
+        }
+        else if ( field instanceof EntityObjectField ) {
+            write( ( EntityObject ) value, generator ); // recursion
+        }
+        else if ( field instanceof LocationField ) {
+            LocationField locField = ( LocationField ) field;
+            generator.writeStartObject();
+            generator.writeNumberField( EntityToMapConverter.LAT, locField.getValue().getLatitude() );
+            generator.writeNumberField( EntityToMapConverter.LON, locField.getValue().getLongitude() );
+            generator.writeEndObject();
+        }
+        else {
+            //serialized objects, fall back to the map form of the single value
+            objectMapper.writeValue( generator, mapConverter.toValue( field ) );
+        }
+    }
+
+
+    private void writeCollection( Collection collection, JsonGenerator generator ) throws IOException {
+        generator.writeStartArray();
+
+        for ( Object element : collection ) {
+            if ( element instanceof EntityObject ) {
+                write( ( EntityObject ) element, generator );
+            }
+            //recurse into another list structure (2d + arrays)
+            else if ( element instanceof ListField || element instanceof ArrayField || element instanceof SetField ) {
+                writeCollection( ( Collection ) ( ( AbstractField ) element ).getValue(), generator );
+            }
+            else if ( element instanceof List || element instanceof Set ) {
+                writeCollection( ( Collection ) element, generator );
+            }
+            else {
+                objectMapper.writeValue( generator, element );
+            }
+        }
+
+        generator.writeEndArray();
+    }
+}
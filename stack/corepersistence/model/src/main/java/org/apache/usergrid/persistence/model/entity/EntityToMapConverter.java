@@ -21,6 +21,7 @@ package org.apache.usergrid.persistence.model.entity;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
@@ -65,59 +66,97 @@ public class EntityToMapConverter {
                 DistanceField distanceField = (DistanceField) field;
                 Map<String,Object> metaMap = (Map) entityMap.get("metadata");
                 metaMap.put(DistanceField.NAME, distanceField.getValue());
-            }else if ( field instanceof ListField || field instanceof ArrayField  || field instanceof SetField) {
-                Collection list = ( Collection ) field.getValue();
-                entityMap.put( field.getName(), processCollection( list )  );
+            }else if ( !isSkipped( field ) ) {
+                entityMap.put( field.getName(), toValue( field ) );
             }
-            else if ( field instanceof EntityObjectField ) {
-                EntityObject eo = ( EntityObject ) field.getValue();
-                entityMap.put( field.getName(), toMap( eo ) ); // recursion
-            }
-            else if ( field instanceof LocationField ) {
-                LocationField locField = ( LocationField ) field;
-                Map<String, Object> locMap = new HashMap<String, Object>();
-
-                // field names lat and lon trigger ElasticSearch geo location
-                locMap.put( LAT, locField.getValue().getLatitude() );
-                locMap.put( LON, locField.getValue().getLongitude() );
-                entityMap.put( field.getName(), locMap );
-            }
-            else if ( field instanceof ByteArrayField ) {
+        }
 
-                ByteArrayField bf = ( ByteArrayField ) field;
-                if( corruptedTypes.containsKey(bf.getClassinfo().getName()) ){
-                    //do not deserialize this contains Query and Query has changed
-                    continue;
-                }
-                byte[] serilizedObj = bf.getValue();
-                Object o;
-                try {
-                    o = objectMapper.readValue( serilizedObj, bf.getClassinfo() );
-                }
-                catch ( IOException e ) {
-                    throw new RuntimeException( "Can't deserialize object from field:"
-                        + field.getName()+ " classinfo: " + bf.getClassinfo()
-                        + " byteArray of length:" + serilizedObj.length
-                        , e );
-                }
-                entityMap.put( bf.getName(), o );
-            }else if (field instanceof SerializedObjectField) {
-                SerializedObjectField bf = (SerializedObjectField) field;
-
-                String serilizedObj = bf.getValue();
-                Object o;
-                try {
-                    o = objectMapper.readValue(serilizedObj, bf.getClassinfo());
-                } catch (IOException e) {
-                    throw new RuntimeException("Can't deserialize object " + serilizedObj, e);
+        return entityMap;
+    }
+
+
+    /**
+     * Visit each top level property of the entity in map form without building the enclosing map.  Nested objects
+     * and collections are converted the same way as in {@link #toMap(EntityObject)}.
+     */
+    public void forEachProperty( EntityObject entity, BiConsumer<String, Object> consumer ) {
+
+        Map<String, Object> metaMap = null;
+        boolean hasMetadata = false;
+
+        for ( Field field : entity.getFields() ) {
+            if ( field instanceof DistanceField ) {
+                if ( metaMap == null ) {
+                    metaMap = new HashMap<>();
                 }
-                entityMap.put(bf.getName(), o);
-            } else {
-                entityMap.put(field.getName(), field.getValue());
+                metaMap.put( DistanceField.NAME, field.getValue() );
+            }
+            else if ( !isSkipped( field ) ) {
+                hasMetadata |= "metadata".equals( field.getName() );
+                consumer.accept( field.getName(), toValue( field ) );
             }
         }
 
-        return entityMap;
+        //a stored metadata field replaces the distance metadata, same as toMap
+        if ( metaMap != null && !hasMetadata ) {
+            consumer.accept( "metadata", metaMap );
+        }
+    }
+
+
+    /**
+     * Returns true if the field should not be converted at all
+     */
+    public boolean isSkipped( Field field ) {
+        return field instanceof ByteArrayField
+            && corruptedTypes.containsKey( ( ( ByteArrayField ) field ).getClassinfo().getName() );
+    }
+
+
+    /**
+     * Convert a single field value to its map form.  Distance fields are handled by the caller.
+     */
+    public Object toValue( Field field ) {
+        if ( field instanceof ListField || field instanceof ArrayField  || field instanceof SetField) {
+            Collection list = ( Collection ) field.getValue();
+            return processCollection( list );
+        }
+        else if ( field instanceof EntityObjectField ) {
+            EntityObject eo = ( EntityObject ) field.getValue();
+            return toMap( eo ); // recursion
+        }
+        else if ( field instanceof LocationField ) {
+            LocationField locField = ( LocationField ) field;
+            Map<String, Object> locMap = new HashMap<String, Object>();
+
+            // field names lat and lon trigger ElasticSearch geo location
+            locMap.put( LAT, locField.getValue().getLatitude() );
+            locMap.put( LON, locField.getValue().getLongitude() );
+            return locMap;
+        }
+        else if ( field instanceof ByteArrayField ) {
+            ByteArrayField bf = ( ByteArrayField ) field;
+            byte[] serilizedObj = bf.getValue();
+            try {
+                return objectMapper.readValue( serilizedObj, bf.getClassinfo() );
+            }
+            catch ( IOException e ) {
+                throw new RuntimeException( "Can't deserialize object from field:"
+                    + field.getName()+ " classinfo: " + bf.getClassinfo()
+                    + " byteArray of length:" + serilizedObj.length
+                    , e );
+            }
+        }
+        else if (field instanceof SerializedObjectField) {
+            SerializedObjectField bf = (SerializedObjectField) field;
+            String serilizedObj = bf.getValue();
+            try {
+                return objectMapper.readValue(serilizedObj, bf.getClassinfo());
+            } catch (IOException e) {
+                throw new RuntimeException("Can't deserialize object " + serilizedObj, e);
+            }
+        }
+        return field.getValue();
     }
 
     /**
@@ -0,0 +1,108 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one
+ *  * or more contributor license agreements.  See the NOTICE file
+ *  * distributed with this work for additional information
+ *  * regarding copyright ownership.  The ASF licenses this file
+ *  * to you under the Apache License, Version 2.0 (the
+ *  * "License"); you may not use this file except in compliance
+ *  * with the License.  You may obtain a copy of the License at
+ *  *
+ *  *    http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing,
+ *  * software distributed under the License is distributed on an
+ *  * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  * KIND, either express or implied.  See the License for the
+ *  * specific language governing permissions and limitations
+ *  * under the License.
+ *
+ */
+
+package org.apache.usergrid.persistence.model.entity;
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.usergrid.persistence.model.field.DistanceField;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class EntityToJsonWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+
+    @Test
+    public void writesSameDocumentAsMapConversion() throws Exception {
+
+        final Map<String, Object> data = new HashMap<>();
+
+        final List<Object> childArray = new ArrayList<>();
+        childArray.add( "child" );
+        childArray.add( null );
+        final List<Object> parentArray = new ArrayList<>();
+        parentArray.add( childArray );
+        parentArray.add( 5 );
+
+        final Map<String, Double> coordinates = new HashMap<>( 2 );
+        coordinates.put( "latitude", 37.3338716 );
+        coordinates.put( "longitude", -121.894249 );
+
+        final Map<String, Object> objectField = new HashMap<>();
+        objectField.put( "key1", "value1" );
+        objectField.put( "key2", 2L );
+
+        data.put( "stringField", "stringFieldValue" );
+        data.put( "parentArray", parentArray );
+        data.put( "booleanField", true );
+        data.put( "doubleField", 1.5d );
+        data.put( "intField", 2 );
+        data.put( "longField", 3L );
+        data.put( "location", coordinates );
+        data.put( "objectField", objectField );
+        data.put( "nullField", null );
+
+        final Entity entity = new MapToEntityConverter().fromMap( data, true );
+        entity.setField( new DistanceField( 12.5 ) );
+
+        assertEquals( expected( entity ), written( entity ) );
+    }
+
+
+    @Test
+    public void storedMetadataReplacesDistance() throws Exception {
+
+        final Map<String, Object> metadata = new HashMap<>();
+        metadata.put( "path", "/things/1" );
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put( "metadata", metadata );
+
+        final Entity entity = new MapToEntityConverter().fromMap( data, true );
+        entity.setField( new DistanceField( 12.5 ) );
+
+        assertEquals( expected( entity ), written( entity ) );
+    }
+
+
+    private JsonNode expected( final Entity entity ) throws Exception {
+        return mapper.readTree( mapper.writeValueAsBytes( new EntityToMapConverter().toMap( entity ) ) );
+    }
+
+
+    private JsonNode written( final Entity entity ) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new EntityToJsonWriter().write( entity, out );
+        return mapper.readTree( out.toByteArray() );
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.usergrid.persistence.core.CPManager;
 import org.apache.usergrid.persistence.core.util.Health;
 import org.apache.usergrid.persistence.index.query.ParsedQuery;
 import org.apache.usergrid.persistence.model.entity.Id;
+import com.google.common.collect.Multimap;
 import rx.Observable;
 
 import java.util.Map;
@@ -77,6 +78,14 @@ public interface EntityIndex extends CPManager {
      */
     long getTotalEntitySizeInBytes(final SearchEdge edge);
 
+    /**
+     * get the number of documents indexed on an edge, without reading them
+     *
+     * @param edge
+     * @return
+     */
+    long getTotalEntityCount(final SearchEdge edge);
+
     /**
      * Initialize the index if necessary.  This is an idempotent operation and should not create an index
      * if a write and read alias already exist
@@ -170,6 +179,15 @@ public interface EntityIndex extends CPManager {
      */
     CandidateResults getAllEdgeDocuments(final IndexEdge edge, final Id entityId);
 
+    /**
+     * Find every document of many entities on the edges they were indexed on, with one search per batch of entities
+     * instead of one per edge and entity.  All versions are found, results are scrolled through as they are consumed.
+     *
+     * @param edgeEntities The entities to find the documents of, by the edge they were indexed on
+     * @return the documents, whose document ids can be deindexed directly
+     */
+    Observable<CandidateResult> getAllEdgeDocuments(final Multimap<IndexEdge, Id> edgeEntities);
+
     /**
      * delete all application records
      *
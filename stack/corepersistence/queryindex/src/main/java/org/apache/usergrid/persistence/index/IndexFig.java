@@ -199,6 +199,14 @@ public interface IndexFig extends GuicyFig {
     @Default("10")
     int maxRefreshSearches();
 
+    /**
+     * Refresh only the indexes written to through this node since their last refresh.  Only safe when all writes to
+     * the indexes go through this node, writes made elsewhere are not visible until the index refreshes itself.
+     */
+    @Key("elasticsearch.refresh_written_only")
+    @Default("false")
+    boolean isRefreshWrittenOnly();
+
     /**
      * The timeout used when writing into the Elasticsearch index. (in milliseconds)
      */
@@ -25,14 +25,13 @@ import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.EntityMap;
 
 
 /**
- * Our parser that will parse our entity map data, and return a collection of all field objects
- *
- * TODO: Decide if we're really getting rid of the Entity field object.  If not, this can be much faster using a visitor
- * pattern on the Entity
+ * Our parser that will parse our entity map data, and return a collection of all field objects.  Entities can be
+ * parsed directly, visiting each top level property as it is converted instead of building the entity map first.
  */
 public class EntityMappingParser implements FieldParser {
 
@@ -256,4 +255,18 @@ public class EntityMappingParser implements FieldParser {
 
         return fields;
     }
+
+
+    /**
+     * Parse the entity one top level property at a time
+     */
+    public Set<EntityField> parse( final Entity entity ) {
+        EntityMap.forEachProperty( entity, ( name, value ) -> {
+            pushField( name );
+            visitValue( value );
+            popField();
+        } );
+
+        return fields;
+    }
 }
@@ -26,7 +26,6 @@ import java.util.Set;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.index.IndexEdge;
 import org.apache.usergrid.persistence.model.entity.Entity;
-import org.apache.usergrid.persistence.model.entity.EntityMap;
 import org.apache.usergrid.persistence.model.entity.Id;
 
 import com.google.common.base.Optional;
@@ -42,6 +41,7 @@ import static org.apache.usergrid.persistence.index.impl.IndexingUtils.ENTITY_ID
 import static org.apache.usergrid.persistence.index.impl.IndexingUtils.ENTITY_SIZE_FIELDNAME;
 import static org.apache.usergrid.persistence.index.impl.IndexingUtils.ENTITY_TYPE_FIELDNAME;
 import static org.apache.usergrid.persistence.index.impl.IndexingUtils.ENTITY_VERSION_FIELDNAME;
+import static org.apache.usergrid.persistence.index.impl.IndexingUtils.GEO_CELLS_FIELDNAME;
 import static org.apache.usergrid.persistence.index.impl.IndexingUtils.applicationId;
 import static org.apache.usergrid.persistence.index.impl.IndexingUtils.entityId;
 import static org.apache.usergrid.persistence.index.impl.IndexingUtils.getType;
@@ -70,6 +70,17 @@ public class EntityToMapConverter {
      */
     public static Map<String, Object> convert(ApplicationScope applicationScope, final IndexEdge indexEdge,
                                               final Entity entity, Optional<Set<String>> fieldsToIndex) {
+        return convert( applicationScope, indexEdge, entity, fieldsToIndex, true );
+    }
+
+    /**
+     * Set the entity as a map with the context
+     *
+     * @param indexGeoCells True to add the geo cells of the locations, only once the mapping of the index has them
+     */
+    public static Map<String, Object> convert(ApplicationScope applicationScope, final IndexEdge indexEdge,
+                                              final Entity entity, Optional<Set<String>> fieldsToIndex,
+                                              final boolean indexGeoCells) {
 
 
 
@@ -103,13 +114,10 @@ public class EntityToMapConverter {
         //add the context for filtering later
         outputEntity.put( EDGE_SEARCH_FIELDNAME, IndexingUtils.createContextName( applicationScope, indexEdge ) );
 
-        //migrate the entity to map since we're ultimately going to use maps once we get rid of the Field objects
-        final EntityMap entityMap = EntityMap.fromEntity( entity );
-
-        //now visit our entity
+        //now visit our entity, converting each property to map form as it is parsed
         final FieldParser parser = new EntityMappingParser();
 
-        final Set<EntityField> fieldsToBeFiltered =   parser.parse( entityMap );
+        final Set<EntityField> fieldsToBeFiltered =   parser.parse( entity );
 
         //add our fields to output entity
         outputEntity.put( ENTITY_FIELDS, fieldsToBeFiltered );
@@ -132,7 +140,10 @@ public class EntityToMapConverter {
 
         }
 
-
+        //cells of the locations left after filtering, to prefilter location searches
+        if ( indexGeoCells ) {
+            outputEntity.put( GEO_CELLS_FIELDNAME, GeoCells.forFields( fieldsToBeFiltered ) );
+        }
 
         return outputEntity;
     }
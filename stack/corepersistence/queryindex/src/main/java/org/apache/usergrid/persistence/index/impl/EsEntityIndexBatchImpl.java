@@ -52,13 +52,16 @@ public class EsEntityIndexBatchImpl implements EntityIndexBatch {
 
     private final EntityIndex entityIndex;
     private final ApplicationScope applicationScope;
+    private final boolean indexGeoCells;
     private IndexOperationMessage container;
 
 
     public EsEntityIndexBatchImpl( final IndexLocationStrategy locationStrategy,
-                                   final EntityIndex entityIndex
+                                   final EntityIndex entityIndex,
+                                   final boolean indexGeoCells
     ) {
         this.indexLocationStrategy = locationStrategy;
+        this.indexGeoCells = indexGeoCells;
 
         this.entityIndex = entityIndex;
         this.applicationScope = indexLocationStrategy.getApplicationScope();
@@ -88,7 +91,8 @@ public class EsEntityIndexBatchImpl implements EntityIndexBatch {
         }
 
         //add app id for indexing
-        container.addIndexRequest(new IndexOperation(writeAlias, applicationScope, indexEdge, entity,fieldsToIndex));
+        container.addIndexRequest(new IndexOperation(writeAlias, applicationScope, indexEdge, entity,fieldsToIndex,
+            indexGeoCells));
         return this;
     }
 
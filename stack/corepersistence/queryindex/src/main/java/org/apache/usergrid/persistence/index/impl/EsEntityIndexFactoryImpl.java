@@ -23,6 +23,7 @@ import java.util.concurrent.ExecutionException;
 
 import com.google.inject.Singleton;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.migration.data.MigrationInfoCache;
 import org.apache.usergrid.persistence.index.*;
 
 import com.google.common.cache.CacheBuilder;
@@ -40,6 +41,8 @@ public class EsEntityIndexFactoryImpl implements EntityIndexFactory{
     private final IndexCache indexCache;
     private final EsProvider provider;
     private final MetricsFactory metricsFactory;
+    private final IndexRefresher indexRefresher;
+    private final MigrationInfoCache migrationInfoCache;
 
     private LoadingCache<IndexLocationStrategy, EntityIndex> eiCache =
         CacheBuilder.newBuilder().maximumSize( 1000 ).build( new CacheLoader<IndexLocationStrategy, EntityIndex>() {
@@ -49,7 +52,9 @@ public class EsEntityIndexFactoryImpl implements EntityIndexFactory{
                     indexCache,
                     config,
                     metricsFactory,
-                    locationStrategy
+                    locationStrategy,
+                    indexRefresher,
+                    migrationInfoCache
                 );
                 index.initialize();
                 return index;
@@ -60,13 +65,17 @@ public class EsEntityIndexFactoryImpl implements EntityIndexFactory{
     public EsEntityIndexFactoryImpl( final IndexFig indexFig,
                                      final IndexCache indexCache,
                                      final EsProvider provider,
-                                     final MetricsFactory metricsFactory
+                                     final MetricsFactory metricsFactory,
+                                     final IndexRefresher indexRefresher,
+                                     final MigrationInfoCache migrationInfoCache
 
     ){
         this.config = indexFig;
         this.indexCache = indexCache;
         this.provider = provider;
         this.metricsFactory = metricsFactory;
+        this.indexRefresher = indexRefresher;
+        this.migrationInfoCache = migrationInfoCache;
     }
 
 
@@ -23,13 +23,17 @@ import com.codahale.metrics.Timer;
 import com.google.common.base.*;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import com.google.common.io.Resources;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.metrics.ObservableTimer;
+import org.apache.usergrid.persistence.core.migration.data.MigrationInfoCache;
 import org.apache.usergrid.persistence.core.migration.data.VersionedData;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.Health;
@@ -37,6 +41,7 @@ import org.apache.usergrid.persistence.core.util.StringUtils;
 import org.apache.usergrid.persistence.index.*;
 import org.apache.usergrid.persistence.index.ElasticSearchQueryBuilder.SearchRequestBuilderStrategyV2;
 import org.apache.usergrid.persistence.index.exceptions.*;
+import org.apache.usergrid.persistence.index.migration.EsIndexMappingMigrationPlugin;
 import org.apache.usergrid.persistence.index.migration.IndexDataVersions;
 import org.apache.usergrid.persistence.index.query.Identifier;
 import org.apache.usergrid.persistence.index.query.ParsedQuery;
@@ -55,7 +60,6 @@ import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
-import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
 import org.elasticsearch.action.admin.indices.stats.CommonStats;
 import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
@@ -117,6 +121,11 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
 
     private static final String VERIFY_TYPE = "entity";
 
+    //number of entities whose edge documents are found with one search
+    private static final int DEINDEX_SEARCH_ENTITIES = 1000;
+    //number of edge documents read per scroll page
+    private static final int DEINDEX_PAGE_SIZE = 1000;
+
     private static final ImmutableMap<String, Object> DEFAULT_PAYLOAD =
         ImmutableMap.<String, Object>builder().put(IndexingUtils.ENTITY_ID_FIELDNAME, UUIDGenerator.newTimeUUID().toString()).build();
 
@@ -129,6 +138,8 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
     private final FailureMonitorImpl failureMonitor;
     private final Timer aggregationTimer;
     private final Timer refreshTimer;
+    private final IndexRefresher indexRefresher;
+    private final MigrationInfoCache migrationInfoCache;
 
     private IndexCache aliasCache;
     private Timer mappingTimer;
@@ -144,7 +155,9 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
                               final IndexCache indexCache,
                               final IndexFig indexFig,
                               final MetricsFactory metricsFactory,
-                              final IndexLocationStrategy indexLocationStrategy
+                              final IndexLocationStrategy indexLocationStrategy,
+                              final IndexRefresher indexRefresher,
+                              final MigrationInfoCache migrationInfoCache
     ) {
 
         this.indexFig = indexFig;
@@ -167,6 +180,8 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
         this.searchTimer = metricsFactory.getTimer(EsEntityIndexImpl.class, "search");
         this.aggregationTimer = metricsFactory.getTimer( EsEntityIndexImpl.class, "aggregations" );
         this.refreshTimer = metricsFactory.getTimer( EsEntityIndexImpl.class, "index.refresh" );
+        this.indexRefresher = indexRefresher;
+        this.migrationInfoCache = migrationInfoCache;
 
     }
 
@@ -372,7 +387,6 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
     public Observable<IndexRefreshCommandInfo> refreshAsync() {
 
         refreshIndexMeter.mark();
-        final long start = System.currentTimeMillis();
 
         String[] indexes = getIndexes();
         if (indexes.length == 0) {
@@ -380,27 +394,9 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
                 logger.trace("Not refreshing indexes. none found");
             }
         }
-        //Added For Graphite Metrics
-        RefreshResponse response =
-            esProvider.getClient().admin().indices().prepareRefresh(indexes).execute().actionGet();
-        int failedShards = response.getFailedShards();
-        int successfulShards = response.getSuccessfulShards();
-        ShardOperationFailedException[] sfes = response.getShardFailures();
-        if (sfes != null) {
-            for (ShardOperationFailedException sfe : sfes) {
-                logger.error("Failed to refresh index:{} reason:{}", sfe.index(), sfe.reason());
-            }
-        }
-        if (logger.isTraceEnabled()) {
-            logger.trace("Refreshed indexes: {},success:{} failed:{} ", StringUtils.join(indexes, ", "),
-                successfulShards, failedShards);
-        }
-
-        IndexRefreshCommandInfo refreshResults = new IndexRefreshCommandInfo(failedShards == 0,
-            System.currentTimeMillis() - start);
 
-
-        return ObservableTimer.time(Observable.just(refreshResults), refreshTimer);
+        //concurrent refreshes of the alias are coalesced, and the caller's thread never waits on elasticsearch
+        return ObservableTimer.time(indexRefresher.refresh(alias.getReadAlias(), indexes), refreshTimer);
     }
 
 
@@ -416,8 +412,12 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
 
     @Override
     public EntityIndexBatch createBatch() {
+        //existing indexes have a strict mapping, they reject the geo cells until the mapping migration adds them
+        final boolean indexGeoCells = migrationInfoCache.getVersion( EsIndexMappingMigrationPlugin.PLUGIN_NAME )
+            >= EsIndexMappingMigrationPlugin.GEO_CELLS_VERSION;
+
         EntityIndexBatch batch =
-            new EsEntityIndexBatchImpl(indexLocationStrategy, this );
+            new EsEntityIndexBatchImpl(indexLocationStrategy, this, indexGeoCells );
         return batch;
     }
 
@@ -542,69 +542,107 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
 
     @Override
     public CandidateResults getAllEdgeDocuments( final IndexEdge edge, final Id entityId ) {
-        /**
-         * Take a list of IndexEdge, with an entityId
-         and query Es directly for matches
-
-         */
-        IndexValidationUtils.validateSearchEdge(edge);
         Preconditions.checkNotNull(entityId, "entityId cannot be null");
 
-        SearchResponse searchResponse;
-        List<CandidateResult> candidates = new ArrayList<>();
+        final List<CandidateResult> candidates =
+            getAllEdgeDocuments( ImmutableListMultimap.of( edge, entityId ) ).toList().toBlocking().single();
 
-        // never let this fetch more than 100 to save memory
-        final int searchLimit = Math.min(100, indexFig.getVersionQueryLimit());
+        return new CandidateResults( candidates, Collections.EMPTY_SET);
+    }
 
-        final QueryBuilder nodeIdQuery = QueryBuilders
-            .termQuery(IndexingUtils.EDGE_NODE_ID_FIELDNAME, IndexingUtils.nodeId(edge.getNodeId()));
 
-        final QueryBuilder entityIdQuery = QueryBuilders
-            .termQuery(IndexingUtils.ENTITY_ID_FIELDNAME, IndexingUtils.entityId(entityId));
+    @Override
+    public Observable<CandidateResult> getAllEdgeDocuments( final Multimap<IndexEdge, Id> edgeEntities ) {
 
-        final SearchRequestBuilder srb = searchRequestBuilderStrategyV2.getBuilder()
-            .addSort(IndexingUtils.EDGE_TIMESTAMP_FIELDNAME, SortOrder.ASC);
+        final List<Map.Entry<IndexEdge, Id>> entries = new ArrayList<>( edgeEntities.entries() );
 
+        for ( Map.Entry<IndexEdge, Id> entry : entries ) {
+            IndexValidationUtils.validateSearchEdge( entry.getKey() );
+            Preconditions.checkNotNull( entry.getValue(), "entityId cannot be null" );
+        }
 
-        if ( logger.isDebugEnabled() ) {
-            logger.debug( "Searching for edges in (read alias): {}\n  nodeId: {},\n   query: {} ",
-                this.alias.getReadAlias(),entityId, srb );
+        // one search per batch of entities, each scrolled through as the results are consumed
+        return Observable.from( Lists.partition( entries, DEINDEX_SEARCH_ENTITIES ) )
+            .concatMap( batch -> scrollEdgeDocuments( batch ) );
+    }
+
+
+    /**
+     * Scroll through the documents of the entities on the edges.  Documents are found by the node, name and node type
+     * of their edge and by their entity, so the entities are grouped by their edges into one filter.  Filtering on the
+     * node alone would also find the documents of the other edges between the same two nodes.
+     */
+    private Observable<CandidateResult> scrollEdgeDocuments( final List<Map.Entry<IndexEdge, Id>> edgeEntities ) {
+
+        //the timestamp isn't part of the document id, so edges differing only by timestamp share a filter
+        final Map<SearchEdge, Set<String>> entitiesByEdge = new LinkedHashMap<>();
+        for ( Map.Entry<IndexEdge, Id> entry : edgeEntities ) {
+            final IndexEdge edge = entry.getKey();
+            final SearchEdge searchEdge = new SearchEdgeImpl( edge.getNodeId(), edge.getEdgeName(), edge.getNodeType() );
+
+            entitiesByEdge.computeIfAbsent( searchEdge, key -> new LinkedHashSet<>() )
+                .add( IndexingUtils.entityId( entry.getValue() ) );
         }
 
-        try {
+        final BoolFilterBuilder filter = FilterBuilders.boolFilter();
+        entitiesByEdge.forEach( ( edge, entityIds ) -> filter.should( FilterBuilders.boolFilter()
+            .must( FilterBuilders.termFilter( IndexingUtils.EDGE_NODE_ID_FIELDNAME,
+                IndexingUtils.nodeId( edge.getNodeId() ) ) )
+            .must( FilterBuilders.termFilter( IndexingUtils.EDGE_NAME_FIELDNAME, edge.getEdgeName() ) )
+            .must( FilterBuilders.termFilter( IndexingUtils.EDGE_NODE_TYPE_FIELDNAME, edge.getNodeType().name() ) )
+            .must( FilterBuilders.termsFilter( IndexingUtils.ENTITY_ID_FIELDNAME, entityIds ) ) ) );
 
-            long queryTimestamp = 0L;
+        final TimeValue keepAlive = TimeValue.timeValueMinutes( indexFig.getQueryCursorTimeout() );
 
+        return Observable.create( subscriber -> {
 
-            QueryBuilder timestampQuery =  QueryBuilders
-                .rangeQuery(IndexingUtils.EDGE_TIMESTAMP_FIELDNAME)
-                .gte(queryTimestamp);
+            String scrollId = null;
 
-            QueryBuilder finalQuery = QueryBuilders.constantScoreQuery(
-                QueryBuilders
-                    .boolQuery()
-                    .must(entityIdQuery)
-                    .must(nodeIdQuery)
-                    .must(timestampQuery)
-            );
+            try {
+                final SearchRequestBuilder srb = searchRequestBuilderStrategyV2.getBuilder()
+                    .setQuery( QueryBuilders.constantScoreQuery( filter ) )
+                    .addSort( IndexingUtils.EDGE_TIMESTAMP_FIELDNAME, SortOrder.ASC )
+                    .setNoFields()
+                    .setSize( DEINDEX_PAGE_SIZE )
+                    .setScroll( keepAlive );
+
+                if ( logger.isDebugEnabled() ) {
+                    logger.debug( "Searching for edge documents of {} entities in (read alias): {}\n  query: {} ",
+                        edgeEntities.size(), this.alias.getReadAlias(), srb );
+                }
 
-            searchResponse = srb
-                .setQuery(finalQuery)
-                .setSize(searchLimit)
-                .execute()
-                .actionGet();
+                SearchResponse searchResponse = srb.execute().actionGet();
 
-            candidates = aggregateScrollResults(candidates, searchResponse, null);
+                while ( !subscriber.isUnsubscribed() ) {
+                    scrollId = searchResponse.getScrollId();
 
-        }
-        catch ( Throwable t ) {
-            logger.error( "Unable to communicate with Elasticsearch", t.getMessage() );
-            failureMonitor.fail( "Unable to execute batch", t );
-            throw t;
-        }
-        failureMonitor.success();
+                    final SearchHit[] hits = searchResponse.getHits().getHits();
+                    if ( hits.length == 0 ) {
+                        break;
+                    }
 
-        return new CandidateResults( candidates, Collections.EMPTY_SET);
+                    for ( SearchHit hit : hits ) {
+                        subscriber.onNext( parseIndexDocId( hit ) );
+                    }
+
+                    searchResponse = searchRequestBuilderStrategyV2.getScrollBuilder( scrollId )
+                        .setScroll( keepAlive ).execute().actionGet();
+                }
+
+                failureMonitor.success();
+                subscriber.onCompleted();
+            }
+            catch ( Throwable t ) {
+                logger.error( "Unable to communicate with Elasticsearch", t );
+                failureMonitor.fail( "Unable to execute batch", t );
+                subscriber.onError( t );
+            }
+            finally {
+                if ( scrollId != null ) {
+                    esProvider.getClient().prepareClearScroll().addScrollId( scrollId ).execute();
+                }
+            }
+        } );
     }
 
 
@@ -886,6 +924,16 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
         return  getEntitySizeAggregation(builder);
     }
 
+    @Override
+    public long getTotalEntityCount( final SearchEdge edge ) {
+        SearchRequestBuilder builder = searchRequestBuilderStrategyV2.getBuilder()
+            .setQuery( new TermQueryBuilder( "edgeSearch", IndexingUtils.createContextName( applicationScope, edge ) ) )
+            .setSize( 0 );
+
+        Observable<Long> o = Observable.from( builder.execute() ).map( response -> response.getHits().getTotalHits() );
+        return ObservableTimer.time( o, aggregationTimer ).toBlocking().lastOrDefault( -1L );
+    }
+
     private long getEntitySizeAggregation( final SearchRequestBuilder builder ) {
         final String key = "entitySize";
         SumBuilder sumBuilder = new SumBuilder(key);
@@ -61,6 +61,7 @@ public class EsIndexProducerImpl implements IndexProducer {
     private final Counter indexSizeCounter;
     private final Histogram roundtripTimer;
     private final Timer indexTimer;
+    private final IndexRefresher indexRefresher;
 
 
     private AtomicLong inFlight = new AtomicLong();
@@ -68,7 +69,8 @@ public class EsIndexProducerImpl implements IndexProducer {
 
     @Inject
     public EsIndexProducerImpl(final IndexFig config, final EsProvider provider,
-                               final MetricsFactory metricsFactory, final IndexFig indexFig) {
+                               final MetricsFactory metricsFactory, final IndexFig indexFig,
+                               final IndexRefresher indexRefresher) {
         this.indexSizeCounter = metricsFactory.getCounter(EsIndexProducerImpl.class, "index_buffer.size");
         this.roundtripTimer = metricsFactory.getHistogram(EsIndexProducerImpl.class, "index_buffer.message_cycle");
 
@@ -82,6 +84,7 @@ public class EsIndexProducerImpl implements IndexProducer {
         this.failureMonitor = new FailureMonitorImpl(config, provider);
         this.client = provider.getClient();
         this.indexFig = indexFig;
+        this.indexRefresher = indexRefresher;
 
 
         //batch up sets of some size and send them in batch
@@ -221,6 +224,9 @@ public class EsIndexProducerImpl implements IndexProducer {
 
                 errorString.append( response.getFailureMessage() ).append( "\n" );
             }
+            else {
+                indexRefresher.markWritten( response.getIndex() );
+            }
         }
 
         if ( error ) {
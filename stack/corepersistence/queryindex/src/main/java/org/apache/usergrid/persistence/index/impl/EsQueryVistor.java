@@ -290,12 +290,13 @@ public class EsQueryVistor implements QueryVisitor {
         float distance = op.getDistance().getFloatValue();
 
 
+        //the bounding box of the distance is checked on the indexed lat and lon first
         final FilterBuilder fb =
                 FilterBuilders.geoDistanceFilter( IndexingUtils.FIELD_LOCATION_NESTED ).lat( lat ).lon( lon )
-                              .distance( distance, DistanceUnit.METERS );
+                              .distance( distance, DistanceUnit.METERS ).optimizeBbox( "indexed" );
 
 
-        filterBuilders.push( fieldNameTerm( name, fb ) );
+        filterBuilders.push( geoCellsPrefilter( name, lat, lon, distance, fieldNameTerm( name, fb ) ) );
 
 
         //create our geo-sort based off of this point specified
@@ -520,6 +521,27 @@ public class EsQueryVistor implements QueryVisitor {
     }
 
 
+    /**
+     * Only check the distance to the nested locations of documents in the cells covering the circle.  Documents
+     * indexed before cells were stored, or before the mapping migration added them, have none and are always checked.
+     */
+    private FilterBuilder geoCellsPrefilter( final String fieldName, final float lat, final float lon,
+                                             final float distance, final FilterBuilder distanceFilter ) {
+
+        final Set<String> cells = GeoCells.covering( fieldName, lat, lon, distance );
+
+        if ( cells.isEmpty() ) {
+            return distanceFilter;
+        }
+
+        final FilterBuilder cellsFilter = FilterBuilders.boolFilter()
+            .should( FilterBuilders.termsFilter( IndexingUtils.GEO_CELLS_FIELDNAME, cells ) )
+            .should( FilterBuilders.missingFilter( IndexingUtils.GEO_CELLS_FIELDNAME ) );
+
+        return FilterBuilders.boolFilter().must( cellsFilter ).must( distanceFilter );
+    }
+
+
     /**
      * Generate the field name term for the field name for filters
      */
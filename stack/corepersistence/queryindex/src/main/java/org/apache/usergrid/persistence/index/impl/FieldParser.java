@@ -27,6 +27,8 @@ package org.apache.usergrid.persistence.index.impl;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.usergrid.persistence.model.entity.Entity;
+
 
 /**
  * Interface for visiting a Map as JSON
@@ -41,4 +43,11 @@ public interface FieldParser {
     Set<EntityField> parse(final Map<String, ?> map );
 
 
+    /**
+     * Visit the properties of an entity as they are converted to map form, without building the map first
+     * @param entity
+     */
+    Set<EntityField> parse(final Entity entity );
+
+
 }
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.elasticsearch.common.geo.GeoHashUtils;
+
+
+/**
+ * Geohash cells of the locations in a document, kept at the top level of the document so location searches can
+ * discard most documents with a terms filter before the distance to the nested locations is computed.
+ *
+ * Every location is stored as its geohash at each precision up to {@link #MAX_PRECISION}, prefixed with the field
+ * name.  A search covers the bounding box of its circle with the fewest cells of a single precision, so a document in
+ * none of the cells can't be within the distance.
+ */
+public final class GeoCells {
+
+    /**
+     * The finest precision stored, cells are about 38m by 19m
+     */
+    public static final int MAX_PRECISION = 8;
+
+    /**
+     * The most cells a search covers its circle with, a coarser precision is used if more are needed
+     */
+    public static final int MAX_CELLS = 16;
+
+    /**
+     * Stored in every document, so documents indexed before cells existed are the ones without the field
+     */
+    public static final String INDEXED_MARKER = "_";
+
+    private static final String SEPARATOR = ":";
+
+    private static final double METERS_PER_DEGREE = 111_195;
+
+    /**
+     * Widen the searched circle, so the approximations of the distance in the filter never fall outside the cells
+     */
+    private static final double DISTANCE_MARGIN = 1.01;
+
+
+    private GeoCells() {}
+
+
+    /**
+     * Get the cells of every location field in the document fields
+     */
+    public static Set<String> forFields( final Set<EntityField> fields ) {
+
+        final Set<String> cells = new HashSet<>();
+        cells.add( INDEXED_MARKER );
+
+        for ( EntityField field : fields ) {
+            final Object location = field.get( IndexingUtils.FIELD_LOCATION );
+
+            if ( !( location instanceof Map ) ) {
+                continue;
+            }
+
+            final Double lat = toDouble( ( ( Map ) location ).get( "lat" ) );
+            final Double lon = toDouble( ( ( Map ) location ).get( "lon" ) );
+
+            if ( lat == null || lon == null ) {
+                continue;
+            }
+
+            final String hash = GeoHashUtils.encode( lat, lon, MAX_PRECISION );
+            final String fieldName = ( String ) field.get( IndexingUtils.FIELD_NAME );
+
+            for ( int precision = 1; precision <= MAX_PRECISION; precision++ ) {
+                cells.add( cell( fieldName, hash.substring( 0, precision ) ) );
+            }
+        }
+
+        return cells;
+    }
+
+
+    /**
+     * Get the cells covering the circle around the point, empty if the circle is too large or too close to a pole to
+     * be covered, then every document has to be checked
+     */
+    public static Set<String> covering( final String fieldName, final double lat, final double lon,
+                                        final double distanceMeters ) {
+
+        final double latRadius = distanceMeters * DISTANCE_MARGIN / METERS_PER_DEGREE;
+        final double minLat = lat - latRadius;
+        final double maxLat = lat + latRadius;
+
+        if ( minLat <= -90 || maxLat >= 90 ) {
+            return Collections.emptySet();
+        }
+
+        final double lonRadius =
+            latRadius / Math.cos( Math.toRadians( Math.max( Math.abs( minLat ), Math.abs( maxLat ) ) ) );
+
+        if ( lonRadius >= 180 ) {
+            return Collections.emptySet();
+        }
+
+        final double minLon = lon - lonRadius;
+        final double maxLon = lon + lonRadius;
+
+        for ( int precision = MAX_PRECISION; precision > 0; precision-- ) {
+
+            // a geohash alternates longitude and latitude bits, starting with longitude
+            final double cellHeight = 180d / ( 1L << ( precision * 5 / 2 ) );
+            final double cellWidth = 360d / ( 1L << ( ( precision * 5 + 1 ) / 2 ) );
+
+            // the grid starts at -90 and -180, which are multiples of the cell sizes
+            final long firstRow = ( long ) Math.floor( minLat / cellHeight );
+            final long rows = ( long ) Math.floor( maxLat / cellHeight ) - firstRow + 1;
+            final long firstColumn = ( long ) Math.floor( minLon / cellWidth );
+            final long columns = ( long ) Math.floor( maxLon / cellWidth ) - firstColumn + 1;
+
+            if ( rows * columns > MAX_CELLS ) {
+                continue;
+            }
+
+            final Set<String> cells = new HashSet<>();
+
+            for ( long row = firstRow; row < firstRow + rows; row++ ) {
+                for ( long column = firstColumn; column < firstColumn + columns; column++ ) {
+                    // encode the center of the cell, wrapping columns past the antimeridian
+                    cells.add( cell( fieldName, GeoHashUtils
+                        .encode( ( row + 0.5 ) * cellHeight, wrapLongitude( ( column + 0.5 ) * cellWidth ),
+                            precision ) ) );
+                }
+            }
+
+            return cells;
+        }
+
+        return Collections.emptySet();
+    }
+
+
+    private static String cell( final String fieldName, final String geohash ) {
+        return fieldName + SEPARATOR + geohash;
+    }
+
+
+    private static double wrapLongitude( final double lon ) {
+        return ( ( lon + 180 ) % 360 + 360 ) % 360 - 180;
+    }
+
+
+    private static Double toDouble( final Object value ) {
+        if ( value instanceof Number ) {
+            return ( ( Number ) value ).doubleValue();
+        }
+
+        try {
+            return value == null ? null : Double.parseDouble( value.toString() );
+        }
+        catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+}
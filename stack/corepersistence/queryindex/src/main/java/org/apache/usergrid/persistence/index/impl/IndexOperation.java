@@ -49,10 +49,10 @@ public class IndexOperation implements BatchOperation {
     public Map<String, Object> data;
 
     public IndexOperation( final String writeAlias, final ApplicationScope applicationScope, IndexEdge indexEdge,
-                           Entity entity, Optional<Set<String>> fieldsToIndex ) {
+                           Entity entity, Optional<Set<String>> fieldsToIndex, boolean indexGeoCells ) {
 
         this( writeAlias, IndexingUtils.createIndexDocId( applicationScope, entity, indexEdge ),
-            EntityToMapConverter.convert( applicationScope, indexEdge, entity, fieldsToIndex ) );
+            EntityToMapConverter.convert( applicationScope, indexEdge, entity, fieldsToIndex, indexGeoCells ) );
 
     }
 
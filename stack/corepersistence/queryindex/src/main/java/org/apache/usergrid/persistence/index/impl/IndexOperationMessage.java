@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
 
@@ -43,12 +44,20 @@ public class IndexOperationMessage implements Serializable {
     @JsonProperty
     private long creationTime;
 
+    /**
+     * Left out when empty, so messages without changes are read by nodes that don't know the property
+     */
+    @JsonProperty
+    @JsonInclude( JsonInclude.Include.NON_EMPTY )
+    private final Set<IndexedChange> changes;
+
 
 
 
     public IndexOperationMessage() {
         this.indexRequests = new HashSet<>();
         this.deIndexRequests = new HashSet<>();
+        this.changes = new HashSet<>();
         this.creationTime = System.currentTimeMillis();
     }
 
@@ -65,6 +74,14 @@ public class IndexOperationMessage implements Serializable {
 
 
 
+    /**
+     * Add a change to announce once the operations of this message have been applied
+     */
+    public void addChange( final IndexedChange change ) {
+        this.changes.add( change );
+    }
+
+
     public Set<IndexOperation> getIndexRequests() {
         return indexRequests;
     }
@@ -75,6 +92,11 @@ public class IndexOperationMessage implements Serializable {
     }
 
 
+    public Set<IndexedChange> getChanges() {
+        return changes;
+    }
+
+
     @JsonIgnore
     public boolean isEmpty(){
         return indexRequests.isEmpty() && deIndexRequests.isEmpty();
@@ -117,5 +139,6 @@ public class IndexOperationMessage implements Serializable {
     public void ingest(IndexOperationMessage singleMessage) {
         this.indexRequests.addAll(singleMessage.getIndexRequests());
         this.deIndexRequests.addAll(singleMessage.getDeIndexRequests());
+        this.changes.addAll(singleMessage.getChanges());
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ShardOperationFailedException;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.util.StringUtils;
+import org.apache.usergrid.persistence.index.EntityIndex.IndexRefreshCommandInfo;
+import org.apache.usergrid.persistence.index.IndexFig;
+
+import com.codahale.metrics.Meter;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import rx.Observable;
+
+
+/**
+ * Refreshes indexes without blocking the caller, coalescing the refreshes requested for the same alias.  At most one
+ * refresh per alias is in flight.  A request made while one is in flight can't use it, since the refresh may have
+ * started before the caller's writes, so it joins the single refresh that starts once the one in flight finishes.
+ * However many callers ask, an alias is refreshed at most twice in a row.
+ *
+ * The indexes written to are recorded, so refreshes can be limited to the indexes written to since their last refresh
+ * when all writes go through this node.
+ */
+@Singleton
+public class IndexRefresher {
+
+    private static final Logger logger = LoggerFactory.getLogger( IndexRefresher.class );
+
+    private final EsProvider esProvider;
+    private final IndexFig indexFig;
+
+    private final Meter refreshMeter;
+    private final Meter coalescedMeter;
+
+    private final Set<String> writtenIndexes = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, AliasRefresh> refreshes = new ConcurrentHashMap<>();
+
+
+    @Inject
+    public IndexRefresher( final EsProvider esProvider, final IndexFig indexFig,
+                           final MetricsFactory metricsFactory ) {
+        this.esProvider = esProvider;
+        this.indexFig = indexFig;
+        this.refreshMeter = metricsFactory.getMeter( IndexRefresher.class, "index.refresh.executed" );
+        this.coalescedMeter = metricsFactory.getMeter( IndexRefresher.class, "index.refresh.coalesced" );
+    }
+
+
+    /**
+     * Record a write to the index, so it is refreshed when only written indexes are refreshed
+     */
+    public void markWritten( final String index ) {
+        writtenIndexes.add( index );
+    }
+
+
+    /**
+     * Refresh the indexes behind the alias.  The refresh is requested when this is called, the observable emits once
+     * it completes.
+     */
+    public Observable<IndexRefreshCommandInfo> refresh( final String alias, final String[] indexes ) {
+        final long start = System.currentTimeMillis();
+
+        final Set<String> toRefresh = new LinkedHashSet<>( Arrays.asList( indexes ) );
+
+        if ( indexFig.isRefreshWrittenOnly() ) {
+            toRefresh.retainAll( writtenIndexes );
+        }
+
+        if ( toRefresh.isEmpty() ) {
+            if ( logger.isTraceEnabled() ) {
+                logger.trace( "Not refreshing alias {}, no indexes to refresh", alias );
+            }
+            return Observable.just( new IndexRefreshCommandInfo( true, 0 ) );
+        }
+
+        final ListenableFuture<Boolean> refreshed =
+            refreshes.computeIfAbsent( alias, a -> new AliasRefresh( a ) ).request( toRefresh );
+
+        return Observable.create( subscriber -> Futures.addCallback( refreshed, new FutureCallback<Boolean>() {
+            @Override
+            public void onSuccess( final Boolean succeeded ) {
+                subscriber.onNext( new IndexRefreshCommandInfo( succeeded, System.currentTimeMillis() - start ) );
+                subscriber.onCompleted();
+            }
+
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                subscriber.onError( t );
+            }
+        } ) );
+    }
+
+
+    /**
+     * The refresh in flight for an alias and the one waiting for it to finish
+     */
+    private final class AliasRefresh {
+
+        private final String alias;
+
+        private SettableFuture<Boolean> inFlight;
+        private SettableFuture<Boolean> next;
+        private final Set<String> nextIndexes = new LinkedHashSet<>();
+
+
+        private AliasRefresh( final String alias ) {
+            this.alias = alias;
+        }
+
+
+        private ListenableFuture<Boolean> request( final Set<String> indexes ) {
+            final SettableFuture<Boolean> started;
+
+            synchronized ( this ) {
+                if ( inFlight != null ) {
+                    if ( next == null ) {
+                        next = SettableFuture.create();
+                    }
+                    else {
+                        coalescedMeter.mark();
+                    }
+                    nextIndexes.addAll( indexes );
+                    return next;
+                }
+
+                inFlight = SettableFuture.create();
+                started = inFlight;
+            }
+
+            execute( started, indexes );
+            return started;
+        }
+
+
+        private void execute( final SettableFuture<Boolean> refresh, final Set<String> indexes ) {
+            refreshMeter.mark();
+
+            // writes from now on need another refresh
+            writtenIndexes.removeAll( indexes );
+
+            final String[] indexNames = indexes.toArray( new String[indexes.size()] );
+
+            try {
+                esProvider.getClient().admin().indices().prepareRefresh( indexNames )
+                          .execute( new ActionListener<RefreshResponse>() {
+                              @Override
+                              public void onResponse( final RefreshResponse response ) {
+                                  refresh.set( logResponse( indexNames, response ) );
+                                  finished();
+                              }
+
+
+                              @Override
+                              public void onFailure( final Throwable e ) {
+                                  logger.error( "Failed to refresh indexes {}", StringUtils.join( indexNames, ", " ),
+                                      e );
+                                  refresh.setException( e );
+                                  finished();
+                              }
+                          } );
+            }
+            catch ( Throwable t ) {
+                refresh.setException( t );
+                finished();
+            }
+        }
+
+
+        /**
+         * Start the waiting refresh, if any
+         */
+        private void finished() {
+            final SettableFuture<Boolean> started;
+            final Set<String> indexes;
+
+            synchronized ( this ) {
+                inFlight = next;
+                next = null;
+
+                if ( inFlight == null ) {
+                    return;
+                }
+
+                started = inFlight;
+                indexes = new LinkedHashSet<>( nextIndexes );
+                nextIndexes.clear();
+            }
+
+            execute( started, indexes );
+        }
+
+
+        private boolean logResponse( final String[] indexNames, final RefreshResponse response ) {
+            final ShardOperationFailedException[] sfes = response.getShardFailures();
+            if ( sfes != null ) {
+                for ( ShardOperationFailedException sfe : sfes ) {
+                    logger.error( "Failed to refresh index:{} reason:{}", sfe.index(), sfe.reason() );
+                }
+            }
+
+            if ( logger.isTraceEnabled() ) {
+                logger.trace( "Refreshed alias {} indexes: {},success:{} failed:{} ", alias,
+                    StringUtils.join( indexNames, ", " ), response.getSuccessfulShards(),
+                    response.getFailedShards() );
+            }
+
+            return response.getFailedShards() == 0;
+        }
+    }
+}
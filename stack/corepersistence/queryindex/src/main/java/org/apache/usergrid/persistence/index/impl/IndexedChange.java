@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+
+/**
+ * An entity written or deleted by the events of an index message.  It travels with the index operations, so the node
+ * that applies them can announce the change once the entity can be queried.
+ */
+public class IndexedChange implements Serializable {
+
+    @JsonProperty
+    public UUID applicationId;
+
+    @JsonProperty
+    public UUID entityUuid;
+
+    @JsonProperty
+    public String entityType;
+
+    @JsonProperty
+    public boolean deleted;
+
+    @JsonProperty
+    public long timestamp;
+
+
+    public IndexedChange() {
+
+    }
+
+
+    public IndexedChange( final UUID applicationId, final UUID entityUuid, final String entityType,
+                          final boolean deleted, final long timestamp ) {
+        this.applicationId = applicationId;
+        this.entityUuid = entityUuid;
+        this.entityType = entityType;
+        this.deleted = deleted;
+        this.timestamp = timestamp;
+    }
+
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() ) {
+            return false;
+        }
+
+        final IndexedChange that = ( IndexedChange ) o;
+
+        return deleted == that.deleted && timestamp == that.timestamp && applicationId.equals( that.applicationId )
+            && entityUuid.equals( that.entityUuid ) && entityType.equals( that.entityType );
+    }
+
+
+    @Override
+    public int hashCode() {
+        int result = applicationId.hashCode();
+        result = 31 * result + entityUuid.hashCode();
+        result = 31 * result + entityType.hashCode();
+        result = 31 * result + ( deleted ? 1 : 0 );
+        result = 31 * result + ( int ) ( timestamp ^ ( timestamp >>> 32 ) );
+        return result;
+    }
+}
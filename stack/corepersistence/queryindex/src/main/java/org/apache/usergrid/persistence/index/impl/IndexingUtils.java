@@ -102,6 +102,8 @@ public class IndexingUtils {
 
     public static final String EDGE_SEARCH_FIELDNAME = "edgeSearch";
 
+    public static final String GEO_CELLS_FIELDNAME = "geoCells";
+
     public static final String ENTITY_FIELDS = "fields";
 
     /**
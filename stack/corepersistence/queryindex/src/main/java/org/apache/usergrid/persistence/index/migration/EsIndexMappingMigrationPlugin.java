@@ -46,6 +46,13 @@ public class EsIndexMappingMigrationPlugin implements MigrationPlugin {
 
     private static final Logger logger = LoggerFactory.getLogger(EsIndexMappingMigrationPlugin.class);
 
+    public static final String PLUGIN_NAME = "index_mapping_migration";
+
+    /**
+     * The version that maps the geo cells, documents only get them once existing indexes are at this version
+     */
+    public static final int GEO_CELLS_VERSION = 3;
+
     private final MigrationInfoSerialization migrationInfoSerialization;
     private final EsProvider provider;
 
@@ -61,7 +68,7 @@ public class EsIndexMappingMigrationPlugin implements MigrationPlugin {
 
     @Override
     public String getName() {
-        return "index_mapping_migration";
+        return PLUGIN_NAME;
     }
 
     @Override
@@ -136,7 +143,7 @@ public class EsIndexMappingMigrationPlugin implements MigrationPlugin {
 
     @Override
     public int getMaxVersion() {
-        return 2;//1->new storage format,2->remove uuid
+        return GEO_CELLS_VERSION;//1->new storage format,2->remove uuid,3->geo cells
     }
 
     @Override
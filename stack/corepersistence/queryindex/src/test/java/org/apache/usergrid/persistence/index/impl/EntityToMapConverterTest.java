@@ -34,6 +34,7 @@ import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
 import org.apache.usergrid.persistence.index.IndexEdge;
 import org.apache.usergrid.persistence.index.SearchEdge;
 import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
 import org.apache.usergrid.persistence.model.field.value.EntityObject;
 import org.apache.usergrid.persistence.model.field.value.Location;
 import org.apache.usergrid.persistence.model.util.EntityUtils;
@@ -761,6 +762,31 @@ public class EntityToMapConverterTest {
 
     }
 
+    @Test
+    public void parsingTheEntityMatchesParsingItsMap() {
+        EntityObject nested = new EntityObject();
+        nested.setField( new StringField( "name", "Nested" ) );
+        nested.setField( new LocationField( "location", new Location( 37.776753, -122.407846 ) ) );
+
+        final ArrayField<Object> array = new ArrayField<>( "array" );
+        array.add( "one" );
+        array.add( 2 );
+        array.add( null );
+
+        Entity entity = new Entity( "test" );
+        entity.setField( new StringField( "name", "Test" ) );
+        entity.setField( new BooleanField( "active", true ) );
+        entity.setField( new EntityObjectField( "nested", nested ) );
+        entity.setField( array );
+
+        final Set<EntityField> fromEntity = new EntityMappingParser().parse( entity );
+        final Set<EntityField> fromMap = new EntityMappingParser().parse( EntityMap.fromEntity( entity ) );
+
+        assertEquals( 7, fromEntity.size() );
+        assertEquals( fromMap, fromEntity );
+    }
+
+
     @Test
     public void entityFieldEquality() {
 
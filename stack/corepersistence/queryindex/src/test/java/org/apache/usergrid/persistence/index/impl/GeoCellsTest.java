@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class GeoCellsTest {
+
+    private static final double METERS_PER_DEGREE = 111_195;
+
+
+    @Test
+    public void storesEveryPrecision() {
+        final Set<String> cells =
+            GeoCells.forFields( Collections.singleton( location( "Location", 37.7749, -122.4194 ) ) );
+
+        assertTrue( cells.contains( GeoCells.INDEXED_MARKER ) );
+        assertTrue( cells.contains( "location:9" ) );
+        assertTrue( cells.contains( "location:9q8yyk8y" ) );
+        assertEquals( GeoCells.MAX_PRECISION + 1, cells.size() );
+    }
+
+
+    @Test
+    public void coveringContainsPointsWithinDistance() {
+        final Random random = new Random( 42 );
+
+        for ( double distance : new double[] { 10, 250, 5000, 100000, 2000000 } ) {
+            for ( int i = 0; i < 200; i++ ) {
+                final double lat = random.nextDouble() * 120 - 60;
+                final double lon = random.nextDouble() * 360 - 180;
+
+                final Set<String> covering = GeoCells.covering( "location", lat, lon, distance );
+                assertFalse( covering.isEmpty() );
+                assertTrue( covering.size() <= GeoCells.MAX_CELLS );
+
+                // a point at the distance in a random direction
+                final double bearing = random.nextDouble() * 2 * Math.PI;
+                final double pointLat = lat + Math.cos( bearing ) * distance / METERS_PER_DEGREE;
+                double pointLon =
+                    lon + Math.sin( bearing ) * distance / METERS_PER_DEGREE / Math.cos( Math.toRadians( pointLat ) );
+                pointLon = ( ( pointLon + 180 ) % 360 + 360 ) % 360 - 180;
+
+                final Set<String> pointCells = new HashSet<>(
+                    GeoCells.forFields( Collections.singleton( location( "location", pointLat, pointLon ) ) ) );
+                pointCells.retainAll( covering );
+
+                assertFalse( "distance " + distance + " from " + lat + "," + lon, pointCells.isEmpty() );
+            }
+        }
+    }
+
+
+    @Test
+    public void circlesAcrossPolesAreNotCovered() {
+        assertTrue( GeoCells.covering( "location", 89.9, 0, 50000 ).isEmpty() );
+    }
+
+
+    private static EntityField location( final String fieldName, final double lat, final double lon ) {
+        final Map<String, Object> location = new HashMap<>( 2 );
+        location.put( "lat", lat );
+        location.put( "lon", lon );
+        return EntityField.create( fieldName, location );
+    }
+}
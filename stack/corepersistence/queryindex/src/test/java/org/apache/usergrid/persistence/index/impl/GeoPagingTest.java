@@ -36,10 +36,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.migration.data.MigrationInfoCache;
 import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
 import org.apache.usergrid.persistence.core.test.UseModules;
 import org.apache.usergrid.persistence.index.guice.TestIndexModule;
+import org.apache.usergrid.persistence.index.migration.EsIndexMappingMigrationPlugin;
 import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.LocationField;
 import org.apache.usergrid.persistence.model.field.StringField;
 import org.apache.usergrid.persistence.model.field.value.Location;
@@ -52,6 +55,7 @@ import static org.apache.usergrid.persistence.core.util.IdGenerator.createId;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -82,6 +86,9 @@ public class GeoPagingTest extends BaseIT {
     @Inject
     public IndexProducer indexProducer;
 
+    @Inject
+    public MigrationInfoCache migrationInfoCache;
+
     @Inject
     @Rule
     public ElasticSearchRule elasticSearchRule;
@@ -155,4 +162,71 @@ public class GeoPagingTest extends BaseIT {
 
         }
     }
+
+
+    /**
+     * Test that a within query prefiltered by geo cells finds documents with and without cells, and only those in the
+     * circle.
+     */
+    @Test
+    public void withinQueryWithGeoCells() throws Exception {
+
+        final IndexEdge edge = new IndexEdgeImpl( createId( "root" ), "testType", SearchEdge.NodeType.SOURCE, 1000 );
+
+        final int mappingVersion = migrationInfoCache.getVersion( EsIndexMappingMigrationPlugin.PLUGIN_NAME );
+
+        try {
+            //indexed before the mapping migration, so without cells
+            migrationInfoCache.setVersion( EsIndexMappingMigrationPlugin.PLUGIN_NAME, 0 );
+
+            final Entity withoutCells = createCat( "withoutCells", 37.0, -75.02 );
+
+            final IndexOperationMessage oldMessage = entityIndex.createBatch().index( edge, withoutCells ).build();
+            assertFalse( "No cells before the mapping migration",
+                oldMessage.getIndexRequests().iterator().next().data.containsKey( IndexingUtils.GEO_CELLS_FIELDNAME ) );
+            indexProducer.put( oldMessage ).toBlocking().last();
+
+            migrationInfoCache.setVersion( EsIndexMappingMigrationPlugin.PLUGIN_NAME,
+                EsIndexMappingMigrationPlugin.GEO_CELLS_VERSION );
+
+            final Entity inside = createCat( "inside", 37.01, -75.0 );
+            final Entity nearby = createCat( "nearby", 37.2, -75.0 );
+            final Entity far = createCat( "far", 10.0, 10.0 );
+
+            final EntityIndexBatch batch = entityIndex.createBatch();
+            batch.index( edge, inside );
+            batch.index( edge, nearby );
+            batch.index( edge, far );
+
+            final IndexOperationMessage message = batch.build();
+            assertTrue( "Cells once the mapping has them",
+                message.getIndexRequests().iterator().next().data.containsKey( IndexingUtils.GEO_CELLS_FIELDNAME ) );
+            indexProducer.put( message ).toBlocking().last();
+
+            entityIndex.refreshAsync().toBlocking().last();
+
+            final CandidateResults candidates = entityIndex
+                .search( edge, SearchTypes.fromTypes( "cat" ), "select * where location within 10000 of 37, -75", 100,
+                    0, false );
+
+            final Set<Id> found = new HashSet<>();
+            candidates.forEach( candidate -> found.add( candidate.getId() ) );
+
+            assertEquals( new HashSet<>( Arrays.asList( withoutCells.getId(), inside.getId() ) ), found );
+        }
+        finally {
+            migrationInfoCache.setVersion( EsIndexMappingMigrationPlugin.PLUGIN_NAME, mappingVersion );
+        }
+    }
+
+
+    private Entity createCat( final String name, final double latitude, final double longitude ) {
+        final Entity cat = new Entity( "cat" );
+        EntityUtils.setVersion( cat, UUIDGenerator.newTimeUUID() );
+
+        cat.setField( new StringField( "name", name ) );
+        cat.setField( new LocationField( "location", new Location( latitude, longitude ) ) );
+
+        return cat;
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the changes carried with index operations
+ */
+public class IndexOperationMessageTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+
+    @Test
+    public void changesRoundTrip() throws Exception {
+        IndexOperationMessage message = new IndexOperationMessage();
+        message.addDeIndexRequest( new DeIndexOperation( new String[] { "index" }, "doc" ) );
+
+        IndexedChange change = new IndexedChange( UUID.randomUUID(), UUID.randomUUID(), "user", true, 1000 );
+        message.addChange( change );
+
+        IndexOperationMessage read =
+            mapper.readValue( mapper.writeValueAsString( message ), IndexOperationMessage.class );
+
+        assertEquals( Collections.singleton( change ), read.getChanges() );
+        assertEquals( message.getDeIndexRequests(), read.getDeIndexRequests() );
+    }
+
+
+    @Test
+    public void emptyChangesLeftOut() throws Exception {
+        IndexOperationMessage message = new IndexOperationMessage();
+        message.addDeIndexRequest( new DeIndexOperation( new String[] { "index" }, "doc" ) );
+
+        String json = mapper.writeValueAsString( message );
+
+        assertFalse( json.contains( "changes" ) );
+        assertTrue( mapper.readValue( json, IndexOperationMessage.class ).getChanges().isEmpty() );
+    }
+
+
+    @Test
+    public void ingestMergesChanges() {
+        IndexedChange first = new IndexedChange( UUID.randomUUID(), UUID.randomUUID(), "user", false, 1000 );
+        IndexedChange second = new IndexedChange( UUID.randomUUID(), UUID.randomUUID(), "item", true, 2000 );
+
+        IndexOperationMessage one = new IndexOperationMessage();
+        one.addChange( first );
+        IndexOperationMessage two = new IndexOperationMessage();
+        two.addChange( second );
+
+        IndexOperationMessage combined = new IndexOperationMessage();
+        combined.ingest( one );
+        combined.ingest( two );
+
+        assertEquals( 2, combined.getChanges().size() );
+        assertTrue( combined.getChanges().contains( first ) );
+        assertTrue( combined.getChanges().contains( second ) );
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.client.AdminClient;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.EntityIndex.IndexRefreshCommandInfo;
+import org.apache.usergrid.persistence.index.IndexFig;
+
+import com.codahale.metrics.Meter;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class IndexRefresherTest {
+
+    private final List<ActionListener<RefreshResponse>> listeners = new ArrayList<>();
+
+    private IndicesAdminClient indices;
+    private IndexFig indexFig;
+    private IndexRefresher refresher;
+
+
+    @Before
+    @SuppressWarnings( "unchecked" )
+    public void setup() {
+        final RefreshRequestBuilder requestBuilder = mock( RefreshRequestBuilder.class );
+        doAnswer( invocation -> {
+            listeners.add( ( ActionListener<RefreshResponse> ) invocation.getArguments()[0] );
+            return null;
+        } ).when( requestBuilder ).execute( any( ActionListener.class ) );
+
+        indices = mock( IndicesAdminClient.class );
+        when( indices.prepareRefresh( Matchers.<String>anyVararg() ) ).thenReturn( requestBuilder );
+
+        final AdminClient admin = mock( AdminClient.class );
+        when( admin.indices() ).thenReturn( indices );
+
+        final Client client = mock( Client.class );
+        when( client.admin() ).thenReturn( admin );
+
+        final EsProvider esProvider = mock( EsProvider.class );
+        when( esProvider.getClient() ).thenReturn( client );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getMeter( any( Class.class ), any( String.class ) ) ).thenReturn( new Meter() );
+
+        indexFig = mock( IndexFig.class );
+
+        refresher = new IndexRefresher( esProvider, indexFig, metricsFactory );
+    }
+
+
+    @Test
+    public void refreshDoesNotBlock() {
+        TestSubscriber<IndexRefreshCommandInfo> subscriber = new TestSubscriber<>();
+        refresher.refresh( "alias", new String[] { "index1" } ).subscribe( subscriber );
+
+        // requested, but elasticsearch has not answered
+        assertEquals( 1, listeners.size() );
+        assertEquals( 0, subscriber.getOnNextEvents().size() );
+
+        listeners.get( 0 ).onResponse( response() );
+
+        assertEquals( 1, subscriber.getOnCompletedEvents().size() );
+        assertTrue( subscriber.getOnNextEvents().get( 0 ).hasFinished() );
+    }
+
+
+    @Test
+    public void concurrentRefreshesCoalesce() {
+        List<TestSubscriber<IndexRefreshCommandInfo>> subscribers = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ ) {
+            TestSubscriber<IndexRefreshCommandInfo> subscriber = new TestSubscriber<>();
+            refresher.refresh( "alias", new String[] { "index1" } ).subscribe( subscriber );
+            subscribers.add( subscriber );
+        }
+
+        // one refresh in flight, the others wait for a single refresh after it
+        assertEquals( 1, listeners.size() );
+
+        listeners.get( 0 ).onResponse( response() );
+        assertEquals( 1, subscribers.get( 0 ).getOnCompletedEvents().size() );
+        assertEquals( 0, subscribers.get( 1 ).getOnNextEvents().size() );
+        assertEquals( 2, listeners.size() );
+
+        listeners.get( 1 ).onResponse( response() );
+        for ( TestSubscriber<IndexRefreshCommandInfo> subscriber : subscribers ) {
+            assertEquals( 1, subscriber.getOnCompletedEvents().size() );
+        }
+        assertEquals( 2, listeners.size() );
+    }
+
+
+    @Test
+    public void refreshOnlyWrittenIndexes() {
+        when( indexFig.isRefreshWrittenOnly() ).thenReturn( true );
+
+        TestSubscriber<IndexRefreshCommandInfo> subscriber = new TestSubscriber<>();
+        refresher.refresh( "alias", new String[] { "index1", "index2" } ).subscribe( subscriber );
+
+        // nothing written, nothing to refresh
+        assertEquals( 1, subscriber.getOnCompletedEvents().size() );
+        verify( indices, never() ).prepareRefresh( Matchers.<String>anyVararg() );
+
+        refresher.markWritten( "index2" );
+        refresher.refresh( "alias", new String[] { "index1", "index2" } );
+
+        verify( indices ).prepareRefresh( "index2" );
+    }
+
+
+    private static RefreshResponse response() {
+        return mock( RefreshResponse.class );
+    }
+}
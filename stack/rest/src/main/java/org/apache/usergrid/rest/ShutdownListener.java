@@ -20,6 +20,8 @@ package org.apache.usergrid.rest;
 
 import com.google.inject.Injector;
 import org.apache.usergrid.batch.service.JobSchedulerService;
+import org.apache.usergrid.corepersistence.pipeline.read.traverse.OrphanEdgeRepair;
+import org.apache.usergrid.locking.LockManager;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.core.datastax.DataStaxCluster;
 import org.slf4j.Logger;
@@ -68,6 +70,12 @@ public class ShutdownListener implements ServletContextListener {
         // leave akka cluster
         actorSystemManager.leaveCluster();
 
+        // stop repairing orphaned edges before the database connections go away
+        injector.getInstance(OrphanEdgeRepair.class).shutdown();
+
+        // stop renewing lock leases, they expire on their own
+        injector.getInstance(LockManager.class).shutdown();
+
         DataStaxCluster dataStaxCluster = injector.getInstance(DataStaxCluster.class);
 
         // shutdown the connections to the database
@@ -18,7 +18,9 @@ package org.apache.usergrid.rest.applications;
 
 
 import com.amazonaws.AmazonServiceException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.jaxrs.json.annotation.JSONP;
 import com.google.cloud.storage.StorageException;
 import org.apache.commons.lang.StringUtils;
@@ -31,6 +33,7 @@ import org.apache.usergrid.persistence.QueryUtils;
 import org.apache.usergrid.rest.AbstractContextResource;
 import org.apache.usergrid.rest.ApiResponse;
 import org.apache.usergrid.rest.RootResource;
+import org.apache.usergrid.rest.applications.assets.AssetResponses;
 import org.apache.usergrid.rest.applications.assets.AssetsResource;
 import org.apache.usergrid.rest.security.annotations.CheckPermissionsForPath;
 import org.apache.usergrid.security.oauth.AccessInfo;
@@ -54,7 +57,9 @@ import org.springframework.stereotype.Component;
 import javax.security.auth.Subject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
@@ -72,6 +77,15 @@ public class ServiceResource extends AbstractContextResource {
     protected static final Logger logger = LoggerFactory.getLogger( ServiceResource.class );
     private static final String FILE_FIELD_NAME = "file";
 
+    /**
+     * Newline delimited JSON, used to stream large query results one entity per line
+     */
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final ObjectMapper streamingMapper = new ObjectMapper()
+        .configure( JsonGenerator.Feature.AUTO_CLOSE_TARGET, false )
+        .configure( SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false );
+
     private BinaryStore binaryStore;
 
     @Autowired
@@ -340,6 +354,32 @@ public class ServiceResource extends AbstractContextResource {
     }
 
 
+    /**
+     * Get the connections returned by a GET, one of none, in, out or all.  Requests without a valid connections
+     * parameter get the default of the organization.
+     */
+    private String getConnectionsParam( UriInfo ui ) throws Exception {
+
+        String connectionQueryParm = ui.getQueryParameters().getFirst("connections");
+
+        if ( "none".equalsIgnoreCase( connectionQueryParm ) || "in".equalsIgnoreCase( connectionQueryParm )
+            || "out".equalsIgnoreCase( connectionQueryParm ) || "all".equalsIgnoreCase( connectionQueryParm ) ) {
+            return connectionQueryParm.toLowerCase();
+        }
+
+        if (connectionQueryParm != null) {
+            // unrecognized parameter
+            logger.error(String.format(
+                "Invalid connections query parameter=%s, ignoring.", connectionQueryParm));
+        }
+
+        // use the default query parameter functionality
+        OrganizationConfig orgConfig =
+            management.getOrganizationConfigForApplication(services.getApplicationId());
+        return orgConfig.getProperty(OrganizationConfigProps.ORGPROPERTIES_DEFAULT_CONNECTION_PARAM);
+    }
+
+
     public ServiceResults executeServiceRequest( UriInfo ui, ApiResponse response, ServiceAction action,
                                                  ServicePayload payload ) throws Exception {
         if(logger.isTraceEnabled()){
@@ -349,40 +389,14 @@ public class ServiceResource extends AbstractContextResource {
 
         boolean tree = "true".equalsIgnoreCase( ui.getQueryParameters().getFirst( "tree" ) );
 
-        String connectionQueryParm = ui.getQueryParameters().getFirst("connections");
         boolean returnInboundConnections = true;
         boolean returnOutboundConnections = true;
 
         // connection info can be blocked only for GETs
         if (action == ServiceAction.GET) {
-           if ("none".equalsIgnoreCase(connectionQueryParm)) {
-               returnInboundConnections = false;
-               returnOutboundConnections = false;
-           } else if ("in".equalsIgnoreCase(connectionQueryParm)) {
-                returnInboundConnections = true;
-               returnOutboundConnections = false;
-           } else if ("out".equalsIgnoreCase(connectionQueryParm)) {
-               returnInboundConnections = false;
-                returnOutboundConnections = true;
-            } else if ("all".equalsIgnoreCase(connectionQueryParm)) {
-                returnInboundConnections = true;
-                returnOutboundConnections = true;
-            } else {
-                if (connectionQueryParm != null) {
-                    // unrecognized parameter
-                    logger.error(String.format(
-                        "Invalid connections query parameter=%s, ignoring.", connectionQueryParm));
-                }
-                // use the default query parameter functionality
-                OrganizationConfig orgConfig =
-                    management.getOrganizationConfigForApplication(services.getApplicationId());
-                String defaultConnectionQueryParm =
-                        orgConfig.getProperty(OrganizationConfigProps.ORGPROPERTIES_DEFAULT_CONNECTION_PARAM);
-                returnInboundConnections =
-                    (defaultConnectionQueryParm.equals("in")) || (defaultConnectionQueryParm.equals("all"));
-                returnOutboundConnections =
-                    (defaultConnectionQueryParm.equals("out")) || (defaultConnectionQueryParm.equals("all"));
-           }
+            String connections = getConnectionsParam( ui );
+            returnInboundConnections = "in".equals( connections ) || "all".equals( connections );
+            returnOutboundConnections = "out".equals( connections ) || "all".equals( connections );
         }
 
         boolean analyzeQueryOnly = Boolean.valueOf(ui.getQueryParameters().getFirst("analyzeOnly"));
@@ -454,6 +468,142 @@ public class ServiceResource extends AbstractContextResource {
         return response;
     }
 
+    /**
+     * Stream the results of a query as newline delimited JSON.  The query is paged with its cursor and each page is
+     * written as soon as it is loaded, so memory stays flat regardless of how many entities match.  The limit
+     * parameter sets the page size, and the final line holds the count of entities written.
+     *
+     * Requests accepting application/x-ndjson are routed to {@link #executeStreamGet}, which calls this for
+     * everything but single entities.
+     */
+    private Response executeStreamingGet( UriInfo ui ) throws Exception {
+
+        if(logger.isTraceEnabled()){
+            logger.trace( "ServiceResource.executeStreamingGet" );
+        }
+
+        Query query = Query.fromQueryParams( ui.getQueryParameters() );
+        if ( query == null ) {
+            query = new Query();
+        }
+        query.setLimit( query.getLimit( Query.MAX_LIMIT ) );
+
+        final String connections = getConnectionsParam( ui );
+        final boolean returnInboundConnections = "in".equals( connections ) || "all".equals( connections );
+        final boolean returnOutboundConnections = "out".equals( connections ) || "all".equals( connections );
+        final List<ServiceParameter> parameters = new ArrayList<>( getServiceParameters() );
+        final Query firstPage = query;
+
+        httpServletRequest.setAttribute( "applicationId", services.getApplicationId() );
+
+        StreamingOutput stream = new StreamingOutput() {
+            @Override
+            public void write( OutputStream outputStream ) throws IOException, WebApplicationException {
+                try {
+                    writeStreamingResults( parameters, firstPage, returnInboundConnections, returnOutboundConnections,
+                        outputStream );
+                }
+                catch ( IOException | WebApplicationException e ) {
+                    throw e;
+                }
+                catch ( Exception e ) {
+                    throw new IOException( "Unable to stream query results", e );
+                }
+            }
+        };
+
+        return Response.ok( stream ).type( APPLICATION_NDJSON ).build();
+    }
+
+
+    /**
+     * True if the request accepts newline delimited JSON, ignoring wildcards
+     */
+    private boolean acceptsNdjson() {
+        String accept = httpServletRequest.getHeader( HttpHeaders.ACCEPT );
+        if ( accept == null ) {
+            return false;
+        }
+
+        for ( String mediaType : accept.split( "," ) ) {
+            int parameters = mediaType.indexOf( ';' );
+            String type = ( parameters < 0 ? mediaType : mediaType.substring( 0, parameters ) ).trim();
+            if ( APPLICATION_NDJSON.equalsIgnoreCase( type ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * True if the request addresses a single entity, by id or by name after its collection, so its GET is an asset
+     * download whatever it accepts
+     */
+    private boolean isEntityRequest() {
+        ServiceParameter last = null;
+        int count = 0;
+
+        for ( ServiceParameter parameter : getServiceParameters() ) {
+            if ( !parameter.isQuery() ) {
+                last = parameter;
+                count++;
+            }
+        }
+
+        return last != null && ( last.isId() || count % 2 == 0 );
+    }
+
+
+    private void writeStreamingResults( List<ServiceParameter> parameters, Query firstPage,
+                                        boolean returnInboundConnections, boolean returnOutboundConnections,
+                                        OutputStream outputStream ) throws Exception {
+
+        final JsonGenerator generator = streamingMapper.getFactory().createGenerator( outputStream );
+        generator.setRootValueSeparator( null );
+
+        Query query = firstPage;
+        long count = 0;
+        String cursor;
+
+        do {
+            ServiceRequest r = services.newRequest( ServiceAction.GET, false,
+                ServiceParameter.addParameter( new ArrayList<>( parameters ), query ), null,
+                returnInboundConnections, returnOutboundConnections, false, false );
+
+            ServiceResults results = r.execute();
+            if ( results == null ) {
+                break;
+            }
+
+            Query lastQuery = r.getLastQuery();
+            List<?> items = lastQuery != null && lastQuery.hasSelectSubjects()
+                ? QueryUtils.getSelectionResults( lastQuery, results )
+                : results.getEntities();
+
+            if ( items != null ) {
+                for ( Object item : items ) {
+                    streamingMapper.writeValue( generator, item );
+                    generator.writeRaw( '\n' );
+                    count++;
+                }
+            }
+
+            // hand each page to the client before loading the next
+            generator.flush();
+
+            cursor = results.getCursor();
+            query = new Query( firstPage ).withCursor( cursor );
+        }
+        while ( cursor != null );
+
+        streamingMapper.writeValue( generator, Collections.singletonMap( "count", count ) );
+        generator.writeRaw( '\n' );
+        generator.close();
+    }
+
+
     @SuppressWarnings({ "unchecked" })
     public ServicePayload getPayload( Object json ) {
         ServicePayload payload = null;
@@ -846,12 +996,18 @@ public class ServiceResource extends AbstractContextResource {
     @Produces(MediaType.WILDCARD)
     public Response executeStreamGet( @Context UriInfo ui, @PathParam("entityId") PathSegment entityId,
                                       @HeaderParam("range") String rangeHeader,
+                                      @HeaderParam("if-range") String ifRange,
                                       @HeaderParam("if-modified-since") String modifiedSince ) throws Exception {
 
         if(logger.isTraceEnabled()){
             logger.trace( "ServiceResource.executeStreamGet" );
         }
 
+        // no other GET produces ndjson, so those requests arrive here with the asset downloads
+        if ( acceptsNdjson() && !isEntityRequest() ) {
+            return executeStreamingGet( ui );
+        }
+
         // needed for testing
         this.binaryStore = binaryStoreFactory.getBinaryStore( properties.getProperty(PROPERTIES_USERGRID_BINARY_UPLOADER) );
 
@@ -869,97 +1025,43 @@ public class ServiceResource extends AbstractContextResource {
 
         Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( entity );
 
-        // return a 302 if not modified
-        Date modified = AssetUtils.fromIfModifiedSince( modifiedSince );
-        if ( modified != null ) {
-            Long lastModified = ( Long ) fileMetadata.get( AssetUtils.LAST_MODIFIED );
-            if ( lastModified - modified.getTime() < 0 ) {
-                return Response.status( Response.Status.NOT_MODIFIED ).build();
-            }
-        }
-
-        boolean range = StringUtils.isNotBlank( rangeHeader );
-        long start = 0, end = 0, contentLength = 0;
-        InputStream inputStream;
-
-        if ( range ) { // honor range request, calculate start & end
+        Long lastModified = ( Long ) fileMetadata.get( AssetUtils.LAST_MODIFIED );
+        Response streamResponse;
 
-            String rangeValue = rangeHeader.trim().substring( "bytes=".length() );
-            contentLength = ( Long ) fileMetadata.get( AssetUtils.CONTENT_LENGTH );
-            end = contentLength - 1;
-            if ( rangeValue.startsWith( "-" ) ) {
-                start = contentLength - 1 - Long.parseLong( rangeValue.substring( "-".length() ) );
-            }
-            else {
-                String[] startEnd = rangeValue.split( "-" );
-                long parsedStart = Long.parseLong( startEnd[0] );
-                if ( parsedStart > start && parsedStart < end ) {
-                    start = parsedStart;
-                }
-                if ( startEnd.length > 1 ) {
-                    long parsedEnd = Long.parseLong( startEnd[1] );
-                    if ( parsedEnd > start && parsedEnd < end ) {
-                        end = parsedEnd;
-                    }
-                }
-            }
-            try {
-                inputStream = binaryStore.read( getApplicationId(), entity, start, end - start );
-            }catch(AwsPropertiesNotFoundException apnfe){
-                logger.error( "Amazon Property needed for this operation not found",apnfe );
-                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
-            }catch(RuntimeException re){
-                logger.error(re.getMessage());
-                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
-            }
+        try {
+            streamResponse = AssetResponses.build( request, binaryStore, getApplicationId(), entity, fileMetadata,
+                lastModified != null ? new Date( lastModified ) : null, rangeHeader, ifRange );
         }
-        else { // no range
-            try {
-                inputStream = binaryStore.read( getApplicationId(), entity );
-            }catch(AwsPropertiesNotFoundException apnfe){
-                logger.error( "Amazon Property needed for this operation not found",apnfe );
-                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
-            }
-            catch(AmazonServiceException ase){
-                if( ase.getStatusCode() > 499 ){
-                    logger.error(ase.getMessage());
-                }else if(logger.isDebugEnabled()){
-                    logger.debug(ase.getMessage());
-                }
-                return Response.status(ase.getStatusCode()).build();
-            }
-            catch (StorageException se){
-                if( se.getCode() > 499 ){
-                    logger.error(se.getMessage());
-                }else if(logger.isDebugEnabled()){
-                    logger.debug(se.getMessage());
-                }
-                return Response.status(se.getCode()).build();
+        catch(AwsPropertiesNotFoundException apnfe){
+            logger.error( "Amazon Property needed for this operation not found",apnfe );
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+        catch(AmazonServiceException ase){
+            if( ase.getStatusCode() > 499 ){
+                logger.error(ase.getMessage());
+            }else if(logger.isDebugEnabled()){
+                logger.debug(ase.getMessage());
             }
-            catch(RuntimeException re){
-                logger.error(re.getMessage());
-                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+            return Response.status(ase.getStatusCode()).build();
+        }
+        catch (StorageException se){
+            if( se.getCode() > 499 ){
+                logger.error(se.getMessage());
+            }else if(logger.isDebugEnabled()){
+                logger.debug(se.getMessage());
             }
+            return Response.status(se.getCode()).build();
+        }
+        catch(RuntimeException re){
+            logger.error(re.getMessage());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         }
 
         // return 404 if not found
-        if ( inputStream == null ) {
+        if ( streamResponse == null ) {
             return Response.status( Response.Status.NOT_FOUND ).build();
         }
 
-        Long lastModified = ( Long ) fileMetadata.get( AssetUtils.LAST_MODIFIED );
-        Response.ResponseBuilder responseBuilder =
-                Response.ok( inputStream ).type( ( String ) fileMetadata.get( AssetUtils.CONTENT_TYPE ) )
-                        .lastModified( new Date( lastModified ) );
-
-        if ( fileMetadata.get( AssetUtils.E_TAG ) != null ) {
-            responseBuilder.tag( ( String ) fileMetadata.get( AssetUtils.E_TAG ) );
-        }
-
-        if ( range ) {
-            responseBuilder.header( "Content-Range", "bytes " + start + "-" + end + "/" + contentLength );
-        }
-
-        return responseBuilder.build();
+        return streamResponse;
     }
 }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.applications.assets;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.usergrid.persistence.Entity;
+import org.apache.usergrid.services.assets.data.AssetUtils;
+import org.apache.usergrid.services.assets.data.BinaryStore;
+import org.apache.usergrid.services.assets.data.ByteRange;
+import org.apache.usergrid.services.assets.data.LocalFileBinaryStore;
+
+
+/**
+ * Builds the response for an asset's data, shared by the assets and the collection endpoints.  Conditional requests
+ * are answered from the file metadata before the binary store is touched.  Range requests are served with positioned
+ * reads when the store supports them, otherwise the whole asset is sent.
+ */
+public class AssetResponses {
+
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
+    public static final String CONTENT_RANGE = "Content-Range";
+    public static final String MULTIPART_BYTERANGES = "multipart/byteranges";
+
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+
+    private AssetResponses() {
+    }
+
+
+    /**
+     * @param lastModified the last modified time of the asset data, may be null
+     * @param rangeHeader the Range request header, may be null
+     * @param ifRange the If-Range request header, may be null
+     *
+     * @return the response, or null if the store has no data for the entity
+     */
+    public static Response build( final Request request, final BinaryStore binaryStore, final UUID applicationId,
+                                  final Entity entity, final Map<String, Object> fileMetadata, final Date lastModified,
+                                  final String rangeHeader, final String ifRange ) throws Exception {
+
+        final String etag = ( String ) fileMetadata.get( AssetUtils.E_TAG );
+        final EntityTag entityTag = etag != null ? new EntityTag( etag ) : null;
+
+        // If-None-Match and If-Modified-Since, without opening the file
+        Response.ResponseBuilder precondition = evaluatePreconditions( request, lastModified, entityTag );
+        if ( precondition != null ) {
+            return withValidators( precondition, lastModified, entityTag ).build();
+        }
+
+        final String contentType = ( String ) fileMetadata.get( AssetUtils.CONTENT_TYPE );
+        final Number contentLength = ( Number ) fileMetadata.get( AssetUtils.CONTENT_LENGTH );
+        final boolean ranged = binaryStore instanceof LocalFileBinaryStore && contentLength != null;
+
+        List<ByteRange> ranges = null;
+        if ( ranged && rangeHeader != null && isCurrent( ifRange, lastModified, entityTag ) ) {
+            ranges = ByteRange.parse( rangeHeader, contentLength.longValue() );
+        }
+
+        if ( ranges == null ) {
+            InputStream inputStream = binaryStore.read( applicationId, entity );
+            if ( inputStream == null ) {
+                return null;
+            }
+            Response.ResponseBuilder builder = Response.ok( inputStream ).type( contentType );
+            if ( ranged ) {
+                builder.header( ACCEPT_RANGES, "bytes" );
+            }
+            return withValidators( builder, lastModified, entityTag ).build();
+        }
+
+        final long length = contentLength.longValue();
+        final LocalFileBinaryStore localStore = ( LocalFileBinaryStore ) binaryStore;
+
+        if ( ranges.isEmpty() ) {
+            return Response.status( REQUESTED_RANGE_NOT_SATISFIABLE ).header( CONTENT_RANGE, "bytes */" + length )
+                           .build();
+        }
+
+        Response.ResponseBuilder builder = Response.status( Response.Status.PARTIAL_CONTENT )
+                                                   .header( ACCEPT_RANGES, "bytes" );
+
+        if ( ranges.size() == 1 ) {
+            final ByteRange range = ranges.get( 0 );
+            builder.entity( ( StreamingOutput ) output -> {
+                localStore.transferTo( applicationId, entity, range.getStart(), range.getLength(),
+                    Channels.newChannel( output ) );
+            } ).type( contentType ).header( CONTENT_RANGE, range.toContentRange( length ) )
+                   .header( HttpHeaders.CONTENT_LENGTH, range.getLength() );
+        }
+        else {
+            final String boundary = RandomStringUtils.randomAlphanumeric( 24 );
+            final List<ByteRange> parts = ranges;
+            builder.entity( ( StreamingOutput ) output -> {
+                writeParts( output, localStore, applicationId, entity, parts, contentType, length, boundary );
+            } ).type( MULTIPART_BYTERANGES + "; boundary=" + boundary );
+        }
+
+        return withValidators( builder, lastModified, entityTag ).build();
+    }
+
+
+    private static Response.ResponseBuilder evaluatePreconditions( final Request request, final Date lastModified,
+                                                                   final EntityTag entityTag ) {
+        if ( lastModified != null && entityTag != null ) {
+            return request.evaluatePreconditions( lastModified, entityTag );
+        }
+        if ( entityTag != null ) {
+            return request.evaluatePreconditions( entityTag );
+        }
+        if ( lastModified != null ) {
+            return request.evaluatePreconditions( lastModified );
+        }
+        return null;
+    }
+
+
+    /**
+     * If-Range holds either an entity tag or a date.  The range applies only if it still names the current data,
+     * otherwise the whole asset is sent.
+     */
+    private static boolean isCurrent( final String ifRange, final Date lastModified, final EntityTag entityTag ) {
+        if ( ifRange == null ) {
+            return true;
+        }
+
+        String value = ifRange.trim();
+        if ( value.startsWith( "\"" ) || value.startsWith( "W/" ) ) {
+            // weak tags never match for ranges
+            return entityTag != null && value.equals( entityTag.toString() );
+        }
+
+        Date date = AssetUtils.fromIfModifiedSince( value );
+        return date != null && lastModified != null && date.getTime() / 1000 == lastModified.getTime() / 1000;
+    }
+
+
+    private static Response.ResponseBuilder withValidators( final Response.ResponseBuilder builder,
+                                                            final Date lastModified, final EntityTag entityTag ) {
+        if ( lastModified != null ) {
+            builder.lastModified( lastModified );
+        }
+        if ( entityTag != null ) {
+            builder.tag( entityTag );
+        }
+        return builder;
+    }
+
+
+    private static void writeParts( final OutputStream output, final LocalFileBinaryStore localStore,
+                                    final UUID applicationId, final Entity entity, final List<ByteRange> ranges,
+                                    final String contentType, final long length, final String boundary )
+            throws IOException {
+
+        final WritableByteChannel channel = Channels.newChannel( output );
+
+        for ( ByteRange range : ranges ) {
+            StringBuilder header = new StringBuilder( "\r\n--" ).append( boundary ).append( "\r\n" );
+            if ( contentType != null ) {
+                header.append( HttpHeaders.CONTENT_TYPE ).append( ": " ).append( contentType ).append( "\r\n" );
+            }
+            header.append( CONTENT_RANGE ).append( ": " ).append( range.toContentRange( length ) ).append( "\r\n\r\n" );
+
+            output.write( header.toString().getBytes( StandardCharsets.US_ASCII ) );
+            localStore.transferTo( applicationId, entity, range.getStart(), range.getLength(), channel );
+        }
+
+        output.write( ( "\r\n--" + boundary + "--\r\n" ).getBytes( StandardCharsets.US_ASCII ) );
+    }
+}
@@ -175,6 +175,7 @@ public class AssetsResource extends ServiceResource {
     @Path("{entityId: [A-Fa-f0-9]{8}-[A-Fa-f0-9]{4}-[A-Fa-f0-9]{4}-[A-Fa-f0-9]{4}-[A-Fa-f0-9]{12}}/data")
     public Response findAsset( @Context UriInfo ui, @QueryParam("callback") @DefaultValue("callback") String callback,
                                @PathParam("entityId") PathSegment entityId, @HeaderParam("range") String range,
+                               @HeaderParam("if-range") String ifRange,
                                @HeaderParam("if-modified-since") String modifiedSince ) throws Exception {
 
         // needed for testing
@@ -190,43 +191,15 @@ public class AssetsResource extends ServiceResource {
         Asset asset = em.get( assetId, Asset.class );
         Map<String, Object> fileMetadata = AssetUtils.getFileMetadata( asset );
 
-        // todo: use fileMetadata
-        // return a 302 if not modified
-        Date moded = AssetUtils.fromIfModifiedSince( modifiedSince );
-        if ( moded != null ) {
-            if ( asset.getModified() - moded.getTime() < 0 ) {
-                return Response.status( Response.Status.NOT_MODIFIED ).build();
-            }
-        }
-
-        InputStream is;
-        if ( StringUtils.isBlank( range ) ) {
-            is = binaryStore.read( getApplicationId(), asset );
-        }
-        else {
-            // TODO range parser
-            is = binaryStore.read( getApplicationId(), asset );
-        }
-        if ( is == null ) {
+        Response response = AssetResponses.build( request, binaryStore, getApplicationId(), asset, fileMetadata,
+            new Date( asset.getModified() ), range, ifRange );
+        if ( response == null ) {
             return Response.status( Response.Status.NOT_FOUND ).build();
         }
 
         if (logger.isTraceEnabled()) {
-            logger.trace("AssetResource.findAsset read inputStream, composing response");
-        }
-        Response.ResponseBuilder responseBuilder =
-                Response.ok( is ).type( fileMetadata.get( "content-type" ).toString() )
-                        .lastModified( new Date( asset.getModified() ) );
-        if ( fileMetadata.get( AssetUtils.E_TAG ) != null ) {
-            responseBuilder.tag( ( String ) fileMetadata.get( AssetUtils.E_TAG ) );
-        }
-        if ( StringUtils.isNotBlank( range ) ) {
-            if (logger.isTraceEnabled()) {
-                logger.trace("Range header was not blank, sending back Content-Range");
-            }
-            // TODO build content range header if needed
-            //responseBuilder.header("Content-Range", );
+            logger.trace("AssetResource.findAsset read asset, responding with status {}", response.getStatus());
         }
-        return responseBuilder.build();
+        return response;
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Accumulates request metering per application.  Recording only touches striped adders, so request threads never
+ * contend on a lock or wait on storage.  A flusher periodically drains the totals with {@link #drain()}.
+ */
+public class ApplicationRequestMeter {
+
+    public static final String REQUESTS = "application.requests";
+    public static final String REQUEST_TIME = "application.request.time";
+    public static final String UPLOAD = "application.request.upload";
+    public static final String DOWNLOAD = "application.request.download";
+
+    private final ConcurrentHashMap<UUID, Accumulator> applications = new ConcurrentHashMap<>();
+
+
+    public void recordRequest( final UUID applicationId, final long time, final long read ) {
+        final Accumulator accumulator = getAccumulator( applicationId );
+        accumulator.requests.increment();
+        if ( time > 0 ) {
+            accumulator.time.add( time );
+        }
+        if ( read > 0 ) {
+            accumulator.upload.add( read );
+        }
+    }
+
+
+    public void recordWritten( final UUID applicationId, final long written ) {
+        if ( written > 0 ) {
+            getAccumulator( applicationId ).download.add( written );
+        }
+    }
+
+
+    /**
+     * Take the totals accumulated since the last drain, keyed by application and then by counter name.  Applications
+     * without activity since the last drain are left out.
+     */
+    public Map<UUID, Map<String, Long>> drain() {
+        final Map<UUID, Map<String, Long>> drained = new HashMap<>();
+
+        for ( Map.Entry<UUID, Accumulator> entry : applications.entrySet() ) {
+            final Map<String, Long> counters = entry.getValue().drain();
+
+            if ( !counters.isEmpty() ) {
+                drained.put( entry.getKey(), counters );
+            }
+        }
+
+        return drained;
+    }
+
+
+    private Accumulator getAccumulator( final UUID applicationId ) {
+        final Accumulator accumulator = applications.get( applicationId );
+        if ( accumulator != null ) {
+            return accumulator;
+        }
+        return applications.computeIfAbsent( applicationId, id -> new Accumulator() );
+    }
+
+
+    private static final class Accumulator {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder time = new LongAdder();
+        private final LongAdder upload = new LongAdder();
+        private final LongAdder download = new LongAdder();
+
+
+        private Map<String, Long> drain() {
+            final Map<String, Long> counters = new HashMap<>();
+            put( counters, REQUESTS, requests.sumThenReset() );
+            put( counters, REQUEST_TIME, time.sumThenReset() );
+            put( counters, UPLOAD, upload.sumThenReset() );
+            put( counters, DOWNLOAD, download.sumThenReset() );
+            return counters;
+        }
+
+
+        private static void put( final Map<String, Long> counters, final String name, final long value ) {
+            if ( value > 0 ) {
+                counters.put( name, value );
+            }
+        }
+    }
+}
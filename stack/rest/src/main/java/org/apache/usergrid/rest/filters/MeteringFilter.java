@@ -17,348 +17,321 @@
 package org.apache.usergrid.rest.filters;
 
 
-import com.yammer.metrics.Metrics;
-import com.yammer.metrics.core.Counter;
-import com.yammer.metrics.core.Timer;
-import com.yammer.metrics.core.TimerContext;
-import org.apache.usergrid.management.ManagementService;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Injector;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
-import org.apache.usergrid.services.ServiceManagerFactory;
-import org.apache.usergrid.system.UsergridSystemMonitor;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.stereotype.Component;
 
-import javax.annotation.Resource;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
 import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 
-// TODO: Metering for Jersey 2 (https://issues.apache.org/jira/browse/USERGRID-1103)
-
+/**
+ * Meters requests, bytes read and written and time spent per application.  The filter only updates in memory
+ * accumulators, which are flushed to the application's aggregate counters on a background thread so requests never
+ * wait on Cassandra.
+ */
 @Provider
-public class MeteringFilter implements ContainerRequestFilter, ContainerResponseFilter {
+public class MeteringFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger( MeteringFilter.class );
+
+    /**
+     * Set to false to turn off per application metering
+     */
+    public static final String METERING_ENABLED = "usergrid.rest.metering.enabled";
+
+    /**
+     * How often in seconds the accumulated metering is written to the application counters
+     */
+    public static final String METERING_FLUSH_INTERVAL = "usergrid.rest.metering.flush.interval";
+
+    private static final String START_TIME = "usergrid.metering.start";
+    private static final String INPUT = "usergrid.metering.input";
+
+    @Context
+    protected HttpServletRequest httpServletRequest;
+
+    private final ApplicationRequestMeter meter = new ApplicationRequestMeter();
+
+    private EntityManagerFactory emf;
+    private Injector injector;
+
+    private boolean enabled = true;
+    private long flushInterval = 60;
+
+    private volatile ScheduledExecutorService flusher;
+
+    private Counter activeRequests;
+    private Timer requestTimer;
+    private Meter bytesRead;
+    private Meter bytesWritten;
+
+
+    public MeteringFilter() {
+        logger.info( "MeteringFilter installed" );
+    }
+
+
+    @Autowired
+    public void setEntityManagerFactory( EntityManagerFactory emf ) {
+        this.emf = emf;
+    }
+
+
+    @Autowired
+    public void setInjector( Injector injector ) {
+        this.injector = injector;
+    }
+
+
+    @Autowired
+    @Qualifier("properties")
+    public void setProperties( Properties properties ) {
+        enabled = Boolean.parseBoolean( properties.getProperty( METERING_ENABLED, "true" ) );
+        flushInterval = Long.parseLong( properties.getProperty( METERING_FLUSH_INTERVAL, "60" ) );
+    }
+
 
     @Override
-    public void filter(ContainerRequestContext containerRequestContext) throws IOException {
+    public void filter( ContainerRequestContext request ) throws IOException {
+        if ( !enabled ) {
+            return;
+        }
 
+        try {
+            start();
+
+            activeRequests.inc();
+
+            CountingInputStream input = new CountingInputStream( request.getEntityStream() );
+            request.setEntityStream( input );
+            request.setProperty( INPUT, input );
+            request.setProperty( START_TIME, System.nanoTime() );
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to capture request", e );
+        }
     }
 
+
     @Override
-    public void filter(ContainerRequestContext containerRequestContext, ContainerResponseContext containerResponseContext) throws IOException {
+    public void filter( ContainerRequestContext request, ContainerResponseContext response ) throws IOException {
+        Long startTime = ( Long ) request.getProperty( START_TIME );
+        if ( startTime == null ) {
+            return;
+        }
+
+        try {
+            long elapsed = System.nanoTime() - startTime;
+            requestTimer.update( elapsed, TimeUnit.NANOSECONDS );
+
+            CountingInputStream input = ( CountingInputStream ) request.getProperty( INPUT );
+            long read = input != null ? input.count : 0;
+            bytesRead.mark( read );
+
+            UUID applicationId = getApplicationId();
+            if ( applicationId != null ) {
+                meter.recordRequest( applicationId, TimeUnit.NANOSECONDS.toMillis( elapsed ), read );
+            }
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to capture response", e );
+        }
+        finally {
+            activeRequests.dec();
+        }
+    }
+
+
+    @Override
+    public void aroundWriteTo( WriterInterceptorContext context ) throws IOException, WebApplicationException {
+        if ( !enabled || flusher == null ) {
+            context.proceed();
+            return;
+        }
+
+        CountingOutputStream output = new CountingOutputStream( context.getOutputStream() );
+        context.setOutputStream( output );
+
+        try {
+            context.proceed();
+        }
+        finally {
+            try {
+                bytesWritten.mark( output.count );
+
+                UUID applicationId = getApplicationId();
+                if ( applicationId != null ) {
+                    meter.recordWritten( applicationId, output.count );
+                }
+            }
+            catch ( Exception e ) {
+                logger.error( "Unable to capture output", e );
+            }
+        }
+    }
+
+
+    /**
+     * Write the accumulated metering into the aggregate counters of each application
+     */
+    public void flush() {
+        Map<UUID, Map<String, Long>> drained = meter.drain();
+
+        for ( Map.Entry<UUID, Map<String, Long>> entry : drained.entrySet() ) {
+            try {
+                EntityManager em = emf.getEntityManager( entry.getKey() );
+                em.incrementAggregateCounters( null, null, null, entry.getValue() );
+            }
+            catch ( Exception e ) {
+                logger.error( "Unable to write metering for application {}", entry.getKey(), e );
+            }
+        }
+    }
+
+
+    /**
+     * Stop the flusher when the application is shut down, and write what accumulated since the last flush
+     */
+    @PreDestroy
+    public void destroy() {
+        synchronized ( this ) {
+            if ( flusher == null ) {
+                return;
+            }
+
+            flusher.shutdownNow();
+        }
+
+        try {
+            flush();
+        }
+        catch ( Throwable t ) {
+            logger.error( "Unable to flush metering on shutdown", t );
+        }
+    }
+
+
+    private UUID getApplicationId() {
+        Object applicationId = httpServletRequest.getAttribute( "applicationId" );
+        return applicationId instanceof UUID ? ( UUID ) applicationId : null;
+    }
+
+
+    /**
+     * Lazily create the metrics and start the flusher, the injected dependencies aren't available at construction
+     */
+    private void start() {
+        if ( flusher != null ) {
+            return;
+        }
+
+        synchronized ( this ) {
+            if ( flusher != null ) {
+                return;
+            }
+
+            MetricsFactory metricsFactory = injector.getInstance( MetricsFactory.class );
+            activeRequests = metricsFactory.getCounter( MeteringFilter.class, "requests.active" );
+            requestTimer = metricsFactory.getTimer( MeteringFilter.class, "requests" );
+            bytesRead = metricsFactory.getMeter( MeteringFilter.class, "requests.read.bytes" );
+            bytesWritten = metricsFactory.getMeter( MeteringFilter.class, "requests.written.bytes" );
+
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat( "metering-flush-%d" ).setDaemon( true ).build() );
+
+            executor.scheduleWithFixedDelay( () -> {
+                try {
+                    flush();
+                }
+                catch ( Throwable t ) {
+                    logger.error( "Unable to flush metering", t );
+                }
+            }, flushInterval, flushInterval, TimeUnit.SECONDS );
+
+            flusher = executor;
+        }
+    }
+
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+
+        private CountingInputStream( InputStream in ) {
+            super( in );
+        }
+
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if ( b != -1 ) {
+                count++;
+            }
+            return b;
+        }
+
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException {
+            int l = super.read( b, off, len );
+            if ( l > 0 ) {
+                count += l;
+            }
+            return l;
+        }
+    }
+
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count = 0;
+
+
+        private CountingOutputStream( OutputStream out ) {
+            super( out );
+        }
+
+
+        @Override
+        public void write( int b ) throws IOException {
+            out.write( b );
+            count++;
+        }
+
 
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            out.write( b, off, len );
+            count += len;
+        }
     }
-//
-//    @Context
-//    protected HttpServletRequest httpServletRequest;
-//
-//    EntityManagerFactory emf;
-//    ServiceManagerFactory smf;
-//    Properties properties;
-//    ManagementService management;
-//    UsergridSystemMonitor usergridSystemMonitor;
-//    final Counter activeRequests;
-//    final Timer requestTimer;
-//
-//    private static final Logger logger = LoggerFactory.getLogger( MeteringFilter.class );
-//
-//
-//    public MeteringFilter() {
-//        logger.info( "MeteringFilter installed" );
-//        this.activeRequests = Metrics.newCounter( MeteringFilter.class, "activeRequests" );
-//        this.requestTimer =
-//                Metrics.newTimer( MeteringFilter.class, "requests", TimeUnit.MILLISECONDS, TimeUnit.SECONDS );
-//    }
-//
-//
-//    @Autowired
-//    public void setEntityManagerFactory( EntityManagerFactory emf ) {
-//        this.emf = emf;
-//    }
-//
-//
-//    @Autowired
-//    public void setServiceManagerFactory( ServiceManagerFactory smf ) {
-//        this.smf = smf;
-//    }
-//
-//
-//    @Autowired
-//    @Qualifier("properties")
-//    public void setProperties( Properties properties ) {
-//        this.properties = properties;
-//    }
-//
-//
-//    @Autowired
-//    public void setManagementService( ManagementService management ) {
-//        this.management = management;
-//    }
-//
-//
-//    @Autowired
-//    public void setUsergridSystemMonitor( UsergridSystemMonitor usergridSystemMonitor ) {
-//        this.usergridSystemMonitor = usergridSystemMonitor;
-//    }
-//
-//
-//    @Override
-//    public void filter(ContainerRequestContext creq) throws IOException {
-//
-//        try {
-//            activeRequests.inc();
-//            creq.setEntityStream( new InputStreamAdapter( creq.getEntityStream() ) );
-//            httpServletRequest.setAttribute( "application.request.timetamp", System.currentTimeMillis() );
-//            httpServletRequest.setAttribute( "application.request.requestTimer", requestTimer.time() );
-//        }
-//        catch ( Exception e ) {
-//            logger.error( "Unable to capture request", e );
-//        }
-//    }
-//
-//    public void countDataWritten( long written ) {
-//        TimerContext timer = ( TimerContext ) httpServletRequest.getAttribute( "application.request.requestTimer" );
-//        try {
-//            UUID applicationId = ( UUID ) httpServletRequest.getAttribute( "applicationId" );
-//            Long timestamp = ( Long ) httpServletRequest.getAttribute( "application.request.timetamp" );
-//            long time;
-//            if ( ( timestamp != null ) && ( timestamp > 0 ) ) {
-//                time = System.currentTimeMillis() - timestamp;
-//            }
-//            else {
-//                time = -1;
-//            }
-//            usergridSystemMonitor.maybeLogPayload( time, "path", httpServletRequest.getRequestURI(), "applicationId",
-//                    applicationId );
-//            if ( applicationId != null ) {
-//
-//                Map<String, Long> counters = new HashMap<String, Long>();
-//
-//
-//                if ( time > 0 ) {
-//                    logger.trace( "Application: {}, spent {} milliseconds of CPU time", applicationId, time );
-//                    counters.put( "application.request.time", time );
-//                }
-//
-//                Long read = ( Long ) httpServletRequest.getAttribute( "application.request.upload" );
-//                if ( ( read != null ) && ( read > 0 ) ) {
-//                    logger.trace( "Application: {}, received {} bytes", applicationId, written );
-//                    counters.put( "application.request.upload", read );
-//                }
-//
-//                if ( written > 0 ) {
-//                    logger.trace( "Application: {}, sending {} bytes", applicationId, written );
-//                    counters.put( "application.request.download", written );
-//                }
-//
-//                if ( emf != null ) {
-//                    EntityManager em = emf.getEntityManager( applicationId );
-//                    em.incrementAggregateCounters( null, null, null, counters );
-//                }
-//                else {
-//                    logger.error( "No EntityManagerFactory configured" );
-//                }
-//            }
-//        }
-//        catch ( Exception e ) {
-//            logger.error( "Unable to capture output", e );
-//        }
-//        finally {
-//            if ( timer != null ) {
-//                timer.stop();
-//            }
-//            activeRequests.dec();
-//        }
-//    }
-//
-//
-//    public void countDataRead( long read ) {
-//        try {
-//            if ( read > 0 ) {
-//                httpServletRequest.setAttribute( "application.request.upload", read );
-//            }
-//        }
-//        catch ( Exception e ) {
-//            logger.error( "Unable to capture input", e );
-//        }
-//    }
-//
-//
-//    private final class InputStreamAdapter extends FilterInputStream {
-//
-//        long total = 0;
-//
-//
-//        protected InputStreamAdapter( InputStream in ) {
-//            super( in );
-//        }
-//
-//
-//        @Override
-//        public int available() throws IOException {
-//            int i = super.available();
-//            return i;
-//        }
-//
-//
-//        @Override
-//        public int read() throws IOException {
-//            int b = super.read();
-//            if ( b != -1 ) {
-//                total++;
-//            }
-//            else {
-//                countDataRead( total );
-//                total = 0;
-//            }
-//            return b;
-//        }
-//
-//
-//        @Override
-//        public int read( byte[] b, int off, int len ) throws IOException {
-//            int l = super.read( b, off, len );
-//            if ( l != -1 ) {
-//                total += l;
-//            }
-//            if ( ( l == -1 ) || ( l < len ) ) {
-//                countDataRead( total );
-//                total = 0;
-//            }
-//            return l;
-//        }
-//
-//
-//        @Override
-//        public int read( byte[] b ) throws IOException {
-//            int l = super.read( b );
-//            if ( l != -1 ) {
-//                total += l;
-//            }
-//            if ( ( l == -1 ) || ( l < b.length ) ) {
-//                countDataRead( total );
-//                total = 0;
-//            }
-//            return l;
-//        }
-//
-//
-//        @Override
-//        public void close() throws IOException {
-//            super.close();
-//            countDataRead( total );
-//        }
-//    }
-//
-//
-//    private final class ContainerResponseWriterAdapter implements ContainerResponseWriter {
-//
-//        private final ContainerResponseWriter crw;
-//        private OutputStreamAdapter out = null;
-//
-//
-//        ContainerResponseWriterAdapter( ContainerResponseWriter crw ) {
-//            this.crw = crw;
-//        }
-//
-//
-//        @Override
-//        public OutputStream writeResponseStatusAndHeaders(
-//            long contentLength, ContainerResponse response) throws ContainerException {
-//
-//            // logger.info("Wrapping output stream");
-//            OutputStream o = crw.writeResponseStatusAndHeaders( contentLength, response );
-//
-//            if ( out == null ) {
-//                out = new OutputStreamAdapter( o );
-//            }
-//
-//            return out;
-//        }
-//
-//        @Override
-//        public boolean suspend(long l, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
-//            return crw.suspend( l, timeUnit, timeoutHandler );
-//        }
-//
-//        @Override
-//        public void setSuspendTimeout(long l, TimeUnit timeUnit) throws IllegalStateException {
-//            crw.setSuspendTimeout( l, timeUnit );
-//        }
-//
-//        @Override
-//        public void commit() {
-//            crw.commit();
-//        }
-//
-//        @Override
-//        public void failure(Throwable throwable) {
-//            crw.failure( throwable );
-//        }
-//
-//        @Override
-//        public boolean enableResponseBuffering() {
-//            return false;
-//        }
-//
-//
-//        private final class OutputStreamAdapter extends FilterOutputStream {
-//
-//            long total = 0;
-//
-//
-//            public OutputStreamAdapter( OutputStream out ) {
-//                super( out );
-//            }
-//
-//
-//            public long getTotal() {
-//                return total;
-//            }
-//
-//
-//            @Override
-//            public void write( byte[] b, int off, int len ) throws IOException {
-//                out.write( b, off, len );
-//                total += len;
-//            }
-//
-//
-//            @Override
-//            public void write( byte[] b ) throws IOException {
-//                out.write( b );
-//                total += b.length;
-//            }
-//
-//
-//            @Override
-//            public void write( int b ) throws IOException {
-//                out.write( b );
-//                total += 1;
-//            }
-//        }
-//    }
-//
-//    @Override
-//    public void filter(ContainerRequestContext req, ContainerResponseContext res) throws IOException {
-//        try {
-//            res.setEntityStream( res.getEntityStream() );
-//        }
-//        catch ( Exception e ) {
-//            logger.error( "Unable to capture response", e );
-//        }
-//    }
 }
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.usergrid.rest.interceptors;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+
+/**
+ * Output stream that buffers the start of a response and only compresses it once it grows past a threshold.
+ * Responses that end below the threshold are written as is, and so are responses flushed below it, since the writer
+ * is streaming them.  Deflaters are pooled per thread and reused across responses, and both the gzip and the zlib
+ * ("deflate") content codings are supported.
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    /**
+     * Content codings this stream can produce
+     */
+    public enum Encoding {
+        GZIP( "gzip", true ),
+        DEFLATE( "deflate", false );
+
+        private final String name;
+        private final boolean nowrap;
+
+
+        Encoding( final String name, final boolean nowrap ) {
+            this.name = name;
+            this.nowrap = nowrap;
+        }
+
+
+        public String getName() {
+            return name;
+        }
+    }
+
+
+    /**
+     * Callbacks for the owner of the stream
+     */
+    public interface Listener {
+
+        /**
+         * Invoked once, before the first compressed byte is written, so the content encoding can be set
+         */
+        void compressionStarted( Encoding encoding );
+
+        /**
+         * Invoked when the stream is closed with the number of bytes written to it and the number sent
+         */
+        void completed( long rawBytes, long sentBytes );
+    }
+
+
+    private static final byte[] GZIP_HEADER = { 0x1f, ( byte ) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, ( byte ) 0xff };
+
+    private static final ThreadLocal<Deflater[][]> deflaters = new ThreadLocal<Deflater[][]>() {
+        @Override
+        protected Deflater[][] initialValue() {
+            // indexed by nowrap, then level + 1 since the default level is -1
+            return new Deflater[2][11];
+        }
+    };
+
+    private final OutputStream out;
+    private final Encoding encoding;
+    private final int level;
+    private final Listener listener;
+
+    private final byte[] single = new byte[1];
+
+    private byte[] buffer;
+    private int count;
+    private long rawBytes;
+    private long sentBytes;
+
+    private Deflater deflater;
+    private DeflaterOutputStream compressed;
+    private CRC32 crc;
+    private boolean closed;
+
+
+    public CompressingOutputStream( final OutputStream out, final Encoding encoding, final int level,
+                                    final int threshold, final Listener listener ) {
+        this.out = new OutputStream() {
+            @Override
+            public void write( final int b ) throws IOException {
+                out.write( b );
+                sentBytes++;
+            }
+
+
+            @Override
+            public void write( final byte[] b, final int off, final int len ) throws IOException {
+                out.write( b, off, len );
+                sentBytes += len;
+            }
+
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+        this.encoding = encoding;
+        this.level = level;
+        this.listener = listener;
+        this.buffer = new byte[Math.max( threshold, 0 )];
+    }
+
+
+    @Override
+    public void write( final int b ) throws IOException {
+        single[0] = ( byte ) b;
+        write( single, 0, 1 );
+    }
+
+
+    @Override
+    public void write( final byte[] b, final int off, final int len ) throws IOException {
+        rawBytes += len;
+
+        if ( compressed == null ) {
+            // flushed below the threshold, the rest of the response is written as is
+            if ( buffer == null ) {
+                out.write( b, off, len );
+                return;
+            }
+            if ( count + len <= buffer.length ) {
+                System.arraycopy( b, off, buffer, count, len );
+                count += len;
+                return;
+            }
+            startCompression();
+        }
+
+        writeCompressed( b, off, len );
+    }
+
+
+    /**
+     * Flushes compressed output.  A flush while the response is still being buffered writes the buffer as is and
+     * stops buffering, so streamed responses reach the client line by line, uncompressed.
+     */
+    @Override
+    public void flush() throws IOException {
+        if ( compressed != null ) {
+            compressed.flush();
+            return;
+        }
+
+        if ( count > 0 ) {
+            out.write( buffer, 0, count );
+            count = 0;
+        }
+        buffer = null;
+        out.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if ( compressed != null ) {
+                compressed.finish();
+                if ( crc != null ) {
+                    writeTrailer();
+                }
+            }
+            else if ( count > 0 ) {
+                out.write( buffer, 0, count );
+            }
+        }
+        finally {
+            releaseDeflater();
+            buffer = null;
+            out.close();
+        }
+
+        if ( listener != null ) {
+            listener.completed( rawBytes, sentBytes );
+        }
+    }
+
+
+    private void startCompression() throws IOException {
+        if ( listener != null ) {
+            listener.compressionStarted( encoding );
+        }
+
+        deflater = borrowDeflater( level, encoding.nowrap );
+
+        if ( encoding == Encoding.GZIP ) {
+            crc = new CRC32();
+            out.write( GZIP_HEADER );
+        }
+
+        // sync flush so streamed responses reach the client when the writer flushes
+        compressed = new DeflaterOutputStream( out, deflater, 512, true );
+
+        if ( count > 0 ) {
+            writeCompressed( buffer, 0, count );
+            count = 0;
+        }
+        buffer = null;
+    }
+
+
+    private void writeCompressed( final byte[] b, final int off, final int len ) throws IOException {
+        if ( crc != null ) {
+            crc.update( b, off, len );
+        }
+        compressed.write( b, off, len );
+    }
+
+
+    private void writeTrailer() throws IOException {
+        final byte[] trailer = new byte[8];
+        writeInt( ( int ) crc.getValue(), trailer, 0 );
+        writeInt( ( int ) rawBytes, trailer, 4 );
+        out.write( trailer );
+    }
+
+
+    private static void writeInt( final int value, final byte[] b, final int offset ) {
+        b[offset] = ( byte ) value;
+        b[offset + 1] = ( byte ) ( value >> 8 );
+        b[offset + 2] = ( byte ) ( value >> 16 );
+        b[offset + 3] = ( byte ) ( value >> 24 );
+    }
+
+
+    private static Deflater borrowDeflater( final int level, final boolean nowrap ) {
+        final Deflater[] pool = deflaters.get()[nowrap ? 1 : 0];
+        final Deflater pooled = pool[level + 1];
+
+        if ( pooled != null ) {
+            pool[level + 1] = null;
+            return pooled;
+        }
+
+        return new Deflater( level, nowrap );
+    }
+
+
+    private void releaseDeflater() {
+        if ( deflater == null ) {
+            return;
+        }
+
+        final Deflater[] pool = deflaters.get()[encoding.nowrap ? 1 : 0];
+
+        if ( pool[level + 1] == null ) {
+            deflater.reset();
+            pool[level + 1] = deflater;
+        }
+        else {
+            deflater.end();
+        }
+
+        deflater = null;
+    }
+}
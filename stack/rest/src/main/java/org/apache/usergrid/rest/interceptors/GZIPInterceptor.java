@@ -17,49 +17,124 @@
 
 package org.apache.usergrid.rest.interceptors;
 
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.rest.applications.assets.AssetResponses;
+import org.apache.usergrid.rest.interceptors.CompressingOutputStream.Encoding;
 import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Properties;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.inject.*;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.*;
 import javax.ws.rs.ext.Provider;
 
+import com.codahale.metrics.Meter;
+import com.google.inject.Injector;
+
 /**
- * If the request had an ACCEPT_ENCODING header containing 'gzip' then
- * gzip the response and add CONTENT_ENCODING gzip header
+ * If the request had an ACCEPT_ENCODING header accepting 'gzip' or 'deflate' then
+ * compress the response once it grows past the configured threshold and add the
+ * CONTENT_ENCODING header.  Smaller responses are sent uncompressed.
  *
- * If the request had an CONTENT_ENCODING header containing 'gzip' then
- *  unzip the request and remove the CONTENT_ENCODING gzip header
+ * If the request had an CONTENT_ENCODING header containing 'gzip' or 'deflate' then
+ *  unzip the request and remove the CONTENT_ENCODING header
  *
  *  Created by peterajohnson on 11/1/17.
  */
 @Provider
 public class GZIPInterceptor implements ReaderInterceptor, WriterInterceptor {
 
+    private static final Logger logger = LoggerFactory.getLogger( GZIPInterceptor.class );
+
     final private static String GZIP = "gzip";
+    final private static String DEFLATE = "deflate";
+
+    /**
+     * Responses smaller than this many bytes are not compressed
+     */
+    public static final String COMPRESSION_THRESHOLD = "usergrid.rest.compression.threshold";
+
+    /**
+     * Deflate level from 1 (fastest) to 9 (smallest), -1 for the default
+     */
+    public static final String COMPRESSION_LEVEL = "usergrid.rest.compression.level";
+
+    private static final int DEFAULT_THRESHOLD = 1024;
+
     @Inject
     private javax.inject.Provider<ContainerRequest> requestProvider;
 
+    private int threshold = DEFAULT_THRESHOLD;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    private Injector injector;
+    private MetricsFactory metricsFactory;
+
+
+    @Autowired
+    @Qualifier("properties")
+    public void setProperties( Properties properties ) {
+        threshold = Integer.parseInt( properties.getProperty( COMPRESSION_THRESHOLD,
+            String.valueOf( DEFAULT_THRESHOLD ) ) );
+
+        int configuredLevel = Integer.parseInt( properties.getProperty( COMPRESSION_LEVEL,
+            String.valueOf( Deflater.DEFAULT_COMPRESSION ) ) );
+        if ( configuredLevel < Deflater.DEFAULT_COMPRESSION || configuredLevel > Deflater.BEST_COMPRESSION ) {
+            logger.warn( "Invalid {} {}, using the default level", COMPRESSION_LEVEL, configuredLevel );
+            configuredLevel = Deflater.DEFAULT_COMPRESSION;
+        }
+        level = configuredLevel;
+    }
+
+
+    @Autowired
+    public void setInjector( Injector injector ) {
+        this.injector = injector;
+    }
+
+
     @Override
     public void aroundWriteTo(WriterInterceptorContext context) throws IOException,WebApplicationException {
         ContainerRequest request = requestProvider.get();
 
-        if (request != null) {
-            List<String> aeHeaders = request.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
-            if (aeHeaders != null && aeHeaders.size() > 0) {
-                String acceptEncodingHeader = aeHeaders.get(0);
-                if (acceptEncodingHeader.contains(GZIP)) {
-                    OutputStream outputStream = context.getOutputStream();
-                    context.setOutputStream(new GZIPOutputStream(outputStream));
-                    context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
-                }
+        if (request != null && !isRangeable( context.getHeaders() )) {
+            Encoding encoding = getAcceptedEncoding( request.getRequestHeader( HttpHeaders.ACCEPT_ENCODING ) );
+            if ( encoding != null ) {
+                final MultivaluedMap<String, Object> headers = context.getHeaders();
+                final String endpoint = getEndpoint( request );
+
+                headers.add( HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING );
+
+                OutputStream outputStream = context.getOutputStream();
+                context.setOutputStream( new CompressingOutputStream( outputStream, encoding, level, threshold,
+                    new CompressingOutputStream.Listener() {
+                        @Override
+                        public void compressionStarted( final Encoding started ) {
+                            headers.putSingle( HttpHeaders.CONTENT_ENCODING, started.getName() );
+                            headers.remove( HttpHeaders.CONTENT_LENGTH );
+                        }
+
+
+                        @Override
+                        public void completed( final long rawBytes, final long sentBytes ) {
+                            recordBytes( endpoint, rawBytes, sentBytes );
+                        }
+                    } ) );
             }
         }
         context.proceed();
@@ -73,7 +148,104 @@ public class GZIPInterceptor implements ReaderInterceptor, WriterInterceptor {
             context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
             context.setInputStream(is);
         }
+        else if (DEFLATE.equalsIgnoreCase(encoding)) {
+            InflaterInputStream is = new InflaterInputStream(context.getInputStream());
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            context.setInputStream(is);
+        }
 
         return context.proceed();
     }
+
+
+    /**
+     * Pick the coding to use from the accept encoding headers, preferring gzip.  Codings with a quality of zero are
+     * refused, and a wildcard accepts gzip.
+     */
+    static Encoding getAcceptedEncoding( List<String> aeHeaders ) {
+        if ( aeHeaders == null || aeHeaders.isEmpty() ) {
+            return null;
+        }
+
+        boolean gzip = false;
+        boolean deflate = false;
+
+        for ( String header : aeHeaders ) {
+            for ( String coding : header.split( "," ) ) {
+                String[] parts = coding.split( ";" );
+                String name = parts[0].trim().toLowerCase();
+
+                if ( isRefused( parts ) ) {
+                    continue;
+                }
+
+                if ( GZIP.equals( name ) || "x-gzip".equals( name ) || "*".equals( name ) ) {
+                    gzip = true;
+                }
+                else if ( DEFLATE.equals( name ) ) {
+                    deflate = true;
+                }
+            }
+        }
+
+        return gzip ? Encoding.GZIP : deflate ? Encoding.DEFLATE : null;
+    }
+
+
+    private static boolean isRefused( String[] parts ) {
+        for ( int i = 1; i < parts.length; i++ ) {
+            String param = parts[i].trim();
+            if ( param.startsWith( "q=" ) ) {
+                try {
+                    return Double.parseDouble( param.substring( 2 ) ) <= 0;
+                }
+                catch ( NumberFormatException e ) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Responses that support byte ranges are sent as is, since the ranges are offsets into the uncompressed data
+     */
+    private static boolean isRangeable( MultivaluedMap<String, Object> headers ) {
+        return headers.containsKey( AssetResponses.ACCEPT_RANGES ) || headers.containsKey( AssetResponses.CONTENT_RANGE );
+    }
+
+
+    /**
+     * Name the endpoint by its resource method, which keeps the number of metrics bounded
+     */
+    private static String getEndpoint( ContainerRequest request ) {
+        ResourceMethod resourceMethod = request.getUriInfo().getMatchedResourceMethod();
+        if ( resourceMethod != null && resourceMethod.getInvocable() != null ) {
+            Method method = resourceMethod.getInvocable().getHandlingMethod();
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+        return "unmatched";
+    }
+
+
+    private void recordBytes( String endpoint, long rawBytes, long sentBytes ) {
+        MetricsFactory metrics = getMetricsFactory();
+        if ( metrics == null ) {
+            return;
+        }
+
+        Meter raw = metrics.getMeter( GZIPInterceptor.class, endpoint + ".raw.bytes" );
+        Meter sent = metrics.getMeter( GZIPInterceptor.class, endpoint + ".sent.bytes" );
+        raw.mark( rawBytes );
+        sent.mark( sentBytes );
+    }
+
+
+    private MetricsFactory getMetricsFactory() {
+        if ( metricsFactory == null && injector != null ) {
+            metricsFactory = injector.getInstance( MetricsFactory.class );
+        }
+        return metricsFactory;
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.applications.collection;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.apache.usergrid.rest.test.resource.AbstractRestIT;
+import org.apache.usergrid.rest.test.resource.model.Entity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests streaming collection queries as newline delimited JSON
+ */
+public class CollectionStreamingIT extends AbstractRestIT {
+
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final ObjectMapper lineMapper = new ObjectMapper();
+
+
+    /**
+     * The connections parameter selects the connection metadata like it does for json
+     */
+    @Test
+    public void streamsConnectionsParameter() throws IOException {
+
+        Entity thing1 = new Entity();
+        thing1.put( "name", "thing1" );
+        thing1 = this.app().collection( "things" ).post( thing1 );
+
+        Entity thing2 = new Entity();
+        thing2.put( "name", "thing2" );
+        thing2 = this.app().collection( "things" ).post( thing2 );
+
+        this.waitForQueueDrainAndRefreshIndex();
+
+        this.app().collection( "things" ).entity( thing1 )
+            .connection( "likes" ).collection( "things" ).entity( thing2 ).post();
+        this.waitForQueueDrainAndRefreshIndex();
+
+        Map<String, Object> metadata = getMetadata( stream( "things", "connections", "out" ), "thing1" );
+        assertTrue( metadata.containsKey( "connections" ) );
+        assertFalse( metadata.containsKey( "connecting" ) );
+
+        metadata = getMetadata( stream( "things", "connections", "in" ), "thing2" );
+        assertTrue( metadata.containsKey( "connecting" ) );
+        assertFalse( metadata.containsKey( "connections" ) );
+
+        metadata = getMetadata( stream( "things", "connections", "none" ), "thing1" );
+        assertFalse( metadata.containsKey( "connections" ) );
+        assertFalse( metadata.containsKey( "connecting" ) );
+    }
+
+
+    private List<Map<String, Object>> stream( final String collection, final String param, final String value )
+        throws IOException {
+
+        String body = this.app().collection( collection ).getTarget( true )
+            .queryParam( param, value )
+            .request()
+            .accept( APPLICATION_NDJSON )
+            .get( String.class );
+
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for ( String line : body.split( "\n" ) ) {
+            if ( !line.isEmpty() ) {
+                lines.add( lineMapper.readValue( line, HashMap.class ) );
+            }
+        }
+
+        return lines;
+    }
+
+
+    @SuppressWarnings( "unchecked" )
+    private static Map<String, Object> getMetadata( final List<Map<String, Object>> lines, final String name ) {
+        for ( Map<String, Object> line : lines ) {
+            if ( name.equals( line.get( "name" ) ) ) {
+                return ( Map<String, Object> ) line.get( "metadata" );
+            }
+        }
+
+        throw new AssertionError( "No entity named " + name );
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.usergrid.rest.applications.collection.paging;
 import java.io.IOException;
 import java.util.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -421,6 +422,38 @@ public class PagingResourceIT extends AbstractRestIT {
         return testCollections;
     }
 
+    /**
+     * Streams a collection as newline delimited JSON with a page size smaller than the collection and checks that
+     * every entity is written once, followed by the count line.
+     */
+    @Test
+    public void streamingNdjsonPagesThroughCollection() throws Exception {
+
+        String collectionName = "testStreamingNdjson";
+        int numOfEntities = 25;
+
+        createEntities( collectionName, numOfEntities );
+
+        String body = this.app().collection( collectionName ).getTarget( true )
+            .queryParam( "limit", 10 )
+            .request()
+            .accept( "application/x-ndjson" )
+            .get( String.class );
+
+        String[] lines = body.trim().split( "\n" );
+        assertEquals( numOfEntities + 1, lines.length );
+
+        ObjectMapper mapper = new ObjectMapper();
+        Set<String> names = new HashSet<>();
+        for ( int i = 0; i < numOfEntities; i++ ) {
+            names.add( mapper.readTree( lines[i] ).get( "name" ).asText() );
+        }
+        assertEquals( numOfEntities, names.size() );
+
+        assertEquals( numOfEntities, mapper.readTree( lines[numOfEntities] ).get( "count" ).asInt() );
+    }
+
+
     /**
      * Creates a number of entities with sequential names going up to the numOfEntities and posts them to the
      * collection specified with CollectionName.
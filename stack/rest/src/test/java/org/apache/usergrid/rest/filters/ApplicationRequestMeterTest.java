@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.rest.filters;
+
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ApplicationRequestMeterTest {
+
+
+    @Test
+    public void drainsPerApplicationTotals() {
+        ApplicationRequestMeter meter = new ApplicationRequestMeter();
+
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        meter.recordRequest( first, 10, 100 );
+        meter.recordRequest( first, 5, 0 );
+        meter.recordWritten( first, 2000 );
+        meter.recordRequest( second, 0, 0 );
+
+        Map<UUID, Map<String, Long>> drained = meter.drain();
+
+        assertEquals( 2L, ( long ) drained.get( first ).get( ApplicationRequestMeter.REQUESTS ) );
+        assertEquals( 15L, ( long ) drained.get( first ).get( ApplicationRequestMeter.REQUEST_TIME ) );
+        assertEquals( 100L, ( long ) drained.get( first ).get( ApplicationRequestMeter.UPLOAD ) );
+        assertEquals( 2000L, ( long ) drained.get( first ).get( ApplicationRequestMeter.DOWNLOAD ) );
+
+        assertEquals( 1L, ( long ) drained.get( second ).get( ApplicationRequestMeter.REQUESTS ) );
+        assertFalse( drained.get( second ).containsKey( ApplicationRequestMeter.REQUEST_TIME ) );
+    }
+
+
+    @Test
+    public void drainResetsTotals() {
+        ApplicationRequestMeter meter = new ApplicationRequestMeter();
+
+        UUID applicationId = UUID.randomUUID();
+        meter.recordRequest( applicationId, 10, 100 );
+
+        assertEquals( 1, meter.drain().size() );
+        assertTrue( meter.drain().isEmpty() );
+
+        meter.recordWritten( applicationId, 50 );
+
+        Map<String, Long> counters = meter.drain().get( applicationId );
+        assertEquals( 1, counters.size() );
+        assertEquals( 50L, ( long ) counters.get( ApplicationRequestMeter.DOWNLOAD ) );
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.usergrid.rest.interceptors;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+
+import org.apache.usergrid.rest.interceptors.CompressingOutputStream.Encoding;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class CompressingOutputStreamTest {
+
+
+    @Test
+    public void smallResponseIsNotCompressed() throws IOException {
+        byte[] data = payload( 100 );
+        RecordingListener listener = new RecordingListener();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        write( new CompressingOutputStream( out, Encoding.GZIP, -1, 1024, listener ), data );
+
+        assertNull( listener.started );
+        assertArrayEquals( data, out.toByteArray() );
+        assertEquals( 100, listener.raw );
+        assertEquals( 100, listener.sent );
+    }
+
+
+    @Test
+    public void largeResponseIsGzipped() throws IOException {
+        byte[] data = payload( 100000 );
+        RecordingListener listener = new RecordingListener();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        write( new CompressingOutputStream( out, Encoding.GZIP, -1, 1024, listener ), data );
+
+        assertEquals( Encoding.GZIP, listener.started );
+        assertArrayEquals( data, read( new GZIPInputStream( new ByteArrayInputStream( out.toByteArray() ) ) ) );
+        assertEquals( 100000, listener.raw );
+        assertEquals( out.size(), listener.sent );
+        assertTrue( listener.sent < listener.raw );
+    }
+
+
+    @Test
+    public void flushBelowThresholdStreamsAsIs() throws IOException {
+        byte[] data = payload( 5000 );
+        RecordingListener listener = new RecordingListener();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressingOutputStream stream = new CompressingOutputStream( out, Encoding.GZIP, -1, 1024, listener );
+
+        stream.write( data, 0, 100 );
+        stream.flush();
+
+        // the flushed line reaches the client, and so does everything after it
+        assertEquals( 100, out.size() );
+
+        for ( int i = 100; i < data.length; i++ ) {
+            stream.write( data[i] );
+        }
+        stream.close();
+
+        assertNull( listener.started );
+        assertArrayEquals( data, out.toByteArray() );
+        assertEquals( 5000, listener.sent );
+    }
+
+
+    @Test
+    public void pooledDeflaterIsReused() throws IOException {
+        byte[] data = payload( 50000 );
+
+        for ( Encoding encoding : Encoding.values() ) {
+            for ( int i = 0; i < 3; i++ ) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                write( new CompressingOutputStream( out, encoding, 1, 1024, null ), data );
+
+                InputStream in = encoding == Encoding.GZIP
+                    ? new GZIPInputStream( new ByteArrayInputStream( out.toByteArray() ) )
+                    : new InflaterInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+                assertArrayEquals( data, read( in ) );
+            }
+        }
+    }
+
+
+    @Test
+    public void acceptedEncoding() {
+        assertNull( GZIPInterceptor.getAcceptedEncoding( null ) );
+        assertNull( GZIPInterceptor.getAcceptedEncoding( Collections.singletonList( "identity" ) ) );
+        assertNull( GZIPInterceptor.getAcceptedEncoding( Collections.singletonList( "gzip;q=0" ) ) );
+        assertEquals( Encoding.GZIP, GZIPInterceptor.getAcceptedEncoding( Collections.singletonList( "gzip, deflate" ) ) );
+        assertEquals( Encoding.DEFLATE,
+            GZIPInterceptor.getAcceptedEncoding( Arrays.asList( "gzip;q=0", "deflate;q=0.5" ) ) );
+        assertEquals( Encoding.GZIP, GZIPInterceptor.getAcceptedEncoding( Collections.singletonList( "*" ) ) );
+    }
+
+
+    private static byte[] payload( int size ) {
+        byte[] data = new byte[size];
+        for ( int i = 0; i < size; i++ ) {
+            data[i] = ( byte ) ( 'a' + i % 13 );
+        }
+        return data;
+    }
+
+
+    /**
+     * Write in chunks with a flush at the end, the way json writers do
+     */
+    private static void write( CompressingOutputStream stream, byte[] data ) throws IOException {
+        for ( int i = 0; i < data.length; i += 700 ) {
+            stream.write( data, i, Math.min( 700, data.length - i ) );
+        }
+        stream.flush();
+        stream.close();
+    }
+
+
+    private static byte[] read( InputStream in ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ( ( read = in.read( buffer ) ) > 0 ) {
+            out.write( buffer, 0, read );
+        }
+        return out.toByteArray();
+    }
+
+
+    private static class RecordingListener implements CompressingOutputStream.Listener {
+        private Encoding started;
+        private long raw;
+        private long sent;
+
+
+        @Override
+        public void compressionStarted( Encoding encoding ) {
+            started = encoding;
+        }
+
+
+        @Override
+        public void completed( long rawBytes, long sentBytes ) {
+            raw = rawBytes;
+            sent = sentBytes;
+        }
+    }
+}
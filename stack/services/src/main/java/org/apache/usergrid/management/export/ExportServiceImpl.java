@@ -17,12 +17,22 @@
 package org.apache.usergrid.management.export;
 
 
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +45,6 @@ import org.apache.usergrid.persistence.ConnectionRef;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
-import org.apache.usergrid.persistence.PagingResultsIterator;
 import org.apache.usergrid.persistence.Results;
 import org.apache.usergrid.persistence.SimpleEntityRef;
 import org.apache.usergrid.persistence.entities.Export;
@@ -46,9 +55,10 @@ import org.apache.usergrid.persistence.Query.Level;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.BiMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
 /**
@@ -76,8 +86,38 @@ public class ExportServiceImpl implements ExportService {
     //Amount of time that has passed before sending another heart beat in millis
     public static final int TIMESTAMP_DELTA = 5000;
 
+    //Number of applications exported at the same time
+    public static final String EXPORT_CONCURRENCY = "usergrid.export.concurrency";
+
+    //Number of threads loading the connections and dictionaries of the entities in a page
+    public static final String EXPORT_FETCH_CONCURRENCY = "usergrid.export.fetch.concurrency";
+
+    //Number of times a failed export resumes from its checkpoints before it is marked as failed
+    public static final String EXPORT_RETRIES = "usergrid.export.retries";
+
+    //Time to wait before a failed export resumes, in millis
+    public static final String EXPORT_RETRY_DELAY = "usergrid.export.retry.delay";
+
+    //Property of the export entity holding the progress of each application
+    public static final String CHECKPOINTS = "checkpoints";
+
+    //Property of the export entity counting the times it resumed after a failure
+    public static final String RETRIES = "retries";
+
+    private static final String CHECKPOINT_FILE = "file";
+    private static final String CHECKPOINT_COMPLETE = "complete";
+    private static final String CHECKPOINT_COLLECTION = "collection";
+    private static final String CHECKPOINT_CURSOR = "cursor";
+    private static final String CHECKPOINT_WRITTEN = "written";
+    private static final String CHECKPOINT_UPLOAD = "upload";
+
     private JsonFactory jsonFactory = new JsonFactory();
 
+    private int exportConcurrency = 4;
+    private int fetchConcurrency = 8;
+    private int exportRetries = 3;
+    private long retryDelay = 60000;
+
 
     @Override
     public UUID schedule( final Map<String, Object> config ) throws Exception {
@@ -231,12 +271,11 @@ public class ExportServiceImpl implements ExportService {
         else if ( config.get( "applicationId" ) == null ) {
             //exports All the applications from an organization
             try {
-                exportApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config, jobExecution, s3Export );
+                exportApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config, jobExecution, s3Export,
+                        export );
             }
             catch ( Exception e ) {
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
+                exportFailed( jobExecution, em, export, e );
                 return;
             }
         }
@@ -244,34 +283,21 @@ public class ExportServiceImpl implements ExportService {
             //exports an Application from a single organization
             try {
                 exportApplicationFromOrg( ( UUID ) config.get( "organizationId" ),
-                        ( UUID ) config.get( "applicationId" ), config, jobExecution, s3Export );
+                        ( UUID ) config.get( "applicationId" ), config, jobExecution, s3Export, export );
             }
             catch ( Exception e ) {
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
+                exportFailed( jobExecution, em, export, e );
                 return;
             }
         }
         else {
+            //exports a single collection from an app org combo
             try {
-                //exports a single collection from an app org combo
-                try {
-                    exportCollectionFromOrgApp( ( UUID ) config.get( "applicationId" ), config, jobExecution,
-                            s3Export );
-                }
-                catch ( Exception e ) {
-                    export.setErrorMessage( e.getMessage() );
-                    export.setState( Export.State.FAILED );
-                    em.update( export );
-                    return;
-                }
+                exportCollectionFromOrgApp( ( UUID ) config.get( "applicationId" ), config, jobExecution,
+                        s3Export, export );
             }
             catch ( Exception e ) {
-                //if for any reason the backing up fails, then update the entity with a failed state.
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
+                exportFailed( jobExecution, em, export, e );
                 return;
             }
         }
@@ -280,6 +306,37 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+    /**
+     * Failures of S3 or Cassandra are often transient, so the export is delayed to resume from its checkpoints, and
+     * only marked as failed once it has done so {@link #EXPORT_RETRIES} times.
+     */
+    private void exportFailed( final JobExecution jobExecution, final EntityManager em, final Export export,
+                               final Exception e ) throws Exception {
+        final int retries = getRetries( export );
+        export.setErrorMessage( e.getMessage() );
+
+        if ( retries < exportRetries ) {
+            logger.warn( "Export {} failed, resuming in {} ms, retry {} of {}", export.getUuid(), retryDelay,
+                retries + 1, exportRetries, e );
+            export.setProperty( RETRIES, retries + 1 );
+            export.setState( Export.State.SCHEDULED );
+            em.update( export );
+            jobExecution.delay( retryDelay );
+            return;
+        }
+
+        logger.error( "Export {} failed after {} retries", export.getUuid(), retries, e );
+        export.setState( Export.State.FAILED );
+        em.update( export );
+    }
+
+
+    private static int getRetries( final Export export ) {
+        Object retries = export.getProperty( RETRIES );
+        return retries instanceof Number ? ( ( Number ) retries ).intValue() : 0;
+    }
+
+
     public SchedulerService getSch() {
         return sch;
     }
@@ -311,6 +368,18 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+    public void setProperties( final Properties properties ) {
+        exportConcurrency = Math.max( 1, Integer.parseInt(
+            properties.getProperty( EXPORT_CONCURRENCY, String.valueOf( exportConcurrency ) ) ) );
+        fetchConcurrency = Math.max( 1, Integer.parseInt(
+            properties.getProperty( EXPORT_FETCH_CONCURRENCY, String.valueOf( fetchConcurrency ) ) ) );
+        exportRetries = Math.max( 0, Integer.parseInt(
+            properties.getProperty( EXPORT_RETRIES, String.valueOf( exportRetries ) ) ) );
+        retryDelay = Math.max( 0, Long.parseLong(
+            properties.getProperty( EXPORT_RETRY_DELAY, String.valueOf( retryDelay ) ) ) );
+    }
+
+
     public Export getExportEntity( final JobExecution jobExecution ) throws Exception {
 
         UUID exportId = ( UUID ) jobExecution.getJobData().getProperty( EXPORT_ID );
@@ -324,41 +393,23 @@ public class ExportServiceImpl implements ExportService {
      * Exports All Applications from an Organization
      */
     private void exportApplicationsFromOrg( UUID organizationUUID, final Map<String, Object> config,
-                                            final JobExecution jobExecution, S3Export s3Export ) throws Exception {
-
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
-        String appFileName = null;
+                                            final JobExecution jobExecution, S3Export s3Export, Export export )
+            throws Exception {
 
         BiMap<UUID, String> applications = managementService.getApplicationsForOrganization( organizationUUID );
+        String exportsApplication = managementService.getOrganizationByUuid( organizationUUID ).getName() + "/exports";
 
+        Map<UUID, String> appFileNames = new LinkedHashMap<>();
         for ( Map.Entry<UUID, String> application : applications.entrySet() ) {
 
-            if ( application.getValue().equals(
-                    managementService.getOrganizationByUuid( organizationUUID ).getName() + "/exports" ) ) {
+            if ( application.getValue().equals( exportsApplication ) ) {
                 continue;
             }
 
-            appFileName = prepareOutputFileName( application.getValue(), null );
-
-            File ephemeral = collectionExportAndQuery( application.getKey(), config, export, jobExecution );
-
-            fileTransfer( export, appFileName, ephemeral, config, s3Export );
+            appFileNames.put( application.getKey(), prepareOutputFileName( application.getValue(), null ) );
         }
-    }
-
-
-    public void fileTransfer( Export export, String appFileName, File ephemeral, Map<String, Object> config,
-                              S3Export s3Export ) {
-        try {
-            s3Export.copyToS3( ephemeral, config, appFileName );
 
-        }
-        catch ( Exception e ) {
-            export.setErrorMessage( e.getMessage() );
-            export.setState( Export.State.FAILED );
-            return;
-        }
+        exportApplications( appFileNames, config, jobExecution, s3Export, export );
     }
 
 
@@ -366,17 +417,14 @@ public class ExportServiceImpl implements ExportService {
      * Exports a specific applications from an organization
      */
     private void exportApplicationFromOrg( UUID organizationUUID, UUID applicationId, final Map<String, Object> config,
-                                           final JobExecution jobExecution, S3Export s3Export ) throws Exception {
-
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
+                                           final JobExecution jobExecution, S3Export s3Export, Export export )
+            throws Exception {
 
         ApplicationInfo application = managementService.getApplicationInfo( applicationId );
         String appFileName = prepareOutputFileName( application.getName(), null );
 
-        File ephemeral = collectionExportAndQuery(applicationId, config, export, jobExecution);
-
-        fileTransfer( export, appFileName, ephemeral, config, s3Export );
+        exportApplications( Collections.singletonMap( applicationId, appFileName ), config, jobExecution, s3Export,
+            export );
     }
 
 
@@ -385,18 +433,15 @@ public class ExportServiceImpl implements ExportService {
      */
     //might be confusing, but uses the /s/ inclusion or exclusion nomenclature.
     private void exportCollectionFromOrgApp( UUID applicationUUID, final Map<String, Object> config,
-                                             final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+                                             final JobExecution jobExecution, S3Export s3Export, Export export )
+            throws Exception {
 
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
         ApplicationInfo application = managementService.getApplicationInfo( applicationUUID );
 
         String appFileName = prepareOutputFileName( application.getName(), ( String ) config.get( "collectionName" ) );
 
-
-        File ephemeral = collectionExportAndQuery( applicationUUID, config, export, jobExecution );
-
-        fileTransfer( export, appFileName, ephemeral, config, s3Export );
+        exportApplications( Collections.singletonMap( applicationUUID, appFileName ), config, jobExecution, s3Export,
+            export );
     }
 
 
@@ -416,219 +461,455 @@ public class ExportServiceImpl implements ExportService {
 
 
     /**
-     * Serialize and save the collection members of this <code>entity</code>
-     *
-     * @param em Entity Manager
-     * @param collection Collection Name
-     * @param entity entity
+     * @return the file name concatenated with the type and the name of the collection
      */
-    private void saveCollectionMembers( JsonGenerator jg, EntityManager em, String collection, Entity entity )
-            throws Exception {
+    public String prepareOutputFileName( String applicationName, String CollectionName ) {
+        StringBuilder str = new StringBuilder();
+        str.append( applicationName );
+        str.append( "." );
+        if ( CollectionName != null ) {
+            str.append( CollectionName );
+            str.append( "." );
+        }
+        str.append( System.currentTimeMillis() );
+        str.append( ".json" );
 
-        // Write connections
-        saveConnections( entity, em, jg );
-        // Write dictionaries
-        saveDictionaries( entity, em, jg );
+        String outputFileName = str.toString();
 
-        Set<String> collections = em.getCollections( entity );
+        return outputFileName;
+    }
 
-        // If your application doesn't have any e
-        if ( ( collections == null ) || collections.isEmpty() ) {
+
+    /**
+     * Exports the applications, up to {@link #EXPORT_CONCURRENCY} at a time, each into its own file.  Applications
+     * completed by an earlier run of the same export are skipped, and partially exported ones resume from their
+     * last checkpoint.
+     */
+    protected void exportApplications( final Map<UUID, String> appFileNames, final Map<String, Object> config,
+                                       final JobExecution jobExecution, final S3Export s3Export, final Export export )
+            throws Exception {
+
+        if ( appFileNames.isEmpty() ) {
             return;
         }
 
-        for ( String collectionName : collections ) {
+        final ExportContext context = new ExportContext( config, export, jobExecution, s3Export );
 
-            if ( collectionName.equals( collection ) ) {
-                jg.writeFieldName( collectionName );
-                jg.writeStartArray();
+        final int appThreads = Math.min( exportConcurrency, appFileNames.size() );
+        final ExecutorService appExecutor = Executors.newFixedThreadPool( appThreads,
+            new ThreadFactoryBuilder().setNameFormat( "export-application-%d" ).setDaemon( true ).build() );
 
-                //is 100000 an arbitary number?
-                Results collectionMembers =
-                        em.getCollection( entity, collectionName, null, 100000, Level.IDS, false );
+        try {
+            List<Future<Void>> futures = new ArrayList<>( appFileNames.size() );
 
-                List<UUID> entityIds = collectionMembers.getIds();
+            for ( final Map.Entry<UUID, String> app : appFileNames.entrySet() ) {
+                futures.add( appExecutor.submit( () -> {
+                    exportApplication( app.getKey(), app.getValue(), context );
+                    return null;
+                } ) );
+            }
 
-                if ( ( entityIds != null ) && !entityIds.isEmpty() ) {
-                    for ( UUID childEntityUUID : entityIds ) {
-                        jg.writeObject( childEntityUUID.toString() );
+            //wait for all of them, then report the first failure
+            Exception failure = null;
+            for ( Future<Void> future : futures ) {
+                try {
+                    future.get();
+                }
+                catch ( ExecutionException e ) {
+                    logger.error( "Export of an application failed", e.getCause() );
+                    if ( failure == null ) {
+                        failure = e.getCause() instanceof Exception ? ( Exception ) e.getCause() : e;
                     }
                 }
+            }
 
-                // End collection array.
-                jg.writeEndArray();
+            if ( failure != null ) {
+                throw failure;
             }
         }
+        finally {
+            appExecutor.shutdownNow();
+            context.close();
+        }
     }
 
 
     /**
-     * Persists the connection for this entity.
+     * Streams one application into an upload, checkpointing at page boundaries whenever the upload has caught up
      */
-    private void saveDictionaries( Entity entity, EntityManager em, JsonGenerator jg ) throws Exception {
+    @SuppressWarnings( "unchecked" )
+    private void exportApplication( final UUID applicationId, final String appFileName, final ExportContext context )
+            throws Exception {
 
-        jg.writeFieldName( "dictionaries" );
-        jg.writeStartObject();
+        Map<String, Object> checkpoint = context.getCheckpoint( applicationId );
+        String fileName = appFileName;
+        ExportUpload upload = null;
 
-        Set<String> dictionaries = em.getDictionaries( entity );
-        for ( String dictionary : dictionaries ) {
+        if ( checkpoint != null ) {
+            if ( Boolean.TRUE.equals( checkpoint.get( CHECKPOINT_COMPLETE ) ) ) {
+                logger.info( "Application {} was already exported to {}", applicationId,
+                    checkpoint.get( CHECKPOINT_FILE ) );
+                return;
+            }
 
-            Map<Object, Object> dict = em.getDictionaryAsMap( entity, dictionary );
+            fileName = ( String ) checkpoint.get( CHECKPOINT_FILE );
+            try {
+                upload = context.s3Export.openUpload( context.config, fileName,
+                    ( Map<String, Object> ) checkpoint.get( CHECKPOINT_UPLOAD ) );
+                logger.info( "Resuming export of application {} to {}", applicationId, fileName );
+            }
+            catch ( IOException e ) {
+                logger.warn( "Unable to resume export of application {}, starting over", applicationId, e );
+                checkpoint = null;
+                fileName = appFileName;
+            }
+        }
 
-            // nothing to do
-            if ( dict.isEmpty() ) {
+        if ( upload == null ) {
+            upload = context.s3Export.openUpload( context.config, fileName, null );
+        }
+
+        try {
+            writeApplication( applicationId, fileName, checkpoint, upload, context );
+            upload.close();
+        }
+        catch ( Exception e ) {
+            //the uploaded parts are kept for the next attempt to resume from, unless there won't be one
+            if ( context.lastAttempt ) {
+                upload.discard();
+            }
+            else {
+                upload.abort();
+            }
+            throw e;
+        }
+
+        Map<String, Object> complete = new HashMap<>();
+        complete.put( CHECKPOINT_FILE, fileName );
+        complete.put( CHECKPOINT_COMPLETE, true );
+        context.saveCheckpoint( applicationId, complete );
+    }
+
+
+    /**
+     * Writes the application document, {"collections":{"name":[{"Metadata":{...},...},...],...}}.  The structure is
+     * written raw and each entity as its own value, so a resumed export can continue in the middle of a collection.
+     */
+    private void writeApplication( final UUID applicationId, final String fileName,
+                                   final Map<String, Object> checkpoint, final ExportUpload upload,
+                                   final ExportContext context ) throws Exception {
+
+        final EntityManager em = emf.getEntityManager( applicationId );
+        final String collectionFilter = ( String ) context.config.get( "collectionName" );
+
+        String resumeCollection = checkpoint != null ? ( String ) checkpoint.get( CHECKPOINT_COLLECTION ) : null;
+
+        //sorted, so a resumed export visits the collections in the same order
+        Set<String> collectionNames = new TreeSet<>();
+        for ( String collectionName : em.getApplicationCollectionMetadata().keySet() ) {
+            if ( collectionName.equals( "exports" ) ) {
                 continue;
             }
+            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
+            if ( collectionFilter == null || collectionName.equalsIgnoreCase( collectionFilter ) ) {
+                collectionNames.add( collectionName );
+            }
+        }
+        if ( resumeCollection != null ) {
+            collectionNames.add( resumeCollection );
+        }
 
-            jg.writeFieldName( dictionary );
+        JsonGenerator jg = getJsonGenerator( upload );
 
-            jg.writeStartObject();
+        if ( resumeCollection == null ) {
+            jg.writeRaw( "{\"collections\":{" );
+        }
+        boolean firstCollection = resumeCollection == null;
 
-            for ( Map.Entry<Object, Object> entry : dict.entrySet() ) {
-                jg.writeFieldName( entry.getKey().toString() );
-                jg.writeObject( entry.getValue() );
+        for ( String collectionName : collectionNames ) {
+
+            String cursor = null;
+            boolean firstEntity = true;
+
+            if ( resumeCollection != null ) {
+                //already written by the earlier run
+                if ( !collectionName.equals( resumeCollection ) ) {
+                    continue;
+                }
+                resumeCollection = null;
+
+                cursor = ( String ) checkpoint.get( CHECKPOINT_CURSOR );
+                firstEntity = !Boolean.TRUE.equals( checkpoint.get( CHECKPOINT_WRITTEN ) );
+
+                if ( cursor == null ) {
+                    //the checkpoint was taken after the last page
+                    jg.writeRaw( ']' );
+                    continue;
+                }
             }
+            else {
+                if ( !firstCollection ) {
+                    jg.writeRaw( ',' );
+                }
+                firstCollection = false;
 
-            jg.writeEndObject();
+                //write out the collection name at the start of the array
+                jg.writeRaw( '"' );
+                jg.writeRaw( new String( JsonStringEncoder.getInstance().quoteAsString( collectionName.toLowerCase() ) ) );
+                jg.writeRaw( "\":[" );
+            }
+
+            writeCollection( jg, em, applicationId, fileName, collectionName, collectionFilter, cursor, firstEntity,
+                upload, context );
+
+            //write out the end collection
+            jg.writeRaw( ']' );
         }
-        jg.writeEndObject();
+
+        jg.writeRaw( "}}" );
+        jg.flush();
+        jg.close();
     }
 
 
     /**
-     * Persists the connection for this entity.
+     * Pages through the collection.  The connections, dictionaries and members of the entities in a page are loaded
+     * in parallel, then the page is written in order.
      */
-    private void saveConnections( Entity entity, EntityManager em, JsonGenerator jg ) throws Exception {
+    private void writeCollection( final JsonGenerator jg, final EntityManager em, final UUID applicationId,
+                                  final String fileName, final String collectionName, final String collectionFilter,
+                                  String cursor, boolean firstEntity, final ExportUpload upload,
+                                  final ExportContext context ) throws Exception {
+
+        //Query entity manager for the entities in a collection
+        Query query = context.config.get( "query" ) == null ? new Query() :
+                      Query.fromQL( ( String ) context.config.get( "query" ) );
+        query.setLimit( MAX_ENTITY_FETCH );
+        query.setResultsLevel( Level.ALL_PROPERTIES );
+        query.setCollection( collectionName );
+
+        do {
+            query.setCursor( cursor );
+            Results results = em.searchCollection( em.getApplicationRef(), collectionName, query );
+            List<Entity> entities = results.getEntities();
+
+            List<Future<EntityMembers>> members = new ArrayList<>( entities.size() );
+            for ( final Entity entity : entities ) {
+                members.add( context.fetchExecutor.submit( () -> loadMembers( em, entity, collectionFilter ) ) );
+            }
 
-        jg.writeFieldName( "connections" );
-        jg.writeStartObject();
+            for ( int i = 0; i < entities.size(); i++ ) {
+                if ( !firstEntity ) {
+                    jg.writeRaw( ',' );
+                }
+                firstEntity = false;
 
-        Set<String> connectionTypes = em.getConnectionTypes( entity );
-        for ( String connectionType : connectionTypes ) {
+                writeEntity( jg, entities.get( i ), getMembers( members.get( i ) ) );
+            }
+            jg.flush();
+
+            cursor = results.getCursor();
+            context.heartbeat();
+
+            if ( upload.checkpoint() ) {
+                Map<String, Object> checkpoint = new HashMap<>();
+                checkpoint.put( CHECKPOINT_FILE, fileName );
+                checkpoint.put( CHECKPOINT_COLLECTION, collectionName );
+                checkpoint.put( CHECKPOINT_CURSOR, cursor );
+                checkpoint.put( CHECKPOINT_WRITTEN, !firstEntity );
+                checkpoint.put( CHECKPOINT_UPLOAD, upload.getState() );
+                context.saveCheckpoint( applicationId, checkpoint );
+            }
+        }
+        while ( cursor != null );
+    }
 
-            jg.writeFieldName( connectionType );
-            jg.writeStartArray();
 
+    private static EntityMembers getMembers( Future<EntityMembers> future ) throws Exception {
+        try {
+            return future.get();
+        }
+        catch ( ExecutionException e ) {
+            throw e.getCause() instanceof Exception ? ( Exception ) e.getCause() : e;
+        }
+    }
+
+
+    /**
+     * Loads the connections, dictionaries and, when a single collection is exported, the members of that collection
+     * of the entity
+     */
+    private EntityMembers loadMembers( EntityManager em, Entity entity, String collection ) throws Exception {
+
+        EntityMembers members = new EntityMembers();
+
+        for ( String connectionType : em.getConnectionTypes( entity ) ) {
             Results results = em.getTargetEntities(
                 new SimpleEntityRef(entity.getType(), entity.getUuid()),
                 connectionType, null, Level.IDS);
 
-            List<ConnectionRef> connections = results.getConnections();
+            List<UUID> targets = new ArrayList<>();
+            for ( ConnectionRef connectionRef : results.getConnections() ) {
+                targets.add( connectionRef.getTargetRefs().getUuid() );
+            }
+            members.connections.put( connectionType, targets );
+        }
 
-            for ( ConnectionRef connectionRef : connections ) {
-                jg.writeObject( connectionRef.getTargetRefs().getUuid() );
+        for ( String dictionary : em.getDictionaries( entity ) ) {
+            Map<Object, Object> dict = em.getDictionaryAsMap( entity, dictionary );
+
+            // nothing to do
+            if ( !dict.isEmpty() ) {
+                members.dictionaries.put( dictionary, dict );
             }
+        }
+
+        if ( collection != null ) {
+            Set<String> collections = em.getCollections( entity );
 
+            if ( collections != null && collections.contains( collection ) ) {
+                //is 100000 an arbitary number?
+                Results collectionMembers =
+                        em.getCollection( entity, collection, null, 100000, Level.IDS, false );
+                List<UUID> entityIds = collectionMembers.getIds();
+                members.collection = collection;
+                members.collectionMembers = entityIds != null ? entityIds : Collections.<UUID>emptyList();
+            }
+        }
+
+        return members;
+    }
+
+
+    /**
+     * Serialize the entity with its connections, dictionaries and collection members
+     */
+    private void writeEntity( JsonGenerator jg, Entity entity, EntityMembers members ) throws IOException {
+
+        jg.writeStartObject();
+        jg.writeFieldName( "Metadata" );
+        jg.writeObject( entity );
+
+        // Write connections
+        jg.writeFieldName( "connections" );
+        jg.writeStartObject();
+        for ( Map.Entry<String, List<UUID>> connection : members.connections.entrySet() ) {
+            jg.writeFieldName( connection.getKey() );
+            jg.writeStartArray();
+            for ( UUID target : connection.getValue() ) {
+                jg.writeObject( target );
+            }
             jg.writeEndArray();
         }
         jg.writeEndObject();
+
+        // Write dictionaries
+        jg.writeFieldName( "dictionaries" );
+        jg.writeStartObject();
+        for ( Map.Entry<String, Map<Object, Object>> dictionary : members.dictionaries.entrySet() ) {
+            jg.writeFieldName( dictionary.getKey() );
+            jg.writeStartObject();
+            for ( Map.Entry<Object, Object> entry : dictionary.getValue().entrySet() ) {
+                jg.writeFieldName( entry.getKey().toString() );
+                jg.writeObject( entry.getValue() );
+            }
+            jg.writeEndObject();
+        }
+        jg.writeEndObject();
+
+        // Write collection members
+        if ( members.collectionMembers != null ) {
+            jg.writeArrayFieldStart( members.collection );
+            for ( UUID childEntityUUID : members.collectionMembers ) {
+                jg.writeObject( childEntityUUID.toString() );
+            }
+            jg.writeEndArray();
+        }
+
+        jg.writeEndObject();
     }
 
 
-    protected JsonGenerator getJsonGenerator( File ephermal ) throws IOException {
+    protected JsonGenerator getJsonGenerator( OutputStream out ) throws IOException {
         //TODO:shouldn't the below be UTF-16?
 
-        JsonGenerator jg = jsonFactory.createJsonGenerator( ephermal, JsonEncoding.UTF8 );
-        jg.setPrettyPrinter( new DefaultPrettyPrinter(  ) );
+        JsonGenerator jg = jsonFactory.createGenerator( out, JsonEncoding.UTF8 );
+        jg.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
         jg.setCodec( new ObjectMapper() );
         return jg;
     }
 
 
     /**
-     * @return the file name concatenated with the type and the name of the collection
+     * What is loaded for an entity besides its properties
      */
-    public String prepareOutputFileName( String applicationName, String CollectionName ) {
-        StringBuilder str = new StringBuilder();
-        str.append( applicationName );
-        str.append( "." );
-        if ( CollectionName != null ) {
-            str.append( CollectionName );
-            str.append( "." );
-        }
-        str.append( System.currentTimeMillis() );
-        str.append( ".json" );
-
-        String outputFileName = str.toString();
-
-        return outputFileName;
+    private static class EntityMembers {
+        private final Map<String, List<UUID>> connections = new LinkedHashMap<>();
+        private final Map<String, Map<Object, Object>> dictionaries = new LinkedHashMap<>();
+        private String collection;
+        private List<UUID> collectionMembers;
     }
 
 
     /**
-     * handles the query and export of collections
+     * State shared by the applications of one export
      */
-    //TODO:Needs further refactoring.
-    protected File collectionExportAndQuery( UUID applicationUUID, final Map<String, Object> config, Export export,
-                                             final JobExecution jobExecution ) throws Exception {
-
-        EntityManager em = emf.getEntityManager( applicationUUID );
-        Map<String, Object> metadata = em.getApplicationCollectionMetadata();
-        long starting_time = System.currentTimeMillis();
-        File ephemeral = new File( "tempExport" + UUID.randomUUID() );
-        ephemeral.deleteOnExit();
-
+    @SuppressWarnings( "unchecked" )
+    private class ExportContext {
+
+        private final Map<String, Object> config;
+        private final Export export;
+        private final JobExecution jobExecution;
+        private final S3Export s3Export;
+        private final ExecutorService fetchExecutor;
+        private final Map<String, Object> checkpoints = new HashMap<>();
+        private final boolean lastAttempt;
+
+        private long lastHeartbeat = System.currentTimeMillis();
+
+
+        private ExportContext( final Map<String, Object> config, final Export export,
+                               final JobExecution jobExecution, final S3Export s3Export ) {
+            this.config = config;
+            this.export = export;
+            this.jobExecution = jobExecution;
+            this.s3Export = s3Export;
+            this.lastAttempt = getRetries( export ) >= exportRetries;
+            this.fetchExecutor = Executors.newFixedThreadPool( fetchConcurrency,
+                new ThreadFactoryBuilder().setNameFormat( "export-fetch-%d" ).setDaemon( true ).build() );
+
+            Object saved = export.getProperty( CHECKPOINTS );
+            if ( saved instanceof Map ) {
+                checkpoints.putAll( ( Map<String, Object> ) saved );
+            }
+        }
 
-        JsonGenerator jg = getJsonGenerator( ephemeral );
 
-        jg.writeStartObject();
-        jg.writeObjectFieldStart( "collections" );
+        private synchronized Map<String, Object> getCheckpoint( UUID applicationId ) {
+            return ( Map<String, Object> ) checkpoints.get( applicationId.toString() );
+        }
 
-        for ( String collectionName : metadata.keySet() ) {
 
-            if ( collectionName.equals( "exports" ) ) {
-                continue;
-            }
-            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
-            if ( ( config.get( "collectionName" ) == null ) || collectionName.equalsIgnoreCase((String)config.get( "collectionName" ) ) ) {
+        /**
+         * Saves the checkpoint on the export entity, where a later run of the same export job finds it
+         */
+        private synchronized void saveCheckpoint( UUID applicationId, Map<String, Object> checkpoint )
+                throws Exception {
+            checkpoints.put( applicationId.toString(), checkpoint );
 
-                //write out the collection name at the start of the file
-                jg.writeArrayFieldStart( collectionName.toLowerCase() );
-
-                //Query entity manager for the entities in a collection
-                Query query = null;
-                if ( config.get( "query" ) == null ) {
-                    query = new Query();
-                }
-                else {
-                    try {
-                        query = Query.fromQL( ( String ) config.get( "query" ) );
-                    }
-                    catch ( Exception e ) {
-                        export.setErrorMessage( e.getMessage() );
-                    }
-                }
-                query.setLimit( MAX_ENTITY_FETCH );
-                query.setResultsLevel( Level.ALL_PROPERTIES );
-                query.setCollection( collectionName );
-
-                Results entities = em.searchCollection( em.getApplicationRef(), collectionName, query );
-
-                //pages through the query and backs up all results.
-                PagingResultsIterator itr = new PagingResultsIterator( entities );
-                for ( Object e : itr ) {
-                    starting_time = checkTimeDelta( starting_time, jobExecution );
-                    Entity entity = ( Entity ) e;
-                    jg.writeStartObject();
-                    jg.writeFieldName( "Metadata" );
-                    jg.writeObject( entity );
-                    saveCollectionMembers( jg, em, ( String ) config.get( "collectionName" ), entity );
-                    jg.writeEndObject();
-                    jg.flush();
+            Map<String, Object> snapshot = new HashMap<>( checkpoints );
+            export.setProperty( CHECKPOINTS, snapshot );
+            emf.getEntityManager( emf.getManagementAppId() ).setProperty( export, CHECKPOINTS, snapshot );
+        }
 
-                }
 
+        private synchronized void heartbeat() {
+            lastHeartbeat = checkTimeDelta( lastHeartbeat, jobExecution );
+        }
 
 
-                //write out the end collection
-                jg.writeEndArray();
-            }
+        private void close() {
+            fetchExecutor.shutdownNow();
         }
-        jg.writeEndObject();
-        jg.writeEndObject();
-        jg.flush();
-        jg.close();
-
-        return ephemeral;
     }
 }
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+
+/**
+ * A stream for an export file that is uploaded while it is written.  The exporter calls {@link #checkpoint()} at
+ * points it can resume from, and persists {@link #getState()} whenever everything written so far is durable.
+ */
+public abstract class ExportUpload extends OutputStream {
+
+    /**
+     * Called at a point the export can resume from.
+     *
+     * @return true if everything written so far has been uploaded, so the state can be saved as a checkpoint
+     */
+    public abstract boolean checkpoint() throws IOException;
+
+
+    /**
+     * @return the state needed to resume this upload, or null if it can't be resumed
+     */
+    public abstract Map<String, Object> getState();
+
+
+    /**
+     * Abandon the upload after a failure.  Uploads that can be resumed should keep what they have uploaded.
+     */
+    public abstract void abort();
+
+
+    /**
+     * Abandon the upload for good after a failure, deleting what has been uploaded
+     */
+    public abstract void discard();
+}
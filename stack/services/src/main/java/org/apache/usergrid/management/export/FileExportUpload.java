@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+
+/**
+ * Writes the export to a local file and hands it to {@link S3Export#copyToS3(File, Map, String)} when closed.  Used
+ * by exporters that can't stream, it can't be resumed.
+ */
+public class FileExportUpload extends ExportUpload {
+
+    private final S3Export s3Export;
+    private final Map<String, Object> exportInfo;
+    private final String filename;
+    private final File ephemeral;
+    private final OutputStream out;
+    private boolean closed;
+
+
+    public FileExportUpload( final S3Export s3Export, final Map<String, Object> exportInfo, final String filename )
+            throws IOException {
+        this.s3Export = s3Export;
+        this.exportInfo = exportInfo;
+        this.filename = filename;
+        this.ephemeral = File.createTempFile( "tempExport", ".json" );
+        this.ephemeral.deleteOnExit();
+        this.out = new BufferedOutputStream( new FileOutputStream( ephemeral ) );
+    }
+
+
+    @Override
+    public void write( final int b ) throws IOException {
+        out.write( b );
+    }
+
+
+    @Override
+    public void write( final byte[] b, final int off, final int len ) throws IOException {
+        out.write( b, off, len );
+    }
+
+
+    @Override
+    public boolean checkpoint() {
+        return false;
+    }
+
+
+    @Override
+    public Map<String, Object> getState() {
+        return null;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+
+        try {
+            out.close();
+            s3Export.copyToS3( ephemeral, exportInfo, filename );
+        }
+        finally {
+            FileUtils.deleteQuietly( ephemeral );
+        }
+    }
+
+
+    @Override
+    public void abort() {
+        closed = true;
+        try {
+            out.close();
+        }
+        catch ( IOException e ) {
+            // nothing to keep
+        }
+        FileUtils.deleteQuietly( ephemeral );
+    }
+
+
+    /**
+     * Nothing is uploaded before the file is closed
+     */
+    @Override
+    public void discard() {
+        abort();
+    }
+}
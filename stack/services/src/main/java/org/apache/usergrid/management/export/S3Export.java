@@ -18,9 +18,26 @@ package org.apache.usergrid.management.export;
 
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 
 
 public interface S3Export {
     void copyToS3( File ephemeral,Map<String,Object> exportInfo, String filename );
+
+    /**
+     * Open a stream that uploads the export file as it is written.  The default writes a local file and copies it
+     * with {@link #copyToS3(File, Map, String)} once the stream is closed.
+     *
+     * @param resume the state of an earlier upload of the same file to continue, or null to start a new one
+     *
+     * @throws IOException if the upload can't be started, or the earlier upload can't be resumed
+     */
+    default ExportUpload openUpload( Map<String,Object> exportInfo, String filename, Map<String,Object> resume )
+            throws IOException {
+        if ( resume != null ) {
+            throw new IOException( "Resuming an upload is not supported" );
+        }
+        return new FileExportUpload( this, exportInfo, filename );
+    }
 }
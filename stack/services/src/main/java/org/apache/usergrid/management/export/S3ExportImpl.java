@@ -17,62 +17,40 @@
 package org.apache.usergrid.management.export;
 
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
-import com.google.inject.Module;
-import org.jclouds.ContextBuilder;
-import org.jclouds.blobstore.BlobStore;
-import org.jclouds.blobstore.BlobStoreContext;
-import org.jclouds.blobstore.domain.Blob;
-import org.jclouds.blobstore.domain.BlobBuilder;
-import org.jclouds.blobstore.options.PutOptions;
-import org.jclouds.http.config.JavaUrlHttpCommandExecutorServiceModule;
-import org.jclouds.logging.log4j.config.Log4JLoggingModule;
-import org.jclouds.netty.config.NettyPayloadModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+
 import java.io.File;
+import java.io.IOException;
 import java.util.Map;
-import java.util.Properties;
 
 
+/**
+ * Uploads exports with the AWS S3 client, both whole files and streamed multipart uploads, so uploads are written,
+ * resumed and aborted through the same client.
+ */
 public class S3ExportImpl implements S3Export {
     Logger logger = LoggerFactory.getLogger( S3ExportImpl.class );
 
     @Override
     public void copyToS3( File ephemeral, final Map<String,Object> exportInfo, String filename ) {
 
-        /*won't need any of the properties as I have the export info*/
-        Map<String,Object> properties = ( Map<String, Object> ) exportInfo.get( "properties" );
-
-        Map<String, Object> storage_info = (Map<String,Object>)properties.get( "storage_info" );
-
+        Map<String, Object> storage_info = getStorageInfo( exportInfo );
         String bucketName = ( String ) storage_info.get( "bucket_location" );
-        String accessId = ( String ) storage_info.get( "s3_access_id");
-        String secretKey = ( String ) storage_info.get( "s3_key" );
-
-        Properties overrides = new Properties();
-        overrides.setProperty( "s3" + ".identity", accessId );
-        overrides.setProperty( "s3" + ".credential", secretKey );
 
-        final Iterable<? extends Module> MODULES = ImmutableSet
-                .of( new JavaUrlHttpCommandExecutorServiceModule(), new Log4JLoggingModule(),
-                        new NettyPayloadModule() );
-
-        BlobStoreContext context = ContextBuilder.newBuilder( "s3" )
-            .credentials(accessId, secretKey)
-            .modules(MODULES)
-            .overrides(overrides)
-            .buildView(BlobStoreContext.class);
+        AmazonS3 s3 = createClient( storage_info );
 
         // Create Container (the bucket in s3)
         try {
-            BlobStore blobStore = context.getBlobStore();
-            if ( blobStore.createContainerInLocation(null, bucketName) ) {
-                logger.info( "Created bucket {}", bucketName );
-            }
+            createBucket( s3, bucketName );
         }
         catch ( Exception ex ) {
             logger.error( "Could not start binary service: {}", ex.getMessage() );
@@ -80,28 +58,71 @@ public class S3ExportImpl implements S3Export {
         }
 
         try {
-            BlobStore blobStore = context.getBlobStore();
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType( "application/json" );
 
-            // need this for JClouds 1.7.x:
-//            BlobBuilder blobBuilder =
-//                blobStore.blobBuilder( filename ).payload( ephemeral ).calculateMD5().contentType( "application/json" );
+            // large files are uploaded in parts
+            TransferManager transferManager = new TransferManager( s3 );
+            try {
+                UploadResult result = transferManager.upload(
+                    new PutObjectRequest( bucketName, filename, ephemeral ).withMetadata( metadata ) )
+                    .waitForUploadResult();
 
-            // needed for JClouds 1.8.x:
-            BlobBuilder blobBuilder = blobStore.blobBuilder( filename )
-                .payload( ephemeral )
-                .contentMD5(Files.hash( ephemeral, Hashing.md5() ))
-                .contentType("application/json");
-
-            Blob blob = blobBuilder.build();
-
-            final String uploadedFile = blobStore.putBlob(
-                bucketName, blob, PutOptions.Builder.multipart() );
-
-            logger.info("Uploaded file name={} etag={}", filename, uploadedFile );
+                logger.info("Uploaded file name={} etag={}", filename, result.getETag() );
+            }
+            finally {
+                transferManager.shutdownNow( false );
+            }
         }
         catch ( Exception e ) {
             logger.error( "Error uploading to blob store", e );
         }
     }
 
+
+    /**
+     * Streams the export straight into a multipart upload, so no local copy of the file is needed
+     */
+    @Override
+    public ExportUpload openUpload( final Map<String,Object> exportInfo, final String filename,
+                                    final Map<String,Object> resume ) throws IOException {
+
+        Map<String, Object> storage_info = getStorageInfo( exportInfo );
+        String bucketName = ( String ) storage_info.get( "bucket_location" );
+
+        AmazonS3 s3 = createClient( storage_info );
+
+        if ( resume == null ) {
+            try {
+                createBucket( s3, bucketName );
+            }
+            catch ( Exception e ) {
+                throw new IOException( "Could not create bucket " + bucketName, e );
+            }
+        }
+
+        return new S3MultipartUpload( s3, bucketName, filename, resume );
+    }
+
+
+    private static Map<String, Object> getStorageInfo( final Map<String,Object> exportInfo ) {
+        Map<String,Object> properties = ( Map<String, Object> ) exportInfo.get( "properties" );
+        return ( Map<String,Object> ) properties.get( "storage_info" );
+    }
+
+
+    private static AmazonS3 createClient( final Map<String, Object> storage_info ) {
+        String accessId = ( String ) storage_info.get( "s3_access_id");
+        String secretKey = ( String ) storage_info.get( "s3_key" );
+
+        return new AmazonS3Client( new BasicAWSCredentials( accessId, secretKey ) );
+    }
+
+
+    private void createBucket( final AmazonS3 s3, final String bucketName ) {
+        if ( !s3.doesBucketExist( bucketName ) ) {
+            s3.createBucket( bucketName );
+            logger.info( "Created bucket {}", bucketName );
+        }
+    }
 }
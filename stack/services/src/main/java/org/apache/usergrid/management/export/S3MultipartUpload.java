@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+
+/**
+ * Uploads an export file to S3 as a multipart upload while it is written, holding at most one part in memory.  The
+ * upload id and the uploaded parts make up the state, so an export that fails can continue the same upload from its
+ * last checkpoint.  Parts written after that checkpoint are uploaded again under the same part numbers, which
+ * replaces them.
+ */
+public class S3MultipartUpload extends ExportUpload {
+
+    private static final Logger logger = LoggerFactory.getLogger( S3MultipartUpload.class );
+
+    /** S3 rejects parts smaller than this, except for the last one */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    public static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private static final String UPLOAD_ID = "uploadId";
+    private static final String PARTS = "parts";
+    private static final String PART_NUMBER = "partNumber";
+    private static final String ETAG = "etag";
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final String key;
+    private final String uploadId;
+    private final List<PartETag> parts = new ArrayList<>();
+
+    private byte[] buffer = new byte[PART_SIZE];
+    private int count;
+    private boolean closed;
+
+
+    /**
+     * @param resume the state of an earlier upload of the same file to continue, or null to start a new one
+     */
+    public S3MultipartUpload( final AmazonS3 s3, final String bucketName, final String key,
+                              final Map<String, Object> resume ) throws IOException {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.key = key;
+
+        try {
+            if ( resume != null ) {
+                uploadId = ( String ) resume.get( UPLOAD_ID );
+                for ( Object part : ( List<?> ) resume.get( PARTS ) ) {
+                    Map<?, ?> p = ( Map<?, ?> ) part;
+                    parts.add( new PartETag( ( ( Number ) p.get( PART_NUMBER ) ).intValue(), ( String ) p.get( ETAG ) ) );
+                }
+                // fails if the upload was aborted or expired in the meantime
+                s3.listParts( new ListPartsRequest( bucketName, key, uploadId ) );
+            }
+            else {
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentType( "application/json" );
+                uploadId = s3.initiateMultipartUpload( new InitiateMultipartUploadRequest( bucketName, key, metadata ) )
+                             .getUploadId();
+            }
+        }
+        catch ( AmazonClientException e ) {
+            throw new IOException( "Unable to start upload of " + key, e );
+        }
+    }
+
+
+    @Override
+    public void write( final int b ) throws IOException {
+        write( new byte[] { ( byte ) b }, 0, 1 );
+    }
+
+
+    @Override
+    public void write( final byte[] b, int off, int len ) throws IOException {
+        while ( len > 0 ) {
+            int n = Math.min( len, buffer.length - count );
+            System.arraycopy( b, off, buffer, count, n );
+            count += n;
+            off += n;
+            len -= n;
+
+            if ( count == buffer.length ) {
+                uploadPart();
+            }
+        }
+    }
+
+
+    @Override
+    public boolean checkpoint() throws IOException {
+        if ( count >= MIN_PART_SIZE ) {
+            uploadPart();
+        }
+        return count == 0;
+    }
+
+
+    @Override
+    public Map<String, Object> getState() {
+        List<Map<String, Object>> uploaded = new ArrayList<>( parts.size() );
+        for ( PartETag part : parts ) {
+            Map<String, Object> p = new HashMap<>();
+            p.put( PART_NUMBER, part.getPartNumber() );
+            p.put( ETAG, part.getETag() );
+            uploaded.add( p );
+        }
+
+        Map<String, Object> state = new HashMap<>();
+        state.put( UPLOAD_ID, uploadId );
+        state.put( PARTS, uploaded );
+        return state;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if ( closed ) {
+            return;
+        }
+
+        // the last part may be smaller than the minimum
+        if ( count > 0 || parts.isEmpty() ) {
+            uploadPart();
+        }
+
+        try {
+            s3.completeMultipartUpload( new CompleteMultipartUploadRequest( bucketName, key, uploadId, parts ) );
+        }
+        catch ( AmazonClientException e ) {
+            throw new IOException( "Unable to complete upload of " + key, e );
+        }
+
+        closed = true;
+        buffer = null;
+        logger.info( "Uploaded export file {} in {} parts", key, parts.size() );
+    }
+
+
+    /**
+     * Keeps the uploaded parts so the export can resume.  Uploads of an export that is given up are discarded, only
+     * those of a node that went away for good are left to the bucket's lifecycle rule for incomplete multipart uploads.
+     */
+    @Override
+    public void abort() {
+        closed = true;
+        buffer = null;
+    }
+
+
+    /**
+     * Aborts the multipart upload, which deletes the uploaded parts
+     */
+    @Override
+    public void discard() {
+        abort();
+
+        try {
+            s3.abortMultipartUpload( new AbortMultipartUploadRequest( bucketName, key, uploadId ) );
+        }
+        catch ( AmazonClientException e ) {
+            logger.warn( "Unable to abort upload of {}, leaving its parts to the bucket's lifecycle rule", key, e );
+        }
+    }
+
+
+    private void uploadPart() throws IOException {
+        final int partNumber = parts.size() + 1;
+
+        UploadPartRequest request = new UploadPartRequest().withBucketName( bucketName ).withKey( key )
+                                                           .withUploadId( uploadId ).withPartNumber( partNumber )
+                                                           .withInputStream( new ByteArrayInputStream( buffer, 0, count ) )
+                                                           .withPartSize( count );
+        try {
+            parts.add( s3.uploadPart( request ).getPartETag() );
+        }
+        catch ( AmazonClientException e ) {
+            throw new IOException( "Unable to upload part " + partNumber + " of " + key, e );
+        }
+
+        count = 0;
+    }
+}
@@ -53,6 +53,8 @@ public class FileImportTracker {
     private final AtomicLong connectionsWritten = new AtomicLong( 0 );
     private final AtomicLong connectionsFailed = new AtomicLong( 0 );
     private final AtomicInteger cachedOperations = new AtomicInteger( 0 );
+    private final AtomicLong entityCheckpoint = new AtomicLong( 0 );
+    private final AtomicLong connectionCheckpoint = new AtomicLong( 0 );
 
     private final Semaphore writeSemaphore = new Semaphore( 1 );
 
@@ -82,6 +84,9 @@ public class FileImportTracker {
 
         this.connectionsWritten.addAndGet( fileImport.getImportedConnectionCount() );
         this.connectionsFailed.addAndGet( fileImport.getFailedConnectionCount() );
+
+        this.entityCheckpoint.set( fileImport.getEntityCheckpoint() );
+        this.connectionCheckpoint.set( fileImport.getConnectionCheckpoint() );
     }
 
 
@@ -147,6 +152,25 @@ public class FileImportTracker {
     }
 
 
+    /**
+     * Invoke when every entity up to the count from the start of the file is written, and save it.  Entities are
+     * written in parallel, so the counters can't tell where a resumed import has to start.
+     */
+    public void entityCheckpoint( final long count ) {
+        entityCheckpoint.set( count );
+        flush();
+    }
+
+
+    /**
+     * Invoke when every connection and dictionary up to the count from the start of the file is written, and save it
+     */
+    public void connectionCheckpoint( final long count ) {
+        connectionCheckpoint.set( count );
+        flush();
+    }
+
+
     /**
      * Invoke when the file is completed processing
      */
@@ -215,6 +239,22 @@ public class FileImportTracker {
         return connectionsFailed.get() > 0;
     }
 
+    /**
+     * Get the number of entities from the start of the file that are written
+     */
+    public long getEntityCheckpoint() {
+        return entityCheckpoint.get();
+    }
+
+
+    /**
+     * Get the number of connections and dictionaries from the start of the file that are written
+     */
+    public long getConnectionCheckpoint() {
+        return connectionCheckpoint.get();
+    }
+
+
     /**
      * Get the number of entities written
      * @return
@@ -263,21 +303,41 @@ public class FileImportTracker {
             return;
         }
 
+        try {
+            updateFileImport( FileImport.State.STARTED, getProgressMessage() );
+            cachedOperations.addAndGet( flushCount * -1 );
+        }
+        finally {
+            writeSemaphore.release();
+        }
+    }
+
+
+    /**
+     * Save the progress now, waiting for a flush in progress to finish
+     */
+    private void flush() {
+        writeSemaphore.acquireUninterruptibly();
+
+        try {
+            updateFileImport( FileImport.State.STARTED, getProgressMessage() );
+        }
+        finally {
+            writeSemaphore.release();
+        }
+    }
+
+
+    private String getProgressMessage() {
         final long failed = entitiesFailed.get();
         final long written = entitiesWritten.get();
-        final String message;
 
         if ( failed > 0 ) {
-            message = "Failed to import " + failed
+            return "Failed to import " + failed
                 + " entities.  Successfully imported " + written + " entities";
         }
-        else {
-            message = "Successfully imported " + written + " entities";
-        }
 
-        updateFileImport( FileImport.State.STARTED, message );
-        cachedOperations.addAndGet( flushCount * -1 );
-        writeSemaphore.release();
+        return "Successfully imported " + written + " entities";
     }
 
 
@@ -305,6 +365,9 @@ public class FileImportTracker {
             fileImport.setImportedConnectionCount( writtenConnections );
             fileImport.setFailedConnectionCount( failedConnections );
 
+            fileImport.setEntityCheckpoint( entityCheckpoint.get() );
+            fileImport.setConnectionCheckpoint( connectionCheckpoint.get() );
+
 
             fileImport.setState( state );
             fileImport.setErrorMessage( message );
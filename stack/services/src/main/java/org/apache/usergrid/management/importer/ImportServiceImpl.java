@@ -39,14 +39,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 import rx.Subscriber;
+import rx.functions.Action0;
 import rx.functions.Action1;
-import rx.functions.Func2;
+import rx.functions.Func0;
 import rx.schedulers.Schedulers;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class ImportServiceImpl implements ImportService {
@@ -55,7 +57,12 @@ public class ImportServiceImpl implements ImportService {
     public static final String IMPORT_JOB_NAME = "importJob";
     public static final String FILE_IMPORT_ID = "fileImportId";
     public static final String FILE_IMPORT_JOB_NAME = "fileImportJob";
-    public static final int HEARTBEAT_COUNT = 50;
+
+    //Number of events of a file written at the same time
+    public static final String IMPORT_CONCURRENCY = "usergrid.import.concurrency";
+
+    //Number of events of a file written before the next events are parsed and the resume point is saved
+    public static final String IMPORT_BATCH_SIZE = "usergrid.import.batch.size";
 
     public static final String APP_IMPORT_CONNECTION = "imports";
     public static final String IMPORT_FILE_INCLUDES_CONNECTION = "files";
@@ -72,6 +79,9 @@ public class ImportServiceImpl implements ImportService {
 
     private JsonFactory jsonFactory = new JsonFactory();
 
+    private int importConcurrency = 16;
+    private int importBatchSize = 1000;
+
 
     @PostConstruct
     public void init() {
@@ -514,6 +524,14 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    public void setProperties(final Properties properties) {
+        importConcurrency = Math.max(1, Integer.parseInt(
+            properties.getProperty(IMPORT_CONCURRENCY, String.valueOf(importConcurrency))));
+        importBatchSize = Math.max(1, Integer.parseInt(
+            properties.getProperty(IMPORT_BATCH_SIZE, String.valueOf(importBatchSize))));
+    }
+
+
     /**
      * This method creates sub-jobs for each file i.e. File Import Jobs.
      *
@@ -921,27 +939,6 @@ public class ImportServiceImpl implements ImportService {
         // tracker flushes every 100 entities
         //final FileImportTracker tracker = new FileImportTracker( emf, fileImport, 100 );
 
-        // function to execute for each write event
-        final Action1<WriteEvent> doWork = new Action1<WriteEvent>() {
-            @Override
-            public void call(WriteEvent writeEvent) {
-                writeEvent.doWrite(em, fileImport, tracker);
-            }
-        };
-
-        // invokes the heartbeat every HEARTBEAT_COUNT operations
-        final Func2<Integer, WriteEvent, Integer> heartbeatReducer = new Func2<Integer, WriteEvent, Integer>() {
-            @Override
-            public Integer call(final Integer integer, final WriteEvent writeEvent) {
-                final int next = integer.intValue() + 1;
-                if (next % HEARTBEAT_COUNT == 0) {
-                    execution.heartbeat();
-                }
-                return next;
-            }
-        };
-
-
         // FIRST PASS: import all entities in the file
 
 
@@ -955,16 +952,9 @@ public class ImportServiceImpl implements ImportService {
 
         final Observable<WriteEvent> entityEventObservable = Observable.create(jsonObservableEntities);
 
-        // only take while our stats tell us we should continue processing
-        // potentially skip the first n if this is a resume operation
-        final int entityNumSkip = (int) tracker.getTotalEntityCount();
-
-
-        entityEventObservable.takeWhile(writeEvent -> !tracker.shouldStopProcessingEntities()).skip(entityNumSkip)
-            .flatMap(writeEvent -> {
-                return Observable.just(writeEvent).doOnNext(doWork);
-            }, 10).reduce(0, heartbeatReducer).toBlocking().last();
-
+        // potentially skip the entities written before if this is a resume operation
+        writeInBatches(execution, entityEventObservable, em, fileImport, tracker,
+            tracker.getEntityCheckpoint(), tracker::shouldStopProcessingEntities, tracker::entityCheckpoint);
 
         jp.close();
 
@@ -993,16 +983,9 @@ public class ImportServiceImpl implements ImportService {
 
         final Observable<WriteEvent> otherEventObservable = Observable.create(jsonObservableOther);
 
-        // only take while our stats tell us we should continue processing
-        // potentially skip the first n if this is a resume operation
-        final int connectionNumSkip = (int) tracker.getTotalConnectionCount();
-
-        // with this code we get asynchronous behavior and testImportWithMultipleFiles will fail
-        final int connectionCount = otherEventObservable.takeWhile(
-            writeEvent -> !tracker.shouldStopProcessingConnections()).skip(connectionNumSkip).flatMap(entityWrapper -> {
-            return Observable.just(entityWrapper).doOnNext(doWork).subscribeOn(Schedulers.io());
-
-        }, 10).reduce(0, heartbeatReducer).toBlocking().last();
+        writeInBatches(execution, otherEventObservable, em, fileImport, tracker,
+            tracker.getConnectionCheckpoint(), tracker::shouldStopProcessingConnections,
+            tracker::connectionCheckpoint);
 
         jp.close();
 
@@ -1035,6 +1018,59 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    /**
+     * Write the events in batches of {@link #IMPORT_BATCH_SIZE}, up to {@link #IMPORT_CONCURRENCY} at a time.  The
+     * parser waits while a batch is written, and the checkpoint is only moved once every event of the batch is
+     * written, so a resumed import never skips an event that was still being written.
+     *
+     * @param checkpoint The number of events at the start of the file that are already written
+     * @param shouldStop Stop writing when true
+     * @param saveCheckpoint Saves the number of events at the start of the file that are written
+     */
+    private void writeInBatches(
+        final JobExecution execution,
+        final Observable<WriteEvent> events,
+        final EntityManager em,
+        final FileImport fileImport,
+        final FileImportTracker tracker,
+        final long checkpoint,
+        final Func0<Boolean> shouldStop,
+        final Action1<Long> saveCheckpoint) {
+
+        final List<WriteEvent> batch = new ArrayList<>(importBatchSize);
+        final AtomicLong written = new AtomicLong(checkpoint);
+
+        // the parser emits on this thread, so the batch is only touched here
+        final Action0 writeBatch = () -> {
+            // nothing more is written once a write failed
+            if (batch.isEmpty() || shouldStop.call()) {
+                batch.clear();
+                return;
+            }
+
+            Observable.from(batch).flatMap(writeEvent -> Observable.just(writeEvent)
+                .doOnNext(event -> event.doWrite(em, fileImport, tracker)).subscribeOn(Schedulers.io()),
+                importConcurrency).toBlocking().lastOrDefault(null);
+
+            // a failed write fails the file, don't resume after it
+            if (!shouldStop.call()) {
+                saveCheckpoint.call(written.addAndGet(batch.size()));
+            }
+
+            batch.clear();
+            execution.heartbeat();
+        };
+
+        events.skip((int) checkpoint).takeWhile(writeEvent -> !shouldStop.call()).doOnNext(writeEvent -> {
+            batch.add(writeEvent);
+
+            if (batch.size() >= importBatchSize) {
+                writeBatch.call();
+            }
+        }).doOnCompleted(writeBatch).toBlocking().lastOrDefault(null);
+    }
+
+
     private interface WriteEvent {
         public void doWrite(EntityManager em, FileImport fileImport, FileImportTracker tracker);
     }
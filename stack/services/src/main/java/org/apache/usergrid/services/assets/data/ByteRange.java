@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/** An inclusive byte range of an asset, as requested with an HTTP Range header */
+public class ByteRange {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    /** Requests with more ranges than this are served whole rather than as a long multipart response */
+    public static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+
+    public ByteRange( long start, long end ) {
+        this.start = start;
+        this.end = end;
+    }
+
+
+    public long getStart() {
+        return start;
+    }
+
+
+    public long getEnd() {
+        return end;
+    }
+
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+
+    /** The value of a Content-Range header for this range of an asset of the given length */
+    public String toContentRange( long contentLength ) {
+        return "bytes " + start + "-" + end + "/" + contentLength;
+    }
+
+
+    /**
+     * Parse a Range header against the length of the asset.  Overlapping and adjacent ranges are coalesced.
+     *
+     * @return the ranges in ascending order, an empty list if none of them can be satisfied, or null if the header
+     * is malformed or asks for too many ranges, in which case it should be ignored and the whole asset sent
+     */
+    public static List<ByteRange> parse( String header, long contentLength ) {
+        if ( header == null ) {
+            return null;
+        }
+
+        String value = header.trim();
+        if ( !value.regionMatches( true, 0, BYTES_UNIT, 0, BYTES_UNIT.length() ) ) {
+            return null;
+        }
+
+        String[] specs = value.substring( BYTES_UNIT.length() ).split( "," );
+        if ( specs.length > MAX_RANGES ) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>( specs.length );
+
+        for ( String spec : specs ) {
+            spec = spec.trim();
+            int dash = spec.indexOf( '-' );
+            if ( dash < 0 ) {
+                return null;
+            }
+
+            long start;
+            long end;
+
+            try {
+                if ( dash == 0 ) {
+                    // suffix range, the last n bytes
+                    long suffix = Long.parseLong( spec.substring( 1 ) );
+                    if ( suffix <= 0 ) {
+                        continue;
+                    }
+                    start = Math.max( contentLength - suffix, 0 );
+                    end = contentLength - 1;
+                }
+                else {
+                    start = Long.parseLong( spec.substring( 0, dash ) );
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong( spec.substring( dash + 1 ) );
+                    if ( start < 0 || end < start ) {
+                        return null;
+                    }
+                    end = Math.min( end, contentLength - 1 );
+                }
+            }
+            catch ( NumberFormatException e ) {
+                return null;
+            }
+
+            if ( start < contentLength ) {
+                ranges.add( new ByteRange( start, end ) );
+            }
+        }
+
+        return coalesce( ranges );
+    }
+
+
+    private static List<ByteRange> coalesce( List<ByteRange> ranges ) {
+        if ( ranges.size() < 2 ) {
+            return ranges;
+        }
+
+        Collections.sort( ranges, ( a, b ) -> Long.compare( a.start, b.start ) );
+
+        List<ByteRange> coalesced = new ArrayList<>( ranges.size() );
+        ByteRange current = ranges.get( 0 );
+
+        for ( int i = 1; i < ranges.size(); i++ ) {
+            ByteRange next = ranges.get( i );
+            if ( next.start <= current.end + 1 ) {
+                current = new ByteRange( current.start, Math.max( current.end, next.end ) );
+            }
+            else {
+                coalesced.add( current );
+                current = next;
+            }
+        }
+        coalesced.add( current );
+
+        return coalesced;
+    }
+
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof ByteRange ) ) {
+            return false;
+        }
+        ByteRange other = ( ByteRange ) o;
+        return start == other.start && end == other.end;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode( start ) + Long.hashCode( end );
+    }
+
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.usergrid.services.assets.data;
 
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
@@ -30,6 +31,10 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
@@ -133,13 +138,52 @@ public class LocalFileBinaryStore implements BinaryStore {
 
     @Override
     public InputStream read( UUID appId, Entity entity ) throws IOException {
-        return read( appId, entity, 0, FileUtils.ONE_MB * 5 );
+        return new BufferedInputStream( FileUtils.openInputStream( path( appId, entity ) ) );
     }
 
 
+    /**
+     * Reads only the requested range.  The channel is positioned at the offset, so nothing before it is read, and the
+     * stream ends after length bytes.
+     */
     @Override
     public InputStream read( UUID appId, Entity entity, long offset, long length ) throws IOException {
-        return new BufferedInputStream( FileUtils.openInputStream( path( appId, entity ) ) );
+        FileChannel channel = FileChannel.open( path( appId, entity ).toPath(), StandardOpenOption.READ );
+        try {
+            channel.position( offset );
+        }
+        catch ( IOException e ) {
+            channel.close();
+            throw e;
+        }
+        return new BufferedInputStream( new BoundedInputStream( Channels.newInputStream( channel ), length ) );
+    }
+
+
+    /**
+     * Copies a range of the asset to the target with {@link FileChannel#transferTo}, so the bytes go straight from
+     * the file to the target channel without passing through a stream on the heap.
+     *
+     * @return the number of bytes transferred, less than length if the file is shorter than expected
+     */
+    public long transferTo( UUID appId, Entity entity, long offset, long length, WritableByteChannel target )
+            throws IOException {
+
+        try ( FileChannel channel = FileChannel.open( path( appId, entity ).toPath(), StandardOpenOption.READ ) ) {
+            long position = offset;
+            long remaining = length;
+
+            while ( remaining > 0 ) {
+                long transferred = channel.transferTo( position, remaining, target );
+                if ( transferred <= 0 ) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+
+            return length - remaining;
+        }
     }
 
 
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class S3MultipartUploadTest {
+
+    private AmazonS3 s3;
+    private List<Long> partSizes;
+
+
+    @Before
+    public void setup() {
+        s3 = mock( AmazonS3.class );
+        partSizes = new ArrayList<>();
+
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId( "upload-1" );
+        when( s3.initiateMultipartUpload( any( InitiateMultipartUploadRequest.class ) ) ).thenReturn( initiated );
+
+        when( s3.uploadPart( any( UploadPartRequest.class ) ) ).thenAnswer( invocation -> {
+            UploadPartRequest request = ( UploadPartRequest ) invocation.getArguments()[0];
+            partSizes.add( request.getPartSize() );
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber( request.getPartNumber() );
+            result.setETag( "etag-" + request.getPartNumber() );
+            return result;
+        } );
+    }
+
+
+    @Test
+    public void uploadsFullPartsWhileWriting() throws Exception {
+        S3MultipartUpload upload = new S3MultipartUpload( s3, "bucket", "app.json", null );
+
+        byte[] chunk = new byte[1024 * 1024];
+        for ( int i = 0; i < 20; i++ ) {
+            upload.write( chunk );
+        }
+        upload.close();
+
+        assertEquals( 3, partSizes.size() );
+        assertEquals( S3MultipartUpload.PART_SIZE, ( long ) partSizes.get( 0 ) );
+        assertEquals( S3MultipartUpload.PART_SIZE, ( long ) partSizes.get( 1 ) );
+        assertEquals( 20 * chunk.length - 2 * S3MultipartUpload.PART_SIZE, ( long ) partSizes.get( 2 ) );
+        verify( s3 ).completeMultipartUpload( any( CompleteMultipartUploadRequest.class ) );
+    }
+
+
+    @Test
+    public void checkpointOnlyUploadsAtTheMinimumPartSize() throws Exception {
+        S3MultipartUpload upload = new S3MultipartUpload( s3, "bucket", "app.json", null );
+
+        upload.write( new byte[1024] );
+        assertFalse( upload.checkpoint() );
+        assertTrue( partSizes.isEmpty() );
+
+        upload.write( new byte[S3MultipartUpload.MIN_PART_SIZE] );
+        assertTrue( upload.checkpoint() );
+        assertEquals( 1, partSizes.size() );
+    }
+
+
+    @Test
+    public void resumesFromState() throws Exception {
+        S3MultipartUpload upload = new S3MultipartUpload( s3, "bucket", "app.json", null );
+        upload.write( new byte[S3MultipartUpload.MIN_PART_SIZE] );
+        assertTrue( upload.checkpoint() );
+
+        Map<String, Object> state = upload.getState();
+        upload.abort();
+
+        S3MultipartUpload resumed = new S3MultipartUpload( s3, "bucket", "app.json", state );
+        resumed.write( new byte[10] );
+        resumed.close();
+
+        verify( s3 ).listParts( any( ListPartsRequest.class ) );
+        assertEquals( 2, partSizes.size() );
+        assertEquals( 10L, ( long ) partSizes.get( 1 ) );
+        assertEquals( "upload-1", resumed.getState().get( "uploadId" ) );
+        assertEquals( 2, ( ( List ) resumed.getState().get( "parts" ) ).size() );
+    }
+
+
+    @Test
+    public void abortKeepsUploadedParts() throws Exception {
+        S3MultipartUpload upload = new S3MultipartUpload( s3, "bucket", "app.json", null );
+        upload.write( new byte[100] );
+        upload.abort();
+
+        verify( s3, never() ).completeMultipartUpload( any( CompleteMultipartUploadRequest.class ) );
+        verify( s3, never() ).abortMultipartUpload( any( AbortMultipartUploadRequest.class ) );
+    }
+
+
+    @Test
+    public void discardAbortsTheUpload() throws Exception {
+        S3MultipartUpload upload = new S3MultipartUpload( s3, "bucket", "app.json", null );
+        upload.write( new byte[S3MultipartUpload.MIN_PART_SIZE] );
+        assertTrue( upload.checkpoint() );
+        upload.discard();
+
+        verify( s3 ).abortMultipartUpload( any( AbortMultipartUploadRequest.class ) );
+        verify( s3, never() ).completeMultipartUpload( any( CompleteMultipartUploadRequest.class ) );
+    }
+}
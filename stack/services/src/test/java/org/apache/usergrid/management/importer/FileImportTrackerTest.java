@@ -363,6 +363,36 @@ public class FileImportTrackerTest {
     }
 
 
+    @Test
+    public void checkpointsAreSaved() throws Exception {
+
+        final EntityManagerFactory emf = mock( EntityManagerFactory.class );
+        final EntityManager em = mock( EntityManager.class );
+        when( emf.getEntityManager( emf.getManagementAppId() ) ).thenReturn( em );
+
+        final FileImport fileImport = new FileImport();
+        fileImport.setUuid( UUIDGenerator.newTimeUUID() );
+        fileImport.setEntityCheckpoint( 1000 );
+
+        final FileImportTracker statistics = new FileImportTracker( emf, fileImport, 100 );
+
+        assertEquals( 1000, statistics.getEntityCheckpoint() );
+        assertEquals( 0, statistics.getConnectionCheckpoint() );
+
+        //saved right away, not when the next flush is due
+        statistics.entityCheckpoint( 2000 );
+
+        verify( em, times( 1 ) ).update( same( fileImport ) );
+        assertEquals( 2000, fileImport.getEntityCheckpoint() );
+
+        statistics.connectionCheckpoint( 500 );
+
+        verify( em, times( 2 ) ).update( same( fileImport ) );
+        assertEquals( 500, fileImport.getConnectionCheckpoint() );
+        assertEquals( FileImport.State.STARTED, fileImport.getState() );
+    }
+
+
     @Test
     public void failFast() throws Exception {
 
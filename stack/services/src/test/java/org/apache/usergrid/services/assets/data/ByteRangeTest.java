@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class ByteRangeTest {
+
+    @Test
+    public void singleRange() {
+        assertEquals( Collections.singletonList( new ByteRange( 0, 99 ) ), ByteRange.parse( "bytes=0-99", 1000 ) );
+        assertEquals( 100, ByteRange.parse( "bytes=0-99", 1000 ).get( 0 ).getLength() );
+    }
+
+
+    @Test
+    public void openAndSuffixRanges() {
+        assertEquals( Collections.singletonList( new ByteRange( 500, 999 ) ), ByteRange.parse( "bytes=500-", 1000 ) );
+        assertEquals( Collections.singletonList( new ByteRange( 900, 999 ) ), ByteRange.parse( "bytes=-100", 1000 ) );
+        assertEquals( Collections.singletonList( new ByteRange( 0, 999 ) ), ByteRange.parse( "bytes=-5000", 1000 ) );
+    }
+
+
+    @Test
+    public void endClampedToLength() {
+        assertEquals( Collections.singletonList( new ByteRange( 10, 999 ) ),
+            ByteRange.parse( "bytes=10-5000", 1000 ) );
+        assertEquals( "bytes 10-999/1000", new ByteRange( 10, 999 ).toContentRange( 1000 ) );
+    }
+
+
+    @Test
+    public void multipleRangesSortedAndCoalesced() {
+        assertEquals( Arrays.asList( new ByteRange( 0, 199 ), new ByteRange( 500, 599 ) ),
+            ByteRange.parse( "bytes=500-599, 100-199,0-100", 1000 ) );
+    }
+
+
+    @Test
+    public void unsatisfiable() {
+        assertEquals( 0, ByteRange.parse( "bytes=1000-", 1000 ).size() );
+        assertEquals( 0, ByteRange.parse( "bytes=-0", 1000 ).size() );
+    }
+
+
+    @Test
+    public void malformedIgnored() {
+        assertNull( ByteRange.parse( "items=0-1", 1000 ) );
+        assertNull( ByteRange.parse( "bytes=abc", 1000 ) );
+        assertNull( ByteRange.parse( "bytes=5-1", 1000 ) );
+
+        StringBuilder many = new StringBuilder( "bytes=0-0" );
+        for ( int i = 1; i <= ByteRange.MAX_RANGES; i++ ) {
+            many.append( "," ).append( i * 2 ).append( "-" ).append( i * 2 );
+        }
+        assertNull( ByteRange.parse( many.toString(), 1000 ) );
+    }
+}
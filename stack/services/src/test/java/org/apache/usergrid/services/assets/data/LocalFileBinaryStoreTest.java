@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.assets.data;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.entities.Asset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class LocalFileBinaryStoreTest {
+
+    private static final UUID appId = new UUID( 0, 1 );
+
+    private File repos;
+    private LocalFileBinaryStore store;
+    private Asset asset;
+    private byte[] data;
+
+
+    @Before
+    public void setup() throws Exception {
+        repos = Files.createTempDirectory( "binarystore" ).toFile();
+        store = new LocalFileBinaryStore( new Properties(), null, repos.getAbsolutePath() );
+
+        asset = new Asset();
+        asset.setUuid( UUID.randomUUID() );
+
+        data = new byte[10000];
+        for ( int i = 0; i < data.length; i++ ) {
+            data[i] = ( byte ) i;
+        }
+        FileUtils.writeByteArrayToFile( new File( repos, AssetUtils.buildAssetKey( appId, asset ) ), data );
+    }
+
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly( repos );
+    }
+
+
+    @Test
+    public void readRange() throws Exception {
+        try ( InputStream is = store.read( appId, asset, 4000, 1500 ) ) {
+            assertArrayEquals( Arrays.copyOfRange( data, 4000, 5500 ), IOUtils.toByteArray( is ) );
+        }
+    }
+
+
+    @Test
+    public void readWhole() throws Exception {
+        try ( InputStream is = store.read( appId, asset ) ) {
+            assertArrayEquals( data, IOUtils.toByteArray( is ) );
+        }
+    }
+
+
+    @Test
+    public void transferRange() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals( 100, store.transferTo( appId, asset, 9900, 100, Channels.newChannel( out ) ) );
+        assertArrayEquals( Arrays.copyOfRange( data, 9900, 10000 ), out.toByteArray() );
+
+        // past the end of the file only what exists is transferred
+        out.reset();
+        assertEquals( 50, store.transferTo( appId, asset, 9950, 100, Channels.newChannel( out ) ) );
+    }
+}
@@ -17,7 +17,7 @@
 package org.apache.usergrid.tools;
 
 
-import com.google.common.base.Optional;
+import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
@@ -35,11 +35,7 @@ import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory
 import org.apache.usergrid.persistence.collection.MvccLogEntry;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
-import org.apache.usergrid.persistence.graph.GraphManager;
-import org.apache.usergrid.persistence.graph.GraphManagerFactory;
-import org.apache.usergrid.persistence.graph.SearchByEdgeType;
 import org.apache.usergrid.persistence.graph.impl.SimpleEdge;
-import org.apache.usergrid.persistence.graph.impl.SimpleSearchByEdgeType;
 import org.apache.usergrid.persistence.graph.serialization.EdgeSerialization;
 import org.apache.usergrid.persistence.index.IndexLocationStrategy;
 import org.apache.usergrid.persistence.index.SearchEdge;
@@ -48,6 +44,10 @@ import org.apache.usergrid.persistence.index.utils.UUIDUtils;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.persistence.schema.CollectionInfo;
+import org.apache.usergrid.tools.scan.EntityIdRangeReader;
+import org.apache.usergrid.tools.scan.ScanOptions;
+import org.apache.usergrid.tools.scan.ScanOutput;
+import org.apache.usergrid.tools.scan.TokenRangeScanner;
 import org.apache.usergrid.utils.InflectionUtils;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
@@ -72,9 +72,11 @@ public class EntityVersionAudit extends ToolBase {
 
     /*
 
-        Writes to files in the current directory:
-            entity_es_urls.txt (contains the relative URLs for the elasticsearch API to GET a document for an entity and version
-            entity_version_agg.txt ( contains the number of versions per entity on a line)
+        Writes JSON lines to entity_version_audit.json in the current directory, or the -findings file:
+            entity_version findings (whether a version of an entity is in elasticsearch and how long indexing took)
+            entity_version_count findings (the number of versions per entity)
+
+        The entities of the collection are found by scanning the entity data by token range, see ScanOptions
      */
 
     private static final Logger logger = LoggerFactory.getLogger( EntityVersionAudit.class );
@@ -90,6 +92,16 @@ public class EntityVersionAudit extends ToolBase {
 
     private EntityManager em;
 
+    private EntityCollectionManager ecm;
+
+    private IndexLocationStrategyFactory ilsf;
+
+    private EsProvider esProvider;
+
+    private ApplicationScope applicationScope;
+
+    private String collectionName;
+
     @Override
     @SuppressWarnings( "static-access" )
     public Options createOptions() {
@@ -123,6 +135,7 @@ public class EntityVersionAudit extends ToolBase {
 
         options.addOption( entityUUID );
 
+        ScanOptions.addOptions( options );
 
 
         return options;
@@ -167,110 +180,108 @@ public class EntityVersionAudit extends ToolBase {
 
         em = emf.getEntityManager( app );
 
-        String collectionName = InflectionUtils.pluralize(entityType);
+        collectionName = InflectionUtils.pluralize(entityType);
         String simpleEdgeType = CpNamingUtils.getEdgeTypeFromCollectionName(collectionName);
         logger.info("simpleEdgeType: {}", simpleEdgeType);
 
-        ApplicationScope applicationScope = new ApplicationScopeImpl(new SimpleId(app, "application"));
+        applicationScope = new ApplicationScopeImpl(new SimpleId(app, "application"));
         Id applicationScopeId = applicationScope.getApplication();
         logger.info("applicationScope.getApplication(): {}", applicationScopeId);
 
-        GraphManagerFactory gmf = injector.getInstance( GraphManagerFactory.class );
-        GraphManager gm = gmf.createEdgeManager(applicationScope);
-
         EntityCollectionManagerFactory emf = injector.getInstance( EntityCollectionManagerFactory.class );
-        EntityCollectionManager ecm = emf.createCollectionManager(applicationScope);
-
-        final SimpleSearchByEdgeType search =
-            new SimpleSearchByEdgeType( applicationScopeId, simpleEdgeType, Long.MAX_VALUE, SearchByEdgeType.Order.DESCENDING,
-                Optional.absent(), false );
-
-        final IndexLocationStrategyFactory ilsf = injector.getInstance(IndexLocationStrategyFactory.class);
-        final Writer versionAuditWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("entity_version_audit.txt"), "utf-8"));
-        final Writer versionAggWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("entity_version_agg.txt"), "utf-8"));
+        ecm = emf.createCollectionManager(applicationScope);
 
-        versionAuditWriter.write("collection,entityUUID,entityVersion,cassandraTimestamp,elasticsearchTimestamp,indexDelayMillis,existsInElasticsearch\n");
-        versionAuditWriter.flush();
+        ilsf = injector.getInstance(IndexLocationStrategyFactory.class);
+        esProvider = injector.getInstance(EsProvider.class);
 
-        final EsProvider esProvider = injector.getInstance(EsProvider.class);
+        try (ScanOutput output = ScanOptions.createOutput(line, "entity_version_audit.json")) {
 
-        gm.loadEdgesFromSource(search).map(markedEdge -> {
+            if (entityUUID != null) {
+                logger.info("matched uuid: {}", entityUUID);
+                auditEntity(UUID.fromString(entityUUID), entityType, useLatestVersion, output);
+                return;
+            }
 
-            UUID uuid = markedEdge.getTargetNode().getUuid();
+            // scan the entity ids of the whole cluster by token range for the entities of this collection
+            final Keyspace keyspace = injector.getInstance(Keyspace.class);
 
-            if (entityUUID == null || uuid.equals(UUID.fromString(entityUUID))){
-                logger.info("matched uuid: {}", uuid);
-                try {
-                    EntityRef entityRef = new SimpleEntityRef(entityType, uuid);
-                    org.apache.usergrid.persistence.Entity retrieved = em.get(entityRef);
+            TokenRangeScanner.ScanResult result = ScanOptions.createScanner(line).scan("Entity_Version_Data_V3",
+                new EntityIdRangeReader(keyspace, ScanOptions.getConsistencyLevel(), ScanOptions.getPageSize(line)),
+                rowKey -> {
+                    if (app.equals(rowKey.getScope().getUuid())
+                        && entityType.equalsIgnoreCase(rowKey.getKey().getType())) {
+                        auditEntity(rowKey.getKey().getUuid(), entityType, useLatestVersion, output);
+                    }
+                });
 
-                    if ( retrieved != null ){
+            logger.info("Audited {} entity versions. {}", output.getCount(), result);
 
-                        final AtomicInteger versionCount = new AtomicInteger();
-                        Observable<MvccLogEntry> versionObs = ecm.getVersionsFromMaxToMin( retrieved.asId(), org.apache.usergrid.utils.UUIDUtils.newTimeUUID() );
-                        if (useLatestVersion) {
-                            versionObs = versionObs.take(1);
-                        }
-                        versionObs.forEach( mvccLogEntry -> {
+            if (!result.getFailedRanges().isEmpty()) {
+                logger.warn("{} token ranges failed, run again with the same -{} to scan them",
+                    result.getFailedRanges().size(), ScanOptions.CHECKPOINT);
+            }
+        }
+    }
 
-                            IndexLocationStrategy strategy = ilsf.getIndexLocationStrategy(applicationScope);
-                            final String readAlias = strategy.getAlias().getReadAlias();
 
-                            final SearchEdge searchEdge = createSearchEdgeFromSource( new SimpleEdge( applicationScope.getApplication(),
-                                CpNamingUtils.getEdgeTypeFromCollectionName( InflectionUtils.pluralize( retrieved.asId().getType() ) ), retrieved.asId(),
-                                Long.MAX_VALUE ) );
+    private void auditEntity(final UUID uuid, final String entityType, final boolean useLatestVersion,
+                             final ScanOutput output) throws Exception {
 
-                            final String esDocId = createIndexDocId( applicationScope, retrieved.asId(), mvccLogEntry.getVersion(), searchEdge);
-                            GetResponse response =  esProvider.getClient().prepareGet(readAlias, "entity", esDocId)
-                                .execute()
-                                .actionGet();
-                            boolean exists = response.isExists();
+        EntityRef entityRef = new SimpleEntityRef(entityType, uuid);
+        org.apache.usergrid.persistence.Entity retrieved = em.get(entityRef);
 
-                            long indexTimestamp = response.getField("_timestamp") == null ? 0 : (long)response.getField("_timestamp").getValue();
-                            long uuidTimestamp = UUIDUtils.getTimestampInMillis(retrieved.getUuid());
+        if ( retrieved == null ){
+            logger.info("entity: {} NOT FOUND", uuid);
+            return;
+        }
 
-                            long diff = 0;
-                            if (indexTimestamp > 0) {
-                                diff = uuidTimestamp = indexTimestamp;
-                            }
+        final AtomicInteger versionCount = new AtomicInteger();
+        Observable<MvccLogEntry> versionObs = ecm.getVersionsFromMaxToMin( retrieved.asId(), org.apache.usergrid.utils.UUIDUtils.newTimeUUID() );
+        if (useLatestVersion) {
+            versionObs = versionObs.take(1);
+        }
 
-                            try {
+        IndexLocationStrategy strategy = ilsf.getIndexLocationStrategy(applicationScope);
+        final String readAlias = strategy.getAlias().getReadAlias();
 
-                                String csvLine =
-                                    collectionName + "," +
-                                    uuid + "," +
-                                    mvccLogEntry.getVersion() + "," +
-                                    uuidTimestamp + "," +
-                                    indexTimestamp + "," +
-                                    diff + "," +
-                                    exists;
+        final SearchEdge searchEdge = createSearchEdgeFromSource( new SimpleEdge( applicationScope.getApplication(),
+            CpNamingUtils.getEdgeTypeFromCollectionName( InflectionUtils.pluralize( retrieved.asId().getType() ) ), retrieved.asId(),
+            Long.MAX_VALUE ) );
 
-                                //final String url = "/"+readAlias+"/entity/"+URLEncoder.encode(esDocId, "UTF-8");
-                                versionAuditWriter.write(csvLine+"\n");
-                                versionAuditWriter.flush();
-                                versionCount.incrementAndGet();
+        for ( MvccLogEntry mvccLogEntry : versionObs.toBlocking().toIterable() ) {
 
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        });
+            final String esDocId = createIndexDocId( applicationScope, retrieved.asId(), mvccLogEntry.getVersion(), searchEdge);
+            GetResponse response =  esProvider.getClient().prepareGet(readAlias, "entity", esDocId)
+                .execute()
+                .actionGet();
+            boolean exists = response.isExists();
 
-                        versionAggWriter.write(versionCount.toString()+","+retrieved.asId().getUuid()+"\n");
-                        versionAggWriter.flush();
+            long indexTimestamp = response.getField("_timestamp") == null ? 0 : (long)response.getField("_timestamp").getValue();
+            long uuidTimestamp = UUIDUtils.getTimestampInMillis(retrieved.getUuid());
 
-                    }else{
-                        logger.info("entity: {} NOT FOUND", uuid);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+            long diff = 0;
+            if (indexTimestamp > 0) {
+                diff = indexTimestamp - uuidTimestamp;
             }
 
-           return markedEdge;
-        }).toBlocking().lastOrDefault(null);
+            final Map<String, Object> finding = new LinkedHashMap<>();
+            finding.put("collection", collectionName);
+            finding.put("entityUUID", uuid.toString());
+            finding.put("entityVersion", mvccLogEntry.getVersion().toString());
+            finding.put("cassandraTimestamp", uuidTimestamp);
+            finding.put("elasticsearchTimestamp", indexTimestamp);
+            finding.put("indexDelayMillis", diff);
+            finding.put("existsInElasticsearch", exists);
+
+            output.write("entity_version", finding);
+            versionCount.incrementAndGet();
+        }
 
-        versionAuditWriter.close();
-        versionAggWriter.close();
+        final Map<String, Object> aggregate = new LinkedHashMap<>();
+        aggregate.put("collection", collectionName);
+        aggregate.put("entityUUID", retrieved.asId().getUuid().toString());
+        aggregate.put("versions", versionCount.get());
 
+        output.write("entity_version_count", aggregate);
     }
 }
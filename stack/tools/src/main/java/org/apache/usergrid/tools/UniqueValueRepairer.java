@@ -16,32 +16,24 @@
  */
 package org.apache.usergrid.tools;
 
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
-import org.apache.usergrid.corepersistence.rx.impl.AllEntityIdsObservable;
-import org.apache.usergrid.corepersistence.rx.impl.EdgeScope;
-import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.management.OrganizationInfo;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
-import org.apache.usergrid.persistence.Results;
+import org.apache.usergrid.persistence.SimpleEntityRef;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValue;
@@ -50,29 +42,31 @@ import org.apache.usergrid.persistence.collection.serialization.UniqueValueSet;
 import org.apache.usergrid.persistence.collection.serialization.impl.UniqueValueImpl;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
-import org.apache.usergrid.persistence.graph.impl.SimpleEdge;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.tools.scan.EntityIdRangeReader;
+import org.apache.usergrid.tools.scan.ScanOptions;
+import org.apache.usergrid.tools.scan.ScanOutput;
+import org.apache.usergrid.tools.scan.TokenRangeScanner;
 import org.apache.usergrid.utils.ConversionUtils;
+import org.apache.usergrid.utils.InflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.Session;
-import com.fasterxml.jackson.core.JsonFactory;
-import com.google.common.base.Optional;
 import com.google.common.collect.BiMap;
+import com.netflix.astyanax.Keyspace;
 
-import rx.Observable;
-import rx.observables.ConnectableObservable;
-import rx.schedulers.Schedulers;
-
+/**
+ * Finds entities whose unique value entry is missing, and repairs them with -fixUniqueValues.  The entities are found
+ * by scanning the entity data by token range, see ScanOptions, and each finding is written to the -findings file.
+ */
 public class UniqueValueRepairer extends ExportingToolBase {
 
 	static final Logger logger = LoggerFactory.getLogger(UniqueValueRepairer.class);
 
-	JsonFactory jsonFactory = new JsonFactory();
 	public static final String LAST_ID = "lastId";
 
 	public static final String FIND_MISSING_UNIQUE_VALUES = "findMissingUniqueValues";
@@ -81,12 +75,6 @@ public class UniqueValueRepairer extends ExportingToolBase {
 	private boolean findMissingUniqueValues = false;
 	private boolean fixMissingValue = false;
 
-	private AllEntityIdsObservable allEntityIdsObs;
-	private SimpleEdge lastEdge = null;
-
-	private ExecutorService entityFetcher = Executors.newFixedThreadPool(10);
-	private ExecutorService uniqueValueChecker = Executors.newFixedThreadPool(50);
-
 	private Session session;
 	private UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
 	private MvccEntitySerializationStrategy mvccEntitySerializationStrategy;
@@ -107,6 +95,8 @@ public class UniqueValueRepairer extends ExportingToolBase {
 		options.addOption(findMissingUniqueValues);
 		options.addOption(fixMissingUniqueValueEntries);
 
+		ScanOptions.addOptions(options);
+
 		return options;
 	}
 
@@ -116,38 +106,72 @@ public class UniqueValueRepairer extends ExportingToolBase {
 		startSpring();
 		setVerbose(line);
 
-		this.allEntityIdsObs = injector.getInstance(AllEntityIdsObservable.class);
 		applyInputParams(line);
 
 		mvccEntitySerializationStrategy = injector.getInstance(MvccEntitySerializationStrategy.class);
 		uniqueValueSerializationStrategy = injector.getInstance(UniqueValueSerializationStrategy.class);
 		session = injector.getInstance(Session.class);
 
-		startEntityScan();
+		if (collNames == null || collNames.length <= 0) {
+			logger.info("Please pass collection name ( -collectionName testCollection ) ");
+			return;
+		}
 
-		logger.info("Finished checking entities. Waiting for threads to complete execution.");
+		if (!findMissingUniqueValues) {
+			logger.info("Nothing to do, pass -{} to check unique values", FIND_MISSING_UNIQUE_VALUES);
+			return;
+		}
 
-		while (true) {
-			try {
-				// Spinning to prevent program execution from ending.
-				// Need to replace with some kind of countdown latch or task tracker
-				Thread.sleep(10000);
-			} catch (InterruptedException e) {
-				logger.error("Exception while waiting for unique check to complete.", e);
+		final Set<UUID> applications = getApplications();
+
+		final Set<String> entityTypes = new HashSet<>();
+		for (String collectionName : collNames) {
+			entityTypes.add(InflectionUtils.singularize(collectionName.toLowerCase()));
+		}
+
+		final String uniqueFieldType = fieldType == null || fieldType.equals("") ? "name" : fieldType;
+
+		logger.info("Checking {} unique values of {} in {} applications", uniqueFieldType, entityTypes,
+				applications.size());
+
+		final Keyspace keyspace = injector.getInstance(Keyspace.class);
+
+		try (ScanOutput output = ScanOptions.createOutput(line, "unique_value_repairs.json")) {
+
+			TokenRangeScanner.ScanResult result = ScanOptions.createScanner(line).scan("Entity_Version_Data_V3",
+					new EntityIdRangeReader(keyspace, ScanOptions.getConsistencyLevel(), ScanOptions.getPageSize(line)),
+					rowKey -> {
+						final UUID appId = rowKey.getScope().getUuid();
+						final Id entityId = rowKey.getKey();
+
+						if (applications.contains(appId) && entityTypes.contains(entityId.getType())) {
+							checkUniqueValue(appId, entityId, uniqueFieldType, output);
+						}
+					});
+
+			logger.info("Wrote {} findings. {}", output.getCount(), result);
+
+			if (!result.getFailedRanges().isEmpty()) {
+				logger.warn("{} token ranges failed, run again with the same -{} to scan them",
+						result.getFailedRanges().size(), ScanOptions.CHECKPOINT);
 			}
 		}
 	}
 
-	private void startEntityScan() throws Exception, UnsupportedEncodingException {
+	private Set<UUID> getApplications() throws Exception {
+
+		final Set<UUID> applications = new HashSet<>();
 
 		for (Entry<UUID, String> organizationName : getOrgs().entrySet()) {
 
 			// Let's skip the test entities.
-			if (organizationName.equals(properties.getProperty("usergrid.test-account.organization"))) {
+			if (organizationName.getValue().equals(properties.getProperty("usergrid.test-account.organization"))) {
 				continue;
 			}
-			fetchApplicationsForOrgs(organizationName.getKey(), organizationName.getValue());
+			applications.addAll(fetchApplicationsForOrgs(organizationName.getKey(), organizationName.getValue()));
 		}
+
+		return applications;
 	}
 
 	private Map<UUID, String> getOrgs() throws Exception {
@@ -177,7 +201,7 @@ public class UniqueValueRepairer extends ExportingToolBase {
 		return organizationNames;
 	}
 
-	private void fetchApplicationsForOrgs(UUID orgId, String orgName) throws Exception {
+	private Set<UUID> fetchApplicationsForOrgs(UUID orgId, String orgName) throws Exception {
 
 		logger.info("Fetch applications for {} : {} ", orgId, orgName);
 
@@ -185,241 +209,122 @@ public class UniqueValueRepairer extends ExportingToolBase {
 		BiMap<UUID, String> applications = managementService.getApplicationsForOrganization(orgId);
 
 		if (applicationId == null && (applicationName == null || applicationName.trim().equals(""))) {
-			// export all apps as appId or name is not provided
-
-			Observable.from(applications.entrySet()).subscribe(appEntry -> {
-				UUID appId = appEntry.getKey();
-				String appName = appEntry.getValue().split("/")[1];
-				try {
-					fetchApplications(appId, appName);
-				} catch (Exception e) {
-					logger.error("There was an exception fetching application {} : {}", appName, appId, e);
-				}
-			});
+			// check all apps as appId or name is not provided
+			return applications.keySet();
+		}
 
-		} else {
+		UUID appId = applicationId;
 
-			UUID appId = applicationId;
-			String appName = applicationName;
+		if (appId == null) {
+			appId = applications.inverse().get(orgName + '/' + applicationName);
+		}
 
-			if (applicationId != null) {
-				appName = applications.get(appId);
-			} else {
-				appId = applications.inverse().get(orgName + '/' + appName);
-			}
+		if (appId == null || !applications.containsKey(appId)) {
+			logger.error("Application {} not found in organization {}", applicationId != null ? applicationId
+					: applicationName, orgName);
+			return Collections.emptySet();
+		}
 
+		return Collections.singleton(appId);
+	}
+
+	private void checkUniqueValue(UUID applicationId, Id entityId, String fieldType, ScanOutput output)
+			throws Exception {
+
+		final EntityManager rootEm = emf.getEntityManager(applicationId);
+
+		Entity t = rootEm.get(new SimpleEntityRef(entityId.getType(), entityId.getUuid()));
+		if (t == null) {
+			// deleted entities are returned until compaction
+			return;
+		}
+
+		logger.debug("Fetched entity with UUID : {}", t.getUuid());
+
+		String fieldValue = null;
+		//We can search entity with UUID or name/email based on the entity type.
+		//This mapping between unique value field(name/email etc) and UUID,
+		//is stored in unique value table. This can either be name / email or any other type.
+		//This value is being passed as field type.
+		//The code below takes the parameter and retrieves the value of the field using the getter method.
+		if (fieldType.equals("name")) {
+			fieldValue = t.getName();
+		} else {
 			try {
-				fetchApplications(appId, appName);
-			} catch (Exception e) {
-				logger.error("There was an exception fetching application {} : {}", appName, appId, e);
+				Method method = t.getClass()
+						.getMethod("get" + fieldType.substring(0, 1).toUpperCase() + fieldType.substring(1));
+				fieldValue = (String) method.invoke(t);
+			} catch (Exception e1) {
+				logger.error("Exception while trying to fetch field value of type {} for entity {}", fieldType,
+						t.getUuid(), e1);
 			}
-
 		}
-	}
 
-	private void fetchApplications(UUID appId, String appName) throws Exception {
+		if (fieldValue == null) {
+			logger.info("No value found for field {} for entity {}", fieldType, t.getUuid());
+			return;
+		}
 
-		logger.info("Fetching application for {} : {} ", appName, appId);
+		Entity e = rootEm.getUniqueEntityFromAlias(t.getType(), fieldValue, false);
 
-		EntityManager em = emf.getEntityManager(appId);
+		if (e != null) {
+			logger.debug("Found entity {} for field type {} and field value {}", e.getUuid(), fieldType, fieldValue);
+			return;
+		}
 
-		Set<String> collections = em.getApplicationCollections();
+		logger.info("No entity found for field type {} and field value {} but exists for UUID {}", fieldType,
+				fieldValue, t.getUuid());
 
-		if (collNames == null || collNames.length <= 0) {
-			logger.info("Please pass collection name ( -collectionName testCollection ) ");
-		} else {
-			Observable.from(collNames).subscribe(collectionName -> {
-				if (collections.contains(collectionName)) {
-					fetchCollections(appId, collectionName, em);
-				}
-			});
+		boolean repaired = false;
+		if (fixMissingValue) {
+			repaired = repairUniqueValue(applicationId, t, fieldType, fieldValue);
 		}
 
-	}
+		final Map<String, Object> finding = new LinkedHashMap<>();
+		finding.put("application", applicationId.toString());
+		finding.put("entityType", t.getType());
+		finding.put("entityUUID", t.getUuid().toString());
+		finding.put("fieldName", fieldType);
+		finding.put("fieldValue", fieldValue);
+		finding.put("repaired", repaired);
 
-	private void fetchCollections(UUID appId, String collectionName, EntityManager em) {
-		extractEntitiesForCollection(appId, collectionName);
+		output.write("missing_unique_value", finding);
 	}
 
-	private void extractEntitiesForCollection(UUID applicationId, String collectionName) {
+	private boolean repairUniqueValue(UUID applicationId, Entity t, String fieldType, String fieldValue) {
 
-		AtomicInteger batch = new AtomicInteger(1);
+		logger.info("Trying to repair unique value mapping for {} ", t.getUuid());
 
-		final EntityManager rootEm = emf.getEntityManager(applicationId);
+		ApplicationScope applicationScope = new ApplicationScopeImpl(new SimpleId(applicationId, "application"));
 
-		ExecutorService edgeScopeFetcher = Executors.newFixedThreadPool(1);
-		allEntityIdsObs
-				.getEdgesToEntities(Observable.just(CpNamingUtils.getApplicationScope(applicationId)),
-						Optional.fromNullable(
-								CpNamingUtils.getEdgeTypeFromCollectionName(collectionName.toLowerCase())),
-						(lastEdge == null ? Optional.absent() : Optional.fromNullable(lastEdge)))
-				.buffer(1000).finallyDo(() -> {
-					edgeScopeFetcher.shutdown();
-					logger.info("Finished fetching entity ids for {}. Shutting down entity edge scope fetcher ",
-							collectionName);
-					while (!edgeScopeFetcher.isTerminated()) {
-						try {
-							edgeScopeFetcher.awaitTermination(10, TimeUnit.SECONDS);
-						} catch (InterruptedException e) {
-						}
-					}
-					logger.info("Entity edge scope fetcher terminated after shutdown for {}", collectionName);
-				}).subscribe(edges -> {
-
-					logger.info("For collection {}", collectionName);
-					Integer batchId = batch.getAndIncrement();
-					logger.info("Started fetching details for collection {} batch {} ", collectionName, batchId);
-					Observable.just(edges).subscribeOn(Schedulers.from(edgeScopeFetcher)).subscribe(edgeScopes -> {
-
-						List<UUID> entityIds = new ArrayList<UUID>(1000);
-
-						for (EdgeScope edgeScope : edgeScopes) {
-							Id entityId = edgeScope.getEdge().getTargetNode();
-							if (entityId != null) {
-								entityIds.add(entityId.getUuid());
-							} else {
-								edgeScopes.remove(edgeScope);
-							}
-						}
-						try {
-							String type = edgeScopes.get(0).getEdge().getTargetNode().getType();
-
-							Observable.just(entityIds).subscribeOn(Schedulers.from(entityFetcher)) // change to
-									.subscribe(entIds -> {
-
-										logger.info("Fetched {} entity id's of type {} for batch ID {}", entIds.size(),
-												type, batchId);
-										Results entities = rootEm.getEntities(entIds, type);
-										logger.info("Fetched {} entities of type {} for batch ID {}", entities.size(),
-												type, batchId);
-										try {
-
-											ConnectableObservable<Entity> entityObs = Observable
-													.from(entities.getEntities()).publish();
-											entityObs.subscribeOn(Schedulers.from(uniqueValueChecker));
-											entityObs.subscribe(t -> {
-												logger.info("Fetched entity with UUID : {}", t.getUuid());
-												if (findMissingUniqueValues) {
-													String fieldValue = null;
-													//We can search entity with UUID or name/email based on the entity type. 
-													//This mapping between unique value field(name/email etc) and UUID,
-													//is stored in unique value table. This can either be name / email or any other type.
-													//This value is being passed as field type. 
-										            //The code below takes the parameter and retrieves the value of the field using the getter method. 
-													if (fieldType == null || fieldType.equals("")
-															|| fieldType.equals("name")) {
-														fieldType = "name";
-														fieldValue = t.getName();
-													} else {
-														try {
-															Method method = t.getClass()
-																	.getMethod("get"
-																			+ fieldType.substring(0, 1).toUpperCase()
-																			+ fieldType.substring(1));
-															fieldValue = (String) method.invoke(t);
-														} catch (Exception e1) {
-															logger.error(
-																	"Exception while trying to fetch field value of type {} for entity {} batch {}",
-																	fieldType, t.getUuid(), batchId, e1);
-														}
-													}
-													try {
-														if (fieldValue != null) {
-
-															Entity e = rootEm.getUniqueEntityFromAlias(t.getType(),
-																	fieldValue, false);
-
-															if (e == null) {
-																logger.info(
-																		"No entity found for field type {} and field value {} but exists for UUID {}",
-																		fieldType, fieldValue, t.getUuid());
-																if (fixMissingValue) {
-																	logger.info(
-																			"Trying to repair unique value mapping for {} ",
-																			t.getUuid());
-																	UniqueValueSet uniqueValueSet = uniqueValueSerializationStrategy
-																			.load(new ApplicationScopeImpl(new SimpleId(
-																					applicationId, "application")),
-																					ConsistencyLevel
-																							.valueOf(System.getProperty(
-																									"usergrid.read.cl",
-																									"LOCAL_QUORUM")),
-																					t.getType(),
-																					Collections.singletonList(
-																							new StringField(fieldType,
-																									fieldValue)),
-																					false);
-
-																	ApplicationScope applicationScope = new ApplicationScopeImpl(
-																			new SimpleId(applicationId, "application"));
-																	com.google.common.base.Optional<MvccEntity> entity = mvccEntitySerializationStrategy
-																			.load(applicationScope, new SimpleId(
-																					t.getUuid(), t.getType()));
-
-																	if (!entity.isPresent()
-																			|| !entity.get().getEntity().isPresent()) {
-																		throw new RuntimeException(
-																				"Unable to update unique value index because supplied UUID "
-																						+ t.getUuid()
-																						+ " does not exist");
-																	}
-																	logger.info("Delete unique value: {}",
-																			uniqueValueSet.getValue(fieldType));
-																	try {
-																		session.execute(uniqueValueSerializationStrategy
-																				.deleteCQL(applicationScope,
-																						uniqueValueSet
-																								.getValue(fieldType)));
-																	} catch (Exception ex) {
-																		logger.error(
-																				"Exception while trying to delete the Unique value for {}. Will proceed with creating new entry",
-																				t.getUuid(), ex);
-																	}
-
-																	UniqueValue newUniqueValue = new UniqueValueImpl(
-																			new StringField(fieldType, fieldValue),
-																			entity.get().getId(),
-																			entity.get().getVersion());
-																	logger.info("Writing new unique value: {}",
-																			newUniqueValue);
-																	session.execute(uniqueValueSerializationStrategy
-																			.writeCQL(applicationScope, newUniqueValue,
-																					-1));
-																}
-
-															} else {
-																logger.info(
-																		"Found entity {} for field type {} and field value {}",
-																		e.getUuid(), fieldType, fieldValue);
-															}
-														} else {
-															logger.info("No value found for field {} for entity {}",
-																	fieldType, t.getUuid());
-														}
-													} catch (Exception e) {
-														logger.error(
-																"Error while checking unique values for batch id : {} for entity {}",
-																batchId, t.getUuid(), e);
-													}
-												}
-											});
-											entityObs.connect();
-
-										} catch (Exception e) {
-											logger.error(
-													"Error while checking unique values for batch id : {} for collection {}",
-													batchId, collectionName, e);
-										}
-									});
-
-						} catch (Exception e) {
-							logger.error("Exception while traversing entities " + edgeScopes.get(0).getEdge(), e);
-							System.exit(0);
-						}
-					});
-					logger.info("Finished entity walk for collection {} for batch {}", collectionName, batchId);
-				});
-		logger.info("Exiting extractEntitiesForCollection() method.");
+		UniqueValueSet uniqueValueSet = uniqueValueSerializationStrategy.load(applicationScope,
+				ConsistencyLevel.valueOf(System.getProperty("usergrid.read.cl", "LOCAL_QUORUM")), t.getType(),
+				Collections.singletonList(new StringField(fieldType, fieldValue)), false);
+
+		com.google.common.base.Optional<MvccEntity> entity = mvccEntitySerializationStrategy.load(applicationScope,
+				new SimpleId(t.getUuid(), t.getType()));
+
+		if (!entity.isPresent() || !entity.get().getEntity().isPresent()) {
+			logger.error("Unable to update unique value index because supplied UUID {} does not exist", t.getUuid());
+			return false;
+		}
+
+		logger.info("Delete unique value: {}", uniqueValueSet.getValue(fieldType));
+		try {
+			session.execute(uniqueValueSerializationStrategy.deleteCQL(applicationScope,
+					uniqueValueSet.getValue(fieldType)));
+		} catch (Exception ex) {
+			logger.error(
+					"Exception while trying to delete the Unique value for {}. Will proceed with creating new entry",
+					t.getUuid(), ex);
+		}
+
+		UniqueValue newUniqueValue = new UniqueValueImpl(new StringField(fieldType, fieldValue),
+				entity.get().getId(), entity.get().getVersion());
+		logger.info("Writing new unique value: {}", newUniqueValue);
+		session.execute(uniqueValueSerializationStrategy.writeCQL(applicationScope, newUniqueValue, -1));
+
+		return true;
 	}
 
 	protected void applyInputParams(CommandLine line) {
@@ -441,6 +346,9 @@ public class UniqueValueRepairer extends ExportingToolBase {
 		if (line.hasOption(COLLECTION_NAME)) {
 			collNames = new String[] { line.getOptionValue(COLLECTION_NAME) };
 		}
+		if (line.hasOption(FIELD_TYPE)) {
+			fieldType = line.getOptionValue(FIELD_TYPE);
+		}
 		findMissingUniqueValues = line.hasOption(FIND_MISSING_UNIQUE_VALUES);
 		fixMissingValue = line.hasOption(FIX_MISSING_VALUES);
 
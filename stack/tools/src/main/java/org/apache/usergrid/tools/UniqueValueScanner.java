@@ -17,13 +17,12 @@
 package org.apache.usergrid.tools;
 
 
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import com.datastax.driver.core.ConsistencyLevel;
-import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.Column;
-import com.netflix.astyanax.util.RangeBuilder;
+import com.netflix.astyanax.model.Row;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
@@ -45,6 +44,10 @@ import org.apache.commons.cli.Options;
 import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamily;
 import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
 import org.apache.usergrid.persistence.core.astyanax.ScopedRowKeySerializer;
+import org.apache.usergrid.tools.scan.ColumnFamilyRangeReader;
+import org.apache.usergrid.tools.scan.ScanOptions;
+import org.apache.usergrid.tools.scan.ScanOutput;
+import org.apache.usergrid.tools.scan.TokenRangeScanner;
 
 
 
@@ -60,6 +63,8 @@ public class UniqueValueScanner extends ToolBase {
 
     private static final String ENTITY_FIELD_TYPE_ARG = "fieldType";
 
+    private static final String COLUMN_LIMIT_ARG = "columnLimit";
+
 
 
     //copied shamelessly from unique value serialization strat.
@@ -112,6 +117,15 @@ public class UniqueValueScanner extends ToolBase {
 
         options.addOption( fieldTypeOption );
 
+        Option columnLimitOption =
+            OptionBuilder.withArgName(COLUMN_LIMIT_ARG).hasArg().isRequired( false )
+                .withDescription( "number of unique value entries read per row, default 1000" )
+                .create(COLUMN_LIMIT_ARG);
+
+        options.addOption( columnLimitOption );
+
+        ScanOptions.addOptions( options );
+
         return options;
     }
 
@@ -145,7 +159,6 @@ public class UniqueValueScanner extends ToolBase {
         String entityType = line.getOptionValue(ENTITY_TYPE_ARG);
         String entityName = line.getOptionValue(ENTITY_NAME_ARG);
 
-        AtomicInteger count = new AtomicInteger(0);
 
         if (entityName != null && !entityName.isEmpty()) {
 
@@ -192,107 +205,97 @@ public class UniqueValueScanner extends ToolBase {
 
             logger.info("Running entity unique scanner only");
 
+            final int columnLimit = line.hasOption(COLUMN_LIMIT_ARG) ?
+                Integer.parseInt(line.getOptionValue(COLUMN_LIMIT_ARG)) : 1000;
 
-            // scan through all unique values and log some info
-
-            Iterator<com.netflix.astyanax.model.Row<ScopedRowKey<TypeField>, EntityVersion>> rows = null;
-            try {
-
-                rows = keyspace.prepareQuery(CF_UNIQUE_VALUES)
-                    .setConsistencyLevel(com.netflix.astyanax.model.ConsistencyLevel.valueOf(System.getProperty("usergrid.read.cl", "CL_LOCAL_QUORUM")))
-                    .getAllRows()
-                    .withColumnRange(new RangeBuilder().setLimit(1000).build())
-                    .execute().getResult().iterator();
-
-            } catch (ConnectionException e) {
-
-                logger.error("Error connecting to cassandra", e);
-            }
-
-
-            UUID finalAppToFilter = appToFilter;
-
-            if( rows != null) {
-                rows.forEachRemaining(row -> {
-
-                    count.incrementAndGet();
-
-                    if(count.get() % 1000 == 0 ){
-                        logger.info("Scanned {} rows in {}", count.get(), CF_UNIQUE_VALUES.getName());
-                    }
-
-                    final String fieldName = row.getKey().getKey().getField().getName();
-                    final String fieldValue = row.getKey().getKey().getField().getValue().toString();
-                    final String scopeType = row.getKey().getScope().getType();
-                    final UUID scopeUUID = row.getKey().getScope().getUuid();
+            final UUID finalAppToFilter = appToFilter;
 
+            // scan through all unique values by token range and write out duplicates
+            final TokenRangeScanner scanner = ScanOptions.createScanner(line);
 
-                    if (!fieldName.equalsIgnoreCase(fieldType) ||
-                        (finalAppToFilter != null && !finalAppToFilter.equals(scopeUUID))
-                        ) {
-                        // do nothing
+            try (ScanOutput output = ScanOptions.createOutput(line, "unique_value_findings.json")) {
 
-                    } else {
+                TokenRangeScanner.ScanResult result = scanner.scan(CF_UNIQUE_VALUES.getName(),
+                    new ColumnFamilyRangeReader<>(keyspace, CF_UNIQUE_VALUES, ScanOptions.getConsistencyLevel(),
+                        columnLimit, ScanOptions.getPageSize(line)),
+                    row -> checkForDuplicates(row, fieldType, entityType, finalAppToFilter, output));
 
+                logger.info("Wrote {} findings. {}", output.getCount(), result);
 
-                        // if we have more than 1 column, let's check for a duplicate
-                        if (row.getColumns() != null && row.getColumns().size() > 1) {
-
-                            final List<EntityVersion> values = new ArrayList<>(row.getColumns().size());
-
-                            Iterator<Column<EntityVersion>> columns = row.getColumns().iterator();
-                            columns.forEachRemaining(column -> {
-
-
-                                final EntityVersion entityVersion = column.getName();
-
-
-                                logger.trace(
-                                    scopeType + ": " + scopeUUID + ", " +
-                                        fieldName + ": " + fieldValue + ", " +
-                                        "entity type: " + entityVersion.getEntityId().getType() + ", " +
-                                        "entity uuid: " + entityVersion.getEntityId().getUuid()
-                                );
-
-
-                                if (entityType != null &&
-                                    entityVersion.getEntityId().getType().equalsIgnoreCase(entityType)
-                                    ) {
+                if (!result.getFailedRanges().isEmpty()) {
+                    logger.warn("{} token ranges failed, run again with the same -{} to scan them",
+                        result.getFailedRanges().size(), ScanOptions.CHECKPOINT);
+                }
+            }
+        }
+    }
 
-                                    // add the first value into the list
-                                    if (values.size() == 0) {
 
-                                        values.add(entityVersion);
+    private void checkForDuplicates(final Row<ScopedRowKey<TypeField>, EntityVersion> row, final String fieldType,
+                                    final String entityType, final UUID appToFilter, final ScanOutput output)
+        throws IOException {
 
+        final String fieldName = row.getKey().getKey().getField().getName();
+        final String fieldValue = row.getKey().getKey().getField().getValue().toString();
+        final String scopeType = row.getKey().getScope().getType();
+        final UUID scopeUUID = row.getKey().getScope().getUuid();
 
-                                    } else {
+        if (!fieldName.equalsIgnoreCase(fieldType) || (appToFilter != null && !appToFilter.equals(scopeUUID))) {
+            return;
+        }
 
-                                        if (!values.get(0).getEntityId().getUuid().equals(entityVersion.getEntityId().getUuid())) {
+        // if we have more than 1 column, let's check for a duplicate
+        if (row.getColumns() == null || row.getColumns().size() <= 1) {
+            return;
+        }
 
-                                            values.add(entityVersion);
+        final List<EntityVersion> values = new ArrayList<>(row.getColumns().size());
 
-                                            logger.error("Duplicate found for field [{}={}].  Entry 1: [{}], Entry 2: [{}]",
-                                                fieldName, fieldValue, values.get(0).getEntityId(), entityVersion.getEntityId());
+        for (Column<EntityVersion> column : row.getColumns()) {
 
-                                        }
+            final EntityVersion entityVersion = column.getName();
 
-                                    }
+            logger.trace(
+                scopeType + ": " + scopeUUID + ", " +
+                    fieldName + ": " + fieldValue + ", " +
+                    "entity type: " + entityVersion.getEntityId().getType() + ", " +
+                    "entity uuid: " + entityVersion.getEntityId().getUuid()
+            );
 
+            if (entityType != null && entityVersion.getEntityId().getType().equalsIgnoreCase(entityType)) {
 
-                                }
+                // add the first value into the list
+                if (values.size() == 0) {
 
-                            });
-                        }
-                    }
+                    values.add(entityVersion);
 
+                } else if (!values.get(0).getEntityId().getUuid().equals(entityVersion.getEntityId().getUuid())) {
 
-                });
-            }else{
+                    values.add(entityVersion);
 
-                logger.warn("No rows returned from table: {}", CF_UNIQUE_VALUES.getName());
+                    logger.error("Duplicate found for field [{}={}].  Entry 1: [{}], Entry 2: [{}]",
+                        fieldName, fieldValue, values.get(0).getEntityId(), entityVersion.getEntityId());
+                }
+            }
+        }
 
+        if (values.size() > 1) {
+            final Map<String, Object> finding = new LinkedHashMap<>();
+            finding.put("application", scopeUUID.toString());
+            finding.put("fieldName", fieldName);
+            finding.put("fieldValue", fieldValue);
+            finding.put("entityType", entityType);
+
+            final List<Map<String, Object>> entities = new ArrayList<>(values.size());
+            for (EntityVersion value : values) {
+                final Map<String, Object> entity = new LinkedHashMap<>();
+                entity.put("uuid", value.getEntityId().getUuid().toString());
+                entity.put("version", value.getEntityVersion().toString());
+                entities.add(entity);
             }
+            finding.put("entities", entities);
 
+            output.write("duplicate_unique_value", finding);
         }
     }
 }
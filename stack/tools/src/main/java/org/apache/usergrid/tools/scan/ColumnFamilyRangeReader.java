@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.util.Iterator;
+
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.util.RangeBuilder;
+
+
+/**
+ * Reads the rows of a token range of a column family through Astyanax, a page of rows at a time
+ */
+public class ColumnFamilyRangeReader<K, C> implements TokenRangeScanner.RangeReader<Row<K, C>> {
+
+    private final Keyspace keyspace;
+    private final ColumnFamily<K, C> columnFamily;
+    private final ConsistencyLevel consistencyLevel;
+    private final int columnLimit;
+    private final int pageSize;
+
+
+    /**
+     * @param columnLimit The number of columns read per row, 0 to read row keys only
+     * @param pageSize The number of rows read per request
+     */
+    public ColumnFamilyRangeReader( final Keyspace keyspace, final ColumnFamily<K, C> columnFamily,
+                                    final ConsistencyLevel consistencyLevel, final int columnLimit,
+                                    final int pageSize ) {
+        this.keyspace = keyspace;
+        this.columnFamily = columnFamily;
+        this.consistencyLevel = consistencyLevel;
+        this.columnLimit = columnLimit;
+        this.pageSize = pageSize;
+    }
+
+
+    @Override
+    public Iterator<Row<K, C>> read( final TokenRange range ) throws Exception {
+        return keyspace.prepareQuery( columnFamily ).setConsistencyLevel( consistencyLevel ).getAllRows()
+                       .setRowLimit( pageSize )
+                       .withColumnRange( new RangeBuilder().setLimit( columnLimit ).build() )
+                       .forTokenRange( Long.toString( range.getStart() ), Long.toString( range.getEnd() ) )
+                       .execute().getResult().iterator();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.util.Iterator;
+
+import org.apache.usergrid.persistence.core.astyanax.IdRowCompositeSerializer;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamily;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKeySerializer;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.google.common.collect.Iterators;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.serializers.BooleanSerializer;
+
+
+/**
+ * Reads the ids of the entities in a token range of the entity data, keyed by the id of their application.  Only row
+ * keys are read, the tools load the entities they are interested in.  Rows of deleted entities may still be returned
+ * until compaction removes them.
+ */
+public class EntityIdRangeReader implements TokenRangeScanner.RangeReader<ScopedRowKey<Id>> {
+
+    //copied from the mvcc entity serialization strategy
+    public static final MultiTenantColumnFamily<ScopedRowKey<Id>, Boolean> CF_ENTITY_DATA =
+        new MultiTenantColumnFamily<>( "Entity_Version_Data_V3",
+            new ScopedRowKeySerializer<>( IdRowCompositeSerializer.get() ), BooleanSerializer.get() );
+
+    private final ColumnFamilyRangeReader<ScopedRowKey<Id>, Boolean> rows;
+
+
+    public EntityIdRangeReader( final Keyspace keyspace, final ConsistencyLevel consistencyLevel,
+                                final int pageSize ) {
+        this.rows = new ColumnFamilyRangeReader<>( keyspace, CF_ENTITY_DATA, consistencyLevel, 0, pageSize );
+    }
+
+
+    @Override
+    public Iterator<ScopedRowKey<Id>> read( final TokenRange range ) throws Exception {
+        return Iterators.transform( rows.read( range ), row -> row.getKey() );
+    }
+}
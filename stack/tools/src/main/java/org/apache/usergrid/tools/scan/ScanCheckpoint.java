@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The token ranges a scan has completed, one per line in a file, so a scan that failed or was stopped can resume
+ * without rescanning them.  A scan must be resumed with the same number of ranges, a range that was split differently
+ * is not recognized and is scanned again.
+ */
+public class ScanCheckpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger( ScanCheckpoint.class );
+
+    private final Set<TokenRange> completed = new HashSet<>();
+    private final Writer writer;
+
+
+    /**
+     * A checkpoint that is not persisted, every range is scanned
+     */
+    public ScanCheckpoint() {
+        this.writer = null;
+    }
+
+
+    /**
+     * Resume from the ranges completed in the file, appending ranges completed from now on to it
+     */
+    public ScanCheckpoint( final File file ) throws IOException {
+        if ( file.exists() ) {
+            try ( BufferedReader reader = new BufferedReader(
+                new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+
+                String line;
+                while ( ( line = reader.readLine() ) != null ) {
+                    if ( !line.trim().isEmpty() ) {
+                        completed.add( TokenRange.parse( line ) );
+                    }
+                }
+            }
+
+            logger.info( "Resuming from {} completed token ranges in {}", completed.size(), file );
+        }
+
+        this.writer = new OutputStreamWriter( new FileOutputStream( file, true ), StandardCharsets.UTF_8 );
+    }
+
+
+    public synchronized boolean isComplete( final TokenRange range ) {
+        return completed.contains( range );
+    }
+
+
+    /**
+     * Record the range as scanned, it is flushed before this returns
+     */
+    public synchronized void complete( final TokenRange range ) throws IOException {
+        if ( !completed.add( range ) || writer == null ) {
+            return;
+        }
+
+        writer.write( range.toString() );
+        writer.write( '\n' );
+        writer.flush();
+    }
+
+
+    public synchronized int size() {
+        return completed.size();
+    }
+
+
+    public synchronized void close() throws IOException {
+        if ( writer != null ) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+import com.netflix.astyanax.model.ConsistencyLevel;
+
+
+/**
+ * The command line options shared by the tools that scan column families by token range
+ */
+public final class ScanOptions {
+
+    public static final String SCAN_RANGES = "scanRanges";
+    public static final String SCAN_THREADS = "scanThreads";
+    public static final String SCAN_RATE = "scanRate";
+    public static final String SCAN_PAGE_SIZE = "scanPageSize";
+    public static final String CHECKPOINT = "checkpoint";
+    public static final String FINDINGS = "findings";
+
+    private static final int DEFAULT_RANGES = 1024;
+    private static final int DEFAULT_THREADS = 8;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+
+    private ScanOptions() {
+    }
+
+
+    @SuppressWarnings( "static-access" )
+    public static void addOptions( final Options options ) {
+        options.addOption( OptionBuilder.withArgName( SCAN_RANGES ).hasArg()
+            .withDescription( "number of token ranges to split the scan into, default " + DEFAULT_RANGES )
+            .create( SCAN_RANGES ) );
+
+        options.addOption( OptionBuilder.withArgName( SCAN_THREADS ).hasArg()
+            .withDescription( "number of token ranges scanned at a time, default " + DEFAULT_THREADS )
+            .create( SCAN_THREADS ) );
+
+        options.addOption( OptionBuilder.withArgName( SCAN_RATE ).hasArg()
+            .withDescription( "maximum rows scanned per second, default unlimited" ).create( SCAN_RATE ) );
+
+        options.addOption( OptionBuilder.withArgName( SCAN_PAGE_SIZE ).hasArg()
+            .withDescription( "number of rows read per request, default " + DEFAULT_PAGE_SIZE )
+            .create( SCAN_PAGE_SIZE ) );
+
+        options.addOption( OptionBuilder.withArgName( CHECKPOINT ).hasArg()
+            .withDescription( "file recording scanned token ranges, to resume an interrupted scan" )
+            .create( CHECKPOINT ) );
+
+        options.addOption( OptionBuilder.withArgName( FINDINGS ).hasArg()
+            .withDescription( "file the findings are written to as JSON lines" ).create( FINDINGS ) );
+    }
+
+
+    public static TokenRangeScanner createScanner( final CommandLine line ) throws IOException {
+        final ScanCheckpoint checkpoint =
+            line.hasOption( CHECKPOINT ) ? new ScanCheckpoint( new File( line.getOptionValue( CHECKPOINT ) ) )
+                : new ScanCheckpoint();
+
+        return new TokenRangeScanner( getInt( line, SCAN_RANGES, DEFAULT_RANGES ),
+            getInt( line, SCAN_THREADS, DEFAULT_THREADS ),
+            Double.parseDouble( line.getOptionValue( SCAN_RATE, "0" ) ), checkpoint );
+    }
+
+
+    /**
+     * @param defaultFile The file to write findings to if none is given
+     */
+    public static ScanOutput createOutput( final CommandLine line, final String defaultFile ) throws IOException {
+        return new ScanOutput( new FileOutputStream( line.getOptionValue( FINDINGS, defaultFile ), true ) );
+    }
+
+
+    public static int getPageSize( final CommandLine line ) {
+        return getInt( line, SCAN_PAGE_SIZE, DEFAULT_PAGE_SIZE );
+    }
+
+
+    /**
+     * The consistency level set with the usergrid.read.cl system property the tools already use
+     */
+    public static ConsistencyLevel getConsistencyLevel() {
+        return ConsistencyLevel.valueOf( System.getProperty( "usergrid.read.cl", "CL_LOCAL_QUORUM" ) );
+    }
+
+
+    private static int getInt( final CommandLine line, final String option, final int defaultValue ) {
+        return line.hasOption( option ) ? Integer.parseInt( line.getOptionValue( option ) ) : defaultValue;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Streams the findings of a scan as one JSON object per line, each with a "finding" field naming its kind.  Findings
+ * are written as they are made and flushed, so they are not lost when a long scan fails.  Safe to write from the scan
+ * threads concurrently.
+ */
+public class ScanOutput implements AutoCloseable {
+
+    public static final String FINDING = "finding";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Writer writer;
+    private final AtomicLong count = new AtomicLong();
+
+
+    public ScanOutput( final OutputStream out ) {
+        this.writer = new OutputStreamWriter( out, StandardCharsets.UTF_8 );
+    }
+
+
+    /**
+     * Write a finding of the given kind with the given fields
+     */
+    public void write( final String finding, final Map<String, Object> fields ) throws IOException {
+        final Map<String, Object> line = new LinkedHashMap<>( fields.size() + 1 );
+        line.put( FINDING, finding );
+        line.putAll( fields );
+
+        final String json = MAPPER.writeValueAsString( line );
+
+        synchronized ( writer ) {
+            writer.write( json );
+            writer.write( '\n' );
+            writer.flush();
+        }
+
+        count.incrementAndGet();
+    }
+
+
+    /**
+     * @return the number of findings written
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        synchronized ( writer ) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * A range of the Murmur3 token ring, exclusive of its start token and inclusive of its end token, the way Cassandra
+ * range scans treat them.
+ */
+public final class TokenRange {
+
+    /** The minimum token is never assigned to a key, so (MIN_TOKEN, MAX_TOKEN] covers the whole ring */
+    public static final long MIN_TOKEN = Long.MIN_VALUE;
+    public static final long MAX_TOKEN = Long.MAX_VALUE;
+
+    private final long start;
+    private final long end;
+
+
+    public TokenRange( final long start, final long end ) {
+        Preconditions.checkArgument( start < end, "start must be before end" );
+        this.start = start;
+        this.end = end;
+    }
+
+
+    /**
+     * Split the whole ring into the given number of contiguous ranges of equal size
+     */
+    public static List<TokenRange> split( final int count ) {
+        Preconditions.checkArgument( count > 0, "count must be positive" );
+
+        final BigInteger min = BigInteger.valueOf( MIN_TOKEN );
+        final BigInteger width = BigInteger.valueOf( MAX_TOKEN ).subtract( min );
+        final BigInteger ranges = BigInteger.valueOf( count );
+
+        final List<TokenRange> split = new ArrayList<>( count );
+
+        long start = MIN_TOKEN;
+        for ( int i = 1; i <= count; i++ ) {
+            final long end = i == count ? MAX_TOKEN
+                : min.add( width.multiply( BigInteger.valueOf( i ) ).divide( ranges ) ).longValue();
+
+            // more ranges than tokens, nothing is left to split
+            if ( end <= start ) {
+                continue;
+            }
+
+            split.add( new TokenRange( start, end ) );
+            start = end;
+        }
+
+        return split;
+    }
+
+
+    /**
+     * Parse a range written by {@link #toString()}
+     */
+    public static TokenRange parse( final String range ) {
+        final int separator = range.indexOf( ':', 1 );
+        Preconditions.checkArgument( separator > 0, "Invalid token range " + range );
+
+        return new TokenRange( Long.parseLong( range.substring( 0, separator ).trim() ),
+            Long.parseLong( range.substring( separator + 1 ).trim() ) );
+    }
+
+
+    public long getStart() {
+        return start;
+    }
+
+
+    public long getEnd() {
+        return end;
+    }
+
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof TokenRange ) ) {
+            return false;
+        }
+
+        final TokenRange other = ( TokenRange ) o;
+        return start == other.start && end == other.end;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode( start ) + Long.hashCode( end );
+    }
+
+
+    @Override
+    public String toString() {
+        return start + ":" + end;
+    }
+}
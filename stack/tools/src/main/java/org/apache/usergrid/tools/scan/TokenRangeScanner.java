@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+
+
+/**
+ * Scans a column family by splitting the token ring into ranges and reading the ranges concurrently, instead of
+ * walking every row with a single iterator.  Rows are handed to the handler on the thread that read them, at no more
+ * than the configured rate across all threads.
+ *
+ * A range is recorded in the checkpoint once all of its rows were handled.  A range that fails is logged and left out
+ * of the checkpoint while the other ranges continue, so running the scan again with the same checkpoint only scans the
+ * ranges that failed or were never reached.
+ */
+public class TokenRangeScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger( TokenRangeScanner.class );
+
+    private static final long PROGRESS_INTERVAL_SECONDS = 60;
+
+
+    /**
+     * Reads the rows of one token range
+     */
+    public interface RangeReader<R> {
+        Iterator<R> read( TokenRange range ) throws Exception;
+    }
+
+
+    /**
+     * Handles one row, called concurrently from the scan threads
+     */
+    public interface RowHandler<R> {
+        void handle( R row ) throws Exception;
+    }
+
+
+    private final int ranges;
+    private final int threads;
+    private final double rowsPerSecond;
+    private final ScanCheckpoint checkpoint;
+
+
+    /**
+     * @param ranges The number of ranges to split the ring into
+     * @param threads The number of ranges scanned at a time
+     * @param rowsPerSecond The maximum rows handled per second across all threads, 0 for no limit
+     * @param checkpoint The ranges already scanned, and where to record the ranges scanned now
+     */
+    public TokenRangeScanner( final int ranges, final int threads, final double rowsPerSecond,
+                              final ScanCheckpoint checkpoint ) {
+        Preconditions.checkArgument( ranges > 0, "ranges must be positive" );
+        Preconditions.checkArgument( threads > 0, "threads must be positive" );
+
+        this.ranges = ranges;
+        this.threads = threads;
+        this.rowsPerSecond = rowsPerSecond;
+        this.checkpoint = checkpoint;
+    }
+
+
+    /**
+     * Scan every range not already in the checkpoint, returning once all of them were scanned or failed
+     *
+     * @param name The name of what is scanned, for logging
+     */
+    public <R> ScanResult scan( final String name, final RangeReader<R> reader, final RowHandler<R> handler )
+        throws InterruptedException {
+
+        final List<TokenRange> toScan = new ArrayList<>();
+        int skipped = 0;
+        for ( TokenRange range : TokenRange.split( ranges ) ) {
+            if ( checkpoint.isComplete( range ) ) {
+                skipped++;
+            }
+            else {
+                toScan.add( range );
+            }
+        }
+
+        logger.info( "Scanning {} token ranges of {} with {} threads, {} ranges already scanned", toScan.size(), name,
+            threads, skipped );
+
+        final RateLimiter rateLimiter = rowsPerSecond > 0 ? RateLimiter.create( rowsPerSecond ) : null;
+
+        final AtomicLong rows = new AtomicLong();
+        final AtomicInteger completed = new AtomicInteger();
+        final List<TokenRange> failed = Collections.synchronizedList( new ArrayList<>() );
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool( threads, r -> {
+            final Thread thread = new Thread( r, "TokenRangeScanner-" + threadCount.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+
+        for ( final TokenRange range : toScan ) {
+            executor.execute( () -> {
+                try {
+                    final Iterator<R> rangeRows = reader.read( range );
+
+                    while ( rangeRows.hasNext() ) {
+                        if ( rateLimiter != null ) {
+                            rateLimiter.acquire();
+                        }
+
+                        handler.handle( rangeRows.next() );
+                        rows.incrementAndGet();
+                    }
+
+                    checkpoint.complete( range );
+                    completed.incrementAndGet();
+                }
+                catch ( Throwable t ) {
+                    logger.error( "Unable to scan token range {} of {}", range, name, t );
+                    failed.add( range );
+                }
+            } );
+        }
+
+        executor.shutdown();
+
+        while ( !executor.awaitTermination( PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS ) ) {
+            logger.info( "Scanned {} rows of {}, {} of {} token ranges complete, {} failed", rows.get(), name,
+                completed.get(), toScan.size(), failed.size() );
+        }
+
+        final ScanResult result = new ScanResult( rows.get(), completed.get(), skipped, failed );
+
+        logger.info( "Finished scanning {}: {}", name, result );
+
+        return result;
+    }
+
+
+    /**
+     * The outcome of a scan
+     */
+    public static class ScanResult {
+
+        private final long rows;
+        private final int completedRanges;
+        private final int skippedRanges;
+        private final List<TokenRange> failedRanges;
+
+
+        public ScanResult( final long rows, final int completedRanges, final int skippedRanges,
+                           final List<TokenRange> failedRanges ) {
+            this.rows = rows;
+            this.completedRanges = completedRanges;
+            this.skippedRanges = skippedRanges;
+            this.failedRanges = new ArrayList<>( failedRanges );
+        }
+
+
+        /**
+         * @return the rows handled, including rows of ranges that failed part way
+         */
+        public long getRows() {
+            return rows;
+        }
+
+
+        public int getCompletedRanges() {
+            return completedRanges;
+        }
+
+
+        /**
+         * @return the ranges not scanned because they were in the checkpoint
+         */
+        public int getSkippedRanges() {
+            return skippedRanges;
+        }
+
+
+        public List<TokenRange> getFailedRanges() {
+            return failedRanges;
+        }
+
+
+        @Override
+        public String toString() {
+            return rows + " rows, " + completedRanges + " ranges complete, " + skippedRanges
+                + " ranges skipped, " + failedRanges.size() + " ranges failed";
+        }
+    }
+}
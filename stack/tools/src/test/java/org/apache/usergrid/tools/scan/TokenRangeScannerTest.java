@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.tools.scan;
+
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class TokenRangeScannerTest {
+
+    @Test
+    public void splitCoversRing() {
+        List<TokenRange> ranges = TokenRange.split( 7 );
+
+        assertEquals( 7, ranges.size() );
+        assertEquals( TokenRange.MIN_TOKEN, ranges.get( 0 ).getStart() );
+        assertEquals( TokenRange.MAX_TOKEN, ranges.get( 6 ).getEnd() );
+
+        for ( int i = 1; i < ranges.size(); i++ ) {
+            assertEquals( ranges.get( i - 1 ).getEnd(), ranges.get( i ).getStart() );
+        }
+
+        assertEquals( ranges.get( 3 ), TokenRange.parse( ranges.get( 3 ).toString() ) );
+    }
+
+
+    @Test
+    public void scansEveryRange() throws Exception {
+        final Set<TokenRange> scanned = ConcurrentHashMap.newKeySet();
+
+        TokenRangeScanner scanner = new TokenRangeScanner( 16, 4, 0, new ScanCheckpoint() );
+
+        TokenRangeScanner.ScanResult result =
+            scanner.scan( "test", range -> Arrays.asList( range, range ).iterator(), scanned::add );
+
+        assertEquals( 32, result.getRows() );
+        assertEquals( 16, result.getCompletedRanges() );
+        assertEquals( 16, scanned.size() );
+        assertTrue( result.getFailedRanges().isEmpty() );
+    }
+
+
+    @Test
+    public void resumesFromCheckpoint() throws Exception {
+        File file = File.createTempFile( "scan", ".checkpoint" );
+        file.delete();
+
+        try {
+            final TokenRange failing = TokenRange.split( 8 ).get( 5 );
+
+            ScanCheckpoint checkpoint = new ScanCheckpoint( file );
+            TokenRangeScanner.ScanResult result = new TokenRangeScanner( 8, 2, 0, checkpoint )
+                .scan( "test", range -> Arrays.asList( range ).iterator(), range -> {
+                    if ( range.equals( failing ) ) {
+                        throw new RuntimeException( "read failed" );
+                    }
+                } );
+            checkpoint.close();
+
+            assertEquals( 7, result.getCompletedRanges() );
+            assertEquals( Arrays.asList( failing ), result.getFailedRanges() );
+
+            // only the failed range is scanned again
+            final AtomicInteger rescanned = new AtomicInteger();
+            checkpoint = new ScanCheckpoint( file );
+            assertFalse( checkpoint.isComplete( failing ) );
+
+            result = new TokenRangeScanner( 8, 2, 0, checkpoint )
+                .scan( "test", range -> Arrays.asList( range ).iterator(), range -> rescanned.incrementAndGet() );
+            checkpoint.close();
+
+            assertEquals( 1, rescanned.get() );
+            assertEquals( 7, result.getSkippedRanges() );
+            assertTrue( new ScanCheckpoint( file ).isComplete( failing ) );
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
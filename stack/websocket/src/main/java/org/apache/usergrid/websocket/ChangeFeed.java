@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.corepersistence.asyncevents.EntityChange;
+import org.apache.usergrid.corepersistence.asyncevents.EntityChangeListener;
+
+
+/**
+ * Change feeds per application and collection, fed by the entity changes processed on this node.  Each feed numbers
+ * its changes with increasing positions and retains the most recent ones, so a client that reconnects with the last
+ * position it saw is sent what it missed.  Changes are delivered to subscriptions in batches, either when a batch
+ * fills up or when the flush interval passes.
+ *
+ * Feeds are single-node only: a node only sees the changes whose events it consumed from the queue, and positions
+ * mean nothing to other nodes.  Each feed has an id, and a client resuming with the id of a feed that no longer
+ * exists, such as one held by another node, is sent a reset.  Feeds without subscribers are evicted once they have
+ * been idle for the idle timeout.
+ */
+public class ChangeFeed implements EntityChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger( ChangeFeed.class );
+
+    public static final String BATCH_SIZE = "usergrid.websocket.feed.batch.size";
+    public static final String BATCH_INTERVAL = "usergrid.websocket.feed.batch.interval";
+    public static final String MAX_PENDING = "usergrid.websocket.feed.max.pending";
+    public static final String RETAINED = "usergrid.websocket.feed.retained";
+    public static final String SLOW_CONSUMER = "usergrid.websocket.feed.slow.consumer";
+    public static final String IDLE_TIMEOUT = "usergrid.websocket.feed.idle.timeout";
+
+    /**
+     * What to do with a subscription whose connection can't keep up
+     */
+    public enum SlowConsumerPolicy {
+        /** Drop batches and tell the client which positions it missed */
+        DROP,
+        /** Close the connection, the client reconnects and resumes from its last position */
+        DISCONNECT
+    }
+
+
+    private final ConcurrentHashMap<String, Feed> feeds = new ConcurrentHashMap<>();
+
+    private final int batchSize;
+    private final long batchInterval;
+    private final int maxPending;
+    private final int retained;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final long idleTimeout;
+
+    private ScheduledExecutorService flusher;
+
+
+    public ChangeFeed( final int batchSize, final long batchInterval, final int maxPending, final int retained,
+                       final SlowConsumerPolicy slowConsumerPolicy, final long idleTimeout ) {
+        this.batchSize = Math.max( batchSize, 1 );
+        this.batchInterval = Math.max( batchInterval, 1 );
+        this.maxPending = Math.max( maxPending, 1 );
+        this.retained = Math.max( retained, 0 );
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.idleTimeout = Math.max( idleTimeout, 0 );
+    }
+
+
+    public static ChangeFeed fromProperties( final Properties properties ) {
+        return new ChangeFeed( Integer.parseInt( properties.getProperty( BATCH_SIZE, "100" ) ),
+            Long.parseLong( properties.getProperty( BATCH_INTERVAL, "100" ) ),
+            Integer.parseInt( properties.getProperty( MAX_PENDING, "1000" ) ),
+            Integer.parseInt( properties.getProperty( RETAINED, "1000" ) ),
+            SlowConsumerPolicy.valueOf( properties.getProperty( SLOW_CONSUMER, "drop" ).trim().toUpperCase() ),
+            Long.parseLong( properties.getProperty( IDLE_TIMEOUT, "600000" ) ) );
+    }
+
+
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "websocket-change-feed" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        flusher.scheduleWithFixedDelay( () -> {
+            flush();
+            evictIdle( System.currentTimeMillis() );
+        }, batchInterval, batchInterval, TimeUnit.MILLISECONDS );
+    }
+
+
+    public void stop() {
+        if ( flusher != null ) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+    }
+
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+
+    @Override
+    public void onChange( final EntityChange change ) {
+        // changes to collections nobody has subscribed to are not kept
+        Feed feed = feeds.get( key( change.getApplicationId(), change.getCollectionName() ) );
+        if ( feed != null ) {
+            feed.append( change );
+        }
+    }
+
+
+    /**
+     * Subscribe to the changes of a collection.
+     *
+     * @param feedId the id of the feed the position belongs to, as sent in the subscribed and reset frames
+     * @param position the last position the client saw in that feed, or null to start from the current position
+     */
+    public void subscribe( final UUID applicationId, final String collectionName, final String feedId,
+                           final Long position, final FeedSubscription subscription ) {
+        final String key = key( applicationId, collectionName );
+
+        // a feed evicted between the lookup and the subscription is closed, so retry with a new one
+        while ( !feeds.computeIfAbsent( key, k -> new Feed( k, System.currentTimeMillis() ) )
+                      .subscribe( feedId, position, subscription ) ) {
+            logger.debug( "Change feed {} was evicted while subscribing, retrying", key );
+        }
+    }
+
+
+    public void unsubscribe( final UUID applicationId, final String collectionName,
+                             final FeedSubscription subscription ) {
+        Feed feed = feeds.get( key( applicationId, collectionName ) );
+        if ( feed != null ) {
+            feed.unsubscribe( subscription, System.currentTimeMillis() );
+        }
+    }
+
+
+    /**
+     * Remove the feeds that have had no subscribers for longer than the idle timeout
+     */
+    void evictIdle( final long now ) {
+        for ( Feed feed : feeds.values() ) {
+            feed.evictIfIdle( now );
+        }
+    }
+
+
+    int getFeedCount() {
+        return feeds.size();
+    }
+
+
+    /**
+     * Deliver the pending batches of all feeds
+     */
+    public void flush() {
+        for ( Feed feed : feeds.values() ) {
+            try {
+                feed.flush();
+            }
+            catch ( RuntimeException e ) {
+                logger.error( "Unable to flush change feed", e );
+            }
+        }
+    }
+
+
+    private static String key( final UUID applicationId, final String collectionName ) {
+        return applicationId + "/" + collectionName.toLowerCase();
+    }
+
+
+    /**
+     * A change as numbered by its feed
+     */
+    public static final class Change {
+        private final long position;
+        private final EntityChange change;
+
+
+        Change( final long position, final EntityChange change ) {
+            this.position = position;
+            this.change = change;
+        }
+
+
+        public long getPosition() {
+            return position;
+        }
+
+
+        public EntityChange getChange() {
+            return change;
+        }
+    }
+
+
+    private final class Feed {
+        private final String key;
+        private final String id = UUID.randomUUID().toString();
+        private final Set<FeedSubscription> subscribers = new CopyOnWriteArraySet<>();
+        private final ArrayDeque<Change> log = new ArrayDeque<>();
+        private List<Change> batch = new ArrayList<>();
+        private long position;
+        private long idleSince;
+        private boolean closed;
+
+
+        private Feed( final String key, final long now ) {
+            this.key = key;
+            this.idleSince = now;
+        }
+
+
+        private synchronized void append( final EntityChange change ) {
+            Change numbered = new Change( ++position, change );
+
+            if ( retained > 0 ) {
+                if ( log.size() == retained ) {
+                    log.removeFirst();
+                }
+                log.addLast( numbered );
+            }
+
+            batch.add( numbered );
+            if ( batch.size() >= batchSize ) {
+                flush();
+            }
+        }
+
+
+        /**
+         * Registering under the lock means nothing appended after the replay is missed
+         *
+         * @return false if the feed has been evicted
+         */
+        private synchronized boolean subscribe( final String feedId, final Long from,
+                                                final FeedSubscription subscription ) {
+            if ( closed ) {
+                return false;
+            }
+
+            if ( from == null ) {
+                subscription.start( id, position, Collections.<Change>emptyList() );
+            }
+            else if ( !id.equals( feedId ) || from > position || from < oldestRetained() - 1 ) {
+                // the position belongs to another feed, or the client missed more than is retained,
+                // so it has to reload the collection
+                subscription.reset( id, position );
+            }
+            else {
+                List<Change> missed = new ArrayList<>();
+                for ( Change change : log ) {
+                    if ( change.position > from ) {
+                        missed.add( change );
+                    }
+                }
+                subscription.start( id, from, missed );
+            }
+
+            subscribers.add( subscription );
+            return true;
+        }
+
+
+        private synchronized void unsubscribe( final FeedSubscription subscription, final long now ) {
+            if ( subscribers.remove( subscription ) && subscribers.isEmpty() ) {
+                idleSince = now;
+            }
+        }
+
+
+        private synchronized void evictIfIdle( final long now ) {
+            if ( subscribers.isEmpty() && now - idleSince >= idleTimeout ) {
+                closed = true;
+                feeds.remove( key, this );
+            }
+        }
+
+
+        private long oldestRetained() {
+            return log.isEmpty() ? position + 1 : log.peekFirst().position;
+        }
+
+
+        /**
+         * Batches are delivered under the feed's lock so every subscription sees them in order.  Offering a batch
+         * only queues writes on the connection, so this does not wait on slow clients.
+         */
+        private synchronized void flush() {
+            if ( batch.isEmpty() ) {
+                return;
+            }
+
+            List<Change> changes = batch;
+            batch = new ArrayList<>();
+            deliver( changes );
+        }
+
+
+        private void deliver( final List<Change> changes ) {
+            for ( FeedSubscription subscription : subscribers ) {
+                subscription.offer( changes );
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.websocket.DefaultWebSocketFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.corepersistence.asyncevents.EntityChange;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+import static org.apache.commons.lang.StringUtils.split;
+
+
+/**
+ * The subscription of one websocket connection to a change feed.  Changes are filtered by type and written as JSON
+ * frames.  Writes that the connection has not yet sent count as pending, and once too many are pending the slow
+ * consumer policy applies: either the batch is dropped and the client is later sent a gap frame naming the positions
+ * it missed, or the connection is closed.
+ *
+ * The feed calls a subscription from one thread at a time.
+ */
+public class FeedSubscription {
+
+    private static final Logger logger = LoggerFactory.getLogger( FeedSubscription.class );
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Channel channel;
+    private final Set<EntityChange.Type> types;
+    private final int maxPending;
+    private final ChangeFeed.SlowConsumerPolicy slowConsumerPolicy;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private long lastPosition;
+    private long droppedFrom = -1;
+
+
+    public FeedSubscription( final Channel channel, final Set<EntityChange.Type> types, final int maxPending,
+                             final ChangeFeed.SlowConsumerPolicy slowConsumerPolicy ) {
+        this.channel = channel;
+        this.types = types;
+        this.maxPending = maxPending;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+
+    /**
+     * Parse a comma separated list of change types, null or blank for all of them
+     *
+     * @throws IllegalArgumentException if a type is unknown
+     */
+    public static Set<EntityChange.Type> parseTypes( final String types ) {
+        if ( isBlank( types ) ) {
+            return EnumSet.allOf( EntityChange.Type.class );
+        }
+
+        Set<EntityChange.Type> parsed = EnumSet.noneOf( EntityChange.Type.class );
+        for ( String type : split( types, ',' ) ) {
+            parsed.add( EntityChange.Type.valueOf( type.trim().toUpperCase() ) );
+        }
+        return parsed;
+    }
+
+
+    public long getLastPosition() {
+        return lastPosition;
+    }
+
+
+    public int getPending() {
+        return pending.get();
+    }
+
+
+    /**
+     * Called once the subscription is registered with the id of the feed, the position it starts after and the
+     * retained changes the client missed since then
+     */
+    void start( final String feedId, final long position, final List<ChangeFeed.Change> missed ) {
+        lastPosition = position;
+        Map<String, Object> subscribed = frame( "subscribed", position );
+        subscribed.put( "feed", feedId );
+        write( subscribed );
+        if ( !missed.isEmpty() ) {
+            offer( missed );
+        }
+    }
+
+
+    /**
+     * Called instead of {@link #start} when the position the client resumes from is no longer retained
+     */
+    void reset( final String feedId, final long position ) {
+        lastPosition = position;
+        Map<String, Object> reset = frame( "reset", position );
+        reset.put( "feed", feedId );
+        write( reset );
+    }
+
+
+    /**
+     * Offer a batch of changes in position order
+     */
+    void offer( final List<ChangeFeed.Change> changes ) {
+        if ( !channel.isOpen() ) {
+            return;
+        }
+
+        long batchEnd = lastPosition;
+        List<Map<String, Object>> selected = new ArrayList<>( changes.size() );
+
+        for ( ChangeFeed.Change change : changes ) {
+            // the replay and the batch that was pending when the client subscribed may overlap
+            if ( change.getPosition() <= lastPosition ) {
+                continue;
+            }
+            batchEnd = change.getPosition();
+            if ( types.contains( change.getChange().getType() ) ) {
+                selected.add( toMap( change ) );
+            }
+        }
+
+        if ( batchEnd == lastPosition ) {
+            return;
+        }
+
+        if ( selected.isEmpty() ) {
+            lastPosition = batchEnd;
+            return;
+        }
+
+        if ( pending.get() >= maxPending || !channel.isWritable() ) {
+            if ( slowConsumerPolicy == ChangeFeed.SlowConsumerPolicy.DISCONNECT ) {
+                logger.info( "Closing websocket {} with {} pending frames", channel.getRemoteAddress(),
+                    pending.get() );
+                channel.close();
+                return;
+            }
+
+            if ( droppedFrom < 0 ) {
+                droppedFrom = lastPosition + 1;
+            }
+            lastPosition = batchEnd;
+            return;
+        }
+
+        if ( droppedFrom >= 0 ) {
+            Map<String, Object> gap = frame( "gap", lastPosition );
+            gap.put( "from", droppedFrom );
+            write( gap );
+            droppedFrom = -1;
+        }
+
+        Map<String, Object> frame = frame( "changes", batchEnd );
+        frame.put( "changes", selected );
+        write( frame );
+
+        lastPosition = batchEnd;
+    }
+
+
+    private static Map<String, Object> frame( final String type, final long position ) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put( "type", type );
+        frame.put( "position", position );
+        return frame;
+    }
+
+
+    private static Map<String, Object> toMap( final ChangeFeed.Change change ) {
+        EntityChange entityChange = change.getChange();
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put( "position", change.getPosition() );
+        map.put( "type", entityChange.getType().name().toLowerCase() );
+        map.put( "uuid", entityChange.getEntityId().getUuid() );
+        map.put( "entityType", entityChange.getEntityId().getType() );
+        map.put( "timestamp", entityChange.getTimestamp() );
+        return map;
+    }
+
+
+    private void write( final Map<String, Object> frame ) {
+        final String text;
+        try {
+            text = mapper.writeValueAsString( frame );
+        }
+        catch ( JsonProcessingException e ) {
+            logger.error( "Unable to serialize change feed frame", e );
+            return;
+        }
+
+        pending.incrementAndGet();
+        channel.write( new DefaultWebSocketFrame( text ) ).addListener( future -> pending.decrementAndGet() );
+    }
+}
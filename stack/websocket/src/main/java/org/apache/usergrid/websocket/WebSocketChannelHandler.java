@@ -19,6 +19,8 @@ package org.apache.usergrid.websocket;
 
 import java.security.MessageDigest;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -49,7 +51,11 @@ import org.jboss.netty.handler.codec.http.websocket.WebSocketFrameEncoder;
 import org.jboss.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.usergrid.corepersistence.asyncevents.EntityChange;
+import org.apache.usergrid.management.ApplicationInfo;
 import org.apache.usergrid.management.ManagementService;
+import org.apache.usergrid.management.OrganizationInfo;
+import org.apache.usergrid.management.UserInfo;
 import org.apache.usergrid.persistence.EntityManagerFactory;
 import org.apache.usergrid.services.ServiceManagerFactory;
 
@@ -74,7 +80,9 @@ import static org.jboss.netty.handler.codec.http.HttpHeaders.Values.WEBSOCKET;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.isKeepAlive;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.setContentLength;
 import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
 import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
@@ -87,10 +95,15 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
     private final ServiceManagerFactory smf;
     private final ManagementService management;
     private final SessionsSecurityManager securityManager;
+    private final ChangeFeed changeFeed;
     private final boolean ssl;
 
     boolean websocket = false;
 
+    UUID feedApplicationId;
+    String feedCollection;
+    FeedSubscription feedSubscription;
+
     Subject subject = null;
 
     private static ConcurrentHashMap<String, ChannelGroup> subscribers = new ConcurrentHashMap<String, ChannelGroup>();
@@ -99,13 +112,14 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
 
 
     public WebSocketChannelHandler( EntityManagerFactory emf, ServiceManagerFactory smf, ManagementService management,
-                                    SessionsSecurityManager securityManager, boolean ssl ) {
+                                    SessionsSecurityManager securityManager, ChangeFeed changeFeed, boolean ssl ) {
         super();
 
         this.emf = emf;
         this.smf = smf;
         this.management = management;
         this.securityManager = securityManager;
+        this.changeFeed = changeFeed;
         this.ssl = ssl;
 
         if ( securityManager != null ) {
@@ -185,6 +199,16 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
     }
 
 
+    @Override
+    public void channelClosed( ChannelHandlerContext ctx, ChannelStateEvent e ) throws Exception {
+        if ( feedSubscription != null ) {
+            changeFeed.unsubscribe( feedApplicationId, feedCollection, feedSubscription );
+            feedSubscription = null;
+        }
+        super.channelClosed( ctx, e );
+    }
+
+
     @Override
     public void messageReceived( ChannelHandlerContext ctx, MessageEvent e ) throws Exception {
         Object msg = e.getMessage();
@@ -237,28 +261,62 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
             String path = qs.getPath();
             logger.info( path );
 
-            // Fill in the headers and contents depending on handshake method.
-            if ( req.containsHeader( SEC_WEBSOCKET_KEY1 ) && req.containsHeader( SEC_WEBSOCKET_KEY2 ) ) {
+            // the path names the collection to follow, /{org}/{app}/{collection}
+            String[] segments = split( path, '/' );
 
-                String[] segments = split( path, '/' );
+            if ( segments.length != 3 ) {
+                logger.info( "Wrong number of path segments, expected 3, found " + segments.length );
+                sendHttpResponse( ctx, req, FORBIDDEN );
+                return;
+            }
 
-                if ( segments.length != 3 ) {
-                    logger.info( "Wrong number of path segments, expected 3, found " + segments.length );
-                    sendHttpResponse( ctx, req, FORBIDDEN );
-                    return;
-                }
+            String orgStr = segments[0];
+            String appStr = segments[1];
+            String collStr = segments[2];
 
-                String nsStr = segments[0];
-                String collStr = segments[1];
-                String idStr = segments[2];
+            logger.info( orgStr + "/" + appStr + "/" + collStr );
 
-                logger.info( nsStr + "/" + collStr + "/" + idStr );
+            if ( isEmpty( orgStr ) || isEmpty( appStr ) || isEmpty( collStr ) ) {
+                sendHttpResponse( ctx, req, FORBIDDEN );
+                return;
+            }
 
-                if ( isEmpty( nsStr ) || isEmpty( collStr ) || isEmpty( idStr ) ) {
+            FeedSubscription subscription = null;
+            String feedId = null;
+            Long position = null;
+            UUID applicationId = null;
+
+            if ( changeFeed != null ) {
+                applicationId = emf.lookupApplication( orgStr + "/" + appStr );
+                if ( applicationId == null ) {
+                    sendHttpResponse( ctx, req, NOT_FOUND );
+                    return;
+                }
+
+                if ( !isAuthorized( orgStr, applicationId, getParameter( qs, "access_token" ) ) ) {
                     sendHttpResponse( ctx, req, FORBIDDEN );
                     return;
                 }
 
+                Set<EntityChange.Type> types;
+                try {
+                    String positionStr = getParameter( qs, "position" );
+                    position = isEmpty( positionStr ) ? null : Long.valueOf( positionStr );
+                    feedId = getParameter( qs, "feed" );
+                    types = FeedSubscription.parseTypes( getParameter( qs, "types" ) );
+                }
+                catch ( IllegalArgumentException iae ) {
+                    sendHttpResponse( ctx, req, BAD_REQUEST );
+                    return;
+                }
+
+                subscription = new FeedSubscription( ctx.getChannel(), types, changeFeed.getMaxPending(),
+                    changeFeed.getSlowConsumerPolicy() );
+            }
+
+            // Fill in the headers and contents depending on handshake method.
+            if ( req.containsHeader( SEC_WEBSOCKET_KEY1 ) && req.containsHeader( SEC_WEBSOCKET_KEY2 ) ) {
+
                 // New handshake method with a challenge:
                 res.addHeader( SEC_WEBSOCKET_ORIGIN, req.getHeader( ORIGIN ) );
                 res.addHeader( SEC_WEBSOCKET_LOCATION, getWebSocketLocation( req ) );
@@ -302,6 +360,13 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
 
             p.replace( "encoder", "wsencoder", new WebSocketFrameEncoder() );
 
+            if ( subscription != null ) {
+                feedApplicationId = applicationId;
+                feedCollection = collStr;
+                feedSubscription = subscription;
+                changeFeed.subscribe( applicationId, collStr, feedId, position, subscription );
+            }
+
             return;
         }
 
@@ -310,6 +375,58 @@ public class WebSocketChannelHandler extends SimpleChannelUpstreamHandler {
     }
 
 
+    private static String getParameter( QueryStringDecoder qs, String name ) {
+        List<String> values = qs.getParameters().get( name );
+        return values == null || values.isEmpty() ? null : values.get( 0 );
+    }
+
+
+    /**
+     * Application, organization and admin user tokens may follow the collections of the application
+     */
+    private boolean isAuthorized( String orgName, UUID applicationId, String token ) {
+        if ( isEmpty( token ) ) {
+            return false;
+        }
+
+        try {
+            ApplicationInfo application = management.getApplicationInfoFromAccessToken( token );
+            if ( application != null ) {
+                return applicationId.equals( application.getId() );
+            }
+        }
+        catch ( Exception e ) {
+            logger.debug( "Not an application token", e );
+        }
+
+        try {
+            OrganizationInfo organization = management.getOrganizationInfoFromAccessToken( token );
+            if ( organization != null ) {
+                return orgName.equalsIgnoreCase( organization.getName() );
+            }
+        }
+        catch ( Exception e ) {
+            logger.debug( "Not an organization token", e );
+        }
+
+        try {
+            UserInfo user = management.getAdminUserInfoFromAccessToken( token );
+            if ( user != null ) {
+                for ( String name : management.getOrganizationsForAdminUser( user.getUuid() ).values() ) {
+                    if ( orgName.equalsIgnoreCase( name ) ) {
+                        return true;
+                    }
+                }
+            }
+        }
+        catch ( Exception e ) {
+            logger.debug( "Not an admin user token", e );
+        }
+
+        return false;
+    }
+
+
     private void handleWebSocketFrame( ChannelHandlerContext ctx, WebSocketFrame frame ) {
         // Send the uppercased string back.
         ctx.getChannel().write( new DefaultWebSocketFrame( frame.getTextData().toUpperCase() ) );
@@ -32,17 +32,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.apache.usergrid.corepersistence.asyncevents.EntityChangePublisher;
 import org.apache.usergrid.management.ManagementService;
 import org.apache.usergrid.persistence.EntityManagerFactory;
-import org.apache.usergrid.persistence.cassandra.EntityManagerFactoryImpl;
 import org.apache.usergrid.services.ServiceManagerFactory;
 
 import org.apache.shiro.mgt.DefaultSecurityManager;
 import org.apache.shiro.mgt.SessionsSecurityManager;
 import org.apache.shiro.realm.Realm;
 
-import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertTrue;
+import com.google.common.base.Preconditions;
+import com.google.inject.Injector;
 
 
 /**
@@ -65,6 +65,8 @@ public class WebSocketServer {
     boolean ssl = false;
     Channel channel;
     Properties properties;
+    Injector injector;
+    ChangeFeed changeFeed;
 
 
     public static void main( String[] args ) throws Exception {
@@ -107,6 +109,12 @@ public class WebSocketServer {
     }
 
 
+    @Autowired
+    public void setInjector( Injector injector ) {
+        this.injector = injector;
+    }
+
+
     public Properties getProperties() {
         return properties;
     }
@@ -133,9 +141,7 @@ public class WebSocketServer {
         acbf.autowireBeanProperties( this, AutowireCapableBeanFactory.AUTOWIRE_BY_NAME, false );
         acbf.initializeBean( this, "webSocketServer" );
 
-        assertNotNull( emf );
-        assertTrue( "EntityManagerFactory is instance of EntityManagerFactoryImpl",
-                emf instanceof EntityManagerFactoryImpl );
+        Preconditions.checkState( emf != null, "No EntityManagerFactory in the application context" );
     }
 
 
@@ -159,9 +165,17 @@ public class WebSocketServer {
         ExecutionHandler executionHandler =
                 new ExecutionHandler( new OrderedMemoryAwareThreadPoolExecutor( 16, 1048576, 1048576 ) );
 
+        // Follow the entity changes processed on this node
+        if ( injector != null ) {
+            changeFeed = ChangeFeed.fromProperties( properties != null ? properties : new Properties() );
+            changeFeed.start();
+            injector.getInstance( EntityChangePublisher.class ).addListener( changeFeed );
+        }
+
         // Set up the event pipeline factory.
         bootstrap.setPipelineFactory(
-                new WebSocketServerPipelineFactory( emf, smf, management, securityManager, executionHandler, ssl ) );
+                new WebSocketServerPipelineFactory( emf, smf, management, securityManager, changeFeed,
+                        executionHandler, ssl ) );
 
         // Bind and start to accept incoming connections.
         channel = bootstrap.bind( new InetSocketAddress( 8088 ) );
@@ -176,6 +190,11 @@ public class WebSocketServer {
             channel.close();
             channel = null;
         }
+        if ( changeFeed != null ) {
+            injector.getInstance( EntityChangePublisher.class ).removeListener( changeFeed );
+            changeFeed.stop();
+            changeFeed = null;
+        }
         logger.info( "Usergrid WebSocket Server stopped..." );
     }
 }
@@ -42,16 +42,18 @@ public class WebSocketServerPipelineFactory implements ChannelPipelineFactory {
     private final ServiceManagerFactory smf;
     private final ManagementService management;
     private final SessionsSecurityManager securityManager;
+    private final ChangeFeed changeFeed;
     private final boolean ssl;
 
 
     public WebSocketServerPipelineFactory( EntityManagerFactory emf, ServiceManagerFactory smf,
                                            ManagementService management, SessionsSecurityManager securityManager,
-                                           ExecutionHandler executionHandler, boolean ssl ) {
+                                           ChangeFeed changeFeed, ExecutionHandler executionHandler, boolean ssl ) {
         this.emf = emf;
         this.smf = smf;
         this.management = management;
         this.securityManager = securityManager;
+        this.changeFeed = changeFeed;
         this.executionHandler = executionHandler;
         this.ssl = ssl;
     }
@@ -70,7 +72,8 @@ public class WebSocketServerPipelineFactory implements ChannelPipelineFactory {
         pipeline.addLast( "aggregator", new HttpChunkAggregator( 65536 ) );
         pipeline.addLast( "encoder", new HttpResponseEncoder() );
         pipeline.addLast( "execution", executionHandler );
-        pipeline.addLast( "handler", new WebSocketChannelHandler( emf, smf, management, securityManager, ssl ) );
+        pipeline.addLast( "handler", new WebSocketChannelHandler( emf, smf, management, securityManager, changeFeed,
+            ssl ) );
         return pipeline;
     }
 }
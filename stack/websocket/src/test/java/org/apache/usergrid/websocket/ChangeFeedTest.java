@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import org.jboss.netty.channel.Channel;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.corepersistence.asyncevents.EntityChange;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+
+public class ChangeFeedTest {
+
+    private static final long IDLE_TIMEOUT = 1000;
+
+    private UUID applicationId;
+    private ChangeFeed changeFeed;
+
+
+    @Before
+    public void setup() {
+        applicationId = UUID.randomUUID();
+        changeFeed = new ChangeFeed( 3, 100, 10, 5, ChangeFeed.SlowConsumerPolicy.DROP, IDLE_TIMEOUT );
+    }
+
+
+    @Test
+    public void unsubscribedChangesNotKept() {
+        changeFeed.onChange( change( "cat" ) );
+        assertEquals( 0, changeFeed.getFeedCount() );
+
+        RecordingSubscription subscription = subscribe( "cats", null, null );
+        assertEquals( 0, subscription.startPosition );
+        assertTrue( subscription.batches.isEmpty() );
+    }
+
+
+    @Test
+    public void batchesDelivered() {
+        RecordingSubscription cats = subscribe( "cats", null, null );
+        RecordingSubscription dogs = subscribe( "dogs", null, null );
+
+        changeFeed.onChange( change( "cat" ) );
+        changeFeed.onChange( change( "cat" ) );
+        assertTrue( cats.batches.isEmpty() );
+
+        // a full batch is delivered at once
+        changeFeed.onChange( change( "cat" ) );
+        assertEquals( 1, cats.batches.size() );
+        assertEquals( 3, cats.batches.get( 0 ).size() );
+        assertEquals( 3, cats.batches.get( 0 ).get( 2 ).getPosition() );
+
+        // a partial batch when flushed
+        changeFeed.onChange( change( "cat" ) );
+        changeFeed.flush();
+        assertEquals( 2, cats.batches.size() );
+        assertEquals( 4, cats.batches.get( 1 ).get( 0 ).getPosition() );
+
+        assertTrue( dogs.batches.isEmpty() );
+    }
+
+
+    @Test
+    public void resumeReplaysMissedChanges() {
+        RecordingSubscription first = subscribe( "cats", null, null );
+        for ( int i = 0; i < 4; i++ ) {
+            changeFeed.onChange( change( "cat" ) );
+        }
+
+        RecordingSubscription resumed = subscribe( "cats", first.feedId, 2L );
+        assertEquals( first.feedId, resumed.feedId );
+        assertEquals( 2, resumed.startPosition );
+        assertEquals( 2, resumed.missed.size() );
+        assertEquals( 3, resumed.missed.get( 0 ).getPosition() );
+        assertEquals( 4, resumed.missed.get( 1 ).getPosition() );
+        assertNull( resumed.resetPosition );
+    }
+
+
+    @Test
+    public void resumeBeyondRetainedResets() {
+        RecordingSubscription first = subscribe( "cats", null, null );
+        for ( int i = 0; i < 8; i++ ) {
+            changeFeed.onChange( change( "cat" ) );
+        }
+
+        // positions 4 to 8 are retained
+        assertNull( subscribe( "cats", first.feedId, 3L ).resetPosition );
+        assertEquals( Long.valueOf( 8 ), subscribe( "cats", first.feedId, 2L ).resetPosition );
+    }
+
+
+    @Test
+    public void resumeOtherFeedResets() {
+        subscribe( "cats", null, null );
+        changeFeed.onChange( change( "cat" ) );
+
+        // a position from another node or an evicted feed
+        assertEquals( Long.valueOf( 1 ), subscribe( "cats", UUID.randomUUID().toString(), 1L ).resetPosition );
+        assertEquals( Long.valueOf( 1 ), subscribe( "cats", null, 1L ).resetPosition );
+    }
+
+
+    @Test
+    public void idleFeedsEvicted() {
+        RecordingSubscription subscription = subscribe( "cats", null, null );
+        long now = System.currentTimeMillis();
+
+        changeFeed.evictIdle( now + IDLE_TIMEOUT * 2 );
+        assertEquals( "feeds with subscribers are kept", 1, changeFeed.getFeedCount() );
+
+        changeFeed.unsubscribe( applicationId, "cats", subscription );
+        changeFeed.evictIdle( now );
+        assertEquals( "feeds are kept for the idle timeout", 1, changeFeed.getFeedCount() );
+
+        changeFeed.evictIdle( System.currentTimeMillis() + IDLE_TIMEOUT );
+        assertEquals( 0, changeFeed.getFeedCount() );
+
+        // resuming the evicted feed resets the client
+        RecordingSubscription resumed = subscribe( "cats", subscription.feedId, 0L );
+        assertNotEquals( subscription.feedId, resumed.feedId );
+        assertEquals( Long.valueOf( 0 ), resumed.resetPosition );
+        assertEquals( 1, changeFeed.getFeedCount() );
+    }
+
+
+    private RecordingSubscription subscribe( final String collectionName, final String feedId, final Long position ) {
+        RecordingSubscription subscription = new RecordingSubscription();
+        changeFeed.subscribe( applicationId, collectionName, feedId, position, subscription );
+        return subscription;
+    }
+
+
+    private EntityChange change( final String type ) {
+        return new EntityChange( applicationId, new SimpleId( type ), EntityChange.Type.UPDATE,
+            System.currentTimeMillis() );
+    }
+
+
+    private static final class RecordingSubscription extends FeedSubscription {
+        private final List<List<ChangeFeed.Change>> batches = new ArrayList<>();
+        private String feedId;
+        private long startPosition = -1;
+        private Long resetPosition;
+        private List<ChangeFeed.Change> missed;
+
+
+        private RecordingSubscription() {
+            super( mock( Channel.class ), EnumSet.allOf( EntityChange.Type.class ), 10,
+                ChangeFeed.SlowConsumerPolicy.DROP );
+        }
+
+
+        @Override
+        void start( final String feedId, final long position, final List<ChangeFeed.Change> missed ) {
+            this.feedId = feedId;
+            this.startPosition = position;
+            this.missed = missed;
+        }
+
+
+        @Override
+        void reset( final String feedId, final long position ) {
+            this.feedId = feedId;
+            this.resetPosition = position;
+        }
+
+
+        @Override
+        void offer( final List<ChangeFeed.Change> changes ) {
+            batches.add( changes );
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.websocket;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.handler.codec.http.websocket.WebSocketFrame;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.corepersistence.asyncevents.EntityChange;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class FeedSubscriptionTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private Channel channel;
+    private List<Map<String, Object>> frames;
+    private List<ChannelFutureListener> unsent;
+
+
+    @Before
+    public void setup() {
+        frames = new ArrayList<>();
+        unsent = new ArrayList<>();
+
+        // frames stay pending until the test completes their writes
+        channel = mock( Channel.class );
+        when( channel.isOpen() ).thenReturn( true );
+        when( channel.isWritable() ).thenReturn( true );
+        when( channel.write( any() ) ).thenAnswer( invocation -> {
+            WebSocketFrame frame = ( WebSocketFrame ) invocation.getArguments()[0];
+            frames.add( mapper.readValue( frame.getTextData(), Map.class ) );
+
+            ChannelFuture future = mock( ChannelFuture.class );
+            doAnswer( added -> unsent.add( ( ChannelFutureListener ) added.getArguments()[0] ) ).when( future )
+                .addListener( any( ChannelFutureListener.class ) );
+            return future;
+        } );
+    }
+
+
+    @Test
+    public void parseTypes() {
+        assertEquals( EnumSet.allOf( EntityChange.Type.class ), FeedSubscription.parseTypes( null ) );
+        assertEquals( EnumSet.allOf( EntityChange.Type.class ), FeedSubscription.parseTypes( " " ) );
+        assertEquals( EnumSet.of( EntityChange.Type.DELETE ), FeedSubscription.parseTypes( " Delete" ) );
+        assertEquals( EnumSet.allOf( EntityChange.Type.class ), FeedSubscription.parseTypes( "update,delete" ) );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void parseUnknownType() {
+        FeedSubscription.parseTypes( "update,create" );
+    }
+
+
+    @Test
+    public void filtersTypesAndSkipsSeenPositions() throws Exception {
+        FeedSubscription subscription = new FeedSubscription( channel, EnumSet.of( EntityChange.Type.DELETE ), 10,
+            ChangeFeed.SlowConsumerPolicy.DROP );
+
+        subscription.start( "feed", 1, new ArrayList<>() );
+        assertEquals( 1, frames.size() );
+        assertEquals( "subscribed", frames.get( 0 ).get( "type" ) );
+        assertEquals( "feed", frames.get( 0 ).get( "feed" ) );
+
+        subscription.offer( changes( change( 1, EntityChange.Type.DELETE ), change( 2, EntityChange.Type.UPDATE ),
+            change( 3, EntityChange.Type.DELETE ) ) );
+
+        assertEquals( 2, frames.size() );
+        Map<String, Object> frame = frames.get( 1 );
+        assertEquals( "changes", frame.get( "type" ) );
+        assertEquals( 3, frame.get( "position" ) );
+        List<Map<String, Object>> sent = ( List<Map<String, Object>> ) frame.get( "changes" );
+        assertEquals( 1, sent.size() );
+        assertEquals( 3, sent.get( 0 ).get( "position" ) );
+        assertEquals( "delete", sent.get( 0 ).get( "type" ) );
+        assertEquals( 3, subscription.getLastPosition() );
+
+        // a batch of only filtered out changes moves the position without a frame
+        subscription.offer( changes( change( 4, EntityChange.Type.UPDATE ) ) );
+        assertEquals( 2, frames.size() );
+        assertEquals( 4, subscription.getLastPosition() );
+    }
+
+
+    @Test
+    public void slowConsumerDropsAndReportsGap() throws Exception {
+        FeedSubscription subscription = new FeedSubscription( channel, EnumSet.allOf( EntityChange.Type.class ), 1,
+            ChangeFeed.SlowConsumerPolicy.DROP );
+
+        subscription.start( "feed", 0, new ArrayList<>() );
+        assertEquals( 1, subscription.getPending() );
+
+        subscription.offer( changes( change( 1, EntityChange.Type.UPDATE ), change( 2, EntityChange.Type.UPDATE ) ) );
+        assertEquals( 1, frames.size() );
+        assertEquals( 2, subscription.getLastPosition() );
+
+        completeWrites();
+        assertEquals( 0, subscription.getPending() );
+
+        subscription.offer( changes( change( 3, EntityChange.Type.UPDATE ) ) );
+        assertEquals( 3, frames.size() );
+        assertEquals( "gap", frames.get( 1 ).get( "type" ) );
+        assertEquals( 1, frames.get( 1 ).get( "from" ) );
+        assertEquals( 2, frames.get( 1 ).get( "position" ) );
+        assertEquals( "changes", frames.get( 2 ).get( "type" ) );
+        assertEquals( 3, frames.get( 2 ).get( "position" ) );
+        verify( channel, never() ).close();
+    }
+
+
+    @Test
+    public void slowConsumerDisconnected() throws Exception {
+        FeedSubscription subscription = new FeedSubscription( channel, EnumSet.allOf( EntityChange.Type.class ), 1,
+            ChangeFeed.SlowConsumerPolicy.DISCONNECT );
+
+        subscription.reset( "feed", 5 );
+        assertEquals( "reset", frames.get( 0 ).get( "type" ) );
+        assertEquals( 5, frames.get( 0 ).get( "position" ) );
+
+        subscription.offer( changes( change( 6, EntityChange.Type.UPDATE ) ) );
+        assertEquals( 1, frames.size() );
+        verify( channel ).close();
+    }
+
+
+    @Test
+    public void closedChannelIgnored() {
+        FeedSubscription subscription = new FeedSubscription( channel, EnumSet.allOf( EntityChange.Type.class ), 1,
+            ChangeFeed.SlowConsumerPolicy.DROP );
+        subscription.start( "feed", 0, new ArrayList<>() );
+        completeWrites();
+
+        when( channel.isOpen() ).thenReturn( false );
+        subscription.offer( changes( change( 1, EntityChange.Type.UPDATE ) ) );
+
+        assertEquals( 1, frames.size() );
+        assertTrue( unsent.isEmpty() );
+    }
+
+
+    private void completeWrites() {
+        try {
+            for ( ChannelFutureListener listener : unsent ) {
+                listener.operationComplete( mock( ChannelFuture.class ) );
+            }
+        }
+        catch ( Exception e ) {
+            throw new RuntimeException( e );
+        }
+        unsent.clear();
+    }
+
+
+    private static List<ChangeFeed.Change> changes( final ChangeFeed.Change... changes ) {
+        return Arrays.asList( changes );
+    }
+
+
+    private static ChangeFeed.Change change( final long position, final EntityChange.Type type ) {
+        return new ChangeFeed.Change( position,
+            new EntityChange( UUID.randomUUID(), new SimpleId( "cat" ), type, System.currentTimeMillis() ) );
+    }
+}